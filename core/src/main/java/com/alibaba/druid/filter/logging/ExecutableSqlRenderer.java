@@ -0,0 +1,136 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.druid.filter.logging;
+
+import com.alibaba.druid.DbType;
+import com.alibaba.druid.sql.SQLUtils;
+import com.alibaba.druid.sql.SQLUtils.FormatOption;
+import com.alibaba.druid.sql.parser.Lexer;
+import com.alibaba.druid.sql.parser.SQLParserUtils;
+import com.alibaba.druid.sql.parser.Token;
+import com.alibaba.druid.sql.visitor.SQLASTOutputVisitor;
+import com.alibaba.druid.util.ConcurrentLruCache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Renders the executable sql logged by {@link LogFilter}, the sql with the parameters in place of the
+ * placeholders.
+ * <p>
+ * Each sql is parsed and formatted once with its placeholders, the formatted text is cached split at
+ * the placeholders. Rendering only prints the parameter literals between the cached pieces, the same
+ * way {@link SQLUtils#format(String, DbType, List, FormatOption)} prints them, instead of parsing the
+ * sql again for every execution.
+ */
+public class ExecutableSqlRenderer {
+    public static final int DEFAULT_CACHE_SIZE = 1024;
+
+    private final ConcurrentLruCache<String, Template> cache;
+
+    public ExecutableSqlRenderer() {
+        this(DEFAULT_CACHE_SIZE);
+    }
+
+    public ExecutableSqlRenderer(int cacheSize) {
+        this.cache = new ConcurrentLruCache<String, Template>(cacheSize);
+    }
+
+    public String render(String sql, DbType dbType, List<Object> parameters, FormatOption option) {
+        for (Object parameter : parameters) {
+            if (parameter instanceof Collection) {
+                // printed as an in list, depends on the expression around the placeholder
+                return SQLUtils.format(sql, dbType, parameters, option);
+            }
+        }
+
+        Template template = cache.computeIfAbsent(sql, key -> compile(key, dbType, option));
+        if (template.dbType != dbType || template.option != option) {
+            cache.remove(sql);
+            template = cache.computeIfAbsent(sql, key -> compile(key, dbType, option));
+        }
+
+        String[] segments = template.segments;
+        if (segments == null || segments.length != parameters.size() + 1) {
+            return SQLUtils.format(sql, dbType, parameters, option);
+        }
+
+        StringBuilder buf = new StringBuilder(template.length + parameters.size() * 8);
+        SQLASTOutputVisitor visitor = SQLUtils.createOutputVisitor(buf, dbType);
+        visitor.setUppCase(option == null || option.isUppCase());
+
+        buf.append(segments[0]);
+        for (int i = 0; i < parameters.size(); ++i) {
+            visitor.printParameter(parameters.get(i));
+            buf.append(segments[i + 1]);
+        }
+        return buf.toString();
+    }
+
+    public int getCacheSize() {
+        return cache.size();
+    }
+
+    public void clearCache() {
+        cache.clear();
+    }
+
+    private static Template compile(String sql, DbType dbType, FormatOption option) {
+        String formatted = SQLUtils.format(sql, dbType, option);
+
+        List<String> segments = new ArrayList<String>();
+        try {
+            Lexer lexer = SQLParserUtils.createLexer(formatted, dbType);
+            int start = 0;
+            for (; ; ) {
+                lexer.nextToken();
+                Token token = lexer.token();
+                if (token == Token.EOF) {
+                    break;
+                }
+                if (token == Token.QUES) {
+                    int pos = lexer.pos() - 1;
+                    if (formatted.charAt(pos) != '?') {
+                        return new Template(dbType, option, null, 0);
+                    }
+                    segments.add(formatted.substring(start, pos));
+                    start = pos + 1;
+                }
+            }
+            segments.add(formatted.substring(start));
+        } catch (Exception e) {
+            // rendered by SQLUtils.format
+            return new Template(dbType, option, null, 0);
+        }
+
+        return new Template(dbType, option, segments.toArray(new String[segments.size()]), formatted.length());
+    }
+
+    private static final class Template {
+        final DbType dbType;
+        final FormatOption option;
+        final String[] segments;
+        final int length;
+
+        Template(DbType dbType, FormatOption option, String[] segments, int length) {
+            this.dbType = dbType;
+            this.option = option;
+            this.segments = segments;
+            this.length = length;
+        }
+    }
+}
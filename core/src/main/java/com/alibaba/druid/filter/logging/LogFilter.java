@@ -21,8 +21,10 @@ import com.alibaba.druid.filter.FilterEventAdapter;
 import com.alibaba.druid.pool.DruidDataSource;
 import com.alibaba.druid.pool.DruidPooledConnection;
 import com.alibaba.druid.proxy.jdbc.*;
-import com.alibaba.druid.sql.SQLUtils;
 import com.alibaba.druid.sql.SQLUtils.FormatOption;
+import com.alibaba.druid.support.logging.Log;
+import com.alibaba.druid.support.logging.LogFactory;
+import com.alibaba.druid.util.DaemonThreadFactory;
 import com.alibaba.druid.util.JdbcUtils;
 import com.alibaba.druid.util.MySqlUtils;
 
@@ -30,11 +32,24 @@ import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * @author wenshao [szujobs@hotmail.com]
  */
 public abstract class LogFilter extends FilterEventAdapter implements LogFilterMBean {
+    private static final Log LOG = LogFactory.getLog(LogFilter.class);
+
+    public static final int DEFAULT_ASYNC_LOG_BUFFER_SIZE = 1024 * 8;
+
+    private static final int LOG_CONNECTION = 1;
+    private static final int LOG_STATEMENT = 2;
+    private static final int LOG_RESULT_SET = 3;
+
+    private static final DaemonThreadFactory ASYNC_LOG_THREAD_FACTORY = new DaemonThreadFactory("LogFilter-async");
+
     protected String dataSourceLoggerName = "druid.sql.DataSource";
     protected String connectionLoggerName = "druid.sql.Connection";
     protected String statementLoggerName = "druid.sql.Statement";
@@ -75,6 +90,12 @@ public abstract class LogFilter extends FilterEventAdapter implements LogFilterM
 
     private FormatOption statementSqlFormatOption = new FormatOption(false, true);
     private boolean statementLogSqlPrettyFormat;
+    private final ExecutableSqlRenderer executableSqlRenderer = new ExecutableSqlRenderer();
+
+    private boolean asyncLogEnabled;
+    private int asyncLogBufferSize = DEFAULT_ASYNC_LOG_BUFFER_SIZE;
+    private volatile AsyncLogWriter asyncLogWriter;
+    private final AtomicLong asyncLogDropCount = new AtomicLong();
 
     protected DataSourceProxy dataSource;
 
@@ -147,6 +168,24 @@ public abstract class LogFilter extends FilterEventAdapter implements LogFilterM
                 resultSetLogErrorEnabled = true;
             }
         }
+        {
+            String prop = properties.getProperty("druid.log.async");
+            if ("true".equals(prop)) {
+                asyncLogEnabled = true;
+            } else if ("false".equals(prop)) {
+                asyncLogEnabled = false;
+            }
+        }
+        {
+            String prop = properties.getProperty("druid.log.async.bufferSize");
+            if (prop != null && prop.length() > 0) {
+                try {
+                    asyncLogBufferSize = Integer.parseInt(prop.trim());
+                } catch (NumberFormatException e) {
+                    LOG.error("illegal property 'druid.log.async.bufferSize'", e);
+                }
+            }
+        }
     }
 
     private DbType dbType;
@@ -156,6 +195,15 @@ public abstract class LogFilter extends FilterEventAdapter implements LogFilterM
         dbType = DbType.of(dataSource.getDbType());
         configFromProperties(dataSource.getConnectProperties());
         //configFromProperties(System.getProperties());
+
+        if (asyncLogEnabled) {
+            startAsyncLogWriter();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        stopAsyncLogWriter();
     }
 
     public boolean isConnectionLogErrorEnabled() {
@@ -392,6 +440,137 @@ public abstract class LogFilter extends FilterEventAdapter implements LogFilterM
 
     protected abstract void resultSetLogError(String message, Throwable error);
 
+    public ExecutableSqlRenderer getExecutableSqlRenderer() {
+        return executableSqlRenderer;
+    }
+
+    public boolean isAsyncLogEnabled() {
+        return asyncLogEnabled;
+    }
+
+    /**
+     * In async mode the JDBC threads only put a compact record of each log event into a bounded
+     * buffer, the messages are formatted and written by a background thread. The events which do not
+     * fit into the buffer are dropped and counted, see {@link #getAsyncLogDropCount()}.
+     */
+    public void setAsyncLogEnabled(boolean asyncLogEnabled) {
+        this.asyncLogEnabled = asyncLogEnabled;
+
+        if (dataSource == null) {
+            return; // started by init
+        }
+        if (asyncLogEnabled) {
+            startAsyncLogWriter();
+        } else {
+            stopAsyncLogWriter();
+        }
+    }
+
+    public int getAsyncLogBufferSize() {
+        return asyncLogBufferSize;
+    }
+
+    /**
+     * takes effect the next time the async mode is enabled
+     */
+    public void setAsyncLogBufferSize(int asyncLogBufferSize) {
+        this.asyncLogBufferSize = asyncLogBufferSize;
+    }
+
+    public long getAsyncLogDropCount() {
+        return asyncLogDropCount.get();
+    }
+
+    public int getAsyncLogPendingCount() {
+        AsyncLogWriter writer = asyncLogWriter;
+        return writer == null ? 0 : writer.buffer.size();
+    }
+
+    private synchronized void startAsyncLogWriter() {
+        if (asyncLogWriter != null) {
+            return;
+        }
+        AsyncLogWriter writer = new AsyncLogWriter(asyncLogBufferSize);
+        writer.thread.start();
+        asyncLogWriter = writer;
+    }
+
+    private synchronized void stopAsyncLogWriter() {
+        AsyncLogWriter writer = asyncLogWriter;
+        if (writer == null) {
+            return;
+        }
+        asyncLogWriter = null;
+        writer.close();
+    }
+
+    private void log(int target, String message) {
+        AsyncLogWriter writer = asyncLogWriter;
+        if (writer != null) {
+            writer.offer(LogEvent.message(target, message, null));
+            return;
+        }
+        write(target, message, null);
+    }
+
+    private void logError(int target, String message, Throwable error) {
+        AsyncLogWriter writer = asyncLogWriter;
+        if (writer != null) {
+            writer.offer(LogEvent.message(target, message, error));
+            return;
+        }
+        write(target, message, error);
+    }
+
+    private void log(LogEvent event) {
+        AsyncLogWriter writer = asyncLogWriter;
+        if (writer != null) {
+            writer.offer(event);
+            return;
+        }
+        write(event);
+    }
+
+    private void write(LogEvent event) {
+        switch (event.kind) {
+            case LogEvent.PARAMETERS:
+                write(event.target, parametersMessage(event.message, event.parameters), null);
+                write(event.target, typesMessage(event.message, event.parameters), null);
+                break;
+            case LogEvent.EXECUTABLE_SQL:
+                write(event.target, event.message + formatSql(event.sql, event.dbType, event.parameters), event.error);
+                break;
+            case LogEvent.ROW:
+                write(event.target, rowMessage(event.message, event.values), null);
+                break;
+            default:
+                write(event.target, event.message, event.error);
+                break;
+        }
+    }
+
+    private void write(int target, String message, Throwable error) {
+        switch (target) {
+            case LOG_CONNECTION:
+                connectionLog(message);
+                break;
+            case LOG_STATEMENT:
+                if (error != null) {
+                    statementLogError(message, error);
+                } else {
+                    statementLog(message);
+                }
+                break;
+            default:
+                if (error != null) {
+                    resultSetLogError(message, error);
+                } else {
+                    resultSetLog(message);
+                }
+                break;
+        }
+    }
+
     public void connection_connectAfter(ConnectionProxy connection) {
         if (connection == null) {
             return;
@@ -411,7 +590,7 @@ public abstract class LogFilter extends FilterEventAdapter implements LogFilterM
             }
 
             msg.append("} connected");
-            connectionLog(msg.toString());
+            log(LOG_CONNECTION, msg.toString());
         }
     }
 
@@ -420,7 +599,7 @@ public abstract class LogFilter extends FilterEventAdapter implements LogFilterM
         Savepoint savepoint = chain.connection_setSavepoint(connection);
 
         if (isConnectionLogEnabled()) {
-            connectionLog("{conn " + connection.getId() + "} setSavepoint-" + savepointToString(savepoint));
+            log(LOG_CONNECTION, "{conn " + connection.getId() + "} setSavepoint-" + savepointToString(savepoint));
         }
 
         return savepoint;
@@ -432,7 +611,7 @@ public abstract class LogFilter extends FilterEventAdapter implements LogFilterM
         Savepoint savepoint = chain.connection_setSavepoint(connection, name);
 
         if (isConnectionLogEnabled()) {
-            connectionLog("{conn " + connection.getId() + "} setSavepoint-" + name);
+            log(LOG_CONNECTION, "{conn " + connection.getId() + "} setSavepoint-" + name);
         }
 
         return savepoint;
@@ -443,7 +622,7 @@ public abstract class LogFilter extends FilterEventAdapter implements LogFilterM
         super.connection_rollback(chain, connection);
 
         if (connectionRollbackAfterLogEnable && isConnectionLogEnabled()) {
-            connectionLog("{conn " + connection.getId() + "} rollback");
+            log(LOG_CONNECTION, "{conn " + connection.getId() + "} rollback");
         }
     }
 
@@ -453,7 +632,7 @@ public abstract class LogFilter extends FilterEventAdapter implements LogFilterM
         super.connection_rollback(chain, connection, savePoint);
 
         if (connectionRollbackAfterLogEnable && isConnectionLogEnabled()) {
-            connectionLog("{conn " + connection.getId() + "} rollback -> " + savepointToString(savePoint));
+            log(LOG_CONNECTION, "{conn " + connection.getId() + "} rollback -> " + savepointToString(savePoint));
         }
     }
 
@@ -462,14 +641,14 @@ public abstract class LogFilter extends FilterEventAdapter implements LogFilterM
         super.connection_commit(chain, connection);
 
         if (connectionCommitAfterLogEnable && isConnectionLogEnabled()) {
-            connectionLog("{conn-" + connection.getId() + "} committed");
+            log(LOG_CONNECTION, "{conn-" + connection.getId() + "} committed");
         }
     }
 
     @Override
     public void connection_setAutoCommit(FilterChain chain, ConnectionProxy connection, boolean autoCommit)
             throws SQLException {
-        connectionLog("{conn-" + connection.getId() + "} setAutoCommit " + autoCommit);
+        log(LOG_CONNECTION, "{conn-" + connection.getId() + "} setAutoCommit " + autoCommit);
         chain.connection_setAutoCommit(connection, autoCommit);
     }
 
@@ -478,7 +657,7 @@ public abstract class LogFilter extends FilterEventAdapter implements LogFilterM
         super.connection_close(chain, connection);
 
         if (connectionCloseAfterLogEnable && isConnectionLogEnabled()) {
-            connectionLog("{conn-" + connection.getId() + "} closed");
+            log(LOG_CONNECTION, "{conn-" + connection.getId() + "} closed");
         }
     }
 
@@ -487,7 +666,7 @@ public abstract class LogFilter extends FilterEventAdapter implements LogFilterM
         super.statement_close(chain, statement);
 
         if (statementCloseAfterLogEnable && isStatementLogEnabled()) {
-            statementLog("{conn-" + statement.getConnectionProxy().getId() + ", " + stmtId(statement) + "} closed");
+            log(LOG_STATEMENT, "{conn-" + statement.getConnectionProxy().getId() + ", " + stmtId(statement) + "} closed");
         }
     }
 
@@ -508,7 +687,7 @@ public abstract class LogFilter extends FilterEventAdapter implements LogFilterM
             double nanos = statement.getLastExecuteTimeNano();
             double millis = nanos / (1000 * 1000);
 
-            statementLog("{conn-" + statement.getConnectionProxy().getId() + ", " + stmtId(statement) + "} executed. "
+            log(LOG_STATEMENT, "{conn-" + statement.getConnectionProxy().getId() + ", " + stmtId(statement) + "} executed. "
                     + millis + " millis. " + sql);
         }
     }
@@ -534,7 +713,7 @@ public abstract class LogFilter extends FilterEventAdapter implements LogFilterM
             double nanos = statement.getLastExecuteTimeNano();
             double millis = nanos / (1000 * 1000);
 
-            statementLog("{conn-" + statement.getConnectionProxy().getId() + ", " + stmtId(statement)
+            log(LOG_STATEMENT, "{conn-" + statement.getConnectionProxy().getId() + ", " + stmtId(statement)
                     + "} batch executed. " + millis + " millis. " + sql);
         }
     }
@@ -556,7 +735,7 @@ public abstract class LogFilter extends FilterEventAdapter implements LogFilterM
             double nanos = statement.getLastExecuteTimeNano();
             double millis = nanos / (1000 * 1000);
 
-            statementLog("{conn-" + statement.getConnectionProxy().getId() + ", " + stmtId(statement) + ", rs-"
+            log(LOG_STATEMENT, "{conn-" + statement.getConnectionProxy().getId() + ", " + stmtId(statement) + ", rs-"
                     + resultSet.getId() + "} query executed. " + millis + " millis. " + sql);
         }
     }
@@ -578,7 +757,7 @@ public abstract class LogFilter extends FilterEventAdapter implements LogFilterM
             double nanos = statement.getLastExecuteTimeNano();
             double millis = nanos / (1000 * 1000);
 
-            statementLog("{conn-" + statement.getConnectionProxy().getId() + ", " + stmtId(statement)
+            log(LOG_STATEMENT, "{conn-" + statement.getConnectionProxy().getId() + ", " + stmtId(statement)
                     + "} update executed. effort " + updateCount + ". " + millis + " millis. " + sql);
         }
     }
@@ -588,25 +767,36 @@ public abstract class LogFilter extends FilterEventAdapter implements LogFilterM
             return;
         }
 
-        int parametersSize = statement.getParametersSize();
-        if (parametersSize == 0) {
-            statementLog("{conn-" + statement.getConnectionProxy().getId() + ", " + stmtId(statement) + "} executed. "
-                    + sql);
+        String message = "{conn-" + statement.getConnectionProxy().getId() + ", " + stmtId(statement) + "} executed. ";
+        if (statement.getParametersSize() == 0) {
+            log(LOG_STATEMENT, message + sql);
             return;
         }
 
-        List<Object> parameters = new ArrayList<Object>(parametersSize);
-        for (int i = 0; i < parametersSize; ++i) {
-            JdbcParameter jdbcParam = statement.getParameter(i);
+        DbType dbType = DbType.of(statement.getConnectionProxy().getDirectDataSource().getDbType());
+        log(LogEvent.executableSql(message, sql, dbType, parameters(statement), null));
+    }
+
+    private static JdbcParameter[] parameters(StatementProxy statement) {
+        JdbcParameter[] parameters = new JdbcParameter[statement.getParametersSize()];
+        for (int i = 0; i < parameters.length; ++i) {
+            parameters[i] = statement.getParameter(i);
+        }
+        return parameters;
+    }
+
+    /**
+     * Only called when the event is written, after the logger level was checked, or on the async writer
+     * thread.
+     */
+    private String formatSql(String sql, DbType dbType, JdbcParameter[] jdbcParameters) {
+        List<Object> parameters = new ArrayList<Object>(jdbcParameters.length);
+        for (JdbcParameter jdbcParam : jdbcParameters) {
             parameters.add(jdbcParam != null
                     ? jdbcParam.getValue()
                     : null);
         }
-
-        DbType dbType = DbType.of(statement.getConnectionProxy().getDirectDataSource().getDbType());
-        String formattedSql = SQLUtils.format(sql, dbType, parameters, this.statementSqlFormatOption);
-        statementLog("{conn-" + statement.getConnectionProxy().getId() + ", " + stmtId(statement) + "} executed. "
-                + formattedSql);
+        return executableSqlRenderer.render(sql, dbType, parameters, this.statementSqlFormatOption);
     }
 
     @Override
@@ -623,7 +813,7 @@ public abstract class LogFilter extends FilterEventAdapter implements LogFilterM
         buf.append("} closed");
 
         if (isResultSetCloseAfterLogEnabled()) {
-            resultSetLog(buf.toString());
+            log(LOG_RESULT_SET, buf.toString());
         }
     }
 
@@ -642,13 +832,10 @@ public abstract class LogFilter extends FilterEventAdapter implements LogFilterM
                     buf.append(", rs-");
                     buf.append(resultSet.getId());
                     buf.append("}");
-                    buf.append(" Result: [");
 
                     ResultSetMetaData meta = resultSet.getMetaData();
-                    for (int i = 0, size = meta.getColumnCount(); i < size; ++i) {
-                        if (i != 0) {
-                            buf.append(", ");
-                        }
+                    Object[] values = new Object[meta.getColumnCount()];
+                    for (int i = 0; i < values.length; ++i) {
                         int columnIndex = i + 1;
                         int type = meta.getColumnType(columnIndex);
 
@@ -666,14 +853,12 @@ public abstract class LogFilter extends FilterEventAdapter implements LogFilterM
                         } else {
                             value = resultSet.getObject(columnIndex);
                         }
-                        buf.append(value);
+                        values[i] = value;
                     }
 
-                    buf.append("]");
-
-                    resultSetLog(buf.toString());
+                    log(LogEvent.row(buf.toString(), values));
                 } catch (SQLException ex) {
-                    resultSetLogError("logging error", ex);
+                    logError(LOG_RESULT_SET, "logging error", ex);
                 }
             }
         }
@@ -744,7 +929,7 @@ public abstract class LogFilter extends FilterEventAdapter implements LogFilterM
                 buf.append("}");
 
                 String resultId = buf.toString();
-                resultSetLog(resultId + " open");
+                log(LOG_RESULT_SET, resultId + " open");
 
                 buf.append(" Header: [");
 
@@ -757,30 +942,30 @@ public abstract class LogFilter extends FilterEventAdapter implements LogFilterM
                 }
                 buf.append("]");
 
-                resultSetLog(buf.toString());
+                log(LOG_RESULT_SET, buf.toString());
             } catch (SQLException ex) {
-                resultSetLogError("logging error", ex);
+                logError(LOG_RESULT_SET, "logging error", ex);
             }
         }
     }
 
     protected void statementCreateAfter(StatementProxy statement) {
         if (statementCreateAfterLogEnable && isStatementLogEnabled()) {
-            statementLog("{conn-" + statement.getConnectionProxy().getId() + ", stmt-" + statement.getId()
+            log(LOG_STATEMENT, "{conn-" + statement.getConnectionProxy().getId() + ", stmt-" + statement.getId()
                     + "} created");
         }
     }
 
     protected void statementPrepareAfter(PreparedStatementProxy statement) {
         if (statementPrepareAfterLogEnable && isStatementLogEnabled()) {
-            statementLog("{conn-" + statement.getConnectionProxy().getId() + ", pstmt-" + statement.getId()
+            log(LOG_STATEMENT, "{conn-" + statement.getConnectionProxy().getId() + ", pstmt-" + statement.getId()
                     + "} created. " + statement.getSql());
         }
     }
 
     protected void statementPrepareCallAfter(CallableStatementProxy statement) {
         if (statementPrepareCallAfterLogEnable && isStatementLogEnabled()) {
-            statementLog("{conn-" + statement.getConnectionProxy().getId() + ", cstmt-" + statement.getId()
+            log(LOG_STATEMENT, "{conn-" + statement.getConnectionProxy().getId() + ", cstmt-" + statement.getId()
                     + "} created. " + statement.getSql());
         }
     }
@@ -789,27 +974,16 @@ public abstract class LogFilter extends FilterEventAdapter implements LogFilterM
     protected void statement_executeErrorAfter(StatementProxy statement, String sql, Throwable error) {
         if (this.isStatementLogErrorEnabled()) {
             if (!isStatementExecutableSqlLogEnable()) {
-                statementLogError("{conn-" + statement.getConnectionProxy().getId() + ", " + stmtId(statement)
+                logError(LOG_STATEMENT, "{conn-" + statement.getConnectionProxy().getId() + ", " + stmtId(statement)
                         + "} execute error. " + sql, error);
             } else {
-                int parametersSize = statement.getParametersSize();
-                if (parametersSize > 0) {
-                    List<Object> parameters = new ArrayList<Object>(parametersSize);
-                    for (int i = 0; i < parametersSize; ++i) {
-                        JdbcParameter jdbcParam = statement.getParameter(i);
-                        parameters.add(jdbcParam != null
-                                ? jdbcParam.getValue()
-                                : null);
-                    }
+                if (statement.getParametersSize() > 0) {
                     DbType dbType = DbType.of(statement.getConnectionProxy().getDirectDataSource().getDbType());
-                    String formattedSql = SQLUtils.format(sql, dbType, parameters, this.statementSqlFormatOption);
-                    statementLogError("{conn-" + statement.getConnectionProxy().getId()
-                                    + ", " + stmtId(statement)
-                                    + "} execute error. " + formattedSql,
-                            error
-                    );
+                    String message = "{conn-" + statement.getConnectionProxy().getId() + ", " + stmtId(statement)
+                            + "} execute error. ";
+                    log(LogEvent.executableSql(message, sql, dbType, parameters(statement), error));
                 } else {
-                    statementLogError("{conn-" + statement.getConnectionProxy().getId() + ", " + stmtId(statement)
+                    logError(LOG_STATEMENT, "{conn-" + statement.getConnectionProxy().getId() + ", " + stmtId(statement)
                             + "} execute error. " + sql, error);
                 }
             }
@@ -836,61 +1010,71 @@ public abstract class LogFilter extends FilterEventAdapter implements LogFilterM
 
     protected void logParameter(PreparedStatementProxy statement) {
         if (isStatementParameterSetLogEnabled()) {
-            {
-                StringBuilder buf = new StringBuilder();
-                buf.append("{conn-");
-                buf.append(statement.getConnectionProxy().getId());
+            String message = "{conn-" + statement.getConnectionProxy().getId() + ", " + stmtId(statement) + "}";
+            log(LogEvent.parameters(message, parameters(statement)));
+        }
+    }
+
+    private static String parametersMessage(String message, JdbcParameter[] parameters) {
+        StringBuilder buf = new StringBuilder();
+        buf.append(message);
+        buf.append(" Parameters : [");
+
+        for (int i = 0; i < parameters.length; ++i) {
+            JdbcParameter parameter = parameters[i];
+            if (i != 0) {
                 buf.append(", ");
-                buf.append(stmtId(statement));
-                buf.append("}");
-                buf.append(" Parameters : [");
+            }
+            if (parameter == null) {
+                continue;
+            }
 
-                for (int i = 0, parametersSize = statement.getParametersSize(); i < parametersSize; ++i) {
-                    JdbcParameter parameter = statement.getParameter(i);
-                    if (i != 0) {
-                        buf.append(", ");
-                    }
-                    if (parameter == null) {
-                        continue;
-                    }
+            int sqlType = parameter.getSqlType();
+            Object value = parameter.getValue();
+            switch (sqlType) {
+                case Types.NULL:
+                    buf.append("NULL");
+                    break;
+                default:
+                    buf.append(String.valueOf(value));
+                    break;
+            }
+        }
+        buf.append("]");
+        return buf.toString();
+    }
 
-                    int sqlType = parameter.getSqlType();
-                    Object value = parameter.getValue();
-                    switch (sqlType) {
-                        case Types.NULL:
-                            buf.append("NULL");
-                            break;
-                        default:
-                            buf.append(String.valueOf(value));
-                            break;
-                    }
-                }
-                buf.append("]");
-                statementLog(buf.toString());
+    private static String typesMessage(String message, JdbcParameter[] parameters) {
+        StringBuilder buf = new StringBuilder();
+        buf.append(message);
+        buf.append(" Types : [");
+        for (int i = 0; i < parameters.length; ++i) {
+            JdbcParameter parameter = parameters[i];
+            if (i != 0) {
+                buf.append(", ");
             }
-            {
-                StringBuilder buf = new StringBuilder();
-                buf.append("{conn-");
-                buf.append(statement.getConnectionProxy().getId());
+            if (parameter == null) {
+                continue;
+            }
+            int sqlType = parameter.getSqlType();
+            buf.append(JdbcUtils.getTypeName(sqlType));
+        }
+        buf.append("]");
+        return buf.toString();
+    }
+
+    private static String rowMessage(String message, Object[] values) {
+        StringBuilder buf = new StringBuilder();
+        buf.append(message);
+        buf.append(" Result: [");
+        for (int i = 0; i < values.length; ++i) {
+            if (i != 0) {
                 buf.append(", ");
-                buf.append(stmtId(statement));
-                buf.append("}");
-                buf.append(" Types : [");
-                for (int i = 0, parametersSize = statement.getParametersSize(); i < parametersSize; ++i) {
-                    JdbcParameter parameter = statement.getParameter(i);
-                    if (i != 0) {
-                        buf.append(", ");
-                    }
-                    if (parameter == null) {
-                        continue;
-                    }
-                    int sqlType = parameter.getSqlType();
-                    buf.append(JdbcUtils.getTypeName(sqlType));
-                }
-                buf.append("]");
-                statementLog(buf.toString());
             }
+            buf.append(values[i]);
         }
+        buf.append("]");
+        return buf.toString();
     }
 
     @Override
@@ -905,7 +1089,7 @@ public abstract class LogFilter extends FilterEventAdapter implements LogFilterM
         chain.dataSource_recycle(conn);
 
         if (connectionCloseAfterLogEnable && isConnectionLogEnabled()) {
-            connectionLog("{conn-" + connectionId + "} pool-recycle");
+            log(LOG_CONNECTION, "{conn-" + connectionId + "} pool-recycle");
         }
     }
 
@@ -917,7 +1101,7 @@ public abstract class LogFilter extends FilterEventAdapter implements LogFilterM
         ConnectionProxy connection = (ConnectionProxy) conn.getConnectionHolder().getConnection();
 
         if (connectionConnectAfterLogEnable && isConnectionLogEnabled()) {
-            connectionLog("{conn-" + connection.getId() + "} pool-connect");
+            log(LOG_CONNECTION, "{conn-" + connection.getId() + "} pool-connect");
         }
 
         return conn;
@@ -927,7 +1111,7 @@ public abstract class LogFilter extends FilterEventAdapter implements LogFilterM
     public void preparedStatement_clearParameters(FilterChain chain, PreparedStatementProxy statement)
             throws SQLException {
         if (isStatementParameterClearLogEnable()) {
-            statementLog("{conn-" + statement.getConnectionProxy().getId() + ", pstmt-" + statement.getId()
+            log(LOG_STATEMENT, "{conn-" + statement.getConnectionProxy().getId() + ", pstmt-" + statement.getId()
                     + "} clearParameters. ");
         }
         chain.preparedStatement_clearParameters(statement);
@@ -937,7 +1121,7 @@ public abstract class LogFilter extends FilterEventAdapter implements LogFilterM
     public void statement_clearBatch(FilterChain chain, StatementProxy statement)
             throws SQLException {
         if (isStatementParameterClearLogEnable()) {
-            statementLog("{conn-" + statement.getConnectionProxy().getId() + ", stmt-" + statement.getId()
+            log(LOG_STATEMENT, "{conn-" + statement.getConnectionProxy().getId() + ", stmt-" + statement.getId()
                     + "} clearBatch. ");
         }
         chain.statement_clearBatch(statement);
@@ -970,4 +1154,107 @@ public abstract class LogFilter extends FilterEventAdapter implements LogFilterM
         }
         return savePointString;
     }
+
+    private static final class LogEvent {
+        static final int MESSAGE = 0;
+        static final int PARAMETERS = 1;
+        static final int EXECUTABLE_SQL = 2;
+        static final int ROW = 3;
+
+        final int target;
+        final int kind;
+        final String message;
+        final Throwable error;
+        final String sql;
+        final DbType dbType;
+        final JdbcParameter[] parameters;
+        final Object[] values;
+
+        private LogEvent(int target, int kind, String message, Throwable error, String sql, DbType dbType,
+                         JdbcParameter[] parameters, Object[] values) {
+            this.target = target;
+            this.kind = kind;
+            this.message = message;
+            this.error = error;
+            this.sql = sql;
+            this.dbType = dbType;
+            this.parameters = parameters;
+            this.values = values;
+        }
+
+        static LogEvent message(int target, String message, Throwable error) {
+            return new LogEvent(target, MESSAGE, message, error, null, null, null, null);
+        }
+
+        static LogEvent parameters(String message, JdbcParameter[] parameters) {
+            return new LogEvent(LOG_STATEMENT, PARAMETERS, message, null, null, null, parameters, null);
+        }
+
+        static LogEvent executableSql(String message, String sql, DbType dbType, JdbcParameter[] parameters,
+                                      Throwable error) {
+            return new LogEvent(LOG_STATEMENT, EXECUTABLE_SQL, message, error, sql, dbType, parameters, null);
+        }
+
+        static LogEvent row(String message, Object[] values) {
+            return new LogEvent(LOG_RESULT_SET, ROW, message, null, null, null, null, values);
+        }
+    }
+
+    private final class AsyncLogWriter implements Runnable {
+        private static final long MAX_PARK_NANOS = 100 * 1000 * 1000;
+
+        final LogEventRingBuffer<LogEvent> buffer;
+        final Thread thread;
+        private volatile boolean waiting;
+        private volatile boolean closed;
+
+        AsyncLogWriter(int bufferSize) {
+            this.buffer = new LogEventRingBuffer<LogEvent>(bufferSize);
+            this.thread = ASYNC_LOG_THREAD_FACTORY.newThread(this);
+        }
+
+        void offer(LogEvent event) {
+            if (!buffer.offer(event)) {
+                asyncLogDropCount.incrementAndGet();
+                return;
+            }
+            if (waiting) {
+                LockSupport.unpark(thread);
+            }
+        }
+
+        public void run() {
+            for (; ; ) {
+                LogEvent event = buffer.poll();
+                if (event != null) {
+                    try {
+                        write(event);
+                    } catch (Throwable e) {
+                        LOG.error("async log error", e);
+                    }
+                    continue;
+                }
+
+                if (closed) {
+                    break;
+                }
+
+                waiting = true;
+                if (buffer.size() == 0 && !closed) {
+                    LockSupport.parkNanos(this, MAX_PARK_NANOS);
+                }
+                waiting = false;
+            }
+        }
+
+        void close() {
+            closed = true;
+            LockSupport.unpark(thread);
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(3));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
 }
@@ -143,4 +143,16 @@ public interface LogFilterMBean {
 
     void setStatementSqlPrettyFormat(boolean statementSqlPrettyFormat);
 
+    boolean isAsyncLogEnabled();
+
+    void setAsyncLogEnabled(boolean asyncLogEnabled);
+
+    int getAsyncLogBufferSize();
+
+    void setAsyncLogBufferSize(int asyncLogBufferSize);
+
+    long getAsyncLogDropCount();
+
+    int getAsyncLogPendingCount();
+
 }
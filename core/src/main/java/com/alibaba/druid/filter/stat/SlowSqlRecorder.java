@@ -0,0 +1,414 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.druid.filter.stat;
+
+import com.alibaba.druid.support.logging.Log;
+import com.alibaba.druid.support.logging.LogFactory;
+import com.alibaba.druid.util.DaemonThreadFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records the slow sql for {@link StatFilter} instead of logging each of them on the executing thread.
+ * <p>
+ * The slowest executions of each merged sql are kept in a bounded top-K list. The log lines are written
+ * by a background thread every {@link #getFlushIntervalMillis()}, at most one line per merged sql every
+ * {@link #getLogIntervalMillis()}: the line carries the slowest execution since the previous line and
+ * the number of slow executions it stands for. When {@link #getMaxSqlSize()} sql are recorded, the idle ones
+ * are evicted to make room, a slow sql which still finds no room is logged directly, rate limited.
+ *
+ * @see StatFilter#setSlowSqlRecorder(SlowSqlRecorder)
+ */
+public class SlowSqlRecorder {
+    private static final Log LOG = LogFactory.getLog(SlowSqlRecorder.class);
+
+    public static final int DEFAULT_TOP_K = 5;
+    public static final int DEFAULT_MAX_SQL_SIZE = 1000;
+    public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 1000;
+    public static final long DEFAULT_LOG_INTERVAL_MILLIS = 1000 * 10;
+
+    private int topK = DEFAULT_TOP_K;
+    private int maxSqlSize = DEFAULT_MAX_SQL_SIZE;
+    private long flushIntervalMillis = DEFAULT_FLUSH_INTERVAL_MILLIS;
+    private long logIntervalMillis = DEFAULT_LOG_INTERVAL_MILLIS;
+
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+    private final AtomicLong recordCount = new AtomicLong();
+    private final AtomicLong logCount = new AtomicLong();
+    private final AtomicLong dropCount = new AtomicLong();
+    private final AtomicLong evictCount = new AtomicLong();
+    private final AtomicLong droppedSinceLog = new AtomicLong();
+    private final AtomicLong lastDropLogMillis = new AtomicLong();
+    private final AtomicLong lastEvictMillis = new AtomicLong();
+
+    private volatile ScheduledExecutorService executor;
+
+    /**
+     * @param mergedSql  the sql of the JdbcSqlStat the execution belongs to
+     * @param sql        the executed sql
+     * @param parameters the parameters, as built for {@link com.alibaba.druid.stat.JdbcSqlStat#getLastSlowParameters()}
+     * @param logLevel   the level of the log line, null to only record the execution
+     */
+    public void record(String mergedSql, String sql, String parameters, long millis, String logLevel) {
+        if (mergedSql == null) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        Sample sample = new Sample(sql, parameters, millis, now);
+        for (; ; ) {
+            Entry entry = entries.get(mergedSql);
+            if (entry == null) {
+                if (entries.size() >= maxSqlSize && evictIdle(now) == 0) {
+                    dropCount.incrementAndGet();
+                    if (logLevel != null) {
+                        logDropped(sample, logLevel, now);
+                    }
+                    return;
+                }
+                Entry newEntry = new Entry(topK);
+                entry = entries.putIfAbsent(mergedSql, newEntry);
+                if (entry == null) {
+                    entry = newEntry;
+                }
+            }
+
+            // false if the entry was evicted meanwhile
+            if (entry.add(sample, logLevel)) {
+                break;
+            }
+        }
+
+        recordCount.incrementAndGet();
+
+        if (logLevel != null && executor == null) {
+            start();
+        }
+    }
+
+    /**
+     * Removes the entries without pending log line which recorded nothing for {@link #getLogIntervalMillis()},
+     * at most once every {@link #getFlushIntervalMillis()}.
+     *
+     * @return the number of entries removed
+     */
+    private int evictIdle(long now) {
+        long last = lastEvictMillis.get();
+        if (now - last < flushIntervalMillis || !lastEvictMillis.compareAndSet(last, now)) {
+            return 0;
+        }
+
+        int count = 0;
+        for (Iterator<Map.Entry<String, Entry>> iter = entries.entrySet().iterator(); iter.hasNext(); ) {
+            Entry entry = iter.next().getValue();
+            synchronized (entry) {
+                if (entry.pending != null || now - entry.lastRecordMillis < logIntervalMillis) {
+                    continue;
+                }
+                entry.removed = true;
+            }
+            iter.remove();
+            count++;
+        }
+        evictCount.addAndGet(count);
+        return count;
+    }
+
+    /**
+     * logs a slow sql not recorded because {@link #getMaxSqlSize()} was reached, at most one every
+     * {@link #getLogIntervalMillis()}
+     */
+    private void logDropped(Sample sample, String logLevel, long now) {
+        long dropped = droppedSinceLog.incrementAndGet();
+        long last = lastDropLogMillis.get();
+        if (now - last < logIntervalMillis || !lastDropLogMillis.compareAndSet(last, now)) {
+            return;
+        }
+        droppedSinceLog.addAndGet(-dropped);
+
+        String msg = "slow sql " + sample.millis + " millis. " + sample.sql + " " + sample.parameters;
+        if (dropped > 1) {
+            msg += " (" + dropped + " slow executions not recorded since last log, max sql size reached)";
+        }
+        log(logLevel, msg);
+        logCount.incrementAndGet();
+    }
+
+    private synchronized void start() {
+        if (executor != null) {
+            return;
+        }
+
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+                new DaemonThreadFactory("SlowSqlRecorder"));
+        executor.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                try {
+                    flush(false);
+                } catch (Throwable e) {
+                    LOG.error("flush slow sql error", e);
+                }
+            }
+        }, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        this.executor = executor;
+    }
+
+    /**
+     * Writes the pending log lines.
+     *
+     * @param force ignore the log interval, used when closing
+     */
+    public void flush(boolean force) {
+        long now = System.currentTimeMillis();
+        for (Entry entry : entries.values()) {
+            Sample sample;
+            int count;
+            String logLevel;
+            synchronized (entry) {
+                if (entry.pending == null) {
+                    continue;
+                }
+                if (!force && now - entry.lastLogMillis < logIntervalMillis) {
+                    continue;
+                }
+                sample = entry.pending;
+                count = entry.pendingCount;
+                logLevel = entry.logLevel;
+                entry.pending = null;
+                entry.pendingCount = 0;
+                entry.lastLogMillis = now;
+            }
+
+            String msg = "slow sql " + sample.millis + " millis. " + sample.sql + " " + sample.parameters;
+            if (count > 1) {
+                msg += " (" + count + " slow executions since last log)";
+            }
+            log(logLevel, msg);
+            logCount.incrementAndGet();
+        }
+    }
+
+    protected void log(String logLevel, String msg) {
+        switch (logLevel) {
+            case "WARN":
+                LOG.warn(msg);
+                break;
+            case "INFO":
+                LOG.info(msg);
+                break;
+            case "DEBUG":
+                LOG.debug(msg);
+                break;
+            default:
+                LOG.error(msg);
+        }
+    }
+
+    /**
+     * Stops the background thread and writes the pending log lines, the thread is started again by the
+     * next slow sql to log.
+     */
+    public void close() {
+        ScheduledExecutorService executor;
+        synchronized (this) {
+            executor = this.executor;
+            this.executor = null;
+        }
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(flushIntervalMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        flush(true);
+    }
+
+    /**
+     * @return the slowest executions of the merged sql, slowest first
+     */
+    public List<Sample> getTopSlowSamples(String mergedSql) {
+        Entry entry = entries.get(mergedSql);
+        if (entry == null) {
+            return Collections.emptyList();
+        }
+        synchronized (entry) {
+            return new ArrayList<Sample>(Arrays.asList(entry.top).subList(0, entry.topSize));
+        }
+    }
+
+    public List<String> getSqlList() {
+        return new ArrayList<String>(entries.keySet());
+    }
+
+    public void reset() {
+        entries.clear();
+        recordCount.set(0);
+        logCount.set(0);
+        dropCount.set(0);
+        evictCount.set(0);
+    }
+
+    public int getSqlSize() {
+        return entries.size();
+    }
+
+    public long getRecordCount() {
+        return recordCount.get();
+    }
+
+    public long getLogCount() {
+        return logCount.get();
+    }
+
+    /**
+     * @return the slow executions not recorded because {@link #getMaxSqlSize()} was reached
+     */
+    public long getDropCount() {
+        return dropCount.get();
+    }
+
+    /**
+     * @return the idle entries removed to make room for new sql
+     */
+    public long getEvictCount() {
+        return evictCount.get();
+    }
+
+    public int getTopK() {
+        return topK;
+    }
+
+    public void setTopK(int topK) {
+        this.topK = topK;
+    }
+
+    public int getMaxSqlSize() {
+        return maxSqlSize;
+    }
+
+    public void setMaxSqlSize(int maxSqlSize) {
+        this.maxSqlSize = maxSqlSize;
+    }
+
+    public long getFlushIntervalMillis() {
+        return flushIntervalMillis;
+    }
+
+    /**
+     * takes effect before the first slow sql is logged
+     */
+    public void setFlushIntervalMillis(long flushIntervalMillis) {
+        this.flushIntervalMillis = flushIntervalMillis;
+    }
+
+    public long getLogIntervalMillis() {
+        return logIntervalMillis;
+    }
+
+    public void setLogIntervalMillis(long logIntervalMillis) {
+        this.logIntervalMillis = logIntervalMillis;
+    }
+
+    public static class Sample {
+        private final String sql;
+        private final String parameters;
+        private final long millis;
+        private final long time;
+
+        public Sample(String sql, String parameters, long millis, long time) {
+            this.sql = sql;
+            this.parameters = parameters;
+            this.millis = millis;
+            this.time = time;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public String getParameters() {
+            return parameters;
+        }
+
+        public long getMillis() {
+            return millis;
+        }
+
+        public Date getTime() {
+            return new Date(time);
+        }
+    }
+
+    private static final class Entry {
+        final Sample[] top;
+        int topSize;
+
+        Sample pending;
+        int pendingCount;
+        String logLevel;
+        long lastLogMillis;
+        long lastRecordMillis;
+        boolean removed;
+
+        Entry(int topK) {
+            this.top = new Sample[topK];
+        }
+
+        synchronized boolean add(Sample sample, String logLevel) {
+            if (removed) {
+                return false;
+            }
+            lastRecordMillis = sample.time;
+
+            if (logLevel != null) {
+                if (pending == null || sample.millis > pending.millis) {
+                    pending = sample;
+                }
+                pendingCount++;
+                this.logLevel = logLevel;
+            }
+
+            if (topSize == top.length) {
+                if (topSize == 0 || sample.millis <= top[topSize - 1].millis) {
+                    return true;
+                }
+                topSize--;
+            }
+            int i = topSize;
+            while (i > 0 && top[i - 1].millis < sample.millis) {
+                top[i] = top[i - 1];
+                i--;
+            }
+            top[i] = sample;
+            topSize++;
+            return true;
+        }
+    }
+}
@@ -51,6 +51,7 @@ public class StatFilter extends FilterEventAdapter implements StatFilterMBean {
     private static final String SYS_PROP_SLOW_SQL_MILLIS = "druid.stat.slowSqlMillis";
     private static final String SYS_PROP_SLOW_SQL_LOG_LEVEL = "druid.stat.slowSqlLogLevel";
     private static final String SYS_PROP_MERGE_SQL = "druid.stat.mergeSql";
+    private static final String SYS_PROP_SLOW_SQL_RECORDER = "druid.stat.slowSqlRecorder";
 
     public static final String ATTR_NAME_CONNECTION_STAT = "stat.conn";
     public static final String ATTR_TRANSACTION = "stat.tx";
@@ -74,6 +75,8 @@ public class StatFilter extends FilterEventAdapter implements StatFilterMBean {
 
     protected String slowSqlLogLevel = "ERROR";
 
+    protected SlowSqlRecorder slowSqlRecorder;
+
     private DbType dbType;
 
     private boolean mergeSql;
@@ -139,6 +142,18 @@ public class StatFilter extends FilterEventAdapter implements StatFilterMBean {
         this.slowSqlLogLevel = slowSqlLogLevel;
     }
 
+    public SlowSqlRecorder getSlowSqlRecorder() {
+        return slowSqlRecorder;
+    }
+
+    /**
+     * With a recorder the slow sql are logged by the recorder thread, sampled and rate limited per merged
+     * sql, instead of one log line per slow execution on the executing thread.
+     */
+    public void setSlowSqlRecorder(SlowSqlRecorder slowSqlRecorder) {
+        this.slowSqlRecorder = slowSqlRecorder;
+    }
+
     @Deprecated
     public String mergeSql(String sql) {
         return this.mergeSql(sql, dbType);
@@ -226,6 +241,25 @@ public class StatFilter extends FilterEventAdapter implements StatFilterMBean {
                 this.slowSqlLogLevel = "DEBUG";
             }
         }
+
+        {
+            String property = properties.getProperty(SYS_PROP_SLOW_SQL_RECORDER);
+            if ("true".equals(property)) {
+                if (this.slowSqlRecorder == null) {
+                    this.slowSqlRecorder = new SlowSqlRecorder();
+                }
+            } else if ("false".equals(property)) {
+                this.slowSqlRecorder = null;
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+        SlowSqlRecorder recorder = this.slowSqlRecorder;
+        if (recorder != null) {
+            recorder.close();
+        }
     }
 
     @Override
@@ -502,7 +536,11 @@ public class StatFilter extends FilterEventAdapter implements StatFilterMBean {
                 sqlStat.setLastSlowParameters(slowParameters);
 
                 String lastExecSql = statement.getLastExecuteSql();
-                if (logSlowSql) {
+                SlowSqlRecorder recorder = this.slowSqlRecorder;
+                if (recorder != null) {
+                    recorder.record(sqlStat.getSql(), lastExecSql, slowParameters, millis,
+                            logSlowSql ? slowSqlLogLevel : null);
+                } else if (logSlowSql) {
                     String msg = "slow sql " + millis + " millis. " + lastExecSql + " " + slowParameters;
                     switch (slowSqlLogLevel) {
                         case "WARN":
@@ -689,7 +727,19 @@ public class StatFilter extends FilterEventAdapter implements StatFilterMBean {
                 dbType = DbType.of(dataSource.getDbType());
             }
 
+            if (mergeSql) {
+                // parameterized already by WallFilter
+                String mergedSql = SqlAnalysis.getMergedSql(statement, sql);
+                if (mergedSql != null) {
+                    return dataSourceStat.createSqlStat(mergedSql);
+                }
+            }
+
+            String rawSql = sql;
             sql = mergeSql(sql, dbType);
+            if (mergeSql && sql != rawSql) {
+                SqlAnalysis.setMergedSql(statement, rawSql, sql);
+            }
             return dataSourceStat.createSqlStat(sql);
         }
     }
@@ -286,6 +286,7 @@ public abstract class DruidAbstractDataSource extends WrapperAdapter implements
     protected volatile String lastFatalErrorSql;
     protected volatile Throwable lastFatalError;
     protected volatile Throwable keepAliveError;
+    protected final CopyOnWriteArrayList<FatalErrorListener> fatalErrorListeners = new CopyOnWriteArrayList<FatalErrorListener>();
 
     /**
      * Constructs a new DruidAbstractDataSource with a specified lock fairness setting.
@@ -2276,6 +2277,23 @@ public abstract class DruidAbstractDataSource extends WrapperAdapter implements
         return onFatalError;
     }
 
+    public List<FatalErrorListener> getFatalErrorListeners() {
+        return fatalErrorListeners;
+    }
+
+    /**
+     * Registers a listener called on every fatal error, registering the same listener twice has no effect.
+     */
+    public void addFatalErrorListener(FatalErrorListener listener) {
+        if (listener != null) {
+            fatalErrorListeners.addIfAbsent(listener);
+        }
+    }
+
+    public void removeFatalErrorListener(FatalErrorListener listener) {
+        fatalErrorListeners.remove(listener);
+    }
+
     /**
      * @since 1.1.11
      */
@@ -2075,6 +2075,14 @@ public class DruidDataSource extends DruidAbstractDataSource
         // holder.
         LOG.error("{conn-" + (holder != null ? holder.getConnectionId() : "null") + "} discard", error);
 
+        for (FatalErrorListener listener : fatalErrorListeners) {
+            try {
+                listener.onFatalError(this, error);
+            } catch (Throwable e) {
+                LOG.error("fatalErrorListener error", e);
+            }
+        }
+
         if (!emptySignalCalled && onFatalError && hasHolderDataSource) {
             fatalErrorCountLock.lock();
             try {
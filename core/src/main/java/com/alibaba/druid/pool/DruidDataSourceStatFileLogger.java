@@ -0,0 +1,401 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.druid.pool;
+
+import com.alibaba.druid.stat.JdbcSqlStatValue;
+import com.alibaba.druid.support.logging.Log;
+import com.alibaba.druid.support.logging.LogFactory;
+import com.alibaba.druid.util.JdbcUtils;
+import com.alibaba.druid.util.StringUtils;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Stat logger streaming the stat values to a rolling file, one json object per line, without building
+ * the intermediate maps and the json text of {@link DruidDataSourceStatLoggerImpl}.
+ * <p>
+ * Each {@link #log(DruidDataSourceStatValue)} writes a "ds" line followed by a "sql" line per sql stat.
+ * The counters are the values of the interval, as reset by {@link DruidDataSource#logStats()}, zero
+ * values are omitted. The lines are delta encoded against the previous snapshot written to the same
+ * file:
+ * <ul>
+ *     <li>the url, dbType, activeCount and poolingCount of the "ds" line are only written when they changed</li>
+ *     <li>the text of a sql is written once, in a "sqlDef" line, the "sql" lines only carry its id</li>
+ * </ul>
+ * When the file reaches {@link #getMaxFileSize()} it is renamed to file.1 (file.1 to file.2 ...), at most
+ * {@link #getMaxBackupIndex()} files are kept, and the new file starts without previous snapshot.
+ *
+ * @see DruidDataSource#setStatLogger(DruidDataSourceStatLogger)
+ */
+public class DruidDataSourceStatFileLogger extends DruidDataSourceStatLoggerAdapter {
+    private static final Log LOG = LogFactory.getLog(DruidDataSourceStatFileLogger.class);
+
+    public static final long DEFAULT_MAX_FILE_SIZE = 1024L * 1024 * 64;
+    public static final int DEFAULT_MAX_BACKUP_INDEX = 3;
+
+    private String file;
+    private long maxFileSize = DEFAULT_MAX_FILE_SIZE;
+    private int maxBackupIndex = DEFAULT_MAX_BACKUP_INDEX;
+
+    private FileChannel channel;
+    private Writer out;
+
+    private final Set<Long> writtenSqlIds = new HashSet<Long>();
+    private final Map<String, Snapshot> snapshots = new HashMap<String, Snapshot>();
+
+    public DruidDataSourceStatFileLogger() {
+        this.configFromProperties(System.getProperties());
+    }
+
+    public DruidDataSourceStatFileLogger(String file) {
+        this.file = file;
+    }
+
+    @Override
+    public void configFromProperties(Properties properties) {
+        if (properties == null) {
+            return;
+        }
+
+        String property = properties.getProperty("druid.stat.logFile");
+        if (property != null && property.length() > 0) {
+            this.file = property;
+        }
+
+        property = properties.getProperty("druid.stat.logFile.maxFileSize");
+        if (property != null && property.length() > 0) {
+            try {
+                this.maxFileSize = Long.parseLong(property.trim());
+            } catch (NumberFormatException e) {
+                LOG.error("illegal property 'druid.stat.logFile.maxFileSize'", e);
+            }
+        }
+
+        property = properties.getProperty("druid.stat.logFile.maxBackupIndex");
+        if (property != null && property.length() > 0) {
+            try {
+                this.maxBackupIndex = Integer.parseInt(property.trim());
+            } catch (NumberFormatException e) {
+                LOG.error("illegal property 'druid.stat.logFile.maxBackupIndex'", e);
+            }
+        }
+    }
+
+    public String getFile() {
+        return file;
+    }
+
+    public synchronized void setFile(String file) {
+        close();
+        this.file = file;
+    }
+
+    public long getMaxFileSize() {
+        return maxFileSize;
+    }
+
+    public void setMaxFileSize(long maxFileSize) {
+        this.maxFileSize = maxFileSize;
+    }
+
+    public int getMaxBackupIndex() {
+        return maxBackupIndex;
+    }
+
+    public void setMaxBackupIndex(int maxBackupIndex) {
+        this.maxBackupIndex = maxBackupIndex;
+    }
+
+    @Override
+    public synchronized void log(DruidDataSourceStatValue statValue) {
+        if (file == null) {
+            return;
+        }
+
+        try {
+            if (channel != null && channel.size() >= maxFileSize) {
+                roll();
+            }
+            if (channel == null) {
+                open();
+            }
+
+            writeDataSource(statValue);
+            List<JdbcSqlStatValue> sqlList = statValue.sqlList;
+            if (sqlList != null) {
+                for (JdbcSqlStatValue sqlStat : sqlList) {
+                    writeSql(statValue.name, sqlStat);
+                }
+            }
+            out.flush();
+        } catch (IOException e) {
+            LOG.error("write stat log error, file " + file, e);
+            close();
+        }
+    }
+
+    public synchronized void close() {
+        if (out != null) {
+            try {
+                out.flush();
+            } catch (IOException e) {
+                LOG.error("flush stat log error, file " + file, e);
+            }
+        }
+        JdbcUtils.close(out);
+        JdbcUtils.close(channel);
+        out = null;
+        channel = null;
+        writtenSqlIds.clear();
+        snapshots.clear();
+    }
+
+    private void open() throws IOException {
+        File logFile = new File(file);
+        File dir = logFile.getAbsoluteFile().getParentFile();
+        if (dir != null && !dir.exists()) {
+            dir.mkdirs();
+        }
+        channel = FileChannel.open(logFile.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        out = new BufferedWriter(Channels.newWriter(channel, "UTF-8"), 1024 * 16);
+    }
+
+    private void roll() throws IOException {
+        close();
+
+        if (maxBackupIndex > 0) {
+            File last = new File(file + "." + maxBackupIndex);
+            if (last.exists() && !last.delete()) {
+                LOG.error("delete stat log error, file " + last);
+            }
+            for (int i = maxBackupIndex - 1; i >= 1; --i) {
+                File backup = new File(file + "." + i);
+                if (backup.exists()) {
+                    backup.renameTo(new File(file + "." + (i + 1)));
+                }
+            }
+            new File(file).renameTo(new File(file + ".1"));
+        } else {
+            new File(file).delete();
+        }
+    }
+
+    private void writeDataSource(DruidDataSourceStatValue statValue) throws IOException {
+        Snapshot snapshot = snapshots.get(statValue.name);
+        boolean first = snapshot == null;
+        if (first) {
+            snapshot = new Snapshot();
+            snapshots.put(statValue.name, snapshot);
+        }
+
+        begin("ds");
+        field("time", System.currentTimeMillis());
+        field("name", statValue.name);
+        if (first || !StringUtils.equals(snapshot.url, statValue.url)) {
+            field("url", statValue.url);
+            snapshot.url = statValue.url;
+        }
+        if (first || !StringUtils.equals(snapshot.dbType, statValue.dbType)) {
+            field("dbType", statValue.dbType);
+            snapshot.dbType = statValue.dbType;
+        }
+        if (first || snapshot.activeCount != statValue.activeCount) {
+            field("activeCount", statValue.activeCount);
+            snapshot.activeCount = statValue.activeCount;
+        }
+        if (first || snapshot.poolingCount != statValue.poolingCount) {
+            field("poolingCount", statValue.poolingCount);
+            snapshot.poolingCount = statValue.poolingCount;
+        }
+
+        if (statValue.activePeak > 0) {
+            field("activePeak", statValue.activePeak);
+            field("activePeakTime", statValue.activePeakTime);
+        }
+        if (statValue.poolingPeak > 0) {
+            field("poolingPeak", statValue.poolingPeak);
+            field("poolingPeakTime", statValue.poolingPeakTime);
+        }
+        nonZero("connectCount", statValue.connectCount);
+        nonZero("closeCount", statValue.closeCount);
+        nonZero("waitThreadCount", statValue.waitThreadCount);
+        nonZero("notEmptyWaitCount", statValue.notEmptyWaitCount);
+        nonZero("notEmptyWaitMillis", statValue.getNotEmptyWaitMillis());
+        nonZero("logicConnectErrorCount", statValue.logicConnectErrorCount);
+        nonZero("physicalConnectCount", statValue.physicalConnectCount);
+        nonZero("physicalCloseCount", statValue.physicalCloseCount);
+        nonZero("physicalConnectErrorCount", statValue.physicalConnectErrorCount);
+        nonZero("executeCount", statValue.executeCount);
+        nonZero("errorCount", statValue.errorCount);
+        nonZero("commitCount", statValue.commitCount);
+        nonZero("rollbackCount", statValue.rollbackCount);
+        nonZero("pstmtCacheHitCount", statValue.pstmtCacheHitCount);
+        nonZero("pstmtCacheMissCount", statValue.pstmtCacheMissCount);
+        if (statValue.startTransactionCount > 0) {
+            field("startTransactionCount", statValue.startTransactionCount);
+            field("transactionHistogram", statValue.getTransactionHistogram());
+        }
+        if (statValue.connectCount > 0) {
+            field("connectionHoldTimeHistogram", statValue.connectionHoldTimeHistogram);
+        }
+        nonZero("clobOpenCount", statValue.clobOpenCount);
+        nonZero("blobOpenCount", statValue.blobOpenCount);
+        nonZero("sqlSkipCount", statValue.sqlSkipCount);
+        nonZero("keepAliveCheckCount", statValue.keepAliveCheckCount);
+        end();
+    }
+
+    private void writeSql(String dataSource, JdbcSqlStatValue sqlStat) throws IOException {
+        long id = sqlStat.getId();
+        if (writtenSqlIds.add(id)) {
+            begin("sqlDef");
+            field("id", id);
+            field("name", dataSource);
+            field("sql", sqlStat.getSql());
+            end();
+        }
+
+        begin("sql");
+        field("id", id);
+        if (sqlStat.getExecuteCount() > 0) {
+            field("executeCount", sqlStat.getExecuteCount());
+            field("executeMillisMax", sqlStat.getExecuteMillisMax());
+            field("executeMillisTotal", sqlStat.getExecuteMillisTotal());
+            field("executeHistogram", sqlStat.getExecuteHistogram());
+            field("executeAndResultHoldHistogram", sqlStat.getExecuteAndResultHoldHistogram());
+        }
+        nonZero("executeErrorCount", sqlStat.getExecuteErrorCount());
+        nonZero("runningCount", sqlStat.getRunningCount());
+        nonZero("concurrentMax", sqlStat.getConcurrentMax());
+        if (sqlStat.getFetchRowCount() > 0) {
+            field("fetchRowCount", sqlStat.getFetchRowCount());
+            field("fetchRowCountMax", sqlStat.getFetchRowCountMax());
+            field("fetchRowHistogram", sqlStat.getFetchRowHistogram());
+        }
+        if (sqlStat.getUpdateCount() > 0) {
+            field("updateCount", sqlStat.getUpdateCount());
+            field("updateCountMax", sqlStat.getUpdateCountMax());
+            field("updateHistogram", sqlStat.getUpdateHistogram());
+        }
+        nonZero("inTransactionCount", sqlStat.getInTransactionCount());
+        nonZero("clobOpenCount", sqlStat.getClobOpenCount());
+        nonZero("blobOpenCount", sqlStat.getBlobOpenCount());
+        end();
+    }
+
+    private void begin(String type) throws IOException {
+        out.write("{\"type\":\"");
+        out.write(type);
+        out.write('"');
+    }
+
+    private void end() throws IOException {
+        out.write("}\n");
+    }
+
+    private void name(String name) throws IOException {
+        out.write(",\"");
+        out.write(name);
+        out.write("\":");
+    }
+
+    private void nonZero(String name, long value) throws IOException {
+        if (value != 0) {
+            field(name, value);
+        }
+    }
+
+    private void field(String name, long value) throws IOException {
+        name(name);
+        out.write(Long.toString(value));
+    }
+
+    private void field(String name, long[] values) throws IOException {
+        name(name);
+        out.write('[');
+        if (values != null) {
+            int size = values.length;
+            while (size > 0 && values[size - 1] == 0) {
+                size--;
+            }
+            for (int i = 0; i < size; ++i) {
+                if (i != 0) {
+                    out.write(',');
+                }
+                out.write(Long.toString(values[i]));
+            }
+        }
+        out.write(']');
+    }
+
+    private void field(String name, String value) throws IOException {
+        name(name);
+        if (value == null) {
+            out.write("null");
+            return;
+        }
+
+        out.write('"');
+        for (int i = 0; i < value.length(); ++i) {
+            char ch = value.charAt(i);
+            switch (ch) {
+                case '"':
+                    out.write("\\\"");
+                    break;
+                case '\\':
+                    out.write("\\\\");
+                    break;
+                case '\n':
+                    out.write("\\n");
+                    break;
+                case '\r':
+                    out.write("\\r");
+                    break;
+                case '\t':
+                    out.write("\\t");
+                    break;
+                default:
+                    if (ch < 0x20) {
+                        out.write(String.format("\\u%04x", (int) ch));
+                    } else {
+                        out.write(ch);
+                    }
+                    break;
+            }
+        }
+        out.write('"');
+    }
+
+    private static final class Snapshot {
+        String url;
+        String dbType;
+        int activeCount;
+        int poolingCount;
+    }
+}
@@ -378,7 +378,7 @@ public class DruidPooledConnection extends PoolableWrapper implements javax.sql.
 
         if (stmtHolder == null) {
             try {
-                stmtHolder = new PreparedStatementHolder(key, conn.prepareStatement(sql));
+                stmtHolder = new PreparedStatementHolder(key, conn.prepareStatement(key.sql));
                 holder.getDataSource().incrementPreparedStatementCount();
             } catch (SQLException ex) {
                 handleException(ex, sql);
@@ -416,7 +416,7 @@ public class DruidPooledConnection extends PoolableWrapper implements javax.sql.
 
         if (stmtHolder == null) {
             try {
-                stmtHolder = new PreparedStatementHolder(key, conn.prepareStatement(sql, resultSetType,
+                stmtHolder = new PreparedStatementHolder(key, conn.prepareStatement(key.sql, resultSetType,
                         resultSetConcurrency));
                 holder.getDataSource().incrementPreparedStatementCount();
             } catch (SQLException ex) {
@@ -450,7 +450,7 @@ public class DruidPooledConnection extends PoolableWrapper implements javax.sql.
 
         if (stmtHolder == null) {
             try {
-                stmtHolder = new PreparedStatementHolder(key, conn.prepareStatement(sql, resultSetType,
+                stmtHolder = new PreparedStatementHolder(key, conn.prepareStatement(key.sql, resultSetType,
                         resultSetConcurrency,
                         resultSetHoldability));
                 holder.getDataSource().incrementPreparedStatementCount();
@@ -483,7 +483,7 @@ public class DruidPooledConnection extends PoolableWrapper implements javax.sql.
 
         if (stmtHolder == null) {
             try {
-                stmtHolder = new PreparedStatementHolder(key, conn.prepareStatement(sql, columnIndexes));
+                stmtHolder = new PreparedStatementHolder(key, conn.prepareStatement(key.sql, columnIndexes));
                 holder.getDataSource().incrementPreparedStatementCount();
             } catch (SQLException ex) {
                 handleException(ex, sql);
@@ -514,7 +514,7 @@ public class DruidPooledConnection extends PoolableWrapper implements javax.sql.
 
         if (stmtHolder == null) {
             try {
-                stmtHolder = new PreparedStatementHolder(key, conn.prepareStatement(sql, columnNames));
+                stmtHolder = new PreparedStatementHolder(key, conn.prepareStatement(key.sql, columnNames));
                 holder.getDataSource().incrementPreparedStatementCount();
             } catch (SQLException ex) {
                 handleException(ex, sql);
@@ -545,7 +545,7 @@ public class DruidPooledConnection extends PoolableWrapper implements javax.sql.
 
         if (stmtHolder == null) {
             try {
-                stmtHolder = new PreparedStatementHolder(key, conn.prepareStatement(sql, autoGeneratedKeys));
+                stmtHolder = new PreparedStatementHolder(key, conn.prepareStatement(key.sql, autoGeneratedKeys));
                 holder.getDataSource().incrementPreparedStatementCount();
             } catch (SQLException ex) {
                 handleException(ex, sql);
@@ -578,7 +578,7 @@ public class DruidPooledConnection extends PoolableWrapper implements javax.sql.
 
         if (stmtHolder == null) {
             try {
-                stmtHolder = new PreparedStatementHolder(key, conn.prepareCall(sql));
+                stmtHolder = new PreparedStatementHolder(key, conn.prepareCall(key.sql));
                 holder.getDataSource().incrementPreparedStatementCount();
             } catch (SQLException ex) {
                 handleException(ex, sql);
@@ -611,7 +611,7 @@ public class DruidPooledConnection extends PoolableWrapper implements javax.sql.
 
         if (stmtHolder == null) {
             try {
-                stmtHolder = new PreparedStatementHolder(key, conn.prepareCall(sql, resultSetType,
+                stmtHolder = new PreparedStatementHolder(key, conn.prepareCall(key.sql, resultSetType,
                         resultSetConcurrency,
                         resultSetHoldability));
                 holder.getDataSource().incrementPreparedStatementCount();
@@ -646,7 +646,7 @@ public class DruidPooledConnection extends PoolableWrapper implements javax.sql.
         if (stmtHolder == null) {
             try {
                 stmtHolder = new PreparedStatementHolder(key,
-                        conn.prepareCall(sql, resultSetType, resultSetConcurrency));
+                        conn.prepareCall(key.sql, resultSetType, resultSetConcurrency));
                 holder.getDataSource().incrementPreparedStatementCount();
             } catch (SQLException ex) {
                 handleException(ex, sql);
@@ -19,6 +19,7 @@ import com.alibaba.druid.pool.PreparedStatementPool.MethodType;
 import com.alibaba.druid.support.logging.Log;
 import com.alibaba.druid.support.logging.LogFactory;
 import com.alibaba.druid.util.OracleUtils;
+import com.alibaba.druid.util.SqlTextStore;
 
 import java.io.InputStream;
 import java.io.Reader;
@@ -956,7 +957,7 @@ public class DruidPooledPreparedStatement extends DruidPooledStatement implement
                 throw new SQLException("sql is null");
             }
 
-            this.sql = sql;
+            this.sql = SqlTextStore.intern(sql);
             this.catalog = catalog;
             this.methodType = methodType;
             this.resultSetType = resultSetType;
@@ -0,0 +1,28 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.druid.pool;
+
+import java.sql.SQLException;
+
+/**
+ * Notified when the {@link ExceptionSorter} of a pool finds an exception fatal, after the connection
+ * has been discarded. It is called on the thread which got the exception, so it must return quickly.
+ *
+ * @see DruidAbstractDataSource#addFatalErrorListener(FatalErrorListener)
+ */
+public interface FatalErrorListener {
+    void onFatalError(DruidAbstractDataSource dataSource, SQLException error);
+}
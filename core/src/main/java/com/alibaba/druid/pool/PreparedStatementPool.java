@@ -35,6 +35,12 @@ import java.util.Map.Entry;
 public class PreparedStatementPool {
     private static final Log LOG = LogFactory.getLog(PreparedStatementPool.class);
 
+    /**
+     * put on a {@link PreparedStatementProxy} each time it is borrowed again from the pool, filters
+     * may reuse whatever they attached to it when it was prepared and remove the mark.
+     */
+    public static final String ATTR_POOL_HIT = "druid.pool.psHit";
+
     private final LRUCache map;
     private final DruidAbstractDataSource dataSource;
 
@@ -61,6 +67,9 @@ public class PreparedStatementPool {
 
             holder.incrementHitCount();
             dataSource.incrementCachedPreparedStatementHitCount();
+            if (holder.statement instanceof PreparedStatementProxy) {
+                ((PreparedStatementProxy) holder.statement).putAttribute(ATTR_POOL_HIT, Boolean.TRUE);
+            }
             if (holder.isEnterOracleImplicitCache()) {
                 OracleUtils.exitImplicitCacheToActive(holder.statement);
             }
@@ -42,6 +42,7 @@ import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
 
 /**
@@ -93,11 +94,14 @@ public class HighAvailableDataSource extends WrapperAdapter implements DataSourc
 
     private Map<String, DataSource> dataSourceMap = new ConcurrentHashMap<String, DataSource>();
     private Set<String> blacklist = new CopyOnWriteArraySet<String>();
+    private final AtomicLong dataSourceMapVersion = new AtomicLong();
     private DataSourceSelector selector;
     private String dataSourceFile = DEFAULT_DATA_SOURCE_FILE;
     private String propertyPrefix = "";
     private int poolPurgeIntervalSeconds = PoolUpdater.DEFAULT_INTERVAL;
     private boolean allowEmptyPoolWhenUpdate;
+    private int poolCreateIntervalMillis;
+    private int poolDrainTimeoutSeconds;
 
     private volatile boolean inited;
 
@@ -115,6 +119,8 @@ public class HighAvailableDataSource extends WrapperAdapter implements DataSourc
             if (dataSourceMap == null || dataSourceMap.isEmpty()) {
                 poolUpdater.setIntervalSeconds(poolPurgeIntervalSeconds);
                 poolUpdater.setAllowEmptyPool(allowEmptyPoolWhenUpdate);
+                poolUpdater.setCreateIntervalMillis(poolCreateIntervalMillis);
+                poolUpdater.setDrainTimeoutSeconds(poolDrainTimeoutSeconds);
                 poolUpdater.init();
                 createNodeMap();
             }
@@ -186,6 +192,7 @@ public class HighAvailableDataSource extends WrapperAdapter implements DataSourc
     public void setDataSourceMap(Map<String, DataSource> dataSourceMap) {
         if (dataSourceMap != null) {
             this.dataSourceMap = dataSourceMap;
+            dataSourceMapChanged();
         }
     }
 
@@ -204,13 +211,28 @@ public class HighAvailableDataSource extends WrapperAdapter implements DataSourc
     public void addBlackList(String name) {
         if (dataSourceMap.containsKey(name)) {
             blacklist.add(name);
+            dataSourceMapChanged();
         } else {
             LOG.info("Key " + name + " is NOT existed, ignore it.");
         }
     }
 
     public void removeBlackList(String name) {
-        blacklist.remove(name);
+        if (blacklist.remove(name)) {
+            dataSourceMapChanged();
+        }
+    }
+
+    /**
+     * Selectors cache the available DataSources and rebuild them when this version changes, call
+     * {@link #dataSourceMapChanged()} after putting or removing entries of {@link #getDataSourceMap()}.
+     */
+    public long getDataSourceMapVersion() {
+        return dataSourceMapVersion.get();
+    }
+
+    public void dataSourceMapChanged() {
+        dataSourceMapVersion.incrementAndGet();
     }
 
     public boolean isInBlackList(String name) {
@@ -314,6 +336,28 @@ public class HighAvailableDataSource extends WrapperAdapter implements DataSourc
 
     // Getters & Setters
 
+    public int getPoolCreateIntervalMillis() {
+        return poolCreateIntervalMillis;
+    }
+
+    /**
+     * @see PoolUpdater#setCreateIntervalMillis(int)
+     */
+    public void setPoolCreateIntervalMillis(int poolCreateIntervalMillis) {
+        this.poolCreateIntervalMillis = poolCreateIntervalMillis;
+    }
+
+    public int getPoolDrainTimeoutSeconds() {
+        return poolDrainTimeoutSeconds;
+    }
+
+    /**
+     * @see PoolUpdater#setDrainTimeoutSeconds(int)
+     */
+    public void setPoolDrainTimeoutSeconds(int poolDrainTimeoutSeconds) {
+        this.poolDrainTimeoutSeconds = poolDrainTimeoutSeconds;
+    }
+
     public int getPoolPurgeIntervalSeconds() {
         return poolPurgeIntervalSeconds;
     }
@@ -330,6 +374,13 @@ public class HighAvailableDataSource extends WrapperAdapter implements DataSourc
         this.nodeListener = nodeListener;
     }
 
+    /**
+     * The PoolUpdater applying the NodeEvents, with the counts of the pools it created and closed.
+     */
+    public PoolUpdater getPoolUpdater() {
+        return poolUpdater;
+    }
+
     public DataSourceSelector getDataSourceSelector() {
         return this.selector;
     }
@@ -0,0 +1,522 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.druid.pool.ha;
+
+import com.alibaba.druid.pool.WrapperAdapter;
+import com.alibaba.druid.util.JdbcUtils;
+
+import java.sql.Array;
+import java.sql.Blob;
+import java.sql.CallableStatement;
+import java.sql.Clob;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.NClob;
+import java.sql.PreparedStatement;
+import java.sql.SQLClientInfoException;
+import java.sql.SQLException;
+import java.sql.SQLWarning;
+import java.sql.SQLXML;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.sql.Struct;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Executor;
+
+/**
+ * Connection of a {@link ReadWriteSplittingDataSource}. The primary and the replica connections are
+ * borrowed when a statement first needs them and returned by {@link #close()}. The session settings
+ * (catalog, schema, transaction isolation) are applied to both.
+ */
+public class ReadWriteSplittingConnection extends WrapperAdapter implements Connection {
+    private final ReadWriteSplittingDataSource dataSource;
+
+    private Connection primary;
+    private Connection replica;
+    private boolean pinned;
+    private boolean closed;
+
+    private boolean autoCommit = true;
+    private boolean readOnly;
+    private String catalog;
+    private String schema;
+    private int transactionIsolation = -1;
+
+    public ReadWriteSplittingConnection(ReadWriteSplittingDataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * @return the connection the sql has to run on, a replica one only for a read in auto commit
+     * mode before any write. A write inside a transaction pins the connection too, so only read only
+     * transactions leave it unpinned
+     */
+    protected Connection route(String sql) throws SQLException {
+        checkOpen();
+        if (!pinned) {
+            boolean read = dataSource.isRead(sql);
+            if (!read) {
+                pinned = true;
+            } else if (autoCommit) {
+                Connection replica = getReplica();
+                if (replica != null) {
+                    return replica;
+                }
+            }
+        }
+        return getPrimary();
+    }
+
+    protected Connection getPrimary() throws SQLException {
+        checkOpen();
+        if (primary == null) {
+            Connection conn = dataSource.getPrimaryConnection();
+            try {
+                initConnection(conn);
+                if (!autoCommit) {
+                    conn.setAutoCommit(false);
+                }
+                if (readOnly) {
+                    conn.setReadOnly(true);
+                }
+            } catch (SQLException e) {
+                JdbcUtils.close(conn);
+                throw e;
+            }
+            primary = conn;
+        }
+        return primary;
+    }
+
+    /**
+     * @return the replica connection, null if no replica is available
+     */
+    protected Connection getReplica() throws SQLException {
+        if (replica == null) {
+            Connection conn = dataSource.getReplicaConnection();
+            if (conn == null) {
+                return null;
+            }
+            try {
+                initConnection(conn);
+            } catch (SQLException e) {
+                JdbcUtils.close(conn);
+                throw e;
+            }
+            replica = conn;
+        }
+        return replica;
+    }
+
+    private void initConnection(Connection conn) throws SQLException {
+        if (catalog != null) {
+            conn.setCatalog(catalog);
+        }
+        if (schema != null) {
+            conn.setSchema(schema);
+        }
+        if (transactionIsolation != -1) {
+            conn.setTransactionIsolation(transactionIsolation);
+        }
+    }
+
+    private void checkOpen() throws SQLException {
+        if (closed) {
+            throw new SQLException("connection closed");
+        }
+    }
+
+    /**
+     * @return true once the connection sticks to the primary
+     */
+    public boolean isPinned() {
+        return pinned;
+    }
+
+    public Connection getPrimaryConnection() {
+        return primary;
+    }
+
+    public Connection getReplicaConnection() {
+        return replica;
+    }
+
+    @Override
+    public Statement createStatement() throws SQLException {
+        // the sql of a plain statement is not known up front, it runs on the primary which it may write
+        pinned = true;
+        return getPrimary().createStatement();
+    }
+
+    @Override
+    public Statement createStatement(int resultSetType, int resultSetConcurrency) throws SQLException {
+        pinned = true;
+        return getPrimary().createStatement(resultSetType, resultSetConcurrency);
+    }
+
+    @Override
+    public Statement createStatement(int resultSetType, int resultSetConcurrency, int resultSetHoldability)
+            throws SQLException {
+        pinned = true;
+        return getPrimary().createStatement(resultSetType, resultSetConcurrency, resultSetHoldability);
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(String sql) throws SQLException {
+        return route(sql).prepareStatement(sql);
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency)
+            throws SQLException {
+        return route(sql).prepareStatement(sql, resultSetType, resultSetConcurrency);
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency,
+                                              int resultSetHoldability) throws SQLException {
+        return route(sql).prepareStatement(sql, resultSetType, resultSetConcurrency, resultSetHoldability);
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(String sql, int autoGeneratedKeys) throws SQLException {
+        return route(sql).prepareStatement(sql, autoGeneratedKeys);
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(String sql, int[] columnIndexes) throws SQLException {
+        return route(sql).prepareStatement(sql, columnIndexes);
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(String sql, String[] columnNames) throws SQLException {
+        return route(sql).prepareStatement(sql, columnNames);
+    }
+
+    @Override
+    public CallableStatement prepareCall(String sql) throws SQLException {
+        pinned = true;
+        return getPrimary().prepareCall(sql);
+    }
+
+    @Override
+    public CallableStatement prepareCall(String sql, int resultSetType, int resultSetConcurrency)
+            throws SQLException {
+        pinned = true;
+        return getPrimary().prepareCall(sql, resultSetType, resultSetConcurrency);
+    }
+
+    @Override
+    public CallableStatement prepareCall(String sql, int resultSetType, int resultSetConcurrency,
+                                         int resultSetHoldability) throws SQLException {
+        pinned = true;
+        return getPrimary().prepareCall(sql, resultSetType, resultSetConcurrency, resultSetHoldability);
+    }
+
+    @Override
+    public String nativeSQL(String sql) throws SQLException {
+        return getPrimary().nativeSQL(sql);
+    }
+
+    @Override
+    public void setAutoCommit(boolean autoCommit) throws SQLException {
+        checkOpen();
+        if (primary != null) {
+            primary.setAutoCommit(autoCommit);
+        }
+        this.autoCommit = autoCommit;
+    }
+
+    @Override
+    public boolean getAutoCommit() throws SQLException {
+        checkOpen();
+        return autoCommit;
+    }
+
+    @Override
+    public void commit() throws SQLException {
+        checkOpen();
+        if (primary != null) {
+            primary.commit();
+        }
+    }
+
+    @Override
+    public void rollback() throws SQLException {
+        checkOpen();
+        if (primary != null) {
+            primary.rollback();
+        }
+    }
+
+    @Override
+    public void close() throws SQLException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        Connection replica = this.replica;
+        this.replica = null;
+        Connection primary = this.primary;
+        this.primary = null;
+        try {
+            if (replica != null) {
+                replica.close();
+            }
+        } finally {
+            if (primary != null) {
+                primary.close();
+            }
+        }
+    }
+
+    @Override
+    public boolean isClosed() throws SQLException {
+        return closed;
+    }
+
+    @Override
+    public DatabaseMetaData getMetaData() throws SQLException {
+        return getPrimary().getMetaData();
+    }
+
+    @Override
+    public void setReadOnly(boolean readOnly) throws SQLException {
+        checkOpen();
+        if (primary != null) {
+            primary.setReadOnly(readOnly);
+        }
+        this.readOnly = readOnly;
+    }
+
+    @Override
+    public boolean isReadOnly() throws SQLException {
+        checkOpen();
+        return readOnly;
+    }
+
+    @Override
+    public void setCatalog(String catalog) throws SQLException {
+        checkOpen();
+        if (primary != null) {
+            primary.setCatalog(catalog);
+        }
+        if (replica != null) {
+            replica.setCatalog(catalog);
+        }
+        this.catalog = catalog;
+    }
+
+    @Override
+    public String getCatalog() throws SQLException {
+        if (catalog == null) {
+            return getPrimary().getCatalog();
+        }
+        return catalog;
+    }
+
+    @Override
+    public void setTransactionIsolation(int level) throws SQLException {
+        checkOpen();
+        if (primary != null) {
+            primary.setTransactionIsolation(level);
+        }
+        if (replica != null) {
+            replica.setTransactionIsolation(level);
+        }
+        this.transactionIsolation = level;
+    }
+
+    @Override
+    public int getTransactionIsolation() throws SQLException {
+        if (transactionIsolation == -1) {
+            return getPrimary().getTransactionIsolation();
+        }
+        return transactionIsolation;
+    }
+
+    @Override
+    public SQLWarning getWarnings() throws SQLException {
+        checkOpen();
+        return primary != null ? primary.getWarnings() : null;
+    }
+
+    @Override
+    public void clearWarnings() throws SQLException {
+        checkOpen();
+        if (primary != null) {
+            primary.clearWarnings();
+        }
+        if (replica != null) {
+            replica.clearWarnings();
+        }
+    }
+
+    @Override
+    public Map<String, Class<?>> getTypeMap() throws SQLException {
+        return getPrimary().getTypeMap();
+    }
+
+    @Override
+    public void setTypeMap(Map<String, Class<?>> map) throws SQLException {
+        getPrimary().setTypeMap(map);
+    }
+
+    @Override
+    public void setHoldability(int holdability) throws SQLException {
+        getPrimary().setHoldability(holdability);
+    }
+
+    @Override
+    public int getHoldability() throws SQLException {
+        return getPrimary().getHoldability();
+    }
+
+    @Override
+    public Savepoint setSavepoint() throws SQLException {
+        pinned = true;
+        return getPrimary().setSavepoint();
+    }
+
+    @Override
+    public Savepoint setSavepoint(String name) throws SQLException {
+        pinned = true;
+        return getPrimary().setSavepoint(name);
+    }
+
+    @Override
+    public void rollback(Savepoint savepoint) throws SQLException {
+        getPrimary().rollback(savepoint);
+    }
+
+    @Override
+    public void releaseSavepoint(Savepoint savepoint) throws SQLException {
+        getPrimary().releaseSavepoint(savepoint);
+    }
+
+    @Override
+    public Clob createClob() throws SQLException {
+        return getPrimary().createClob();
+    }
+
+    @Override
+    public Blob createBlob() throws SQLException {
+        return getPrimary().createBlob();
+    }
+
+    @Override
+    public NClob createNClob() throws SQLException {
+        return getPrimary().createNClob();
+    }
+
+    @Override
+    public SQLXML createSQLXML() throws SQLException {
+        return getPrimary().createSQLXML();
+    }
+
+    @Override
+    public boolean isValid(int timeout) throws SQLException {
+        if (closed) {
+            return false;
+        }
+        return getPrimary().isValid(timeout);
+    }
+
+    @Override
+    public void setClientInfo(String name, String value) throws SQLClientInfoException {
+        try {
+            getPrimary().setClientInfo(name, value);
+        } catch (SQLClientInfoException e) {
+            throw e;
+        } catch (SQLException e) {
+            throw new SQLClientInfoException(e.getMessage(), null, e);
+        }
+    }
+
+    @Override
+    public void setClientInfo(Properties properties) throws SQLClientInfoException {
+        try {
+            getPrimary().setClientInfo(properties);
+        } catch (SQLClientInfoException e) {
+            throw e;
+        } catch (SQLException e) {
+            throw new SQLClientInfoException(e.getMessage(), null, e);
+        }
+    }
+
+    @Override
+    public String getClientInfo(String name) throws SQLException {
+        return getPrimary().getClientInfo(name);
+    }
+
+    @Override
+    public Properties getClientInfo() throws SQLException {
+        return getPrimary().getClientInfo();
+    }
+
+    @Override
+    public Array createArrayOf(String typeName, Object[] elements) throws SQLException {
+        return getPrimary().createArrayOf(typeName, elements);
+    }
+
+    @Override
+    public Struct createStruct(String typeName, Object[] attributes) throws SQLException {
+        return getPrimary().createStruct(typeName, attributes);
+    }
+
+    @Override
+    public void setSchema(String schema) throws SQLException {
+        checkOpen();
+        if (primary != null) {
+            primary.setSchema(schema);
+        }
+        if (replica != null) {
+            replica.setSchema(schema);
+        }
+        this.schema = schema;
+    }
+
+    @Override
+    public String getSchema() throws SQLException {
+        if (schema == null) {
+            return getPrimary().getSchema();
+        }
+        return schema;
+    }
+
+    @Override
+    public void abort(Executor executor) throws SQLException {
+        closed = true;
+        if (replica != null) {
+            replica.abort(executor);
+        }
+        if (primary != null) {
+            primary.abort(executor);
+        }
+    }
+
+    @Override
+    public void setNetworkTimeout(Executor executor, int milliseconds) throws SQLException {
+        getPrimary().setNetworkTimeout(executor, milliseconds);
+    }
+
+    @Override
+    public int getNetworkTimeout() throws SQLException {
+        return getPrimary().getNetworkTimeout();
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.druid.pool.ha;
+
+import com.alibaba.druid.DbType;
+import com.alibaba.druid.pool.WrapperAdapter;
+import com.alibaba.druid.sql.parser.SQLParserUtils;
+import com.alibaba.druid.sql.parser.SQLType;
+import com.alibaba.druid.sql.parser.Token;
+import com.alibaba.druid.support.logging.Log;
+import com.alibaba.druid.support.logging.LogFactory;
+import com.alibaba.druid.util.ConcurrentLruCache;
+
+import javax.sql.DataSource;
+
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.logging.Logger;
+
+/**
+ * DataSource routing the reads to the replicas and everything else to the primary.
+ * <p>
+ * The connections returned are {@link ReadWriteSplittingConnection}s, which borrow the real
+ * connections on demand. A statement prepared with a SELECT while in auto commit mode runs on a
+ * replica connection, any other statement runs on the primary connection. Once a statement other
+ * than a SELECT has been prepared, inside a transaction or not, the connection sticks to the primary
+ * until it is closed, so the session reads its own writes. Statements created without sql
+ * ({@link Connection#createStatement()}) and calls always use the primary.
+ * <p>
+ * The replicas are usually a {@link HighAvailableDataSource}, whose selector picks the replica. The
+ * routing decisions of the most recently used sqls are cached, a SELECT ... FOR UPDATE or LOCK IN SHARE MODE goes to the
+ * primary.
+ *
+ * @see HighAvailableDataSource
+ */
+public class ReadWriteSplittingDataSource extends WrapperAdapter implements DataSource {
+    private static final Log LOG = LogFactory.getLog(ReadWriteSplittingDataSource.class);
+
+    private DataSource primary;
+    private DataSource replica;
+    private DbType dbType = DbType.mysql;
+    private volatile ConcurrentLruCache<String, Boolean> readSqlCache = new ConcurrentLruCache<String, Boolean>(1024 * 8);
+
+    private PrintWriter logWriter = new PrintWriter(System.out);
+
+    public ReadWriteSplittingDataSource() {
+    }
+
+    public ReadWriteSplittingDataSource(DataSource primary, DataSource replica) {
+        this.primary = primary;
+        this.replica = replica;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (primary == null) {
+            throw new SQLException("primary DataSource is null");
+        }
+        return new ReadWriteSplittingConnection(this);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new UnsupportedOperationException("Not supported by ReadWriteSplittingDataSource.");
+    }
+
+    /**
+     * @return true if the sql only reads and may run on a replica
+     */
+    public boolean isRead(String sql) {
+        if (sql == null) {
+            return false;
+        }
+
+        return readSqlCache.computeIfAbsent(sql, this::parseRead);
+    }
+
+    private boolean parseRead(String sql) {
+        try {
+            if (SQLParserUtils.getSQLType(sql, dbType) != SQLType.SELECT) {
+                return false;
+            }
+            // SELECT ... FOR UPDATE / FOR SHARE / LOCK IN SHARE MODE, and stacked statements, the sql type
+            // only tells the first one
+            return !SQLParserUtils.containsAny(sql, dbType, Token.FOR, Token.LOCK, Token.SEMI);
+        } catch (Exception e) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("can not get the type of sql, route it to the primary : " + sql, e);
+            }
+            return false;
+        }
+    }
+
+    Connection getPrimaryConnection() throws SQLException {
+        return primary.getConnection();
+    }
+
+    /**
+     * @return a replica connection, null if there is no replica or none is available
+     */
+    Connection getReplicaConnection() {
+        if (replica == null) {
+            return null;
+        }
+        try {
+            return replica.getConnection();
+        } catch (Exception e) {
+            LOG.warn("get replica connection error, use the primary : " + e.getMessage());
+            return null;
+        }
+    }
+
+    public DataSource getPrimary() {
+        return primary;
+    }
+
+    public void setPrimary(DataSource primary) {
+        this.primary = primary;
+    }
+
+    public DataSource getReplica() {
+        return replica;
+    }
+
+    public void setReplica(DataSource replica) {
+        this.replica = replica;
+    }
+
+    public DbType getDbType() {
+        return dbType;
+    }
+
+    public void setDbType(DbType dbType) {
+        this.dbType = dbType;
+    }
+
+    public void setDbType(String dbType) {
+        this.dbType = DbType.of(dbType);
+    }
+
+    public int getMaxSqlCacheSize() {
+        return readSqlCache.capacity();
+    }
+
+    /**
+     * resize the routing cache, the cached entries are dropped
+     */
+    public void setMaxSqlCacheSize(int maxSqlCacheSize) {
+        this.readSqlCache = new ConcurrentLruCache<String, Boolean>(maxSqlCacheSize);
+    }
+
+    public int getSqlCacheSize() {
+        return readSqlCache.size();
+    }
+
+    public void clearSqlCache() {
+        readSqlCache.clear();
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return logWriter;
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        this.logWriter = out;
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) {
+        DriverManager.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() {
+        return DriverManager.getLoginTimeout();
+    }
+
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+}
@@ -16,6 +16,7 @@
 package com.alibaba.druid.pool.ha.node;
 
 import com.alibaba.druid.pool.ha.PropertiesUtils;
+import com.alibaba.druid.util.StringUtils;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -34,7 +35,8 @@ public class NodeEvent {
     private String password;
 
     /**
-     * Diff the given two Properties.
+     * Diff the given two Properties. A node whose url, username or password changed gets an AddEvent
+     * with the new values, the nodes which did not change get no event.
      *
      * @return A List of AddEvent and DelEvent
      */
@@ -50,7 +52,8 @@ public class NodeEvent {
             }
         }
         for (String n : nextNames) {
-            if (n != null && !n.trim().isEmpty() && !prevNames.contains(n)) {
+            if (n != null && !n.trim().isEmpty()
+                    && (!prevNames.contains(n) || isChanged(previous, next, n))) {
                 namesToAdd.add(n);
             }
         }
@@ -62,6 +65,15 @@ public class NodeEvent {
         return list;
     }
 
+    private static boolean isChanged(Properties previous, Properties next, String name) {
+        for (String key : new String[]{".url", ".username", ".password"}) {
+            if (!StringUtils.equals(previous.getProperty(name + key), next.getProperty(name + key))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     public static List<NodeEvent> generateEvents(Properties properties, List<String> names, NodeEventTypeEnum type) {
         List<NodeEvent> list = new ArrayList<NodeEvent>();
         for (String n : names) {
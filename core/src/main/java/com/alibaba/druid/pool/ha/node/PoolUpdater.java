@@ -21,10 +21,12 @@ import com.alibaba.druid.pool.ha.HighAvailableDataSource;
 import com.alibaba.druid.support.logging.Log;
 import com.alibaba.druid.support.logging.LogFactory;
 import com.alibaba.druid.util.JdbcUtils;
+import com.alibaba.druid.util.StringUtils;
 
 import javax.sql.DataSource;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
@@ -34,6 +36,11 @@ import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Update the DataSource Connection Pool when notified.
+ * <p>
+ * Nodes whose url, username and password did not change keep their pool. With createIntervalMillis,
+ * the pools of new or changed nodes are created one at a time at that interval instead of all at
+ * once, unless there is no available pool yet. With drainTimeoutSeconds, a removed pool still having
+ * active connections is closed anyway once the timeout has passed.
  *
  * @author DigitalSonic
  */
@@ -41,6 +48,9 @@ public class PoolUpdater implements Observer {
     public static final int DEFAULT_INTERVAL = 60;
     private static final Log LOG = LogFactory.getLog(PoolUpdater.class);
     private Set<String> nodesToDel = new CopyOnWriteArraySet<String>();
+    private Map<String, Long> deleteTimes = new ConcurrentHashMap<String, Long>();
+    private Map<String, NodeEvent> nodesToAdd = new LinkedHashMap<String, NodeEvent>(); // guarded by lock
+    private Map<DruidDataSource, Long> replacedDataSources = new ConcurrentHashMap<DruidDataSource, Long>();
     private HighAvailableDataSource highAvailableDataSource;
 
     private Lock lock = new ReentrantLock();
@@ -48,6 +58,17 @@ public class PoolUpdater implements Observer {
     private int intervalSeconds = DEFAULT_INTERVAL;
     private volatile boolean inited;
     private boolean allowEmptyPool;
+    private int createIntervalMillis;
+    private int drainTimeoutSeconds;
+
+    private boolean creating; // guarded by lock
+    private long reconcileStartMillis; // guarded by lock
+    private volatile long reconcileCount;
+    private volatile long lastReconcileMillis;
+    private volatile long createdPoolCount;
+    private volatile long closedPoolCount;
+    private volatile long createdConnectionCount;
+    private volatile long closedConnectionCount;
 
     public boolean isInited() {
         return inited;
@@ -98,6 +119,12 @@ public class PoolUpdater implements Observer {
         if (executor == null || executor.isShutdown()) {
             return;
         }
+        lock.lock();
+        try {
+            nodesToAdd.clear();
+        } finally {
+            lock.unlock();
+        }
         try {
             executor.shutdown();
         } catch (Exception e) {
@@ -126,6 +153,9 @@ public class PoolUpdater implements Observer {
         lock.lock();
         try {
             LOG.info("Start processing the NodeEvent[" + events.length + "].");
+            if (reconcileStartMillis == 0) {
+                reconcileStartMillis = System.currentTimeMillis();
+            }
             for (NodeEvent e : events) {
                 if (e.getType() == NodeEventTypeEnum.ADD) {
                     addNode(e);
@@ -133,6 +163,11 @@ public class PoolUpdater implements Observer {
                     deleteNode(e);
                 }
             }
+            if (nodesToAdd.isEmpty()) {
+                reconciled();
+            } else {
+                scheduleCreation();
+            }
         } catch (Exception e) {
             LOG.error("Exception occurred while updating Pool.", e);
         } finally {
@@ -144,12 +179,23 @@ public class PoolUpdater implements Observer {
      * Remove unused DataSources.
      */
     public void removeDataSources() {
-        if (nodesToDel == null || nodesToDel.isEmpty()) {
+        if ((nodesToDel == null || nodesToDel.isEmpty()) && replacedDataSources.isEmpty()) {
             return;
         }
 
         lock.lock();
         try {
+            for (Map.Entry<DruidDataSource, Long> entry : replacedDataSources.entrySet()) {
+                DruidDataSource dds = entry.getKey();
+                int activeCount = dds.getActiveCount();
+                if (activeCount > 0 && !isDrainTimeout(entry.getValue())) {
+                    continue;
+                }
+                LOG.info("Close the replaced pool " + dds.getName() + " [activeCount=" + activeCount + "].");
+                closeDataSource(dds);
+                replacedDataSources.remove(dds);
+            }
+
             Map<String, DataSource> map = highAvailableDataSource.getDataSourceMap();
             Set<String> copySet = new HashSet<String>(nodesToDel);
             for (String nodeName : copySet) {
@@ -163,21 +209,21 @@ public class PoolUpdater implements Observer {
                 if (ds instanceof DruidDataSource) {
                     DruidDataSource dds = (DruidDataSource) ds;
                     int activeCount = dds.getActiveCount(); // CAUTION, activeCount MAYBE changed!
-                    if (activeCount > 0) {
+                    if (activeCount > 0 && !isDrainTimeout(deleteTimes.get(nodeName))) {
                         LOG.warn("Node " + nodeName + " is still running [activeCount=" + activeCount
                                 + "], try next time.");
                         continue;
                     } else {
-                        LOG.info("Close Node " + nodeName + " and remove it.");
-                        try {
-                            dds.close();
-                        } catch (Exception e) {
-                            LOG.error("Exception occurred while closing Node " + nodeName
-                                    + ", just remove it.", e);
+                        if (activeCount > 0) {
+                            LOG.warn("Node " + nodeName + " is still running [activeCount=" + activeCount
+                                    + "] after " + drainTimeoutSeconds + "s, close it anyway.");
                         }
+                        LOG.info("Close Node " + nodeName + " and remove it.");
+                        closeDataSource(dds);
                     }
                 }
                 map.remove(nodeName); // Remove the node directly if it is NOT a DruidDataSource.
+                highAvailableDataSource.dataSourceMapChanged();
                 cancelBlacklistNode(nodeName);
             }
         } catch (Exception e) {
@@ -191,31 +237,139 @@ public class PoolUpdater implements Observer {
         String nodeName = event.getNodeName();
         String url = event.getUrl();
         String username = event.getUsername();
-        String password = event.getPassword();
 
         Map<String, DataSource> map = highAvailableDataSource.getDataSourceMap();
         if (nodeName == null || nodeName.isEmpty()) {
             return;
         }
         LOG.info("Adding Node " + nodeName + "[url: " + url + ", username: " + username + "].");
-        if (map.containsKey(nodeName)) {
+        nodesToAdd.remove(nodeName);
+        DataSource existing = map.get(nodeName);
+        if (existing != null) {
             cancelBlacklistNode(nodeName);
+            if (!isChanged(existing, event)) {
+                return;
+            }
+            LOG.info("Node " + nodeName + " has been changed, replace its pool.");
+        }
+
+        if (createIntervalMillis > 0 && executor != null
+                && !highAvailableDataSource.getAvailableDataSourceMap().isEmpty()) {
+            nodesToAdd.put(nodeName, event);
             return;
         }
+        createNode(event);
+    }
+
+    private static boolean isChanged(DataSource dataSource, NodeEvent event) {
+        if (!(dataSource instanceof DruidDataSource) || event.getUrl() == null) {
+            return false;
+        }
+        DruidDataSource dds = (DruidDataSource) dataSource;
+        return !StringUtils.equals(event.getUrl(), dds.getUrl())
+                || !StringUtils.equals(event.getUsername(), dds.getUsername())
+                || !StringUtils.equals(event.getPassword(), dds.getPassword());
+    }
+
+    private void createNode(NodeEvent event) {
+        String nodeName = event.getNodeName();
+        String url = event.getUrl();
+        String username = event.getUsername();
+        String password = event.getPassword();
+
+        Map<String, DataSource> map = highAvailableDataSource.getDataSourceMap();
         DruidDataSource dataSource = null;
         try {
             dataSource = DataSourceCreator.create(nodeName, url, username,
                     password, this.highAvailableDataSource);
-            map.put(nodeName, dataSource);
+            DataSource previous = map.put(nodeName, dataSource);
+            highAvailableDataSource.dataSourceMapChanged();
+            createdPoolCount++;
+            createdConnectionCount += dataSource.getCreateCount();
             LOG.info("Creating Node " + nodeName + "[url: " + url + ", username: " + username + "].");
+            if (previous instanceof DruidDataSource) {
+                // drained and closed by removeDataSources
+                replacedDataSources.put((DruidDataSource) previous, System.currentTimeMillis());
+            }
         } catch (Exception e) {
             LOG.error("Can NOT create DataSource " + nodeName + ". IGNORE IT.", e);
             JdbcUtils.close(dataSource);
         }
     }
 
+    private void scheduleCreation() {
+        if (creating) {
+            return;
+        }
+        creating = true;
+        try {
+            executor.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    createPendingNode(this);
+                }
+            }, 0, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            creating = false;
+            LOG.error("Can NOT schedule the creation of Nodes " + nodesToAdd.keySet() + ".", e);
+        }
+    }
+
+    private void createPendingNode(Runnable task) {
+        lock.lock();
+        try {
+            Iterator<NodeEvent> iter = nodesToAdd.values().iterator();
+            if (iter.hasNext()) {
+                NodeEvent event = iter.next();
+                iter.remove();
+                createNode(event);
+            }
+            if (nodesToAdd.isEmpty()) {
+                creating = false;
+                reconciled();
+            } else {
+                executor.schedule(task, createIntervalMillis, TimeUnit.MILLISECONDS);
+            }
+        } catch (Exception e) {
+            creating = false;
+            LOG.error("Exception occurred while creating Nodes.", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void reconciled() {
+        if (reconcileStartMillis == 0) {
+            return;
+        }
+        lastReconcileMillis = System.currentTimeMillis() - reconcileStartMillis;
+        reconcileStartMillis = 0;
+        reconcileCount++;
+        LOG.info("Nodes updated in " + lastReconcileMillis + "ms, " + createdPoolCount + " pool(s) created with "
+                + createdConnectionCount + " connection(s), " + closedPoolCount + " pool(s) closed with "
+                + closedConnectionCount + " connection(s) in total.");
+    }
+
+    private boolean isDrainTimeout(Long deleteTime) {
+        return drainTimeoutSeconds > 0 && deleteTime != null
+                && System.currentTimeMillis() - deleteTime >= drainTimeoutSeconds * 1000L;
+    }
+
+    private void closeDataSource(DruidDataSource dataSource) {
+        closedPoolCount++;
+        closedConnectionCount += dataSource.getPoolingCount() + dataSource.getActiveCount();
+        try {
+            dataSource.close();
+        } catch (Exception e) {
+            LOG.error("Exception occurred while closing " + dataSource.getName() + ", just remove it.", e);
+        }
+    }
+
     protected void deleteNode(NodeEvent event) {
         String nodeName = event.getNodeName();
+        if (nodeName != null && nodesToAdd.remove(nodeName) != null) {
+            LOG.info("Node " + nodeName + " is deleted before its pool is created.");
+        }
         Map<String, DataSource> map = highAvailableDataSource.getDataSourceMap();
         if (nodeName == null || nodeName.isEmpty() || !map.containsKey(nodeName)) {
             return;
@@ -231,12 +385,16 @@ public class PoolUpdater implements Observer {
     private void cancelBlacklistNode(String nodeName) {
         LOG.info("Cancel the deletion of Node " + nodeName + ".");
         nodesToDel.remove(nodeName);
+        deleteTimes.remove(nodeName);
         highAvailableDataSource.removeBlackList(nodeName);
     }
 
     private void blacklistNode(String nodeName) {
         LOG.info("Deleting Node " + nodeName + ", just add it into blacklist.");
         nodesToDel.add(nodeName);
+        if (!deleteTimes.containsKey(nodeName)) {
+            deleteTimes.put(nodeName, System.currentTimeMillis());
+        }
         highAvailableDataSource.addBlackList(nodeName);
     }
 
@@ -260,6 +418,64 @@ public class PoolUpdater implements Observer {
         this.intervalSeconds = intervalSeconds;
     }
 
+    public Set<String> getNodesToAdd() {
+        lock.lock();
+        try {
+            return new HashSet<String>(nodesToAdd.keySet());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getCreateIntervalMillis() {
+        return createIntervalMillis;
+    }
+
+    /**
+     * the interval between the creation of two pools when nodes are added, 0 to create them all at once
+     */
+    public void setCreateIntervalMillis(int createIntervalMillis) {
+        this.createIntervalMillis = createIntervalMillis;
+    }
+
+    public int getDrainTimeoutSeconds() {
+        return drainTimeoutSeconds;
+    }
+
+    /**
+     * how long a removed pool waits for its active connections before being closed, 0 to wait forever
+     */
+    public void setDrainTimeoutSeconds(int drainTimeoutSeconds) {
+        this.drainTimeoutSeconds = drainTimeoutSeconds;
+    }
+
+    public long getReconcileCount() {
+        return reconcileCount;
+    }
+
+    /**
+     * the time from the last NodeEvents to the creation of the last pool they required
+     */
+    public long getLastReconcileMillis() {
+        return lastReconcileMillis;
+    }
+
+    public long getCreatedPoolCount() {
+        return createdPoolCount;
+    }
+
+    public long getClosedPoolCount() {
+        return closedPoolCount;
+    }
+
+    public long getCreatedConnectionCount() {
+        return createdConnectionCount;
+    }
+
+    public long getClosedConnectionCount() {
+        return closedConnectionCount;
+    }
+
     public boolean isAllowEmptyPool() {
         return allowEmptyPool;
     }
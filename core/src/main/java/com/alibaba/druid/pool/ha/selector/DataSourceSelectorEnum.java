@@ -27,7 +27,8 @@ import com.alibaba.druid.support.logging.LogFactory;
 public enum DataSourceSelectorEnum {
     BY_NAME("byName", NamedDataSourceSelector.class),
     RANDOM("random", RandomDataSourceSelector.class),
-    STICKY_RANDOM("stickyRandom", StickyRandomDataSourceSelector.class);
+    STICKY_RANDOM("stickyRandom", StickyRandomDataSourceSelector.class),
+    LATENCY("latency", LatencyDataSourceSelector.class);
 
     private static final Log LOG = LogFactory.getLog(DataSourceSelectorEnum.class);
     private String name;
@@ -0,0 +1,210 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.druid.pool.ha.selector;
+
+import com.alibaba.druid.pool.DruidDataSource;
+import com.alibaba.druid.pool.ha.HighAvailableDataSource;
+import com.alibaba.druid.stat.JdbcDataSourceStat;
+import com.alibaba.druid.stat.JdbcStatementStat;
+
+import javax.sql.DataSource;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A selector based on RandomDataSourceSelector which picks two DataSources at random and returns the
+ * one with the lower cost (power of two choices). The cost of a DruidDataSource is the EWMA of its
+ * execute latency times its active connection count plus one, so a slow or loaded node is avoided
+ * without the whole traffic moving to the fastest one.
+ * <p>
+ * The latency is read from the statement stat of each DruidDataSource, which is only collected
+ * with the "stat" filter and is shared by all the nodes with useGlobalDataSourceStat. Without it
+ * every node has the same latency and the least loaded of the two is returned.
+ *
+ * @see RandomDataSourceSelector
+ */
+public class LatencyDataSourceSelector extends RandomDataSourceSelector {
+    private static final String PROP_PREFIX = "druid.ha.latency.";
+    public static final String PROP_REFRESH_INTERVAL = PROP_PREFIX + "refreshIntervalMillis";
+
+    /**
+     * weight of the last interval in the latency EWMA
+     */
+    private static final double ALPHA = 0.3;
+
+    /**
+     * refresh interval of a node whose latency is still unknown, which is the case forever without the
+     * "stat" filter
+     */
+    private static final long UNKNOWN_REFRESH_INTERVAL_NANOS = 10L * 1000 * 1000;
+
+    private final ConcurrentMap<DataSource, NodeLatency> latencies = new ConcurrentHashMap<DataSource, NodeLatency>();
+    private int refreshIntervalMillis = 1000;
+
+    public LatencyDataSourceSelector(HighAvailableDataSource highAvailableDataSource) {
+        super(highAvailableDataSource);
+    }
+
+    @Override
+    public void init() {
+        super.init();
+        if (getHighAvailableDataSource() != null) {
+            refreshIntervalMillis = loadInteger(PROP_REFRESH_INTERVAL, refreshIntervalMillis);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return DataSourceSelectorEnum.LATENCY.getName();
+    }
+
+    @Override
+    public DataSource get() {
+        DataSource[] dataSources = getCandidates();
+        int size = dataSources.length;
+        if (size == 0) {
+            return null;
+        }
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int i = random.nextInt(size);
+        if (size == 1) {
+            return dataSources[i];
+        }
+        int j = random.nextInt(size - 1);
+        if (j >= i) {
+            j++;
+        }
+
+        long now = System.nanoTime();
+        return cost(dataSources[j], now) < cost(dataSources[i], now) ? dataSources[j] : dataSources[i];
+    }
+
+    /**
+     * @return the cost of sending a request to the DataSource, Long.MAX_VALUE when it has no idle
+     * connection and can not open any more
+     */
+    protected long cost(DataSource dataSource, long now) {
+        if (!(dataSource instanceof DruidDataSource)) {
+            return 0;
+        }
+
+        DruidDataSource druidDataSource = (DruidDataSource) dataSource;
+        int activeCount = druidDataSource.getActiveCount();
+        if (druidDataSource.getPoolingCount() <= 0 && activeCount >= druidDataSource.getMaxActive()) {
+            return Long.MAX_VALUE;
+        }
+
+        return (getLatencyNanos(druidDataSource, now) + 1) * (activeCount + 1);
+    }
+
+    /**
+     * @return the EWMA of the execute latency of the DataSource, 0 while unknown
+     */
+    public long getLatencyNanos(DataSource dataSource) {
+        if (!(dataSource instanceof DruidDataSource)) {
+            return 0;
+        }
+        return getLatencyNanos((DruidDataSource) dataSource, System.nanoTime());
+    }
+
+    private long getLatencyNanos(DruidDataSource dataSource, long now) {
+        JdbcDataSourceStat dataSourceStat = dataSource.getDataSourceStat();
+        if (dataSourceStat == null) {
+            return 0;
+        }
+
+        NodeLatency latency = latencies.get(dataSource);
+        if (latency == null) {
+            Map<String, DataSource> fullDataSourceMap = getFullDataSourceMap();
+            if (latencies.size() >= fullDataSourceMap.size()) {
+                // drop the nodes removed by the PoolUpdater
+                latencies.keySet().retainAll(fullDataSourceMap.values());
+            }
+            NodeLatency newLatency = new NodeLatency(now);
+            latency = latencies.putIfAbsent(dataSource, newLatency);
+            if (latency == null) {
+                latency = newLatency;
+            }
+        }
+
+        // a node stays unknown until its first execution completes, sample it sooner than the interval
+        long intervalNanos = refreshIntervalMillis * 1000L * 1000L;
+        if (latency.ewmaNanos == 0 && intervalNanos > UNKNOWN_REFRESH_INTERVAL_NANOS) {
+            intervalNanos = UNKNOWN_REFRESH_INTERVAL_NANOS;
+        }
+        if (now - latency.refreshTime >= intervalNanos) {
+            latency.refresh(dataSourceStat.getStatementStat(), now, intervalNanos);
+        }
+        return latency.ewmaNanos;
+    }
+
+    @Override
+    public void destroy() {
+        super.destroy();
+        latencies.clear();
+    }
+
+    public int getRefreshIntervalMillis() {
+        return refreshIntervalMillis;
+    }
+
+    public void setRefreshIntervalMillis(int refreshIntervalMillis) {
+        this.refreshIntervalMillis = refreshIntervalMillis;
+    }
+
+    private static final class NodeLatency {
+        volatile long refreshTime;
+        volatile long ewmaNanos;
+        private long executeCount;
+        private long nanoTotal;
+
+        NodeLatency(long now) {
+            this.refreshTime = now;
+        }
+
+        synchronized void refresh(JdbcStatementStat stat, long now, long intervalNanos) {
+            if (now - refreshTime < intervalNanos) {
+                return;
+            }
+            refreshTime = now;
+
+            long executeCount = stat.getExecuteCount();
+            long nanoTotal = stat.getNanoTotal();
+            long count = executeCount - this.executeCount;
+            long nanos = nanoTotal - this.nanoTotal;
+            if (count < 0 || nanos < 0) {
+                // the stat was reset, sample from the current values
+                this.executeCount = executeCount;
+                this.nanoTotal = nanoTotal;
+                return;
+            }
+            if (count == 0 || nanos == 0) {
+                // nothing completed since the last sample
+                return;
+            }
+            this.executeCount = executeCount;
+            this.nanoTotal = nanoTotal;
+
+            long sample = nanos / count;
+            long ewma = ewmaNanos;
+            ewmaNanos = ewma == 0 ? sample : (long) (ewma + (sample - ewma) * ALPHA);
+        }
+    }
+}
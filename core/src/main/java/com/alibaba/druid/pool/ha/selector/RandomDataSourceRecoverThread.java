@@ -18,14 +18,29 @@ package com.alibaba.druid.pool.ha.selector;
 import com.alibaba.druid.pool.DruidDataSource;
 import com.alibaba.druid.support.logging.Log;
 import com.alibaba.druid.support.logging.LogFactory;
+import com.alibaba.druid.util.DaemonThreadFactory;
 import com.alibaba.druid.util.JdbcUtils;
 
 import javax.sql.DataSource;
 
 import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * A Thread trying to test if DataSource in blacklist has been recovered.
+ * The DataSources are tested at the same time, one not recovered within checkingTimeoutSeconds
+ * (plus validationSleepSeconds) stays in the blacklist until the next round. A DataSource whose
+ * previous test has not returned yet is skipped, so a hung test holds at most one thread.
  *
  * @author DigitalSonic
  */
@@ -33,9 +48,13 @@ public class RandomDataSourceRecoverThread implements Runnable {
     public static final int DEFAULT_RECOVER_INTERVAL_SECONDS = 120;
     private static final Log LOG = LogFactory.getLog(RandomDataSourceRecoverThread.class);
 
-    private RandomDataSourceSelector selector;
+    private volatile RandomDataSourceSelector selector;
     private int recoverIntervalSeconds = DEFAULT_RECOVER_INTERVAL_SECONDS;
+    private int checkingTimeoutSeconds = RandomDataSourceValidateThread.DEFAULT_CHECKING_TIMEOUT_SECONDS;
     private int validationSleepSeconds;
+    private volatile ExecutorService recoverExecutor;
+    private final Set<DataSource> recoveringDataSources
+            = Collections.newSetFromMap(new ConcurrentHashMap<DataSource, Boolean>());
 
     public RandomDataSourceRecoverThread(RandomDataSourceSelector selector) {
         this.selector = selector;
@@ -43,20 +62,67 @@ public class RandomDataSourceRecoverThread implements Runnable {
 
     @Override
     public void run() {
-        while (true) {
-            if (selector != null && selector.getBlacklist() != null
-                    && !selector.getBlacklist().isEmpty()) {
-                LOG.info(selector.getBlacklist().size() + " DataSource in blacklist.");
-                for (DataSource dataSource : selector.getBlacklist()) {
-                    if (!(dataSource instanceof DruidDataSource)) {
-                        continue;
+        recoverExecutor = Executors.newCachedThreadPool(new DaemonThreadFactory("RandomDataSourceSelector-recover"));
+        try {
+            while (true) {
+                if (selector != null && selector.getBlacklist() != null
+                        && !selector.getBlacklist().isEmpty()) {
+                    LOG.info(selector.getBlacklist().size() + " DataSource in blacklist.");
+                    tryAllDataSources();
+                } else if (selector == null) {
+                    break;
+                }
+                sleep();
+            }
+        } finally {
+            recoverExecutor.shutdownNow();
+        }
+    }
+
+    private void tryAllDataSources() {
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        List<DataSource> dataSources = new ArrayList<DataSource>();
+        List<AtomicBoolean> claims = new ArrayList<AtomicBoolean>();
+        for (final DataSource dataSource : selector.getBlacklist()) {
+            if (!(dataSource instanceof DruidDataSource)) {
+                continue;
+            }
+            if (!recoveringDataSources.add(dataSource)) {
+                LOG.warn("The last recovering of " + ((DruidDataSource) dataSource).getName()
+                        + " is not finished, skip.");
+                continue;
+            }
+            final AtomicBoolean claimed = new AtomicBoolean();
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    if (!claimed.compareAndSet(false, true)) {
+                        return null;
                     }
-                    tryOneDataSource((DruidDataSource) dataSource);
+                    try {
+                        tryOneDataSource((DruidDataSource) dataSource);
+                    } finally {
+                        recoveringDataSources.remove(dataSource);
+                    }
+                    return null;
+                }
+            });
+            dataSources.add(dataSource);
+            claims.add(claimed);
+        }
+
+        try {
+            long timeoutMillis = (checkingTimeoutSeconds + validationSleepSeconds) * 1000L;
+            recoverExecutor.invokeAll(tasks, timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            LOG.warn("Exception occurred while recovering DataSource.", e);
+        } finally {
+            // the tasks cancelled before they started never release their DataSources
+            for (int i = 0; i < claims.size(); ++i) {
+                if (claims.get(i).compareAndSet(false, true)) {
+                    recoveringDataSources.remove(dataSources.get(i));
                 }
-            } else if (selector == null) {
-                break;
             }
-            sleep();
         }
     }
 
@@ -66,11 +132,14 @@ public class RandomDataSourceRecoverThread implements Runnable {
         }
         Connection connection = null;
         try {
-            connection = dataSource.getConnection();
+            connection = dataSource.getConnection(checkingTimeoutSeconds * 1000L);
             sleepBeforeValidation();
             dataSource.validateConnection(connection);
             LOG.info(dataSource.getName() + " is available now.");
-            selector.removeBlacklist(dataSource);
+            RandomDataSourceSelector selector = this.selector;
+            if (selector != null) {
+                selector.removeBlacklist(dataSource);
+            }
         } catch (Exception e) {
             LOG.warn("DataSource[" + dataSource.getName() + "] is still unavailable. Exception: "
                     + e.getMessage());
@@ -93,8 +162,11 @@ public class RandomDataSourceRecoverThread implements Runnable {
     }
 
     private void sleep() {
+        // up to 10% jitter, so the selectors of many clients do not test the same node together
+        long sleepMillis = recoverIntervalSeconds * 1000L;
+        sleepMillis += ThreadLocalRandom.current().nextLong(sleepMillis / 10 + 1);
         try {
-            Thread.sleep(recoverIntervalSeconds * 1000L);
+            Thread.sleep(sleepMillis);
         } catch (InterruptedException e) {
             // ignore
         }
@@ -108,6 +180,14 @@ public class RandomDataSourceRecoverThread implements Runnable {
         this.recoverIntervalSeconds = recoverIntervalSeconds;
     }
 
+    public int getCheckingTimeoutSeconds() {
+        return checkingTimeoutSeconds;
+    }
+
+    public void setCheckingTimeoutSeconds(int checkingTimeoutSeconds) {
+        this.checkingTimeoutSeconds = checkingTimeoutSeconds;
+    }
+
     public int getValidationSleepSeconds() {
         return validationSleepSeconds;
     }
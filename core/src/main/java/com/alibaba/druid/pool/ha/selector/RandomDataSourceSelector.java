@@ -24,6 +24,8 @@ import javax.sql.DataSource;
 
 import java.util.*;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A selector which uses java.util.Random to choose DataSource.
@@ -35,12 +37,15 @@ public class RandomDataSourceSelector implements DataSourceSelector {
     public static final String PROP_CHECKING_INTERVAL = PROP_PREFIX + "checkingIntervalSeconds";
     public static final String PROP_RECOVERY_INTERVAL = PROP_PREFIX + "recoveryIntervalSeconds";
     public static final String PROP_VALIDATION_SLEEP = PROP_PREFIX + "validationSleepSeconds";
+    public static final String PROP_CHECKING_TIMEOUT = PROP_PREFIX + "checkingTimeoutSeconds";
     public static final String PROP_BLACKLIST_THRESHOLD = PROP_PREFIX + "blacklistThreshold";
 
     private static final Log LOG = LogFactory.getLog(RandomDataSourceSelector.class);
+    private static final DataSource[] EMPTY = new DataSource[0];
 
-    private Random random = new Random();
     private List<DataSource> blacklist = new CopyOnWriteArrayList<DataSource>();
+    private final AtomicInteger blacklistVersion = new AtomicInteger();
+    private volatile Candidates candidates;
     private HighAvailableDataSource highAvailableDataSource;
     private RandomDataSourceValidateThread validateThread;
     private RandomDataSourceRecoverThread recoverThread;
@@ -49,6 +54,7 @@ public class RandomDataSourceSelector implements DataSourceSelector {
 
     private int checkingIntervalSeconds = RandomDataSourceValidateThread.DEFAULT_CHECKING_INTERVAL_SECONDS;
     private int recoveryIntervalSeconds = RandomDataSourceRecoverThread.DEFAULT_RECOVER_INTERVAL_SECONDS;
+    private int checkingTimeoutSeconds = RandomDataSourceValidateThread.DEFAULT_CHECKING_TIMEOUT_SECONDS;
     private int validationSleepSeconds;
     private int blacklistThreshold = RandomDataSourceValidateThread.DEFAULT_BLACKLIST_THRESHOLD;
 
@@ -75,13 +81,14 @@ public class RandomDataSourceSelector implements DataSourceSelector {
      */
     @Override
     public void destroy() {
+        // clear the selector first, an interrupted thread checks it before starting another round
         if (runningValidateThread != null) {
-            runningValidateThread.interrupt();
             validateThread.setSelector(null);
+            runningValidateThread.interrupt();
         }
         if (runningRecoverThread != null) {
-            runningRecoverThread.interrupt();
             recoverThread.setSelector(null);
+            runningRecoverThread.interrupt();
         }
     }
 
@@ -92,15 +99,80 @@ public class RandomDataSourceSelector implements DataSourceSelector {
 
     @Override
     public DataSource get() {
-        Map<String, DataSource> dataSourceMap = getDataSourceMap();
-        if (dataSourceMap == null || dataSourceMap.isEmpty()) {
+        DataSource[] dataSources = getCandidates();
+        int size = dataSources.length;
+        if (size == 0) {
             return null;
         }
 
-        Collection<DataSource> targetDataSourceSet = removeBlackList(dataSourceMap);
-        removeBusyDataSource(targetDataSourceSet);
-        DataSource dataSource = getRandomDataSource(targetDataSourceSet);
-        return dataSource;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        DataSource dataSource = dataSources[random.nextInt(size)];
+        if (size == 1 || !isBusy(dataSource)) {
+            return dataSource;
+        }
+
+        // skip the DataSources without idle connection, unless all of them are busy. Reservoir sampling
+        // keeps the choice uniform among the idle ones, together with the first pick above
+        DataSource selected = null;
+        int idleCount = 0;
+        for (DataSource candidate : dataSources) {
+            if (!isBusy(candidate) && random.nextInt(++idleCount) == 0) {
+                selected = candidate;
+            }
+        }
+        return selected != null ? selected : dataSource;
+    }
+
+    /**
+     * The available DataSources which are not in the blacklist, or all the available ones if they are
+     * all blacklisted. The array is shared and rebuilt only when the DataSource map, the blacklist of
+     * the HighAvailableDataSource or the blacklist of this selector changes, it must not be modified.
+     */
+    protected DataSource[] getCandidates() {
+        if (highAvailableDataSource == null) {
+            return EMPTY;
+        }
+
+        Map<String, DataSource> dataSourceMap = highAvailableDataSource.getDataSourceMap();
+        long version = highAvailableDataSource.getDataSourceMapVersion();
+        int blacklistVersion = this.blacklistVersion.get();
+        int mapSize = dataSourceMap.size();
+
+        Candidates candidates = this.candidates;
+        if (candidates != null
+                && candidates.version == version
+                && candidates.blacklistVersion == blacklistVersion
+                && candidates.mapSize == mapSize) {
+            return candidates.dataSources;
+        }
+
+        DataSource[] available = getDataSourceMap().values().toArray(EMPTY);
+        int size = 0;
+        for (DataSource dataSource : available) {
+            if (!containInBlacklist(dataSource)) {
+                ++size;
+            }
+        }
+
+        DataSource[] dataSources = available;
+        if (size > 0 && size < available.length) {
+            dataSources = new DataSource[size];
+            int i = 0;
+            for (DataSource dataSource : available) {
+                if (!containInBlacklist(dataSource)) {
+                    dataSources[i++] = dataSource;
+                }
+            }
+            LOG.info((available.length - size) + " Blacklist DataSource removed, return "
+                    + size + " DataSource(s).");
+        }
+
+        this.candidates = new Candidates(version, blacklistVersion, mapSize, dataSources);
+        return dataSources;
+    }
+
+    private static boolean isBusy(DataSource dataSource) {
+        return dataSource instanceof DruidDataSource && ((DruidDataSource) dataSource).getPoolingCount() <= 0;
     }
 
     @Override
@@ -133,6 +205,7 @@ public class RandomDataSourceSelector implements DataSourceSelector {
     public void addBlacklist(DataSource dataSource) {
         if (dataSource != null && !blacklist.contains(dataSource)) {
             blacklist.add(dataSource);
+            blacklistVersion.incrementAndGet();
             if (dataSource instanceof DruidDataSource) {
                 ((DruidDataSource) dataSource).setTestOnReturn(true);
             }
@@ -142,6 +215,10 @@ public class RandomDataSourceSelector implements DataSourceSelector {
     public void removeBlacklist(DataSource dataSource) {
         if (containInBlacklist(dataSource)) {
             blacklist.remove(dataSource);
+            blacklistVersion.incrementAndGet();
+            if (validateThread != null) {
+                validateThread.resetErrorCount(dataSource);
+            }
             if (dataSource instanceof DruidDataSource) {
                 ((DruidDataSource) dataSource).setTestOnReturn(highAvailableDataSource.isTestOnReturn());
             }
@@ -152,10 +229,11 @@ public class RandomDataSourceSelector implements DataSourceSelector {
         checkingIntervalSeconds = loadInteger(PROP_CHECKING_INTERVAL, checkingIntervalSeconds);
         recoveryIntervalSeconds = loadInteger(PROP_RECOVERY_INTERVAL, recoveryIntervalSeconds);
         validationSleepSeconds = loadInteger(PROP_VALIDATION_SLEEP, validationSleepSeconds);
+        checkingTimeoutSeconds = loadInteger(PROP_CHECKING_TIMEOUT, checkingTimeoutSeconds);
         blacklistThreshold = loadInteger(PROP_BLACKLIST_THRESHOLD, blacklistThreshold);
     }
 
-    private int loadInteger(String name, int defaultValue) {
+    protected int loadInteger(String name, int defaultValue) {
         if (name == null) {
             return defaultValue;
         }
@@ -177,6 +255,7 @@ public class RandomDataSourceSelector implements DataSourceSelector {
             validateThread = new RandomDataSourceValidateThread(this);
             validateThread.setCheckingIntervalSeconds(checkingIntervalSeconds);
             validateThread.setValidationSleepSeconds(validationSleepSeconds);
+            validateThread.setCheckingTimeoutSeconds(checkingTimeoutSeconds);
             validateThread.setBlacklistThreshold(blacklistThreshold);
         } else {
             validateThread.setSelector(this);
@@ -191,6 +270,7 @@ public class RandomDataSourceSelector implements DataSourceSelector {
             recoverThread = new RandomDataSourceRecoverThread(this);
             recoverThread.setRecoverIntervalSeconds(recoveryIntervalSeconds);
             recoverThread.setValidationSleepSeconds(validationSleepSeconds);
+            recoverThread.setCheckingTimeoutSeconds(checkingTimeoutSeconds);
         } else {
             recoverThread.setSelector(this);
         }
@@ -201,44 +281,6 @@ public class RandomDataSourceSelector implements DataSourceSelector {
         runningRecoverThread.start();
     }
 
-    private Collection<DataSource> removeBlackList(Map<String, DataSource> dataSourceMap) {
-        Collection<DataSource> dataSourceSet;
-        if (blacklist == null || blacklist.isEmpty() || blacklist.size() >= dataSourceMap.size()) {
-            dataSourceSet = dataSourceMap.values();
-        } else {
-            dataSourceSet = new HashSet<DataSource>(dataSourceMap.values());
-            for (DataSource b : blacklist) {
-                dataSourceSet.remove(b);
-            }
-            LOG.info(blacklist.size() + " Blacklist DataSource removed, return "
-                    + dataSourceSet.size() + " DataSource(s).");
-        }
-        return dataSourceSet;
-    }
-
-    private void removeBusyDataSource(Collection<DataSource> dataSourceSet) {
-        Collection<DataSource> busyDataSourceSet = new HashSet<DataSource>();
-        for (DataSource ds : dataSourceSet) {
-            if (ds instanceof DruidDataSource && ((DruidDataSource) ds).getPoolingCount() <= 0) {
-                busyDataSourceSet.add(ds);
-            }
-        }
-        if (!busyDataSourceSet.isEmpty() && busyDataSourceSet.size() < dataSourceSet.size()) {
-            LOG.info("Busy DataSouces: " + busyDataSourceSet.size() + "/" + dataSourceSet.size());
-            for (DataSource ds : busyDataSourceSet) {
-                dataSourceSet.remove(ds);
-            }
-        }
-    }
-
-    private DataSource getRandomDataSource(Collection<DataSource> dataSourceSet) {
-        DataSource[] dataSources = dataSourceSet.toArray(new DataSource[]{});
-        if (dataSources != null && dataSources.length > 0) {
-            return dataSources[random.nextInt(dataSourceSet.size())];
-        }
-        return null;
-    }
-
     public HighAvailableDataSource getHighAvailableDataSource() {
         return highAvailableDataSource;
     }
@@ -290,4 +332,18 @@ public class RandomDataSourceSelector implements DataSourceSelector {
     public void setBlacklistThreshold(int blacklistThreshold) {
         this.blacklistThreshold = blacklistThreshold;
     }
+
+    private static final class Candidates {
+        final long version;
+        final int blacklistVersion;
+        final int mapSize;
+        final DataSource[] dataSources;
+
+        Candidates(long version, int blacklistVersion, int mapSize, DataSource[] dataSources) {
+            this.version = version;
+            this.blacklistVersion = blacklistVersion;
+            this.mapSize = mapSize;
+            this.dataSources = dataSources;
+        }
+    }
 }
@@ -15,10 +15,13 @@
  */
 package com.alibaba.druid.pool.ha.selector;
 
+import com.alibaba.druid.pool.DruidAbstractDataSource;
 import com.alibaba.druid.pool.DruidDataSource;
+import com.alibaba.druid.pool.FatalErrorListener;
 import com.alibaba.druid.proxy.jdbc.DataSourceProxy;
 import com.alibaba.druid.support.logging.Log;
 import com.alibaba.druid.support.logging.LogFactory;
+import com.alibaba.druid.util.DaemonThreadFactory;
 import com.alibaba.druid.util.JdbcUtils;
 import com.alibaba.druid.util.StringUtils;
 
@@ -26,32 +29,55 @@ import javax.sql.DataSource;
 
 import java.sql.Connection;
 import java.sql.Driver;
+import java.sql.SQLException;
 import java.util.*;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * A Thread trying to test all DataSource provided by HADataSource.
  * If a DataSource failed this test for 3 times (default value), it will be put into a blacklist.
+ * <p>
+ * All the DataSources are tested at the same time, a test which does not finish within
+ * checkingTimeoutSeconds (plus validationSleepSeconds) counts as failed. A fatal error reported by
+ * the ExceptionSorter of a DruidDataSource counts as a failed test too, and starts a test of that
+ * DataSource at once instead of waiting for the next round. A DataSource whose previous test has not
+ * returned yet is skipped, so a hung test holds at most one thread. The test connection is opened
+ * with connect and socket timeouts, most drivers ignore the interrupt sent when a test times out.
  *
  * @author DigitalSonic
  */
 public class RandomDataSourceValidateThread implements Runnable {
     public static final int DEFAULT_CHECKING_INTERVAL_SECONDS = 10;
     public static final int DEFAULT_BLACKLIST_THRESHOLD = 3;
+    public static final int DEFAULT_CHECKING_TIMEOUT_SECONDS = 10;
 
     private static final Log LOG = LogFactory.getLog(RandomDataSourceValidateThread.class);
     private static Map<String, Long> successTimes = new ConcurrentHashMap<String, Long>();
 
     private int checkingIntervalSeconds = DEFAULT_CHECKING_INTERVAL_SECONDS; // This value should NOT be too small.
+    private int checkingTimeoutSeconds = DEFAULT_CHECKING_TIMEOUT_SECONDS;
     private int validationSleepSeconds;
     private int blacklistThreshold = DEFAULT_BLACKLIST_THRESHOLD;
-    private RandomDataSourceSelector selector;
-    private ExecutorService checkExecutor = Executors.newFixedThreadPool(5);
+    private volatile RandomDataSourceSelector selector;
+    private volatile ExecutorService checkExecutor;
     private Map<String, Integer> errorCounts = new ConcurrentHashMap<String, Integer>();
     private Map<String, Long> lastCheckTimes = new ConcurrentHashMap<String, Long>();
+    private Set<String> checkingNames = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private Set<DruidDataSource> listenedDataSources
+            = Collections.newSetFromMap(new ConcurrentHashMap<DruidDataSource, Boolean>());
+    private final FatalErrorListener fatalErrorListener = new FatalErrorListener() {
+        @Override
+        public void onFatalError(DruidAbstractDataSource dataSource, SQLException error) {
+            handleFatalError((DruidDataSource) dataSource);
+        }
+    };
 
     /**
      * Provide a static method to record the last success time of a DataSource
@@ -76,15 +102,108 @@ public class RandomDataSourceValidateThread implements Runnable {
 
     @Override
     public void run() {
-        while (true) {
-            if (selector != null) {
-                checkAllDataSources();
-                maintainBlacklist();
-                cleanup();
-            } else {
-                break;
+        checkExecutor = Executors.newCachedThreadPool(new DaemonThreadFactory("RandomDataSourceSelector-check"));
+        try {
+            while (true) {
+                if (selector != null) {
+                    checkAllDataSources();
+                    maintainBlacklist();
+                    cleanup();
+                } else {
+                    break;
+                }
+                sleepForNextValidation();
+            }
+        } finally {
+            for (DruidDataSource dataSource : listenedDataSources) {
+                dataSource.removeFatalErrorListener(fatalErrorListener);
+            }
+            listenedDataSources.clear();
+            checkExecutor.shutdownNow();
+        }
+    }
+
+    private void handleFatalError(final DruidDataSource dataSource) {
+        RandomDataSourceSelector selector = this.selector;
+        String name = dataSource.getName();
+        if (selector == null || name == null || selector.containInBlacklist(dataSource)) {
+            return;
+        }
+
+        if (recordResult(dataSource, false) >= blacklistThreshold) {
+            LOG.warn("Adding " + name + " to blacklist after a fatal error.");
+            selector.addBlacklist(dataSource);
+            return;
+        }
+
+        // one fatal error may be a single broken connection, test the DataSource now to tell
+        ExecutorService executor = checkExecutor;
+        if (executor != null && checkingNames.add(name)) {
+            try {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            checkOneDataSource(dataSource);
+                        } finally {
+                            checkingNames.remove(dataSource.getName());
+                        }
+                    }
+                });
+            } catch (Exception e) {
+                checkingNames.remove(name);
+            }
+        }
+    }
+
+    /**
+     * Forget the errors of a DataSource removed from the blacklist, so it has to fail
+     * blacklistThreshold times again before it is put back.
+     */
+    public void resetErrorCount(DataSource dataSource) {
+        if (dataSource instanceof DruidDataSource) {
+            String name = ((DruidDataSource) dataSource).getName();
+            if (name != null) {
+                errorCounts.remove(name);
+            }
+        }
+    }
+
+    private void checkOneDataSource(DruidDataSource dataSource) {
+        RandomDataSourceSelector selector = this.selector;
+        String name = dataSource.getName();
+        if (selector == null || selector.containInBlacklist(dataSource)) {
+            return;
+        }
+
+        boolean flag = check(dataSource);
+        if (recordResult(dataSource, flag) >= blacklistThreshold && !selector.containInBlacklist(dataSource)) {
+            LOG.warn("Adding " + name + " to blacklist.");
+            selector.addBlacklist(dataSource);
+        }
+    }
+
+    /**
+     * @return the error count of the DataSource after this result
+     */
+    private int recordResult(DruidDataSource dataSource, boolean success) {
+        String name = dataSource.getName();
+        lastCheckTimes.put(name, System.currentTimeMillis());
+        if (success) {
+            logSuccessTime(dataSource);
+            errorCounts.put(name, 0);
+            return 0;
+        }
+
+        for (; ; ) {
+            Integer count = errorCounts.get(name);
+            if (count == null) {
+                if (errorCounts.putIfAbsent(name, 1) == null) {
+                    return 1;
+                }
+            } else if (errorCounts.replace(name, count, count + 1)) {
+                return count + 1;
             }
-            sleepForNextValidation();
         }
     }
 
@@ -101,12 +220,15 @@ public class RandomDataSourceValidateThread implements Runnable {
         if (newSleepSeconds < 1) {
             newSleepSeconds = 1;
         }
+        // up to 10% jitter, so the selectors of many clients do not test the same node together
+        long sleepMillis = newSleepSeconds * 1000L;
+        sleepMillis += ThreadLocalRandom.current().nextLong(sleepMillis / 10 + 1);
         try {
             if (LOG.isDebugEnabled()) {
-                LOG.debug("[RandomDataSourceValidateThread@" + hashCode() + "] Sleep " + newSleepSeconds
-                        + " second(s) until next checking.");
+                LOG.debug("[RandomDataSourceValidateThread@" + hashCode() + "] Sleep " + sleepMillis
+                        + " ms until next checking.");
             }
-            Thread.sleep(newSleepSeconds * 1000L);
+            Thread.sleep(sleepMillis);
         } catch (InterruptedException e) {
             // ignore
         }
@@ -120,6 +242,12 @@ public class RandomDataSourceValidateThread implements Runnable {
                 dataSources.add(((DruidDataSource) ds).getName());
             }
         }
+        for (DruidDataSource ds : listenedDataSources) {
+            if (!dataSourceMap.containsValue(ds)) {
+                ds.removeFatalErrorListener(fatalErrorListener);
+                listenedDataSources.remove(ds);
+            }
+        }
         cleanupMap(successTimes, dataSources);
         cleanupMap(errorCounts, dataSources);
         cleanupMap(lastCheckTimes, dataSources);
@@ -162,13 +290,20 @@ public class RandomDataSourceValidateThread implements Runnable {
 
     private void checkAllDataSources() {
         Map<String, DataSource> dataSourceMap = selector.getFullDataSourceMap();
+        List<DruidDataSource> checkedDataSources = new ArrayList<DruidDataSource>();
         List<Callable<Boolean>> tasks = new ArrayList<Callable<Boolean>>();
+        List<AtomicBoolean> claims = new ArrayList<AtomicBoolean>();
         LOG.debug("Checking all DataSource(s).");
         for (final Map.Entry<String, DataSource> e : dataSourceMap.entrySet()) {
             if (!(e.getValue() instanceof DruidDataSource)) {
                 continue;
             }
 
+            DruidDataSource druidDataSource = (DruidDataSource) e.getValue();
+            if (listenedDataSources.add(druidDataSource)) {
+                druidDataSource.addFatalErrorListener(fatalErrorListener);
+            }
+
             if (selector.containInBlacklist(e.getValue())) {
                 if (LOG.isDebugEnabled()) {
                     LOG.debug(e.getKey() + " is already in blacklist, skip.");
@@ -176,44 +311,74 @@ public class RandomDataSourceValidateThread implements Runnable {
                 continue;
             }
 
+            final String name = druidDataSource.getName();
+            if (!checkingNames.add(name)) {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("The last checking of " + name + " is not finished, skip.");
+                }
+                continue;
+            }
+
+            final AtomicBoolean claimed = new AtomicBoolean();
             tasks.add(new Callable<Boolean>() {
                 @Override
                 public Boolean call() {
-                    DruidDataSource dataSource = (DruidDataSource) e.getValue();
-                    String name = dataSource.getName();
-
-                    if (isSkipChecking(dataSource)) {
-                        if (LOG.isDebugEnabled()) {
-                            LOG.debug("Skip checking DataSource[" + name + "] this time.");
-                        }
-                        return true;
+                    if (!claimed.compareAndSet(false, true)) {
+                        return null;
                     }
+                    try {
+                        DruidDataSource dataSource = (DruidDataSource) e.getValue();
+
+                        if (isSkipChecking(dataSource)) {
+                            if (LOG.isDebugEnabled()) {
+                                LOG.debug("Skip checking DataSource[" + name + "] this time.");
+                            }
+                            return null;
+                        }
 
-                    if (LOG.isDebugEnabled()) {
-                        LOG.debug("Start checking " + name + ".");
-                    }
-                    boolean flag = check(dataSource);
-
-                    if (flag) {
-                        logSuccessTime(dataSource);
-                        errorCounts.put(name, 0);
-                    } else {
-                        if (!errorCounts.containsKey(name)) {
-                            errorCounts.put(name, 0);
+                        if (LOG.isDebugEnabled()) {
+                            LOG.debug("Start checking " + name + ".");
                         }
-                        int count = errorCounts.get(name);
-                        errorCounts.put(name, count + 1);
+                        return check(dataSource);
+                    } finally {
+                        checkingNames.remove(name);
                     }
-                    lastCheckTimes.put(name, System.currentTimeMillis());
-
-                    return flag;
                 }
             });
+            claims.add(claimed);
+            checkedDataSources.add(druidDataSource);
         }
+
+        List<Future<Boolean>> futures;
         try {
-            checkExecutor.invokeAll(tasks);
+            long timeoutMillis = (checkingTimeoutSeconds + validationSleepSeconds) * 1000L;
+            futures = checkExecutor.invokeAll(tasks, timeoutMillis, TimeUnit.MILLISECONDS);
         } catch (Exception e) {
             LOG.warn("Exception occurred while checking DataSource.", e);
+            return;
+        } finally {
+            // the tasks cancelled before they started never release their names
+            for (int i = 0; i < claims.size(); ++i) {
+                if (claims.get(i).compareAndSet(false, true)) {
+                    checkingNames.remove(checkedDataSources.get(i).getName());
+                }
+            }
+        }
+
+        for (int i = 0; i < futures.size(); ++i) {
+            DruidDataSource dataSource = checkedDataSources.get(i);
+            String name = dataSource.getName();
+            Boolean flag;
+            try {
+                flag = futures.get(i).get();
+            } catch (Exception e) {
+                LOG.warn("Validation FAILED for " + name + ", not finished in "
+                        + checkingTimeoutSeconds + " second(s).");
+                flag = false;
+            }
+            if (flag != null) {
+                recordResult(dataSource, flag);
+            }
         }
     }
 
@@ -248,6 +413,7 @@ public class RandomDataSourceValidateThread implements Runnable {
         if (info.getProperty("password") == null && password != null) {
             info.setProperty("password", password);
         }
+        putTimeouts(dataSource, info);
         try {
             if (LOG.isDebugEnabled()) {
                 LOG.debug("[RandomDataSourceValidateThread@" + this.hashCode() + "] Validating " + name + " every " + checkingIntervalSeconds + " seconds.");
@@ -266,6 +432,44 @@ public class RandomDataSourceValidateThread implements Runnable {
         return result;
     }
 
+    /**
+     * bound the test connection, the DataSource timeouts are used when set, checkingTimeoutSeconds
+     * otherwise. The connect properties of the DataSource take precedence.
+     */
+    private void putTimeouts(DruidDataSource dataSource, Properties info) {
+        int connectTimeout = dataSource.getConnectTimeout() > 0
+                ? dataSource.getConnectTimeout()
+                : checkingTimeoutSeconds * 1000;
+        int socketTimeout = dataSource.getSocketTimeout() > 0
+                ? dataSource.getSocketTimeout()
+                : checkingTimeoutSeconds * 1000;
+        if (connectTimeout <= 0) {
+            return;
+        }
+
+        String dbType = dataSource.getDbType();
+        if (JdbcUtils.isMysqlDbType(dbType)) {
+            putIfAbsent(info, "connectTimeout", Integer.toString(connectTimeout));
+            putIfAbsent(info, "socketTimeout", Integer.toString(socketTimeout));
+        } else if (JdbcUtils.isOracleDbType(dbType)) {
+            putIfAbsent(info, "oracle.net.CONNECT_TIMEOUT", Integer.toString(connectTimeout));
+            putIfAbsent(info, "oracle.jdbc.ReadTimeout", Integer.toString(socketTimeout));
+        } else if (JdbcUtils.isPgsqlDbType(dbType)) {
+            putIfAbsent(info, "loginTimeout", Long.toString(TimeUnit.MILLISECONDS.toSeconds(connectTimeout)));
+            putIfAbsent(info, "connectTimeout", Long.toString(TimeUnit.MILLISECONDS.toSeconds(connectTimeout)));
+            putIfAbsent(info, "socketTimeout", Long.toString(TimeUnit.MILLISECONDS.toSeconds(socketTimeout)));
+        } else if (JdbcUtils.isSqlserverDbType(dbType)) {
+            putIfAbsent(info, "loginTimeout", Long.toString(TimeUnit.MILLISECONDS.toSeconds(connectTimeout)));
+            putIfAbsent(info, "socketTimeout", Integer.toString(socketTimeout));
+        }
+    }
+
+    private static void putIfAbsent(Properties info, String name, String value) {
+        if (info.getProperty(name) == null) {
+            info.setProperty(name, value);
+        }
+    }
+
     private void sleepBeforeValidation() {
         if (validationSleepSeconds <= 0) {
             return;
@@ -288,6 +492,14 @@ public class RandomDataSourceValidateThread implements Runnable {
         this.checkingIntervalSeconds = checkingIntervalSeconds;
     }
 
+    public int getCheckingTimeoutSeconds() {
+        return checkingTimeoutSeconds;
+    }
+
+    public void setCheckingTimeoutSeconds(int checkingTimeoutSeconds) {
+        this.checkingTimeoutSeconds = checkingTimeoutSeconds;
+    }
+
     public int getValidationSleepSeconds() {
         return validationSleepSeconds;
     }
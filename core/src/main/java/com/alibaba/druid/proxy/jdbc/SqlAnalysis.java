@@ -0,0 +1,65 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.druid.proxy.jdbc;
+
+/**
+ * Analysis of the sql of a statement shared between filters, kept as an attribute of the
+ * {@link StatementProxy}. The parameterized sql computed by StatFilter or WallFilter is reused by
+ * the other one instead of parsing the sql again. Only valid for the sql it was made from, a
+ * {@link java.sql.Statement} executes different sql over time.
+ */
+public final class SqlAnalysis {
+    public static final String ATTR_NAME = "druid.sqlAnalysis";
+
+    private final String sql;
+    private final String mergedSql;
+
+    public SqlAnalysis(String sql, String mergedSql) {
+        this.sql = sql;
+        this.mergedSql = mergedSql;
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    public String getMergedSql() {
+        return mergedSql;
+    }
+
+    public static String getMergedSql(StatementProxy statement, String sql) {
+        if (statement == null || sql == null) {
+            return null;
+        }
+
+        Object attr = statement.getAttribute(ATTR_NAME);
+        if (attr instanceof SqlAnalysis) {
+            SqlAnalysis analysis = (SqlAnalysis) attr;
+            if (analysis.sql == sql || analysis.sql.equals(sql)) {
+                return analysis.mergedSql;
+            }
+        }
+        return null;
+    }
+
+    public static void setMergedSql(StatementProxy statement, String sql, String mergedSql) {
+        if (statement == null || sql == null || mergedSql == null) {
+            return;
+        }
+
+        statement.putAttribute(ATTR_NAME, new SqlAnalysis(sql, mergedSql));
+    }
+}
@@ -69,6 +69,7 @@ import com.alibaba.druid.support.logging.Log;
 import com.alibaba.druid.support.logging.LogFactory;
 import com.alibaba.druid.util.*;
 
+import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.List;
@@ -105,8 +106,39 @@ public class SQLUtils {
                                      DbType dbType,
                                      FormatOption option,
                                      VisitorFeature... features) {
-        StringBuilder out = new StringBuilder();
-        SQLASTOutputVisitor visitor = createOutputVisitor(out, dbType);
+        SQLPrintContext context = SQLPrintContext.acquire();
+        try {
+            print(context, sqlObject, dbType, option, features);
+            return context.getBuffer().toString();
+        } finally {
+            context.release();
+        }
+    }
+
+    /**
+     * Prints the sql object to the caller provided output, such as a {@link java.nio.CharBuffer} or
+     * a {@link java.io.Writer}, without creating an intermediate String.
+     */
+    public static void appendTo(Appendable out,
+                                SQLObject sqlObject,
+                                DbType dbType,
+                                FormatOption option,
+                                VisitorFeature... features) throws IOException {
+        SQLPrintContext context = SQLPrintContext.acquire();
+        try {
+            print(context, sqlObject, dbType, option, features);
+            out.append(context.getBuffer());
+        } finally {
+            context.release();
+        }
+    }
+
+    private static void print(SQLPrintContext context,
+                              SQLObject sqlObject,
+                              DbType dbType,
+                              FormatOption option,
+                              VisitorFeature... features) {
+        SQLASTOutputVisitor visitor = context.getOutputVisitor(dbType);
 
         if (option == null) {
             option = DEFAULT_FORMAT_OPTION;
@@ -127,9 +159,6 @@ public class SQLUtils {
         visitor.setFeatures(featuresValue);
 
         sqlObject.accept(visitor);
-
-        String sql = out.toString();
-        return sql;
     }
 
     public static String toSQLString(SQLObject obj) {
@@ -394,8 +423,44 @@ public class SQLUtils {
             FormatOption option,
             Map<String, String> tableMapping
     ) {
-        StringBuilder out = new StringBuilder();
-        SQLASTOutputVisitor visitor = createFormatOutputVisitor(out, statementList, dbType);
+        SQLPrintContext context = SQLPrintContext.acquire();
+        try {
+            print(context, statementList, dbType, parameters, option, tableMapping);
+            return context.getBuffer().toString();
+        } finally {
+            context.release();
+        }
+    }
+
+    /**
+     * Prints the statements to the caller provided output, such as a {@link java.nio.CharBuffer} or
+     * a {@link java.io.Writer}, without creating an intermediate String.
+     */
+    public static void appendTo(
+            Appendable out,
+            List<SQLStatement> statementList,
+            DbType dbType,
+            List<Object> parameters,
+            FormatOption option
+    ) throws IOException {
+        SQLPrintContext context = SQLPrintContext.acquire();
+        try {
+            print(context, statementList, dbType, parameters, option, null);
+            out.append(context.getBuffer());
+        } finally {
+            context.release();
+        }
+    }
+
+    private static void print(
+            SQLPrintContext context,
+            List<SQLStatement> statementList,
+            DbType dbType,
+            List<Object> parameters,
+            FormatOption option,
+            Map<String, String> tableMapping
+    ) {
+        SQLASTOutputVisitor visitor = context.getFormatOutputVisitor(statementList, dbType);
         if (parameters != null) {
             visitor.setInputParameters(parameters);
         }
@@ -469,8 +534,6 @@ public class SQLUtils {
                 }
             }
         }
-
-        return out.toString();
     }
 
     public static SQLASTOutputVisitor createOutputVisitor(StringBuilder out, DbType dbType) {
@@ -1781,6 +1844,20 @@ public class SQLUtils {
         return SQLUtils.toSQLString(stmtList, dbType, null, null, tableMapping);
     }
 
+    /**
+     * trim the lists of the ast and intern its names, see {@link SQLASTCompactVisitor}
+     */
+    public static void compact(SQLObject x) {
+        compact(x, SymbolTable.global);
+    }
+
+    public static void compact(SQLObject x, SymbolTable symbolTable) {
+        if (x == null) {
+            return;
+        }
+        x.accept(new SQLASTCompactVisitor(symbolTable));
+    }
+
     public static long hash(String sql, DbType dbType) {
         Lexer lexer = SQLParserUtils.createLexer(sql, dbType);
 
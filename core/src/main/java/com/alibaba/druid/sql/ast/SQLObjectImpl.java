@@ -137,6 +137,15 @@ public abstract class SQLObjectImpl implements SQLObject {
         return attributes;
     }
 
+    /**
+     * drop the attribute map when it is empty, it is created again on the next putAttribute
+     */
+    public void compactAttributes() {
+        if (attributes != null && attributes.isEmpty()) {
+            attributes = null;
+        }
+    }
+
     @SuppressWarnings("unchecked")
     public void addBeforeComment(String comment) {
         if (comment == null) {
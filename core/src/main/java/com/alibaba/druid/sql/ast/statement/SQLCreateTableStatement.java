@@ -1266,13 +1266,13 @@ public class SQLCreateTableStatement extends SQLStatementImpl implements SQLDDLS
 
         for (SQLAssignItem item : this.tableOptions) {
             SQLAssignItem item2 = item.clone();
-            item2.setParent(item);
+            item2.setParent(x);
             x.tableOptions.add(item2);
         }
 
         for (SQLAssignItem item : this.tblProperties) {
             SQLAssignItem item2 = item.clone();
-            item2.setParent(item);
+            item2.setParent(x);
             x.tblProperties.add(item2);
         }
 
@@ -447,13 +447,13 @@ public class MySqlLexer extends Lexer {
             if (tok != null) {
                 token = tok;
                 if (token == Token.IDENTIFIER) {
-                    stringVal = SymbolTable.global.addSymbol(text, mark, bufPos, hash);
+                    stringVal = symbolTable.addSymbol(text, mark, bufPos, hash);
                 } else {
                     stringVal = null;
                 }
             } else {
                 token = Token.IDENTIFIER;
-                stringVal = SymbolTable.global.addSymbol(text, mark, bufPos, hash);
+                stringVal = symbolTable.addSymbol(text, mark, bufPos, hash);
             }
 
         }
@@ -17,6 +17,7 @@ package com.alibaba.druid.sql.dialect.odps.parser;
 
 import com.alibaba.druid.DbType;
 import com.alibaba.druid.sql.parser.*;
+import com.alibaba.druid.util.FnvHash;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -51,6 +52,11 @@ public class OdpsLexer extends Lexer {
         DEFAULT_ODPS_KEYWORDS = new Keywords(map);
     }
 
+    /**
+     * odps column names are high cardinality, keep them apart from the global table
+     */
+    public static final SymbolTable DEFAULT_ODPS_SYMBOLS = new SymbolTable(16384, 16384 * 16);
+
     public OdpsLexer(String input, SQLParserFeature... features) {
         super(input);
 
@@ -58,6 +64,7 @@ public class OdpsLexer extends Lexer {
 
         dbType = DbType.odps;
         super.keywords = DEFAULT_ODPS_KEYWORDS;
+        super.symbolTable = DEFAULT_ODPS_SYMBOLS;
         this.skipComment = true;
         this.keepComments = false;
 
@@ -75,6 +82,7 @@ public class OdpsLexer extends Lexer {
         this.skipComment = skipComment;
         this.keepComments = keepComments;
         super.keywords = DEFAULT_ODPS_KEYWORDS;
+        super.symbolTable = DEFAULT_ODPS_SYMBOLS;
     }
 
     public OdpsLexer(String input, CommentHandler commentHandler) {
@@ -84,6 +92,7 @@ public class OdpsLexer extends Lexer {
 
         dbType = DbType.odps;
         super.keywords = DEFAULT_ODPS_KEYWORDS;
+        super.symbolTable = DEFAULT_ODPS_SYMBOLS;
     }
 
     private void init() {
@@ -215,7 +224,8 @@ public class OdpsLexer extends Lexer {
             }
         }
 
-        stringVal = addSymbol();
+        long symbolHash = FnvHash.fnv1a_64(text, mark, mark + bufPos);
+        stringVal = symbolTable.addSymbol(text, mark, bufPos, symbolHash);
         Token tok = keywords.getKeyword(stringVal);
         if (tok != null) {
             token = tok;
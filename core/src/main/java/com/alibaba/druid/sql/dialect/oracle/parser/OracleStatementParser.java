@@ -84,11 +84,7 @@ public class OracleStatementParser extends SQLStatementParser {
             }
 
             if (lexer.token() == (Token.SEMI)) {
-                lexer.nextToken();
-                if (!statementList.isEmpty()) {
-                    SQLStatement lastStmt = statementList.get(statementList.size() - 1);
-                    lastStmt.setAfterSemi(true);
-                }
+                acceptSemi(statementList);
                 continue;
             }
 
@@ -746,6 +742,14 @@ public class OracleStatementParser extends SQLStatementParser {
         }
     }
 
+    public void acceptSemi(List<SQLStatement> statementList) {
+        accept(Token.SEMI);
+        if (!statementList.isEmpty()) {
+            SQLStatement lastStmt = statementList.get(statementList.size() - 1);
+            lastStmt.setAfterSemi(true);
+        }
+    }
+
     private SQLStatement parseGetDiagnosticsStatement() {
         accept(Token.GET);
         accept(Token.DIAGNOSTICS);
@@ -56,6 +56,7 @@ public class Lexer {
     protected Token token;
 
     protected Keywords keywords = Keywords.DEFAULT_KEYWORDS;
+    protected SymbolTable symbolTable = SymbolTable.global;
 
     protected String stringVal;
     protected long hashLCase; // fnv1a_64
@@ -192,6 +193,14 @@ public class Lexer {
         String stringVal;
     }
 
+    public SymbolTable getSymbolTable() {
+        return symbolTable;
+    }
+
+    public void setSymbolTable(SymbolTable symbolTable) {
+        this.symbolTable = symbolTable;
+    }
+
     public Keywords getKeywords() {
         return keywords;
     }
@@ -2820,13 +2829,13 @@ public class Lexer {
         if (tok != null) {
             token = tok;
             if (token == Token.IDENTIFIER) {
-                stringVal = SymbolTable.global.addSymbol(text, mark, bufPos, hash);
+                stringVal = symbolTable.addSymbol(text, mark, bufPos, hash);
             } else {
                 stringVal = null;
             }
         } else {
             token = Token.IDENTIFIER;
-            stringVal = SymbolTable.global.addSymbol(text, mark, bufPos, hash);
+            stringVal = symbolTable.addSymbol(text, mark, bufPos, hash);
         }
     }
 
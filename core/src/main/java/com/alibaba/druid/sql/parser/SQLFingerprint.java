@@ -0,0 +1,519 @@
+/*
+ * Copyright 1999-2017 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.druid.sql.parser;
+
+import com.alibaba.druid.DbType;
+import com.alibaba.druid.util.FnvHash;
+
+import java.util.Arrays;
+
+/**
+ * Computes a 64-bit fingerprint of the shape of a sql with a single lexer pass, no AST is built.
+ * <p>
+ * Literals and '?' placeholders are folded into one placeholder, IN lists of literals are collapsed
+ * to a single placeholder, repeated VALUES tuples of the same shape are hashed once and comments are
+ * dropped. Keywords and identifiers are case insensitive. Two sqls get the same fingerprint when
+ * {@link com.alibaba.druid.sql.visitor.ParameterizedOutputVisitorUtils#parameterizeHash} would give
+ * them the same hash, but the values themselves are not comparable with each other.
+ *
+ * @author wenshao[szujobs@hotmail.com]
+ */
+public class SQLFingerprint {
+    private static final long PLACEHOLDER = FnvHash.fnv1a_64("?");
+    private static final long PARAMETER = FnvHash.fnv1a_64("(param");
+    private static final long LIST_BEGIN = FnvHash.fnv1a_64("(list");
+
+    private static final long[] TOKEN_HASHES;
+
+    static {
+        Token[] tokens = Token.values();
+        TOKEN_HASHES = new long[tokens.length];
+        for (Token token : tokens) {
+            String name = token.name != null ? token.name : token.name();
+            TOKEN_HASHES[token.ordinal()] = FnvHash.fnv1a_64_lower(name);
+        }
+    }
+
+    private static final int FRAME_IN = 1;
+    private static final int FRAME_TUPLE = 2;
+
+    private final Lexer lexer;
+    private final boolean strict;
+
+    private long hash = FnvHash.BASIC;
+
+    // open IN lists and VALUES tuples, hashed apart from the statement so they can be collapsed
+    private int[] frameTypes = new int[4];
+    private long[] frameHashes = new long[4];
+    private int[] frameDepths = new int[4];
+    private boolean[] frameLiterals = new boolean[4];
+    private boolean[] frameColumns = new boolean[4];
+    private boolean[] frameParameters = new boolean[4];
+    private boolean[] frameFolded = new boolean[4];
+    private int frameCount;
+
+    private int depth;
+    private Token prev;
+    private Token prev2;
+    private Token prev3;
+    private long prevHash;
+    private boolean pendingMinus;
+    private Token pendingMinusOperator;
+    private Token pendingMinusOperand;
+
+    private int byDepth = -1;
+
+    private int valuesDepth = -1;
+    private long firstTupleHash;
+    private boolean pendingTupleComma;
+
+    protected SQLFingerprint(Lexer lexer) {
+        this(lexer, false);
+    }
+
+    protected SQLFingerprint(Lexer lexer, boolean strict) {
+        this.lexer = lexer;
+        this.strict = strict;
+    }
+
+    public static long fingerprint(String sql, DbType dbType) {
+        return fingerprint(sql, dbType, false);
+    }
+
+    /**
+     * @param strict when true, only literals compared with a column ({@code id = 1}, {@code name like 'a%'},
+     *               {@code id in (1, 2)}) and values of VALUES tuples are folded, any other literal such as
+     *               the operands of {@code 1 = 1} or {@code sleep(5)} keeps its value, and comments are kept.
+     *               '?' placeholders are hashed apart from folded literals, so a prepared sql never shares a
+     *               strict fingerprint with the same sql carrying values. Sqls that share a strict fingerprint
+     *               differ only in column values, so it is usable as a key for caching security check results.
+     */
+    public static long fingerprint(String sql, DbType dbType, boolean strict) {
+        if (sql == null || sql.isEmpty()) {
+            return 0L;
+        }
+
+        Lexer lexer = SQLParserUtils.createLexer(sql, dbType, SQLParserFeature.OptimizedForParameterized);
+        lexer.skipComment = !strict;
+        lexer.keepComments = false;
+
+        return new SQLFingerprint(lexer, strict).compute();
+    }
+
+    protected long compute() {
+        lexer.nextToken();
+
+        int count = 0;
+        boolean pendingSemi = false;
+        for (; ; ) {
+            Token token = lexer.token;
+            if (token == Token.EOF) {
+                // trailing semicolon is dropped
+                break;
+            }
+
+            if (token == Token.ERROR) {
+                throw new ParserException("illegal sql. " + lexer.info());
+            }
+
+            if (token == Token.SEMI) {
+                pendingSemi = true;
+            } else if (token != Token.LINE_COMMENT && token != Token.MULTI_LINE_COMMENT) {
+                if (pendingSemi) {
+                    accept(Token.SEMI);
+                    pendingSemi = false;
+                }
+                accept(token);
+                count++;
+            } else if (strict) {
+                add(FnvHash.fnv1a_64(lexer.text, lexer.startPos, lexer.pos));
+            }
+
+            lexer.nextToken();
+        }
+
+        if (count == 0) {
+            return 0L;
+        }
+
+        if (pendingMinus) {
+            add(TOKEN_HASHES[Token.SUB.ordinal()]);
+        }
+        while (frameCount > 0) {
+            closeFrame(false);
+        }
+
+        return hash;
+    }
+
+    private void accept(Token token) {
+        if (pendingTupleComma) {
+            pendingTupleComma = false;
+            if (token == Token.LPAREN) {
+                openFrame(FRAME_TUPLE);
+                depth++;
+                setPrev(token);
+                return;
+            }
+            valuesDepth = -1;
+            add(TOKEN_HASHES[Token.COMMA.ordinal()]);
+        }
+
+        if (pendingMinus) {
+            pendingMinus = false;
+            if (isNumber(token)) {
+                placeholder(token);
+                pendingMinusOperator = null;
+                pendingMinusOperand = null;
+                return;
+            }
+            pendingMinusOperator = null;
+            pendingMinusOperand = null;
+            add(TOKEN_HASHES[Token.SUB.ordinal()]);
+            markNotLiteral();
+        }
+
+        long tokenHash;
+        switch (token) {
+            case LITERAL_INT:
+                if (byDepth == depth && (prev == Token.BY || prev == Token.COMMA)) {
+                    // ORDER BY 1, GROUP BY 1 are column positions
+                    tokenHash = FnvHash.fnv1a_64_lower(lexer.numberString());
+                    break;
+                }
+                placeholder(token);
+                return;
+            case LITERAL_CHARS:
+            case LITERAL_NCHARS:
+                if (prev == Token.IDENTIFIER
+                        && (prevHash == FnvHash.Constants.DATE
+                        || prevHash == FnvHash.Constants.TIME
+                        || prevHash == FnvHash.Constants.TIMESTAMP)) {
+                    tokenHash = FnvHash.fnv1a_64_lower(lexer.stringVal());
+                    break;
+                }
+                placeholder(token);
+                return;
+            case LITERAL_FLOAT:
+            case LITERAL_HEX:
+            case QUES:
+            case TRUE:
+            case FALSE:
+                placeholder(token);
+                return;
+            case NULL:
+                if (prev == Token.IS || prev == Token.NOT) {
+                    tokenHash = TOKEN_HASHES[token.ordinal()];
+                    break;
+                }
+                placeholder(token);
+                return;
+            case VARIANT: {
+                String name = lexer.stringVal();
+                if ("?".equals(name)) {
+                    placeholder(token);
+                    return;
+                }
+                tokenHash = FnvHash.fnv1a_64_lower(name);
+                break;
+            }
+            case SUB:
+                if (!isOperand(prev)) {
+                    pendingMinus = true;
+                    pendingMinusOperator = prev;
+                    pendingMinusOperand = prev2;
+                    return;
+                }
+                tokenHash = TOKEN_HASHES[token.ordinal()];
+                break;
+            case IDENTIFIER:
+                tokenHash = lexer.hashLCase();
+                break;
+            case HINT:
+            case LITERAL_ALIAS:
+                tokenHash = FnvHash.fnv1a_64_lower(lexer.stringVal());
+                break;
+            case LPAREN:
+                if (prev == Token.IN) {
+                    openFrame(FRAME_IN);
+                    frameColumns[frameCount - 1] = prev2 == Token.IDENTIFIER
+                            || (prev2 == Token.NOT && prev3 == Token.IDENTIFIER);
+                    depth++;
+                    setPrev(token);
+                    return;
+                }
+                if (prev == Token.VALUES && depth == valuesDepth) {
+                    openFrame(FRAME_TUPLE);
+                    depth++;
+                    setPrev(token);
+                    return;
+                }
+                depth++;
+                tokenHash = TOKEN_HASHES[token.ordinal()];
+                break;
+            case RPAREN:
+                depth--;
+                if (byDepth > depth) {
+                    byDepth = -1;
+                }
+                if (frameCount > 0 && frameDepths[frameCount - 1] == depth) {
+                    closeFrame(true);
+                    setPrev(token);
+                    return;
+                }
+                tokenHash = TOKEN_HASHES[token.ordinal()];
+                break;
+            case COMMA:
+                if (valuesDepth == depth && prev == Token.RPAREN) {
+                    pendingTupleComma = true;
+                    setPrev(token);
+                    return;
+                }
+                tokenHash = TOKEN_HASHES[token.ordinal()];
+                break;
+            case BY:
+                if (prev == Token.ORDER || prev == Token.GROUP) {
+                    byDepth = depth;
+                }
+                tokenHash = TOKEN_HASHES[token.ordinal()];
+                break;
+            case VALUES:
+                valuesDepth = depth;
+                firstTupleHash = 0;
+                tokenHash = TOKEN_HASHES[token.ordinal()];
+                break;
+            case LIMIT:
+            case HAVING:
+            case UNION:
+            case WINDOW:
+            case SEMI:
+                byDepth = -1;
+                valuesDepth = -1;
+                tokenHash = TOKEN_HASHES[token.ordinal()];
+                break;
+            case SELECT:
+            case WITH:
+                if (prev == Token.LPAREN && frameCount > 0 && frameTypes[frameCount - 1] == FRAME_IN) {
+                    // IN (SELECT ...) is a sub query, not a list
+                    unwrapFrame();
+                }
+                tokenHash = TOKEN_HASHES[token.ordinal()];
+                break;
+            default:
+                tokenHash = TOKEN_HASHES[token.ordinal()];
+                break;
+        }
+
+        if (token != Token.COMMA && token != Token.LPAREN && token != Token.RPAREN) {
+            markNotLiteral();
+        }
+        add(tokenHash);
+        setPrev(token);
+        if (token == Token.IDENTIFIER) {
+            prevHash = tokenHash;
+        }
+    }
+
+    private void placeholder(Token token) {
+        if (!strict) {
+            add(PLACEHOLDER);
+        } else if (token == Token.QUES || token == Token.VARIANT) {
+            add(PARAMETER);
+            if (frameCount > 0) {
+                frameParameters[frameCount - 1] = true;
+            }
+        } else if (isColumnValue(token)) {
+            add(PLACEHOLDER);
+            if (frameCount > 0) {
+                frameFolded[frameCount - 1] = true;
+            }
+        } else {
+            add(literalHash(token));
+        }
+        setPrev(token);
+    }
+
+    private void setPrev(Token token) {
+        prev3 = prev2;
+        prev2 = prev;
+        prev = token;
+    }
+
+    /**
+     * in strict mode only a literal compared with a column, or listed in an IN of a column or in a
+     * VALUES tuple, is folded
+     */
+    private boolean isColumnValue(Token token) {
+        if (frameCount > 0) {
+            int i = frameCount - 1;
+            return frameTypes[i] == FRAME_TUPLE || frameColumns[i];
+        }
+
+        Token op = prev;
+        Token operand = prev2;
+        if (pendingMinusOperator != null) {
+            op = pendingMinusOperator;
+            operand = pendingMinusOperand;
+        }
+
+        if (operand != Token.IDENTIFIER || op == null) {
+            return false;
+        }
+
+        switch (op) {
+            case EQ:
+            case EQEQ:
+            case BANGEQ:
+            case LTGT:
+            case LT:
+            case LTEQ:
+            case GT:
+            case GTEQ:
+            case LIKE:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private long literalHash(Token token) {
+        switch (token) {
+            case LITERAL_INT:
+            case LITERAL_FLOAT:
+                return FnvHash.fnv1a_64(pendingMinusOperator != null ? "-" + lexer.numberString() : lexer.numberString());
+            case LITERAL_HEX:
+                return FnvHash.fnv1a_64(lexer.hexString());
+            case LITERAL_CHARS:
+            case LITERAL_NCHARS:
+                return FnvHash.fnv1a_64("'" + lexer.stringVal());
+            default:
+                return TOKEN_HASHES[token.ordinal()];
+        }
+    }
+
+    private void add(long value) {
+        if (frameCount > 0) {
+            int i = frameCount - 1;
+            frameHashes[i] = (frameHashes[i] ^ value) * FnvHash.PRIME;
+        } else {
+            hash = (hash ^ value) * FnvHash.PRIME;
+        }
+    }
+
+    private void markNotLiteral() {
+        if (frameCount > 0) {
+            frameLiterals[frameCount - 1] = false;
+        }
+    }
+
+    private void openFrame(int type) {
+        if (frameCount == frameTypes.length) {
+            int len = frameCount * 2;
+            frameTypes = Arrays.copyOf(frameTypes, len);
+            frameHashes = Arrays.copyOf(frameHashes, len);
+            frameDepths = Arrays.copyOf(frameDepths, len);
+            frameLiterals = Arrays.copyOf(frameLiterals, len);
+            frameColumns = Arrays.copyOf(frameColumns, len);
+            frameParameters = Arrays.copyOf(frameParameters, len);
+            frameFolded = Arrays.copyOf(frameFolded, len);
+        }
+        frameTypes[frameCount] = type;
+        frameHashes[frameCount] = FnvHash.BASIC;
+        frameDepths[frameCount] = depth;
+        frameLiterals[frameCount] = true;
+        frameColumns[frameCount] = false;
+        frameParameters[frameCount] = false;
+        frameFolded[frameCount] = false;
+        frameCount++;
+    }
+
+    /**
+     * the IN frame turned out to be a sub query, replay it as plain tokens
+     */
+    private void unwrapFrame() {
+        frameCount--;
+        add(TOKEN_HASHES[Token.LPAREN.ordinal()]);
+        markNotLiteral();
+    }
+
+    private void closeFrame(boolean closed) {
+        int i = --frameCount;
+        int type = frameTypes[i];
+        long frameHash = frameHashes[i];
+        boolean literals = frameLiterals[i];
+
+        if (type == FRAME_IN) {
+            add(LIST_BEGIN);
+            if (!literals || (strict && !frameColumns[i])) {
+                add(frameHash);
+            } else if (!strict || !frameParameters[i]) {
+                add(PLACEHOLDER);
+            } else {
+                // a list of '?' collapses apart from a list of values, a mixed list is kept as it is
+                add(frameFolded[i] ? frameHash : PARAMETER);
+            }
+        } else {
+            if (firstTupleHash == 0) {
+                firstTupleHash = frameHash;
+            } else if (firstTupleHash == frameHash) {
+                // same shape as the first tuple, batch insert
+                return;
+            } else {
+                add(TOKEN_HASHES[Token.COMMA.ordinal()]);
+            }
+            add(LIST_BEGIN);
+            add(frameHash);
+            markNotLiteral();
+        }
+
+        if (closed) {
+            add(TOKEN_HASHES[Token.RPAREN.ordinal()]);
+        }
+        if (!literals) {
+            markNotLiteral();
+        }
+    }
+
+    private static boolean isNumber(Token token) {
+        return token == Token.LITERAL_INT || token == Token.LITERAL_FLOAT;
+    }
+
+    private static boolean isOperand(Token token) {
+        if (token == null) {
+            return false;
+        }
+
+        switch (token) {
+            case IDENTIFIER:
+            case LITERAL_INT:
+            case LITERAL_FLOAT:
+            case LITERAL_HEX:
+            case LITERAL_CHARS:
+            case LITERAL_NCHARS:
+            case LITERAL_ALIAS:
+            case VARIANT:
+            case QUES:
+            case NULL:
+            case TRUE:
+            case FALSE:
+            case RPAREN:
+            case RBRACKET:
+                return true;
+            default:
+                return false;
+        }
+    }
+}
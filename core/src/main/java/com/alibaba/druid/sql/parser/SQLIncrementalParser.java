@@ -0,0 +1,445 @@
+/*
+ * Copyright 1999-2017 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.druid.sql.parser;
+
+import com.alibaba.druid.DbType;
+import com.alibaba.druid.sql.ast.SQLCommentHint;
+import com.alibaba.druid.sql.ast.SQLObject;
+import com.alibaba.druid.sql.ast.SQLObjectImpl;
+import com.alibaba.druid.sql.ast.SQLStatement;
+import com.alibaba.druid.sql.ast.SQLStatementImpl;
+import com.alibaba.druid.sql.dialect.mysql.ast.statement.MySqlHintStatement;
+import com.alibaba.druid.sql.dialect.oracle.parser.OracleStatementParser;
+import com.alibaba.druid.sql.visitor.SQLASTVisitorAdapter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Keeps the statements of a sql script together with their text ranges, so that an edit of the
+ * script re-parses only the statements it touches.
+ * <p>
+ * Each statement owns the text from the end of the previous statement up to and including its
+ * terminating semicolon. An edit is re-parsed from the start of the first statement it touches,
+ * one statement at a time, until the parser reaches a semicolon after the edit that also ended a
+ * statement before it; the statements behind it are kept as they are. Scripts without semicolons
+ * are re-parsed up to the end.
+ *
+ * <pre>
+ * SQLIncrementalParser parser = new SQLIncrementalParser(text, DbType.mysql, SQLParserFeature.KeepSourceLocation);
+ * SQLIncrementalParser.Change change = parser.edit(offset, 0, "x");
+ * List&lt;SQLStatement&gt; statementList = parser.getStatementList();
+ * </pre>
+ *
+ * @author wenshao[szujobs@hotmail.com]
+ */
+public class SQLIncrementalParser {
+    private final DbType dbType;
+    private final SQLParserFeature[] features;
+    private final boolean keepSourceLocation;
+
+    private String text;
+    private final List<SQLStatement> statementList = new ArrayList<SQLStatement>();
+    // end offset of each statement, exclusive
+    private int[] ends = new int[16];
+    // comments between the semicolon of the statement and the next statement
+    private boolean[] comments = new boolean[16];
+
+    // the text from the end of statement errorIndex - 1 up to errorEnd failed to parse
+    private int errorIndex = -1;
+    private int errorEnd;
+
+    public SQLIncrementalParser(String text, DbType dbType, SQLParserFeature... features) {
+        if (text == null) {
+            throw new IllegalArgumentException("text is null");
+        }
+
+        this.text = text;
+        this.dbType = dbType;
+        this.features = features;
+
+        boolean keepSourceLocation = false;
+        for (SQLParserFeature feature : features) {
+            if (feature == SQLParserFeature.KeepSourceLocation) {
+                keepSourceLocation = true;
+            }
+        }
+        this.keepSourceLocation = keepSourceLocation;
+
+        parse(0, 0, 0, 0, 0);
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public DbType getDbType() {
+        return dbType;
+    }
+
+    /**
+     * the parsed statements, the list is updated in place by {@link #edit} and must not be modified
+     */
+    public List<SQLStatement> getStatementList() {
+        return statementList;
+    }
+
+    public int getStatementStart(int index) {
+        if (index == errorIndex) {
+            return errorEnd;
+        }
+        return index == 0 ? 0 : ends[index - 1];
+    }
+
+    public int getStatementEnd(int index) {
+        if (index < 0 || index >= statementList.size()) {
+            throw new IndexOutOfBoundsException("index " + index + ", size " + statementList.size());
+        }
+        return ends[index];
+    }
+
+    /**
+     * @return index of the statement whose text contains the offset, -1 if there is none
+     */
+    public int indexOf(int offset) {
+        int low = 0, high = statementList.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (ends[mid] <= offset) {
+                low = mid + 1;
+            } else if (getStatementStart(mid) > offset) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * true when the text changed by the last edit failed to parse, the statements of that text are
+     * missing from the statement list until an edit makes it parse again
+     */
+    public boolean hasError() {
+        return errorIndex != -1;
+    }
+
+    /**
+     * Replaces <code>length</code> characters at <code>offset</code> with <code>replacement</code>
+     * and re-parses the affected statements.
+     * <p>
+     * The text is changed even if the affected statements fail to parse, they are dropped from the
+     * statement list, re-parsed together with the next edit and the exception is rethrown.
+     */
+    public Change edit(int offset, int length, String replacement) {
+        if (replacement == null) {
+            replacement = "";
+        }
+        if (offset < 0 || length < 0 || offset + length > text.length()) {
+            throw new IndexOutOfBoundsException("offset " + offset + ", length " + length + ", text length " + text.length());
+        }
+
+        int lineDelta = 0;
+        if (keepSourceLocation) {
+            lineDelta = lines(replacement, 0, replacement.length()) - lines(text, offset, offset + length);
+        }
+
+        int editStart = offset;
+        int editEnd = offset + length;
+        if (errorIndex != -1) {
+            editStart = Math.min(editStart, errorIndex == 0 ? 0 : ends[errorIndex - 1]);
+            editEnd = Math.max(editEnd, errorEnd);
+        }
+
+        int size = statementList.size();
+        int first = 0;
+        while (first < size && ends[first] < editStart) {
+            first++;
+        }
+        while (first > 0 && !isSafeStart(first, editStart)) {
+            first--;
+        }
+
+        int delta = replacement.length() - length;
+        text = text.substring(0, offset) + replacement + text.substring(offset + length);
+
+        int regionStart = first == 0 ? 0 : ends[first - 1];
+        return parse(first, regionStart, editEnd + delta, delta, lineDelta);
+    }
+
+    /**
+     * whether parsing from the semicolon in front of the statement gives the same result as parsing
+     * the whole text. Without a semicolon the previous statement may continue into the edited text,
+     * and the comments behind a semicolon go to the statement before or after it depending on the
+     * line they are on.
+     */
+    private boolean isSafeStart(int index, int editStart) {
+        if (!statementList.get(index - 1).isAfterSemi() || comments[index - 1]) {
+            return false;
+        }
+
+        // an edit right behind the semicolon may add a comment to it
+        for (int i = ends[index - 1]; i < editStart; ++i) {
+            if (!Character.isWhitespace(text.charAt(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * parses from regionStart until a boundary at or after editEnd which was a statement boundary
+     * before the edit, offsets are in the new text, old offsets are shifted by delta
+     */
+    private Change parse(int first, int regionStart, int editEnd, int delta, int lineDelta) {
+        int size = statementList.size();
+        List<SQLStatement> parsed = new ArrayList<SQLStatement>();
+        int[] parsedEnds = new int[4];
+        boolean[] parsedComments = new boolean[4];
+        int last = first;
+        // a statement before the region is always terminated by a semicolon
+        boolean semi = first > 0;
+
+        try {
+            String sql = text;
+            if (sql.indexOf("\r\n") != -1) {
+                // the parser would drop the '\r' and shift all offsets behind it
+                sql = sql.replace("\r\n", " \n");
+            }
+            SQLStatementParser parser = SQLParserUtils.createSQLStatementParser(sql, dbType, features);
+            Lexer lexer = parser.getLexer();
+            if (regionStart != 0) {
+                lexer.reset(regionStart);
+                lexer.nextToken();
+            }
+
+            for (; ; ) {
+                while (lexer.token == Token.LINE_COMMENT || lexer.token == Token.MULTI_LINE_COMMENT) {
+                    lexer.nextToken();
+                }
+
+                if (lexer.token == Token.EOF) {
+                    last = size;
+                    break;
+                }
+
+                int count = parsed.size();
+                boolean select = lexer.token == Token.SELECT;
+                boolean hint = select
+                        && first == 0
+                        && count == 1
+                        && parsed.get(0) instanceof MySqlHintStatement
+                        && !parsed.get(0).isAfterSemi();
+                // same as SQLStatementParser.parseStatementList, a select must follow a semicolon
+                if (select && count > 0 && !semi && !hint
+                        && dbType != DbType.odps
+                        && !(parser instanceof OracleStatementParser)) {
+                    throw new ParserException("syntax error. " + lexer.info());
+                }
+
+                parser.parseStatementList(parsed, count + 1, null);
+                if (parsed.size() == count) {
+                    if (lexer.token == Token.EOF) {
+                        // only semicolons left
+                        last = size;
+                        break;
+                    }
+                    throw new ParserException("syntax error, " + lexer.info());
+                }
+
+                if (select) {
+                    semi = false;
+                }
+                if (hint && parsed.get(1) instanceof SQLStatementImpl) {
+                    // a leading hint statement is merged into the select behind it
+                    MySqlHintStatement hintStatement = (MySqlHintStatement) parsed.get(0);
+                    SQLStatementImpl stmt = (SQLStatementImpl) parsed.remove(1);
+                    List<SQLCommentHint> hints = stmt.getHeadHintsDirect();
+                    if (hints == null) {
+                        stmt.setHeadHints(hintStatement.getHints());
+                    } else {
+                        hints.addAll(hintStatement.getHints());
+                    }
+                    parsed.set(0, stmt);
+                    count = 0;
+                }
+
+                int end = lexer.startPos;
+                boolean comment = false;
+                while (lexer.token == Token.SEMI) {
+                    end = lexer.pos;
+                    parser.acceptSemi(parsed);
+                    semi = true;
+                    comment = parsed.get(count).hasAfterComment() || lexer.hasComment();
+                }
+
+                if (count == parsedEnds.length) {
+                    parsedEnds = Arrays.copyOf(parsedEnds, count * 2);
+                    parsedComments = Arrays.copyOf(parsedComments, count * 2);
+                }
+                parsedEnds[count] = end;
+                parsedComments[count] = comment;
+
+                // the lexer may have read ahead comments behind a statement without a semicolon, so
+                // only a semicolon that ended a statement both before and after the edit is a safe point
+                if (end >= editEnd && parsed.get(count).isAfterSemi()) {
+                    int oldEnd = end - delta;
+                    if (errorIndex != -1 && oldEnd == errorEnd) {
+                        last = errorIndex;
+                        break;
+                    }
+                    while (last < size && ends[last] < oldEnd) {
+                        last++;
+                    }
+                    if (last < size && ends[last] == oldEnd && statementList.get(last).isAfterSemi()) {
+                        last++;
+                        break;
+                    }
+                }
+            }
+        } catch (RuntimeException ex) {
+            // the parser does not only throw ParserException on bad input
+            error(first, editEnd, delta);
+            throw ex;
+        }
+
+        int count = parsed.size();
+        if (count > 0 && last == size) {
+            parsedEnds[count - 1] = text.length();
+        } else if (count == 0 && last == size && first > 0) {
+            // only comments and whitespace after the previous statement
+            ends[first - 1] = text.length();
+        }
+
+        splice(first, last, parsed, parsedEnds, parsedComments, delta);
+        errorIndex = -1;
+        errorEnd = 0;
+
+        if (lineDelta != 0) {
+            shiftSourceLine(first + count, lineDelta);
+        }
+
+        return new Change(first, last - first, count);
+    }
+
+    private void error(int first, int editEnd, int delta) {
+        int size = statementList.size();
+        int oldEditEnd = editEnd - delta;
+        int last = first;
+        while (last < size && ends[last] < oldEditEnd) {
+            last++;
+        }
+
+        // the statements behind the error must start after a semicolon
+        while (last < size && !statementList.get(last).isAfterSemi()) {
+            last++;
+        }
+
+        int end;
+        if (last < size) {
+            end = ends[last] + delta;
+            last++;
+        } else {
+            end = text.length();
+        }
+
+        splice(first, last, new ArrayList<SQLStatement>(), new int[0], new boolean[0], delta);
+        errorIndex = first;
+        errorEnd = end;
+    }
+
+    private void splice(int first, int last, List<SQLStatement> parsed, int[] parsedEnds, boolean[] parsedComments, int delta) {
+        int size = statementList.size();
+        int count = parsed.size();
+        int newSize = size - (last - first) + count;
+
+        if (newSize > ends.length) {
+            int capacity = Math.max(newSize, ends.length * 2);
+            ends = Arrays.copyOf(ends, capacity);
+            comments = Arrays.copyOf(comments, capacity);
+        }
+        System.arraycopy(ends, last, ends, first + count, size - last);
+        System.arraycopy(comments, last, comments, first + count, size - last);
+        System.arraycopy(parsedEnds, 0, ends, first, count);
+        System.arraycopy(parsedComments, 0, comments, first, count);
+        for (int i = first + count; i < newSize; ++i) {
+            ends[i] += delta;
+        }
+
+        List<SQLStatement> removed = statementList.subList(first, last);
+        removed.clear();
+        statementList.addAll(first, parsed);
+    }
+
+    private void shiftSourceLine(int from, final int lineDelta) {
+        SQLASTVisitorAdapter visitor = new SQLASTVisitorAdapter() {
+            public void preVisit(SQLObject x) {
+                if (x instanceof SQLObjectImpl) {
+                    SQLObjectImpl object = (SQLObjectImpl) x;
+                    if (object.getSourceLine() > 0) {
+                        object.setSourceLine(object.getSourceLine() + lineDelta);
+                    }
+                }
+            }
+        };
+        for (int i = from; i < statementList.size(); ++i) {
+            statementList.get(i).accept(visitor);
+        }
+    }
+
+    private static int lines(String str, int start, int end) {
+        int lines = 0;
+        for (int i = start; i < end; ++i) {
+            if (str.charAt(i) == '\n') {
+                lines++;
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * statements [index, index + removedCount) were replaced by the statements
+     * [index, index + addedCount)
+     */
+    public static class Change {
+        private final int index;
+        private final int removedCount;
+        private final int addedCount;
+
+        public Change(int index, int removedCount, int addedCount) {
+            this.index = index;
+            this.removedCount = removedCount;
+            this.addedCount = addedCount;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public int getRemovedCount() {
+            return removedCount;
+        }
+
+        public int getAddedCount() {
+            return addedCount;
+        }
+
+        public String toString() {
+            return "Change{index=" + index + ", removed=" + removedCount + ", added=" + addedCount + "}";
+        }
+    }
+}
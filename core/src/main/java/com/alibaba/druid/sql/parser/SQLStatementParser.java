@@ -187,30 +187,7 @@ public class SQLStatementParser extends SQLParser {
                     }
                     break;
                 case SEMI: {
-                    int line0 = lexer.getLine();
-                    char ch = lexer.ch;
-                    lexer.nextToken();
-                    int line1 = lexer.getLine();
-
-                    if (statementList.size() > 0) {
-                        SQLStatement lastStmt = statementList.get(statementList.size() - 1);
-                        lastStmt.setAfterSemi(true);
-
-                        if (lexer.isKeepComments()) {
-                            if (ch == '\n'
-                                    && lexer.getComments() != null
-                                    && !lexer.getComments().isEmpty()
-                                    && !(lastStmt instanceof SQLSetStatement)
-                            ) {
-                                lexer.getComments().add(0, new String("\n"));
-                            }
-
-                            if (line1 - line0 <= 1) {
-                                lastStmt.addAfterComment(lexer.readAndResetComments());
-                            }
-                        }
-                    }
-
+                    acceptSemi(statementList);
                     semi = true;
 
                     continue;
@@ -656,6 +633,36 @@ public class SQLStatementParser extends SQLParser {
 
     }
 
+    /**
+     * consumes a semicolon, marks the last statement of the list as terminated and attaches the
+     * comments on the same line to it
+     */
+    public void acceptSemi(List<SQLStatement> statementList) {
+        int line0 = lexer.getLine();
+        char ch = lexer.ch;
+        accept(Token.SEMI);
+        int line1 = lexer.getLine();
+
+        if (statementList.size() > 0) {
+            SQLStatement lastStmt = statementList.get(statementList.size() - 1);
+            lastStmt.setAfterSemi(true);
+
+            if (lexer.isKeepComments()) {
+                if (ch == '\n'
+                        && lexer.getComments() != null
+                        && !lexer.getComments().isEmpty()
+                        && !(lastStmt instanceof SQLSetStatement)
+                ) {
+                    lexer.getComments().add(0, new String("\n"));
+                }
+
+                if (line1 - line0 <= 1) {
+                    lastStmt.addAfterComment(lexer.readAndResetComments());
+                }
+            }
+        }
+    }
+
     private SQLStatement parseGetDiagnosticsStatement() {
         accept(Token.GET);
         accept(Token.DIAGNOSTICS);
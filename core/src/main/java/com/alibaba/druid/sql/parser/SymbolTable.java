@@ -16,8 +16,18 @@
 package com.alibaba.druid.sql.parser;
 
 import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
+ * Lock-free symbol table keyed by the 64-bit fnv1a hash of an identifier.
+ * <p>
+ * Entries are immutable and published by a racy array store, which is safe because all
+ * entry fields are final. Buckets are resolved by linear probing inside a small window,
+ * so a collision no longer drops the symbol as long as a slot in the window is free.
+ * When the window is full the table grows up to {@code maxSize}; beyond that the symbol
+ * is returned uncached and memory stays bounded.
+ *
  * @author wenshao[szujobs@hotmail.com]
  */
 public class SymbolTable {
@@ -35,86 +45,261 @@ public class SymbolTable {
         JVM_16 = "1.6".equals(version);
     }
 
-    public static SymbolTable global = new SymbolTable(32768);
+    static final int MAX_PROBES = 8;
+
+    private static final int INSERT_ADDED = 1;
+    private static final int INSERT_EXISTS = 0;
+    private static final int INSERT_FULL = -1;
+
+    public static SymbolTable global = new SymbolTable(32768, 32768 * 8);
+
+    private static final AtomicIntegerFieldUpdater<SymbolTable> sizeUpdater
+            = AtomicIntegerFieldUpdater.newUpdater(SymbolTable.class, "size");
+
+    private volatile Entry[] entries;
+    private volatile int size;
+    private final int maxSize;
 
-    private final Entry[] entries;
-    private final int indexMask;
+    private volatile boolean statEnable;
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder hitChars = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder overflowCount = new LongAdder();
+    private volatile int resizeCount;
 
     public SymbolTable(int tableSize) {
-        this.indexMask = tableSize - 1;
-        this.entries = new Entry[tableSize];
+        this(tableSize, tableSize);
     }
 
-    public String addSymbol(String buffer, int offset, int len, long hash) {
-        final int bucket = ((int) hash) & indexMask;
+    /**
+     * @param tableSize initial number of slots, rounded up to a power of two
+     * @param maxSize   upper bound of slots the table may grow to
+     */
+    public SymbolTable(int tableSize, int maxSize) {
+        if (tableSize <= 0 || tableSize > (1 << 30)) {
+            throw new IllegalArgumentException("illegal tableSize : " + tableSize);
+        }
+        if (maxSize < tableSize) {
+            throw new IllegalArgumentException("maxSize must be greater than or equal to tableSize : " + maxSize);
+        }
+        int capacity = Integer.highestOneBit(tableSize);
+        if (capacity != tableSize) {
+            capacity <<= 1;
+        }
+        this.entries = new Entry[capacity];
+        this.maxSize = Math.max(maxSize, capacity);
+    }
 
-        Entry entry = entries[bucket];
+    public String addSymbol(String buffer, int offset, int len, long hash) {
+        Entry entry = lookup(hash);
         if (entry != null) {
-            if (hash == entry.hash) {
-                return entry.value;
+            if (statEnable) {
+                hitCount.increment();
+                hitChars.add(len);
             }
-
-            String str = JVM_16
-                    ? subString(buffer, offset, len)
-                    : buffer.substring(offset, offset + len);
-
-            return str;
+            return entry.value;
         }
 
         String str = JVM_16
                 ? subString(buffer, offset, len)
                 : buffer.substring(offset, offset + len);
-        entry = new Entry(hash, len, str);
-        entries[bucket] = entry;
+        put(hash, str);
         return str;
     }
 
     public String addSymbol(byte[] buffer, int offset, int len, long hash) {
-        final int bucket = ((int) hash) & indexMask;
-
-        Entry entry = entries[bucket];
+        Entry entry = lookup(hash);
         if (entry != null) {
-            if (hash == entry.hash) {
-                return entry.value;
+            if (statEnable) {
+                hitCount.increment();
+                hitChars.add(len);
             }
-
-            String str = subString(buffer, offset, len);
-
-            return str;
+            return entry.value;
         }
 
         String str = subString(buffer, offset, len);
-        entry = new Entry(hash, len, str);
-        entries[bucket] = entry;
+        put(hash, str);
         return str;
     }
 
     public String addSymbol(String symbol, long hash) {
-        final int bucket = ((int) hash) & indexMask;
-
-        Entry entry = entries[bucket];
+        Entry entry = lookup(hash);
         if (entry != null) {
-            if (hash == entry.hash) {
-                return entry.value;
+            if (statEnable) {
+                hitCount.increment();
             }
-
-            return symbol;
+            return entry.value;
         }
 
-        entry = new Entry(hash, symbol.length(), symbol);
-        entries[bucket] = entry;
+        put(hash, symbol);
         return symbol;
     }
 
     public String findSymbol(long hash) {
-        final int bucket = ((int) hash) & indexMask;
-        Entry entry = entries[bucket];
-        if (entry != null && entry.hash == hash) {
+        Entry entry = lookup(hash);
+        if (entry != null) {
             return entry.value;
         }
         return null;
     }
 
+    private Entry lookup(long hash) {
+        final Entry[] tab = entries;
+        final int mask = tab.length - 1;
+        int index = index(hash) & mask;
+        for (int i = 0; i < MAX_PROBES; ++i) {
+            Entry entry = tab[index];
+            if (entry == null) {
+                return null;
+            }
+            if (entry.hash == hash) {
+                return entry;
+            }
+            index = (index + 1) & mask;
+        }
+        return null;
+    }
+
+    private void put(long hash, String value) {
+        if (statEnable) {
+            missCount.increment();
+        }
+
+        Entry entry = new Entry(hash, value.length(), value);
+        for (; ; ) {
+            final Entry[] tab = entries;
+            int result = insert(tab, entry);
+            if (result != INSERT_FULL) {
+                if (entries != tab) {
+                    // a concurrent resize may have missed this entry, it is only a cache, try once more
+                    insert(entries, entry);
+                }
+                if (result == INSERT_ADDED) {
+                    sizeUpdater.incrementAndGet(this);
+                }
+                return;
+            }
+
+            if (!resize(tab)) {
+                if (statEnable) {
+                    overflowCount.increment();
+                }
+                return;
+            }
+        }
+    }
+
+    private static int insert(Entry[] tab, Entry entry) {
+        final int mask = tab.length - 1;
+        int index = index(entry.hash) & mask;
+        for (int i = 0; i < MAX_PROBES; ++i) {
+            Entry e = tab[index];
+            if (e == null) {
+                tab[index] = entry;
+                return INSERT_ADDED;
+            }
+            if (e.hash == entry.hash) {
+                return INSERT_EXISTS;
+            }
+            index = (index + 1) & mask;
+        }
+        return INSERT_FULL;
+    }
+
+    private boolean resize(Entry[] tab) {
+        synchronized (this) {
+            if (entries != tab) {
+                return true;
+            }
+
+            int newLength = tab.length << 1;
+            if (newLength > maxSize || newLength <= 0) {
+                return false;
+            }
+
+            Entry[] newTab = new Entry[newLength];
+            int count = 0;
+            for (Entry entry : tab) {
+                if (entry != null && insert(newTab, entry) == INSERT_ADDED) {
+                    count++;
+                }
+            }
+            entries = newTab;
+            size = count;
+            resizeCount++;
+            return true;
+        }
+    }
+
+    private static int index(long hash) {
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getCapacity() {
+        return entries.length;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public int getResizeCount() {
+        return resizeCount;
+    }
+
+    public boolean isStatEnable() {
+        return statEnable;
+    }
+
+    public void setStatEnable(boolean statEnable) {
+        this.statEnable = statEnable;
+    }
+
+    /**
+     * number of lookups served from the table without allocating a new string
+     */
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    /**
+     * number of chars not copied because the symbol was already cached
+     */
+    public long getHitChars() {
+        return hitChars.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    /**
+     * number of symbols that could not be cached because the table reached {@link #getMaxSize()}
+     */
+    public long getOverflowCount() {
+        return overflowCount.sum();
+    }
+
+    public double getHitRate() {
+        long hit = hitCount.sum();
+        long total = hit + missCount.sum();
+        if (total == 0) {
+            return 0;
+        }
+        return ((double) hit) / total;
+    }
+
+    public void resetStat() {
+        hitCount.reset();
+        hitChars.reset();
+        missCount.reset();
+        overflowCount.reset();
+    }
+
     private static String subString(String src, int offset, int len) {
         char[] chars = new char[len];
         src.getChars(offset, offset + len, chars, 0);
@@ -44,6 +44,10 @@ public class SchemaObject {
         this.type = type;
         this.statement = statement;
 
+        if (statement != null && schema != null && schema.getRepository() != null) {
+            schema.getRepository().compact(statement);
+        }
+
         this.hashCode64 = FnvHash.hashCode64(name);
     }
 
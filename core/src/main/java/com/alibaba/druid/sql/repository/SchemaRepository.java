@@ -21,6 +21,7 @@ import com.alibaba.druid.sql.SQLUtils;
 import com.alibaba.druid.sql.ast.SQLDataType;
 import com.alibaba.druid.sql.ast.SQLExpr;
 import com.alibaba.druid.sql.ast.SQLName;
+import com.alibaba.druid.sql.ast.SQLObject;
 import com.alibaba.druid.sql.ast.SQLStatement;
 import com.alibaba.druid.sql.ast.expr.SQLAllColumnExpr;
 import com.alibaba.druid.sql.ast.expr.SQLIdentifierExpr;
@@ -35,6 +36,7 @@ import com.alibaba.druid.sql.dialect.oracle.ast.stmt.OracleCreateTableStatement;
 import com.alibaba.druid.sql.dialect.oracle.visitor.OracleASTVisitorAdapter;
 import com.alibaba.druid.sql.dialect.sqlserver.visitor.SQLServerASTVisitorAdapter;
 import com.alibaba.druid.sql.parser.SQLParserFeature;
+import com.alibaba.druid.sql.parser.SymbolTable;
 import com.alibaba.druid.sql.repository.function.Function;
 import com.alibaba.druid.sql.visitor.SQLASTVisitor;
 import com.alibaba.druid.sql.visitor.SQLASTVisitorAdapter;
@@ -63,6 +65,9 @@ public class SchemaRepository {
     protected final Map<Long, Function> internalFunctions = new ConcurrentHashMap<Long, Function>(16, 0.75f, 1);
     protected SchemaLoader schemaLoader;
 
+    protected boolean compact;
+    private SymbolTable symbolTable;
+
     public SchemaRepository() {
     }
 
@@ -1266,6 +1271,29 @@ public class SchemaRepository {
         return null;
     }
 
+    public boolean isCompact() {
+        return compact;
+    }
+
+    /**
+     * when enabled, the statements kept for tables, views, indexes and functions are compacted
+     * by {@link SQLUtils#compact(SQLObject, SymbolTable)} with a symbol table owned by this repository
+     */
+    public void setCompact(boolean compact) {
+        this.compact = compact;
+    }
+
+    void compact(SQLStatement stmt) {
+        if (!compact || stmt == null) {
+            return;
+        }
+
+        if (symbolTable == null) {
+            symbolTable = new SymbolTable(1024, 1024 * 256);
+        }
+        SQLUtils.compact(stmt, symbolTable);
+    }
+
     public SchemaLoader getSchemaLoader() {
         return schemaLoader;
     }
@@ -166,8 +166,25 @@ public class ParameterizedOutputVisitorUtils {
             return sql;
         }
 
-        StringBuilder out = new StringBuilder(sql.length());
-        ParameterizedVisitor visitor = createParameterizedOutputVisitor(out, dbType);
+        SQLPrintContext context = SQLPrintContext.acquire();
+        try {
+            return parameterize(context, sql, dbType, parser, statementList, outParameters, visitorFeatures);
+        } finally {
+            context.release();
+        }
+    }
+
+    private static String parameterize(
+            SQLPrintContext context,
+            String sql,
+            DbType dbType,
+            SQLStatementParser parser,
+            List<SQLStatement> statementList,
+            List<Object> outParameters,
+            VisitorFeature... visitorFeatures) {
+        StringBuilder out = context.getBuffer();
+        out.ensureCapacity(sql.length());
+        ParameterizedVisitor visitor = context.getParameterizedOutputVisitor(dbType);
         if (outParameters != null) {
             visitor.setOutputParameters(outParameters);
         }
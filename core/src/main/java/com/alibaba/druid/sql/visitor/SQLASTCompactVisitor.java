@@ -0,0 +1,210 @@
+/*
+ * Copyright 1999-2017 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.druid.sql.visitor;
+
+import com.alibaba.druid.sql.ast.SQLDataTypeImpl;
+import com.alibaba.druid.sql.ast.SQLObject;
+import com.alibaba.druid.sql.ast.SQLObjectImpl;
+import com.alibaba.druid.sql.ast.SQLOrderBy;
+import com.alibaba.druid.sql.ast.expr.SQLBinaryOpExprGroup;
+import com.alibaba.druid.sql.ast.expr.SQLCaseExpr;
+import com.alibaba.druid.sql.ast.expr.SQLIdentifierExpr;
+import com.alibaba.druid.sql.ast.expr.SQLInListExpr;
+import com.alibaba.druid.sql.ast.expr.SQLMethodInvokeExpr;
+import com.alibaba.druid.sql.ast.expr.SQLPropertyExpr;
+import com.alibaba.druid.sql.ast.statement.SQLColumnDefinition;
+import com.alibaba.druid.sql.ast.statement.SQLCreateIndexStatement;
+import com.alibaba.druid.sql.ast.statement.SQLCreateTableStatement;
+import com.alibaba.druid.sql.ast.statement.SQLCreateViewStatement;
+import com.alibaba.druid.sql.ast.statement.SQLInsertInto;
+import com.alibaba.druid.sql.ast.statement.SQLInsertStatement;
+import com.alibaba.druid.sql.ast.statement.SQLSelectGroupByClause;
+import com.alibaba.druid.sql.ast.statement.SQLSelectItem;
+import com.alibaba.druid.sql.ast.statement.SQLSelectQueryBlock;
+import com.alibaba.druid.sql.ast.statement.SQLTableSourceImpl;
+import com.alibaba.druid.sql.ast.statement.SQLUnionQuery;
+import com.alibaba.druid.sql.ast.statement.SQLUpdateStatement;
+import com.alibaba.druid.sql.dialect.clickhouse.visitor.ClickhouseVisitor;
+import com.alibaba.druid.sql.dialect.db2.visitor.DB2ASTVisitor;
+import com.alibaba.druid.sql.dialect.h2.visitor.H2ASTVisitor;
+import com.alibaba.druid.sql.dialect.mysql.visitor.MySqlASTVisitor;
+import com.alibaba.druid.sql.dialect.odps.visitor.OdpsASTVisitor;
+import com.alibaba.druid.sql.dialect.oracle.visitor.OracleASTVisitor;
+import com.alibaba.druid.sql.dialect.oscar.visitor.OscarASTVisitor;
+import com.alibaba.druid.sql.dialect.phoenix.visitor.PhoenixASTVisitor;
+import com.alibaba.druid.sql.dialect.postgresql.visitor.PGASTVisitor;
+import com.alibaba.druid.sql.dialect.presto.visitor.PrestoVisitor;
+import com.alibaba.druid.sql.dialect.sqlserver.visitor.SQLServerASTVisitor;
+import com.alibaba.druid.sql.dialect.starrocks.visitor.StarRocksASTVisitor;
+import com.alibaba.druid.sql.parser.SymbolTable;
+import com.alibaba.druid.util.FnvHash;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Shrinks an already built ast for long time retention, e.g. the statements held by
+ * {@link com.alibaba.druid.sql.repository.SchemaRepository}.
+ * <p>
+ * The element lists of the common nodes (select lists, arguments, in lists, column definitions
+ * and the like) are trimmed to size, empty lists then share the jdk's empty backing array, and
+ * the empty attribute map of every node visited is dropped. Identifier names, property
+ * names, data type names and aliases are interned through a {@link SymbolTable}, so the same
+ * column or table name appearing in thousands of statements is held by a single string. The ast
+ * stays fully mutable afterwards.
+ */
+public class SQLASTCompactVisitor extends SQLASTVisitorAdapter
+        implements MySqlASTVisitor, OracleASTVisitor, PGASTVisitor, SQLServerASTVisitor, OdpsASTVisitor,
+        DB2ASTVisitor, H2ASTVisitor, PhoenixASTVisitor, PrestoVisitor, OscarASTVisitor, ClickhouseVisitor,
+        StarRocksASTVisitor {
+    private static final int MAX_INTERN_LENGTH = 128;
+
+    private final SymbolTable symbolTable;
+    private long nodeCount;
+    private long trimmedCount;
+    private long internedCount;
+
+    public SQLASTCompactVisitor() {
+        this(SymbolTable.global);
+    }
+
+    public SQLASTCompactVisitor(SymbolTable symbolTable) {
+        this.symbolTable = symbolTable;
+    }
+
+    @Override
+    public void preVisit(SQLObject x) {
+        nodeCount++;
+
+        if (x instanceof SQLObjectImpl) {
+            ((SQLObjectImpl) x).compactAttributes();
+        }
+
+        trimLists(x);
+
+        if (symbolTable == null) {
+            return;
+        }
+
+        if (x instanceof SQLIdentifierExpr) {
+            SQLIdentifierExpr identifierExpr = (SQLIdentifierExpr) x;
+            String name = intern(identifierExpr.getName());
+            if (name != identifierExpr.getName()) {
+                identifierExpr.setName(name);
+            }
+        } else if (x instanceof SQLPropertyExpr) {
+            SQLPropertyExpr propertyExpr = (SQLPropertyExpr) x;
+            String name = intern(propertyExpr.getName());
+            if (name != propertyExpr.getName()) {
+                propertyExpr.setName(name);
+            }
+        } else if (x instanceof SQLDataTypeImpl) {
+            SQLDataTypeImpl dataType = (SQLDataTypeImpl) x;
+            String name = intern(dataType.getName());
+            if (name != dataType.getName()) {
+                dataType.setName(name);
+            }
+        } else if (x instanceof SQLTableSourceImpl) {
+            SQLTableSourceImpl tableSource = (SQLTableSourceImpl) x;
+            String alias = intern(tableSource.getAlias());
+            if (alias != tableSource.getAlias()) {
+                tableSource.setAlias(alias);
+            }
+        } else if (x instanceof SQLSelectItem) {
+            SQLSelectItem selectItem = (SQLSelectItem) x;
+            String alias = intern(selectItem.getAlias());
+            if (alias != selectItem.getAlias()) {
+                selectItem.setAlias(alias);
+            }
+        }
+    }
+
+    private String intern(String name) {
+        if (name == null || name.length() > MAX_INTERN_LENGTH) {
+            return name;
+        }
+
+        String symbol = symbolTable.addSymbol(name, FnvHash.fnv1a_64(name));
+        if (symbol != name && symbol.equals(name)) {
+            internedCount++;
+            return symbol;
+        }
+        return name;
+    }
+
+    private void trimLists(SQLObject x) {
+        if (x instanceof SQLSelectQueryBlock) {
+            trim(((SQLSelectQueryBlock) x).getSelectList());
+        } else if (x instanceof SQLMethodInvokeExpr) {
+            trim(((SQLMethodInvokeExpr) x).getArguments());
+        } else if (x instanceof SQLInListExpr) {
+            trim(((SQLInListExpr) x).getTargetList());
+        } else if (x instanceof SQLBinaryOpExprGroup) {
+            trim(((SQLBinaryOpExprGroup) x).getItems());
+        } else if (x instanceof SQLCaseExpr) {
+            trim(((SQLCaseExpr) x).getItems());
+        } else if (x instanceof SQLDataTypeImpl) {
+            trim(((SQLDataTypeImpl) x).getArguments());
+        } else if (x instanceof SQLSelectGroupByClause) {
+            trim(((SQLSelectGroupByClause) x).getItems());
+        } else if (x instanceof SQLOrderBy) {
+            trim(((SQLOrderBy) x).getItems());
+        } else if (x instanceof SQLUnionQuery) {
+            trim(((SQLUnionQuery) x).getRelations());
+        } else if (x instanceof SQLColumnDefinition) {
+            trim(((SQLColumnDefinition) x).getConstraints());
+        } else if (x instanceof SQLCreateTableStatement) {
+            SQLCreateTableStatement stmt = (SQLCreateTableStatement) x;
+            trim(stmt.getTableElementList());
+            trim(stmt.getPartitionColumns());
+            trim(stmt.getClusteredBy());
+            trim(stmt.getSortedBy());
+            trim(stmt.getTableOptions());
+            trim(stmt.getTblProperties());
+        } else if (x instanceof SQLCreateViewStatement) {
+            trim(((SQLCreateViewStatement) x).getColumns());
+        } else if (x instanceof SQLCreateIndexStatement) {
+            trim(((SQLCreateIndexStatement) x).getItems());
+        } else if (x instanceof SQLInsertInto) {
+            SQLInsertInto insertInto = (SQLInsertInto) x;
+            trim(insertInto.getColumns());
+            trim(insertInto.getValuesList());
+        } else if (x instanceof SQLInsertStatement.ValuesClause) {
+            trim(((SQLInsertStatement.ValuesClause) x).getValues());
+        } else if (x instanceof SQLUpdateStatement) {
+            trim(((SQLUpdateStatement) x).getItems());
+        }
+    }
+
+    private void trim(List<?> list) {
+        if (list instanceof ArrayList) {
+            ((ArrayList<?>) list).trimToSize();
+            trimmedCount++;
+        }
+    }
+
+    public long getNodeCount() {
+        return nodeCount;
+    }
+
+    public long getTrimmedCount() {
+        return trimmedCount;
+    }
+
+    public long getInternedCount() {
+        return internedCount;
+    }
+}
@@ -127,6 +127,26 @@ public class SQLASTOutputVisitor extends SQLASTVisitorAdapter implements Paramet
         this.config(VisitorFeature.OutputParameterized, parameterized);
     }
 
+    /**
+     * Clears the appender and the state left by the last print, so the visitor can be used again.
+     * Configuration such as features is kept.
+     */
+    public void reset() {
+        appender.setLength(0);
+        indentCount = 0;
+        lines = 0;
+        replaceCount = 0;
+        parameters = null;
+        inputParameters = null;
+        tables = null;
+        table = null;
+        exportTables = false;
+        tableMapping = null;
+        parameterizedMergeInList = false;
+        timeZone = null;
+        printStatementAfterSemi = defaultPrintStatementAfterSemi;
+    }
+
     public int getReplaceCount() {
         return this.replaceCount;
     }
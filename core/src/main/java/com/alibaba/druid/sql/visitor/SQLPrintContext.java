@@ -0,0 +1,224 @@
+/*
+ * Copyright 1999-2017 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.druid.sql.visitor;
+
+import com.alibaba.druid.DbType;
+import com.alibaba.druid.sql.SQLUtils;
+import com.alibaba.druid.sql.ast.SQLStatement;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Per thread cache of the output buffer and output visitors used for printing sql.
+ * <p>
+ * A context is obtained by {@link #acquire()} and must be given back by {@link #release()}, which
+ * clears the buffer and restores every visitor handed out to the configuration it had when it was
+ * created. Nested printing on the same thread gets a throwaway context, so the cached one is never
+ * shared by two prints at the same time.
+ *
+ * <pre>
+ * SQLPrintContext context = SQLPrintContext.acquire();
+ * try {
+ *     SQLASTOutputVisitor visitor = context.getOutputVisitor(dbType);
+ *     stmt.accept(visitor);
+ *     return context.getBuffer().toString();
+ * } finally {
+ *     context.release();
+ * }
+ * </pre>
+ */
+public final class SQLPrintContext {
+    /**
+     * buffers grown beyond this size are shrunk on release, so a single huge sql does not stay
+     * referenced by the thread
+     */
+    public static final int MAX_BUFFER_SIZE = 1024 * 64;
+    private static final int INITIAL_BUFFER_SIZE = 512;
+
+    private static final ThreadLocal<SQLPrintContext> contextLocal = new ThreadLocal<SQLPrintContext>();
+
+    private final boolean pooled;
+    private final StringBuilder buffer;
+    private final Entry[] outputVisitors;
+    private final Entry[] parameterizedVisitors;
+
+    private Entry[] used = new Entry[4];
+    private int usedCount;
+    private boolean inUse;
+
+    private SQLPrintContext(boolean pooled) {
+        this.pooled = pooled;
+        if (pooled) {
+            int size = DbType.values().length;
+            this.buffer = new StringBuilder(INITIAL_BUFFER_SIZE);
+            this.outputVisitors = new Entry[size];
+            this.parameterizedVisitors = new Entry[size];
+        } else {
+            this.buffer = new StringBuilder();
+            this.outputVisitors = null;
+            this.parameterizedVisitors = null;
+        }
+    }
+
+    public static SQLPrintContext acquire() {
+        SQLPrintContext context = contextLocal.get();
+        if (context == null) {
+            context = new SQLPrintContext(true);
+            contextLocal.set(context);
+        }
+
+        if (context.inUse) {
+            context = new SQLPrintContext(false);
+        }
+
+        context.inUse = true;
+        return context;
+    }
+
+    public void release() {
+        for (int i = 0; i < usedCount; ++i) {
+            used[i].restore();
+            used[i] = null;
+        }
+        usedCount = 0;
+
+        buffer.setLength(0);
+        if (buffer.capacity() > MAX_BUFFER_SIZE) {
+            buffer.trimToSize();
+            buffer.ensureCapacity(INITIAL_BUFFER_SIZE);
+        }
+
+        inUse = false;
+    }
+
+    public boolean isPooled() {
+        return pooled;
+    }
+
+    public StringBuilder getBuffer() {
+        return buffer;
+    }
+
+    public SQLASTOutputVisitor getOutputVisitor(DbType dbType) {
+        return getFormatOutputVisitor(null, dbType);
+    }
+
+    public SQLASTOutputVisitor getFormatOutputVisitor(List<SQLStatement> statementList, DbType dbType) {
+        if (dbType == null) {
+            if (statementList != null && statementList.size() > 0) {
+                dbType = statementList.get(0).getDbType();
+            }
+
+            if (dbType == null) {
+                dbType = DbType.other;
+            }
+        }
+
+        boolean cacheable = pooled
+                && !((dbType == DbType.oracle || dbType == DbType.oceanbase_oracle)
+                && statementList != null
+                && statementList.size() > 1);
+        if (!cacheable) {
+            return SQLUtils.createFormatOutputVisitor(buffer, statementList, dbType);
+        }
+
+        Entry entry = outputVisitors[dbType.ordinal()];
+        if (entry == null) {
+            entry = new Entry(SQLUtils.createFormatOutputVisitor(buffer, statementList, dbType));
+            outputVisitors[dbType.ordinal()] = entry;
+        }
+        use(entry);
+        return entry.visitor;
+    }
+
+    public ParameterizedVisitor getParameterizedOutputVisitor(DbType dbType) {
+        if (dbType == null) {
+            dbType = DbType.other;
+        }
+
+        if (!pooled) {
+            return ParameterizedOutputVisitorUtils.createParameterizedOutputVisitor(buffer, dbType);
+        }
+
+        Entry entry = parameterizedVisitors[dbType.ordinal()];
+        if (entry == null) {
+            ParameterizedVisitor visitor = ParameterizedOutputVisitorUtils.createParameterizedOutputVisitor(buffer, dbType);
+            if (!(visitor instanceof SQLASTOutputVisitor)) {
+                return visitor;
+            }
+            entry = new Entry((SQLASTOutputVisitor) visitor);
+            parameterizedVisitors[dbType.ordinal()] = entry;
+        }
+        use(entry);
+        return (ParameterizedVisitor) entry.visitor;
+    }
+
+    private void use(Entry entry) {
+        for (int i = 0; i < usedCount; ++i) {
+            if (used[i] == entry) {
+                return;
+            }
+        }
+
+        if (usedCount == used.length) {
+            used = Arrays.copyOf(used, usedCount * 2);
+        }
+        used[usedCount++] = entry;
+    }
+
+    /**
+     * a cached visitor and the configuration it had right after construction
+     */
+    private static final class Entry {
+        final SQLASTOutputVisitor visitor;
+        final int features;
+        final boolean ucase;
+        final boolean parameterized;
+        final boolean parameterizedQuesUnMergeInList;
+        final boolean parameterizedQuesUnMergeValuesList;
+        final boolean shardingSupport;
+        final boolean printNameQuote;
+        final boolean groupItemSingleLine;
+        final int selectListNumberOfLine;
+
+        Entry(SQLASTOutputVisitor visitor) {
+            this.visitor = visitor;
+            this.features = visitor.features;
+            this.ucase = visitor.ucase;
+            this.parameterized = visitor.parameterized;
+            this.parameterizedQuesUnMergeInList = visitor.parameterizedQuesUnMergeInList;
+            this.parameterizedQuesUnMergeValuesList = visitor.parameterizedQuesUnMergeValuesList;
+            this.shardingSupport = visitor.shardingSupport;
+            this.printNameQuote = visitor.printNameQuote;
+            this.groupItemSingleLine = visitor.groupItemSingleLine;
+            this.selectListNumberOfLine = visitor.selectListNumberOfLine;
+        }
+
+        void restore() {
+            visitor.reset();
+            visitor.features = features;
+            visitor.ucase = ucase;
+            visitor.parameterized = parameterized;
+            visitor.parameterizedQuesUnMergeInList = parameterizedQuesUnMergeInList;
+            visitor.parameterizedQuesUnMergeValuesList = parameterizedQuesUnMergeValuesList;
+            visitor.shardingSupport = shardingSupport;
+            visitor.printNameQuote = printNameQuote;
+            visitor.groupItemSingleLine = groupItemSingleLine;
+            visitor.selectListNumberOfLine = selectListNumberOfLine;
+        }
+    }
+}
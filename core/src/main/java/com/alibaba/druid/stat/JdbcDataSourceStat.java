@@ -407,7 +407,7 @@ public class JdbcDataSourceStat implements JdbcDataSourceStatMBean {
                 sqlStat = new JdbcSqlStat(sql);
                 sqlStat.setDbType(this.dbType);
                 sqlStat.setName(this.name);
-                sqlStatMap.put(sql, sqlStat);
+                sqlStatMap.put(sqlStat.getSql(), sqlStat);
             }
 
             return sqlStat;
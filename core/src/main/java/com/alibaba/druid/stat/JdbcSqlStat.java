@@ -18,6 +18,7 @@ package com.alibaba.druid.stat;
 import com.alibaba.druid.proxy.DruidDriver;
 import com.alibaba.druid.proxy.jdbc.StatementExecuteType;
 import com.alibaba.druid.util.JMXUtils;
+import com.alibaba.druid.util.SqlTextStore;
 import com.alibaba.druid.util.Utils;
 
 import javax.management.JMException;
@@ -217,7 +218,7 @@ public final class JdbcSqlStat implements JdbcSqlStatMBean, Comparable<JdbcSqlSt
             "updateCount_10000_more");
 
     public JdbcSqlStat(String sql) {
-        this.sql = sql;
+        this.sql = SqlTextStore.intern(sql);
         this.id = DruidDriver.createSqlStatId();
     }
 
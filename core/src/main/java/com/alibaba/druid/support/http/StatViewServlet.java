@@ -18,6 +18,7 @@ package com.alibaba.druid.support.http;
 import com.alibaba.druid.stat.DruidStatService;
 import com.alibaba.druid.support.logging.Log;
 import com.alibaba.druid.support.logging.LogFactory;
+import com.alibaba.druid.support.metrics.OpenMetricsExporter;
 
 import javax.management.MBeanServerConnection;
 import javax.management.ObjectName;
@@ -50,6 +51,8 @@ public class StatViewServlet extends ResourceServlet {
 
     private DruidStatService statService = DruidStatService.getInstance();
 
+    private final OpenMetricsExporter metricsExporter = new OpenMetricsExporter();
+
     /**
      * web.xml中配置的jmx的连接地址
      */
@@ -68,6 +71,10 @@ public class StatViewServlet extends ResourceServlet {
         super("support/http/resources");
     }
 
+    public OpenMetricsExporter getMetricsExporter() {
+        return metricsExporter;
+    }
+
     public void init() throws ServletException {
         super.init();
 
@@ -229,6 +236,17 @@ public class StatViewServlet extends ResourceServlet {
             return;
         }
 
+        // 本地的统计数据，scrape时不能登录，需要用户名密码时用loginUsername和loginPassword参数
+        if ("/metrics".equals(path) && jmxUrl == null) {
+            if (!isPermittedRequest(request) || (isRequireAuth() && handler.isNotLogin(request))) {
+                response.sendError(HttpServletResponse.SC_FORBIDDEN);
+                return;
+            }
+            response.setContentType(OpenMetricsExporter.CONTENT_TYPE);
+            metricsExporter.export(response.getWriter());
+            return;
+        }
+
         super.service(request, response);
     }
 
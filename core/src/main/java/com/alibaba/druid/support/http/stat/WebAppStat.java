@@ -20,6 +20,8 @@ import com.alibaba.druid.support.logging.LogFactory;
 import com.alibaba.druid.util.LRUCache;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -285,6 +287,13 @@ public class WebAppStat {
         return uriStat;
     }
 
+    /**
+     * @return a live view of the uri stats, the values are read from the stats without being copied
+     */
+    public Collection<WebURIStat> getURIStats() {
+        return Collections.unmodifiableCollection(uriStatMap.values());
+    }
+
     public WebSessionStat getSessionStat(String sessionId) {
         return getSessionStat(sessionId, false);
     }
@@ -0,0 +1,438 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.druid.support.metrics;
+
+import com.alibaba.druid.filter.Filter;
+import com.alibaba.druid.pool.DruidDataSource;
+import com.alibaba.druid.stat.DruidDataSourceStatManager;
+import com.alibaba.druid.stat.JdbcDataSourceStat;
+import com.alibaba.druid.stat.JdbcSqlStat;
+import com.alibaba.druid.support.http.stat.WebAppStat;
+import com.alibaba.druid.support.http.stat.WebAppStatManager;
+import com.alibaba.druid.support.http.stat.WebURIStat;
+import com.alibaba.druid.wall.WallFilter;
+import com.alibaba.druid.wall.WallProvider;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Writes the pool, sql, wall and web uri stats in the OpenMetrics text format.
+ * <p>
+ * The values are read from the stat counters and written to the output as they are read, no stat map
+ * is built. The label cardinality is bounded: at most {@link #getMaxSqlCount()} sql per data source and
+ * {@link #getMaxUriCount()} uri per web app are written, the ones with the most executions, the others
+ * are only counted in druid_sql_omitted and druid_web_uri_omitted. The sql text is only written once,
+ * in the druid_sql_info series, the other sql series are labeled with the sql id.
+ *
+ * @see com.alibaba.druid.support.http.StatViewServlet
+ */
+public class OpenMetricsExporter {
+    public static final String CONTENT_TYPE = "application/openmetrics-text; version=1.0.0; charset=utf-8";
+
+    public static final int DEFAULT_MAX_SQL_COUNT = 100;
+    public static final int DEFAULT_MAX_URI_COUNT = 100;
+    public static final int DEFAULT_MAX_LABEL_LENGTH = 256;
+
+    // upper bounds of the stat histograms, 0-1 ms, 1-10 ms ... 1000000 ms - more
+    private static final String[] HISTOGRAM_BOUNDS = {
+            "0.001", "0.01", "0.1", "1.0", "10.0", "100.0", "1000.0", "+Inf"
+    };
+
+    private int maxSqlCount = DEFAULT_MAX_SQL_COUNT;
+    private int maxUriCount = DEFAULT_MAX_URI_COUNT;
+    private int maxLabelLength = DEFAULT_MAX_LABEL_LENGTH;
+
+    public void export(Writer writer) throws IOException {
+        Output out = new Output(writer);
+        List<Series<DruidDataSource>> pools = new ArrayList<Series<DruidDataSource>>();
+        List<Series<WallProvider>> walls = new ArrayList<Series<WallProvider>>();
+        List<Series<JdbcSqlStat>> sqls = new ArrayList<Series<JdbcSqlStat>>();
+        List<Series<Integer>> sqlOmitted = new ArrayList<Series<Integer>>();
+
+        Set<JdbcDataSourceStat> dataSourceStats = Collections.newSetFromMap(
+                new IdentityHashMap<JdbcDataSourceStat, Boolean>());
+        for (DruidDataSource dataSource : getDataSources()) {
+            String labels = label(new StringBuilder(), "datasource", dataSource.getName()).toString();
+            pools.add(new Series<DruidDataSource>(dataSource, labels));
+
+            for (Filter filter : dataSource.getProxyFilters()) {
+                if (filter instanceof WallFilter) {
+                    walls.add(new Series<WallProvider>(((WallFilter) filter).getProvider(), labels));
+                    break;
+                }
+            }
+
+            // data sources sharing the global stat are written once
+            JdbcDataSourceStat dataSourceStat = dataSource.getDataSourceStat();
+            if (dataSourceStat == null || !dataSourceStats.add(dataSourceStat)) {
+                continue;
+            }
+
+            List<JdbcSqlStat> sqlStats = new ArrayList<JdbcSqlStat>();
+            for (JdbcSqlStat sqlStat : dataSourceStat.getSqlStatMap().values()) {
+                if (sqlStat.getExecuteCount() != 0 || sqlStat.getRunningCount() != 0) {
+                    sqlStats.add(sqlStat);
+                }
+            }
+            List<JdbcSqlStat> selected = top(sqlStats, JdbcSqlStat::getExecuteCount, maxSqlCount);
+            for (JdbcSqlStat sqlStat : selected) {
+                StringBuilder buf = new StringBuilder(labels.length() + 16).append(labels);
+                label(buf, "sql_id", Long.toString(sqlStat.getId()));
+                sqls.add(new Series<JdbcSqlStat>(sqlStat, buf.toString()));
+            }
+            sqlOmitted.add(new Series<Integer>(sqlStats.size() - selected.size(), labels));
+        }
+
+        gauge(out, "druid_pool_active_connections", "Connections in use", pools, DruidDataSource::getActiveCount);
+        gauge(out, "druid_pool_idle_connections", "Connections in the pool", pools, DruidDataSource::getPoolingCount);
+        gauge(out, "druid_pool_max_active_connections", "Maximum connections", pools, DruidDataSource::getMaxActive);
+        gauge(out, "druid_pool_wait_threads", "Threads waiting for a connection", pools,
+                DruidDataSource::getWaitThreadCount);
+        counter(out, "druid_pool_connect", "Connections borrowed", pools, DruidDataSource::getConnectCount);
+        counter(out, "druid_pool_close", "Connections returned", pools, DruidDataSource::getCloseCount);
+        counter(out, "druid_pool_connect_errors", "Borrow errors", pools, DruidDataSource::getConnectErrorCount);
+        counter(out, "druid_pool_not_empty_wait", "Borrows which waited for a connection", pools,
+                DruidDataSource::getNotEmptyWaitCount);
+        counter(out, "druid_pool_physical_connect", "Physical connections opened", pools,
+                DruidDataSource::getCreateCount);
+        counter(out, "druid_pool_physical_close", "Physical connections closed", pools,
+                DruidDataSource::getDestroyCount);
+        counter(out, "druid_pool_execute", "Statements executed", pools, DruidDataSource::getExecuteCount);
+        counter(out, "druid_pool_errors", "Statement errors", pools, DruidDataSource::getErrorCount);
+        counter(out, "druid_pool_commit", "Commits", pools, DruidDataSource::getCommitCount);
+        counter(out, "druid_pool_rollback", "Rollbacks", pools, DruidDataSource::getRollbackCount);
+
+        header(out, "druid_sql", "info", "Sql text of the sql_id");
+        for (Series<JdbcSqlStat> series : sqls) {
+            out.write("druid_sql_info{");
+            out.write(series.labels);
+            label(out.buf, "sql", series.stat.getSql());
+            out.write("} 1\n");
+            out.flushIfFull();
+        }
+        counter(out, "druid_sql_execute", "Sql executions", sqls, JdbcSqlStat::getExecuteCount);
+        counter(out, "druid_sql_execute_errors", "Sql execution errors", sqls, JdbcSqlStat::getErrorCount);
+        gauge(out, "druid_sql_running", "Sql executions in progress", sqls, JdbcSqlStat::getRunningCount);
+        counter(out, "druid_sql_fetch_rows", "Rows fetched", sqls, JdbcSqlStat::getFetchRowCount);
+        counter(out, "druid_sql_update_rows", "Rows updated", sqls, JdbcSqlStat::getUpdateCount);
+        header(out, "druid_sql_execute_seconds", "histogram", "Sql execution time");
+        for (Series<JdbcSqlStat> series : sqls) {
+            histogram(out, "druid_sql_execute_seconds", series.labels,
+                    series.stat.getHistogramValues(), series.stat.getExecuteMillisTotal() / 1000D);
+        }
+        gauge(out, "druid_sql_omitted", "Sql not written, over the max sql count", sqlOmitted, Integer::intValue);
+
+        counter(out, "druid_wall_check", "Sql checked", walls, WallProvider::getCheckCount);
+        counter(out, "druid_wall_hard_check", "Sql checked without cached result", walls,
+                WallProvider::getHardCheckCount);
+        counter(out, "druid_wall_violations", "Sql denied", walls, WallProvider::getViolationCount);
+        counter(out, "druid_wall_violation_effect_rows", "Rows affected by denied sql", walls,
+                WallProvider::getViolationEffectRowCount);
+        counter(out, "druid_wall_syntax_errors", "Sql not parsable", walls, WallProvider::getSyntaxErrorCount);
+        counter(out, "druid_wall_white_list_hits", "Checks answered by the white list", walls,
+                WallProvider::getWhiteListHitCount);
+        counter(out, "druid_wall_black_list_hits", "Checks answered by the black list", walls,
+                WallProvider::getBlackListHitCount);
+        counter(out, "druid_wall_comment_denied", "Sql denied for comments", walls,
+                provider -> provider.getCommentDenyStat().getDenyCount());
+
+        writeWeb(out);
+
+        out.write("# EOF\n");
+        out.flush();
+    }
+
+    private void writeWeb(Output out) throws IOException {
+        List<Series<WebURIStat>> uris = new ArrayList<Series<WebURIStat>>();
+        List<Series<Integer>> uriOmitted = new ArrayList<Series<Integer>>();
+
+        for (WebAppStat webAppStat : getWebAppStats()) {
+            String labels = label(new StringBuilder(), "context", webAppStat.getContextPath()).toString();
+
+            List<WebURIStat> uriStats = new ArrayList<WebURIStat>();
+            for (WebURIStat uriStat : webAppStat.getURIStats()) {
+                if (uriStat.getRequestCount() != 0 || uriStat.getRunningCount() != 0) {
+                    uriStats.add(uriStat);
+                }
+            }
+            List<WebURIStat> selected = top(uriStats, WebURIStat::getRequestCount, maxUriCount);
+            for (WebURIStat uriStat : selected) {
+                StringBuilder buf = new StringBuilder(labels.length() + 32).append(labels);
+                label(buf, "uri", uriStat.getUri());
+                uris.add(new Series<WebURIStat>(uriStat, buf.toString()));
+            }
+            uriOmitted.add(new Series<Integer>(uriStats.size() - selected.size(), labels));
+        }
+
+        counter(out, "druid_web_requests", "Requests", uris, WebURIStat::getRequestCount);
+        counter(out, "druid_web_request_errors", "Requests failed", uris, WebURIStat::getErrorCount);
+        gauge(out, "druid_web_running", "Requests in progress", uris, WebURIStat::getRunningCount);
+        counter(out, "druid_web_jdbc_execute", "Sql executed by the requests", uris,
+                WebURIStat::getJdbcExecuteCount);
+        header(out, "druid_web_request_seconds", "histogram", "Request time");
+        for (Series<WebURIStat> series : uris) {
+            histogram(out, "druid_web_request_seconds", series.labels,
+                    series.stat.getHistogramValues(), series.stat.getRequestTimeNano() / 1000000000D);
+        }
+        gauge(out, "druid_web_uri_omitted", "Uri not written, over the max uri count", uriOmitted,
+                Integer::intValue);
+    }
+
+    protected Iterable<DruidDataSource> getDataSources() {
+        List<DruidDataSource> dataSources = new ArrayList<DruidDataSource>();
+        for (Object dataSource : DruidDataSourceStatManager.getDruidDataSourceInstances()) {
+            // instances loaded by other class loaders are not read
+            if (dataSource instanceof DruidDataSource) {
+                dataSources.add((DruidDataSource) dataSource);
+            }
+        }
+        return dataSources;
+    }
+
+    protected Iterable<WebAppStat> getWebAppStats() {
+        List<WebAppStat> webAppStats = new ArrayList<WebAppStat>();
+        for (Object webAppStat : WebAppStatManager.getInstance().getWebAppStatSet()) {
+            if (webAppStat instanceof WebAppStat) {
+                webAppStats.add((WebAppStat) webAppStat);
+            }
+        }
+        return webAppStats;
+    }
+
+    /**
+     * @return the items with the largest key, in their original order
+     */
+    static <T> List<T> top(List<T> items, LongGetter<T> getter, int max) {
+        if (items.size() <= max) {
+            return items;
+        }
+        if (max <= 0) {
+            return Collections.emptyList();
+        }
+
+        // keys are read once, the counters keep moving while selecting
+        long[] keys = new long[items.size()];
+        for (int i = 0; i < keys.length; ++i) {
+            keys[i] = getter.get(items.get(i));
+        }
+        long[] sorted = keys.clone();
+        Arrays.sort(sorted);
+        long threshold = sorted[sorted.length - max];
+
+        int above = 0;
+        for (long key : keys) {
+            if (key > threshold) {
+                above++;
+            }
+        }
+        int equal = max - above;
+
+        List<T> selected = new ArrayList<T>(max);
+        for (int i = 0; i < keys.length; ++i) {
+            if (keys[i] > threshold) {
+                selected.add(items.get(i));
+            } else if (keys[i] == threshold && equal > 0) {
+                selected.add(items.get(i));
+                equal--;
+            }
+        }
+        return selected;
+    }
+
+    private static void header(Output out, String name, String type, String help) throws IOException {
+        out.write("# TYPE ");
+        out.write(name);
+        out.write(' ');
+        out.write(type);
+        out.write("\n# HELP ");
+        out.write(name);
+        out.write(' ');
+        out.write(help);
+        out.write('\n');
+    }
+
+    private static <T> void counter(Output out, String name, String help, List<Series<T>> seriesList,
+                                    LongGetter<T> getter) throws IOException {
+        header(out, name, "counter", help);
+        for (Series<T> series : seriesList) {
+            sample(out, name, "_total", series.labels, getter.get(series.stat));
+        }
+    }
+
+    private static <T> void gauge(Output out, String name, String help, List<Series<T>> seriesList,
+                                  LongGetter<T> getter) throws IOException {
+        header(out, name, "gauge", help);
+        for (Series<T> series : seriesList) {
+            sample(out, name, "", series.labels, getter.get(series.stat));
+        }
+    }
+
+    private static void sample(Output out, String name, String suffix, String labels, long value)
+            throws IOException {
+        out.write(name);
+        out.write(suffix);
+        out.write('{');
+        out.write(labels);
+        out.write("} ");
+        out.write(value);
+        out.write('\n');
+        out.flushIfFull();
+    }
+
+    private static void histogram(Output out, String name, String labels, long[] values, double sum)
+            throws IOException {
+        long count = 0;
+        for (int i = 0; i < values.length; ++i) {
+            count += values[i];
+            out.write(name);
+            out.write("_bucket{");
+            out.write(labels);
+            out.write(",le=\"");
+            out.write(HISTOGRAM_BOUNDS[i]);
+            out.write("\"} ");
+            out.write(count);
+            out.write('\n');
+        }
+        sample(out, name, "_count", labels, count);
+        out.write(name);
+        out.write("_sum{");
+        out.write(labels);
+        out.write("} ");
+        out.write(sum);
+        out.write('\n');
+        out.flushIfFull();
+    }
+
+    private StringBuilder label(StringBuilder buf, String name, String value) {
+        if (buf.length() != 0) {
+            buf.append(',');
+        }
+        buf.append(name).append("=\"");
+        if (value != null) {
+            int length = Math.min(value.length(), maxLabelLength);
+            for (int i = 0; i < length; ++i) {
+                char ch = value.charAt(i);
+                switch (ch) {
+                    case '\\':
+                        buf.append("\\\\");
+                        break;
+                    case '"':
+                        buf.append("\\\"");
+                        break;
+                    case '\n':
+                        buf.append("\\n");
+                        break;
+                    default:
+                        buf.append(ch);
+                        break;
+                }
+            }
+        }
+        return buf.append('"');
+    }
+
+    public int getMaxSqlCount() {
+        return maxSqlCount;
+    }
+
+    public void setMaxSqlCount(int maxSqlCount) {
+        this.maxSqlCount = maxSqlCount;
+    }
+
+    public int getMaxUriCount() {
+        return maxUriCount;
+    }
+
+    public void setMaxUriCount(int maxUriCount) {
+        this.maxUriCount = maxUriCount;
+    }
+
+    public int getMaxLabelLength() {
+        return maxLabelLength;
+    }
+
+    /**
+     * longer label values, the sql text mostly, are truncated
+     */
+    public void setMaxLabelLength(int maxLabelLength) {
+        this.maxLabelLength = maxLabelLength;
+    }
+
+    /**
+     * Collects the lines in a local buffer, the writers handed to export, a PrintWriter or a StringWriter,
+     * synchronize every write.
+     */
+    private static final class Output {
+        static final int FLUSH_SIZE = 1024 * 8;
+
+        final Writer writer;
+        final StringBuilder buf = new StringBuilder(FLUSH_SIZE + 1024);
+
+        Output(Writer writer) {
+            this.writer = writer;
+        }
+
+        void write(String text) {
+            buf.append(text);
+        }
+
+        void write(char ch) {
+            buf.append(ch);
+        }
+
+        void write(long value) {
+            buf.append(value);
+        }
+
+        void write(double value) {
+            buf.append(value);
+        }
+
+        void flushIfFull() throws IOException {
+            if (buf.length() >= FLUSH_SIZE) {
+                writer.append(buf);
+                buf.setLength(0);
+            }
+        }
+
+        void flush() throws IOException {
+            writer.append(buf);
+            buf.setLength(0);
+            writer.flush();
+        }
+    }
+
+    interface LongGetter<T> {
+        long get(T stat);
+    }
+
+    private static final class Series<T> {
+        final T stat;
+        final String labels;
+
+        Series(T stat, String labels) {
+            this.stat = stat;
+            this.labels = labels;
+        }
+    }
+}
@@ -122,6 +122,10 @@ public final class ConcurrentLruCache<K, V> {
         return cache.keySet();
     }
 
+    public int capacity() {
+        return capacity;
+    }
+
     public int size() {
         return this.cache.size();
     }
@@ -0,0 +1,156 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.druid.util;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed size frequency counter for names of unbounded cardinality: a count-min sketch estimating
+ * the count of any name, plus the few most frequent names seen so far. Memory does not grow with
+ * the number of distinct names, estimates may only be over counted.
+ */
+public final class HeavyHitters {
+    private static final int DEPTH = 4;
+
+    private final int mask;
+    private final AtomicLongArray counts;
+    private final AtomicLong total = new AtomicLong();
+
+    private final int capacity;
+    private final Map<String, Long> top;
+    private volatile long topMin;
+    private volatile boolean topFull;
+
+    public HeavyHitters(int width, int capacity) {
+        if (width <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException("width and capacity must be > 0");
+        }
+
+        int w = Integer.highestOneBit(width);
+        if (w < width) {
+            w <<= 1;
+        }
+        this.mask = w - 1;
+        this.counts = new AtomicLongArray(w * DEPTH);
+        this.capacity = capacity;
+        this.top = new HashMap<String, Long>(capacity * 2);
+    }
+
+    /**
+     * @return the estimated count of the name after this occurrence
+     */
+    public long add(String name) {
+        long hash = FnvHash.fnv1a_64(name);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+
+        long estimate = Long.MAX_VALUE;
+        for (int i = 0; i < DEPTH; ++i) {
+            int index = i * (mask + 1) + ((h1 + i * h2) & mask);
+            long count = counts.incrementAndGet(index);
+            if (count < estimate) {
+                estimate = count;
+            }
+        }
+        total.incrementAndGet();
+
+        if (!topFull || estimate > topMin) {
+            offer(name, estimate);
+        }
+        return estimate;
+    }
+
+    public long estimate(String name) {
+        long hash = FnvHash.fnv1a_64(name);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+
+        long estimate = Long.MAX_VALUE;
+        for (int i = 0; i < DEPTH; ++i) {
+            long count = counts.get(i * (mask + 1) + ((h1 + i * h2) & mask));
+            if (count < estimate) {
+                estimate = count;
+            }
+        }
+        return estimate;
+    }
+
+    private synchronized void offer(String name, long estimate) {
+        top.put(name, estimate);
+
+        if (top.size() > capacity) {
+            Iterator<Map.Entry<String, Long>> iter = top.entrySet().iterator();
+            Map.Entry<String, Long> min = iter.next();
+            while (iter.hasNext()) {
+                Map.Entry<String, Long> entry = iter.next();
+                if (entry.getValue() < min.getValue()) {
+                    min = entry;
+                }
+            }
+            top.remove(min.getKey());
+        }
+
+        if (top.size() >= capacity) {
+            long min = Long.MAX_VALUE;
+            for (Long count : top.values()) {
+                if (count < min) {
+                    min = count;
+                }
+            }
+            topMin = min;
+            topFull = true;
+        }
+    }
+
+    /**
+     * @return the most frequent names with their estimated counts, most frequent first
+     */
+    public synchronized List<Map.Entry<String, Long>> getTop() {
+        List<Map.Entry<String, Long>> list = new ArrayList<Map.Entry<String, Long>>(top.entrySet().size());
+        for (Map.Entry<String, Long> entry : top.entrySet()) {
+            list.add(new AbstractMap.SimpleImmutableEntry<String, Long>(entry.getKey(), entry.getValue()));
+        }
+        Collections.sort(list, new Comparator<Map.Entry<String, Long>>() {
+            public int compare(Map.Entry<String, Long> a, Map.Entry<String, Long> b) {
+                return b.getValue().compareTo(a.getValue());
+            }
+        });
+        return list;
+    }
+
+    public long getTotal() {
+        return total.get();
+    }
+
+    public synchronized void reset() {
+        for (int i = 0; i < counts.length(); ++i) {
+            counts.set(i, 0);
+        }
+        total.set(0);
+        top.clear();
+        topMin = 0;
+        topFull = false;
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.druid.util;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shared copy of large sql texts (generated IN lists ...), so the sql stat, the wall lists and the
+ * prepared statement pool keep one String for the same text instead of one each.
+ * <p>
+ * Texts are keyed by a 64 bit hash made of {@link String#hashCode()}, which the String caches, and
+ * the length, then compared with equals. They are weakly referenced: a text is dropped once none of
+ * the structures holds it anymore. On a hash collision the first text is kept and the other one is
+ * returned as is.
+ */
+public final class SqlTextStore {
+    private static volatile int minLength = Integer.getInteger("druid.sqlTextStore.minLength", 1024);
+
+    private static final ConcurrentMap<Long, TextRef> texts = new ConcurrentHashMap<Long, TextRef>();
+    private static final ReferenceQueue<String> queue = new ReferenceQueue<String>();
+    private static final AtomicLong hitCount = new AtomicLong();
+
+    private SqlTextStore() {
+    }
+
+    /**
+     * @return the stored text equal to the sql, the sql itself when it is shorter than
+     * {@link #getMinLength()} or not stored yet
+     */
+    public static String intern(String sql) {
+        if (sql == null || sql.length() < minLength) {
+            return sql;
+        }
+
+        expunge();
+
+        Long key = ((long) sql.hashCode() << 32) | sql.length();
+        for (; ; ) {
+            TextRef ref = texts.get(key);
+            if (ref == null) {
+                ref = texts.putIfAbsent(key, new TextRef(sql, key, queue));
+                if (ref == null) {
+                    return sql;
+                }
+            }
+
+            String text = ref.get();
+            if (text == null) {
+                texts.remove(key, ref);
+                continue;
+            }
+
+            if (text == sql) {
+                return sql;
+            }
+            if (text.equals(sql)) {
+                hitCount.incrementAndGet();
+                return text;
+            }
+            return sql;
+        }
+    }
+
+    private static void expunge() {
+        for (TextRef ref; (ref = (TextRef) queue.poll()) != null; ) {
+            texts.remove(ref.key, ref);
+        }
+    }
+
+    public static int getMinLength() {
+        return minLength;
+    }
+
+    /**
+     * only texts of at least this length are shared, default 1024, system property
+     * druid.sqlTextStore.minLength
+     */
+    public static void setMinLength(int minLength) {
+        SqlTextStore.minLength = minLength;
+    }
+
+    /**
+     * number of texts currently stored, including the ones collected but not expunged yet
+     */
+    public static int size() {
+        expunge();
+        return texts.size();
+    }
+
+    /**
+     * number of times a copy was replaced by the stored text
+     */
+    public static long getHitCount() {
+        return hitCount.get();
+    }
+
+    private static final class TextRef extends WeakReference<String> {
+        final Long key;
+
+        TextRef(String text, Long key, ReferenceQueue<String> queue) {
+            super(text, queue);
+            this.key = key;
+        }
+    }
+}
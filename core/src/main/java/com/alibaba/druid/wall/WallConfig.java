@@ -16,8 +16,11 @@
 package com.alibaba.druid.wall;
 
 import com.alibaba.druid.sql.SQLUtils;
+import com.alibaba.druid.util.FnvHash;
 import com.alibaba.druid.wall.spi.WallVisitorUtils;
 
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
 import java.util.*;
 import java.util.concurrent.ConcurrentSkipListSet;
 
@@ -94,11 +97,11 @@ public class WallConfig implements WallConfigMBean {
 
     private boolean doPrivilegedAllow;
 
-    protected final Set<String> denyFunctions = new ConcurrentSkipListSet<String>();
-    protected final Set<String> denyTables = new ConcurrentSkipListSet<String>();
-    protected final Set<String> denySchemas = new ConcurrentSkipListSet<String>();
-    protected final Set<String> denyVariants = new ConcurrentSkipListSet<String>();
-    protected final Set<String> denyObjects = new ConcurrentSkipListSet<String>();
+    protected final WallNameSet denyFunctions = new WallNameSet();
+    protected final WallNameSet denyTables = new WallNameSet();
+    protected final WallNameSet denySchemas = new WallNameSet();
+    protected final WallNameSet denyVariants = new WallNameSet();
+    protected final WallNameSet denyObjects = new WallNameSet();
 
     protected final Set<String> permitFunctions = new ConcurrentSkipListSet<String>();
     protected final Set<String> permitTables = new ConcurrentSkipListSet<String>();
@@ -128,6 +131,15 @@ public class WallConfig implements WallConfigMBean {
 
     private int selectLimit = -1;
 
+    private int whiteListMaxSize = 1024;
+    private int blackListMaxSize = 256;
+
+    private int tableStatMaxSize = 10000;
+    private int functionStatMaxSize = 10000;
+    private boolean mergeShardTableStat;
+
+    private boolean tokenPreCheck = Boolean.getBoolean("druid.wall.tokenPreCheck");
+
     protected Map<String, Set<String>> updateCheckColumns = new HashMap<String, Set<String>>();
     protected WallUpdateCheckHandler updateCheckHandler;
 
@@ -600,6 +612,10 @@ public class WallConfig implements WallConfigMBean {
         this.readOnlyTables.add(tableName);
     }
 
+    public boolean isDenyVariant(String name) {
+        return this.denyVariants.containsHash(WallVisitorUtils.formHash(name));
+    }
+
     public boolean isReadOnly(String tableName) {
         return this.readOnlyTables.contains(tableName);
     }
@@ -633,8 +649,7 @@ public class WallConfig implements WallConfigMBean {
             return false;
         }
 
-        name = WallVisitorUtils.form(name);
-        return denyObjects.contains(name);
+        return denyObjects.containsHash(WallVisitorUtils.formHash(name));
     }
 
     public boolean isDenySchema(String name) {
@@ -642,8 +657,7 @@ public class WallConfig implements WallConfigMBean {
             return false;
         }
 
-        name = WallVisitorUtils.form(name);
-        return this.denySchemas.contains(name);
+        return this.denySchemas.containsHash(WallVisitorUtils.formHash(name));
     }
 
     public boolean isDenyFunction(String name) {
@@ -651,8 +665,7 @@ public class WallConfig implements WallConfigMBean {
             return false;
         }
 
-        name = WallVisitorUtils.form(name);
-        return this.denyFunctions.contains(name);
+        return this.denyFunctions.containsHash(WallVisitorUtils.formHash(name));
     }
 
     public boolean isCallAllow() {
@@ -834,6 +847,70 @@ public class WallConfig implements WallConfigMBean {
         this.selectLimit = selectLimit;
     }
 
+    public int getWhiteListMaxSize() {
+        return whiteListMaxSize;
+    }
+
+    /**
+     * capacity of the white list of the provider, entries are keyed by the shape of the sql, so sqls
+     * differing only in column values share one entry
+     */
+    public void setWhiteListMaxSize(int whiteListMaxSize) {
+        this.whiteListMaxSize = whiteListMaxSize;
+    }
+
+    public int getBlackListMaxSize() {
+        return blackListMaxSize;
+    }
+
+    public void setBlackListMaxSize(int blackListMaxSize) {
+        this.blackListMaxSize = blackListMaxSize;
+    }
+
+    public int getTableStatMaxSize() {
+        return tableStatMaxSize;
+    }
+
+    /**
+     * max number of tables counted one by one in the provider stat, tables beyond that are only
+     * counted approximately, see {@link WallProviderStatValue#getOverflowTables()}
+     */
+    public void setTableStatMaxSize(int tableStatMaxSize) {
+        this.tableStatMaxSize = tableStatMaxSize;
+    }
+
+    public int getFunctionStatMaxSize() {
+        return functionStatMaxSize;
+    }
+
+    public void setFunctionStatMaxSize(int functionStatMaxSize) {
+        this.functionStatMaxSize = functionStatMaxSize;
+    }
+
+    public boolean isMergeShardTableStat() {
+        return mergeShardTableStat;
+    }
+
+    /**
+     * count the shards of a table under one name in the provider stat, e.g. order_0001 and
+     * order_4096 are both counted as order_*
+     */
+    public void setMergeShardTableStat(boolean mergeShardTableStat) {
+        this.mergeShardTableStat = mergeShardTableStat;
+    }
+
+    public boolean isTokenPreCheck() {
+        return tokenPreCheck;
+    }
+
+    /**
+     * check the token stream before parsing, plain single table selects are accepted and stacked
+     * statements rejected without building the ast, see {@link WallTokenPreCheck}
+     */
+    public void setTokenPreCheck(boolean tokenPreCheck) {
+        this.tokenPreCheck = tokenPreCheck;
+    }
+
     public void configFromProperties(Properties properties) {
         {
             String propertyValue = properties.getProperty("druid.wall.tenantColumn");
@@ -877,6 +954,42 @@ public class WallConfig implements WallConfigMBean {
                 this.setSelectLimit(propertyValue);
             }
         }
+        {
+            Integer propertyValue = getInteger(properties, "druid.wall.whiteListMaxSize");
+            if (propertyValue != null) {
+                this.setWhiteListMaxSize(propertyValue);
+            }
+        }
+        {
+            Integer propertyValue = getInteger(properties, "druid.wall.blackListMaxSize");
+            if (propertyValue != null) {
+                this.setBlackListMaxSize(propertyValue);
+            }
+        }
+        {
+            Integer propertyValue = getInteger(properties, "druid.wall.tableStatMaxSize");
+            if (propertyValue != null) {
+                this.setTableStatMaxSize(propertyValue);
+            }
+        }
+        {
+            Integer propertyValue = getInteger(properties, "druid.wall.functionStatMaxSize");
+            if (propertyValue != null) {
+                this.setFunctionStatMaxSize(propertyValue);
+            }
+        }
+        {
+            Boolean propertyValue = getBoolean(properties, "druid.wall.mergeShardTableStat");
+            if (propertyValue != null) {
+                this.setMergeShardTableStat(propertyValue);
+            }
+        }
+        {
+            Boolean propertyValue = getBoolean(properties, "druid.wall.tokenPreCheck");
+            if (propertyValue != null) {
+                this.setTokenPreCheck(propertyValue);
+            }
+        }
         {
             String propertyValue = properties.getProperty("druid.wall.updateCheckColumns");
             if (propertyValue != null) {
@@ -938,4 +1051,64 @@ public class WallConfig implements WallConfigMBean {
     public void setUpdateCheckHandler(WallUpdateCheckHandler updateCheckHandler) {
         this.updateCheckHandler = updateCheckHandler;
     }
+
+    /**
+     * fnv1a_64 hash over the rules of this config, all instance fields with the name sets in sorted
+     * order. Callbacks only contribute their class name. Used to tell whether saved check results,
+     * see {@link WallProvider#exportWhiteList(java.io.Writer)}, were made with the same rules.
+     */
+    public long hashCode64() {
+        List<Field> fields = new ArrayList<Field>();
+        for (Class<?> clazz = getClass(); clazz != null && clazz != Object.class; clazz = clazz.getSuperclass()) {
+            for (Field field : clazz.getDeclaredFields()) {
+                if (!Modifier.isStatic(field.getModifiers()) && !field.isSynthetic()) {
+                    fields.add(field);
+                }
+            }
+        }
+        Collections.sort(fields, new Comparator<Field>() {
+            public int compare(Field a, Field b) {
+                return a.getName().compareTo(b.getName());
+            }
+        });
+
+        long hash = FnvHash.BASIC;
+        for (Field field : fields) {
+            Object value;
+            try {
+                field.setAccessible(true);
+                value = field.get(this);
+            } catch (Exception e) {
+                continue;
+            }
+
+            String text;
+            if (value == null) {
+                text = "null";
+            } else if (value instanceof Collection) {
+                text = new TreeSet<Object>((Collection<?>) value).toString();
+            } else if (value instanceof Map) {
+                text = new TreeMap<Object, Object>((Map<?, ?>) value).toString();
+            } else if (value instanceof Boolean || value instanceof Number || value instanceof String
+                    || value instanceof Enum) {
+                text = value.toString();
+            } else {
+                text = value.getClass().getName();
+            }
+
+            hash = hash(hash, field.getName());
+            hash = hash(hash, text);
+        }
+        return hash;
+    }
+
+    private static long hash(long hash, String text) {
+        for (int i = 0; i < text.length(); ++i) {
+            hash ^= text.charAt(i);
+            hash *= FnvHash.PRIME;
+        }
+        hash ^= ';';
+        hash *= FnvHash.PRIME;
+        return hash;
+    }
 }
@@ -16,7 +16,9 @@
 package com.alibaba.druid.wall;
 
 import com.alibaba.druid.DbType;
+import com.alibaba.druid.wall.WallConfig.TenantCallBack.StatementType;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -37,6 +39,11 @@ public class WallContext {
 
     private List<WallUpdateCheckItem> wallUpdateCheckItems;
 
+    private String sql;
+    private String mergedSql;
+
+    private List<TenantValue> tenantValues;
+
     public WallContext(String dbType) {
         this(DbType.of(dbType));
     }
@@ -205,4 +212,61 @@ public class WallContext {
     public void setWallUpdateCheckItems(List<WallUpdateCheckItem> wallUpdateCheckItems) {
         this.wallUpdateCheckItems = wallUpdateCheckItems;
     }
+
+    /**
+     * parameterized sql computed outside of the wall (by StatFilter) for the sql being checked
+     */
+    public String getMergedSql(String sql) {
+        if (this.sql != null && (this.sql == sql || this.sql.equals(sql))) {
+            return mergedSql;
+        }
+        return null;
+    }
+
+    public void setMergedSql(String sql, String mergedSql) {
+        this.sql = sql;
+        this.mergedSql = mergedSql;
+    }
+
+    /**
+     * tenant values used by the multi-tenant rewrite of the current check
+     */
+    public List<TenantValue> getTenantValues() {
+        return tenantValues;
+    }
+
+    public void addTenantValue(StatementType statementType, String tableName, Object value) {
+        if (tenantValues == null) {
+            tenantValues = new ArrayList<TenantValue>(2);
+        }
+        tenantValues.add(new TenantValue(statementType, tableName, value));
+    }
+
+    public void clearTenantValues() {
+        tenantValues = null;
+    }
+
+    public static final class TenantValue {
+        private final StatementType statementType;
+        private final String tableName;
+        private final Object value;
+
+        public TenantValue(StatementType statementType, String tableName, Object value) {
+            this.statementType = statementType;
+            this.tableName = tableName;
+            this.value = value;
+        }
+
+        public StatementType getStatementType() {
+            return statementType;
+        }
+
+        public String getTableName() {
+            return tableName;
+        }
+
+        public Object getValue() {
+            return value;
+        }
+    }
 }
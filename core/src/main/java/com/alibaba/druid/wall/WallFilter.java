@@ -19,12 +19,14 @@ import com.alibaba.druid.DbType;
 import com.alibaba.druid.VERSION;
 import com.alibaba.druid.filter.FilterAdapter;
 import com.alibaba.druid.filter.FilterChain;
+import com.alibaba.druid.pool.PreparedStatementPool;
 import com.alibaba.druid.proxy.jdbc.*;
 import com.alibaba.druid.sql.ast.SQLExpr;
 import com.alibaba.druid.sql.ast.expr.SQLValuableExpr;
 import com.alibaba.druid.sql.ast.expr.SQLVariantRefExpr;
 import com.alibaba.druid.support.logging.Log;
 import com.alibaba.druid.support.logging.LogFactory;
+import com.alibaba.druid.util.DaemonThreadFactory;
 import com.alibaba.druid.util.JdbcUtils;
 import com.alibaba.druid.util.ServletPathMatcher;
 import com.alibaba.druid.util.StringUtils;
@@ -33,13 +35,27 @@ import com.alibaba.druid.wall.WallConfig.TenantCallBack.StatementType;
 import com.alibaba.druid.wall.spi.*;
 import com.alibaba.druid.wall.violation.SyntaxErrorViolation;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
 import java.io.Reader;
+import java.io.Writer;
 import java.math.BigDecimal;
 import java.sql.*;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static com.alibaba.druid.util.Utils.getBoolean;
+import static com.alibaba.druid.util.Utils.getInteger;
 
 public class WallFilter extends FilterAdapter implements WallFilterMBean {
     private static final Log LOG = LogFactory.getLog(WallFilter.class);
@@ -55,6 +71,26 @@ public class WallFilter extends FilterAdapter implements WallFilterMBean {
     private volatile boolean logViolation;
     private volatile boolean throwException = true;
 
+    /**
+     * shadow mode, statements are executed without waiting for the check, which runs on a bounded
+     * background pool and only records (and logs) violations. used for rolling out new rules.
+     */
+    private volatile boolean shadow;
+    private int shadowThreads = 1;
+    private int shadowQueueSize = 1024;
+    private volatile int shadowSampling = 1;
+    private volatile ThreadPoolExecutor shadowExecutor;
+    private final AtomicLong shadowCheckCount = new AtomicLong();
+    private final AtomicLong shadowSkipCount = new AtomicLong();
+    private final AtomicLong shadowDropCount = new AtomicLong();
+    private final WallDenyStat shadowDenyStat = new WallDenyStat();
+
+    /**
+     * white list snapshot, loaded at init and saved on destroy, so a restarted instance does not
+     * parse every distinct sql again.
+     */
+    private String whiteListFile;
+
     public static final String ATTR_SQL_STAT = "wall.sqlStat";
     public static final String ATTR_UPDATE_CHECK_ITEMS = "wall.updateCheckItems";
 
@@ -82,6 +118,36 @@ public class WallFilter extends FilterAdapter implements WallFilterMBean {
                 this.throwException = value;
             }
         }
+        {
+            Boolean value = getBoolean(properties, "druid.wall.shadow");
+            if (value != null) {
+                this.shadow = value;
+            }
+        }
+        {
+            Integer value = getInteger(properties, "druid.wall.shadowThreads");
+            if (value != null) {
+                this.shadowThreads = value;
+            }
+        }
+        {
+            Integer value = getInteger(properties, "druid.wall.shadowQueueSize");
+            if (value != null) {
+                this.shadowQueueSize = value;
+            }
+        }
+        {
+            Integer value = getInteger(properties, "druid.wall.shadowSampling");
+            if (value != null) {
+                this.shadowSampling = value;
+            }
+        }
+        {
+            String value = properties.getProperty("druid.wall.whiteListFile");
+            if (value != null && value.length() > 0) {
+                this.whiteListFile = value;
+            }
+        }
 
         if (this.config != null) {
             this.config.configFromProperties(properties);
@@ -110,9 +176,93 @@ public class WallFilter extends FilterAdapter implements WallFilterMBean {
         provider = initWallProvider(dataSource, dbTypeName, config);
         this.config = provider.getConfig();
         provider.setName(dataSource.getName());
+        if (shadow) {
+            initShadowExecutor();
+        }
+        if (whiteListFile != null) {
+            loadWhiteList();
+        }
         this.inited = true;
     }
 
+    public int loadWhiteList() {
+        File file = new File(whiteListFile);
+        if (!file.exists()) {
+            return 0;
+        }
+
+        Reader reader = null;
+        try {
+            reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+            int count = provider.importWhiteList(reader);
+            if (LOG.isInfoEnabled()) {
+                LOG.info("load wall white list " + count + " from " + whiteListFile);
+            }
+            return count;
+        } catch (Exception e) {
+            LOG.error("load wall white list error, " + whiteListFile, e);
+            return 0;
+        } finally {
+            JdbcUtils.close(reader);
+        }
+    }
+
+    public int saveWhiteList() {
+        File file = new File(whiteListFile);
+        File tempFile = new File(whiteListFile + ".tmp");
+
+        Writer writer = null;
+        try {
+            writer = new OutputStreamWriter(new FileOutputStream(tempFile), "UTF-8");
+            int count = provider.exportWhiteList(writer);
+            writer.close();
+            writer = null;
+
+            if (file.exists() && !file.delete()) {
+                throw new IOException("delete " + whiteListFile + " failed");
+            }
+            if (!tempFile.renameTo(file)) {
+                throw new IOException("rename " + tempFile + " failed");
+            }
+            return count;
+        } catch (Exception e) {
+            LOG.error("save wall white list error, " + whiteListFile, e);
+            return 0;
+        } finally {
+            JdbcUtils.close(writer);
+        }
+    }
+
+    private synchronized void initShadowExecutor() {
+        if (shadowExecutor != null) {
+            return;
+        }
+
+        String name = provider != null && provider.getName() != null ? provider.getName() : "default";
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                shadowThreads,
+                shadowThreads,
+                60,
+                TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(shadowQueueSize),
+                new DaemonThreadFactory("Druid-WallShadow-" + name),
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+        executor.allowCoreThreadTimeOut(true);
+        shadowExecutor = executor;
+    }
+
+    @Override
+    public synchronized void destroy() {
+        if (whiteListFile != null && provider != null) {
+            saveWhiteList();
+        }
+        if (shadowExecutor != null) {
+            shadowExecutor.shutdownNow();
+            shadowExecutor = null;
+        }
+    }
+
     protected WallProvider initWallProvider(DataSourceProxy dataSource, String dbTypeName, WallConfig config) {
         return initWallProviderInternal(dataSource, dbTypeName, config);
     }
@@ -293,11 +443,86 @@ public class WallFilter extends FilterAdapter implements WallFilterMBean {
         return inited;
     }
 
+    public boolean isShadow() {
+        return shadow;
+    }
+
+    public void setShadow(boolean shadow) {
+        this.shadow = shadow;
+        if (shadow && inited) {
+            initShadowExecutor();
+        }
+    }
+
+    public int getShadowThreads() {
+        return shadowThreads;
+    }
+
+    public void setShadowThreads(int shadowThreads) {
+        if (shadowThreads < 1) {
+            throw new IllegalArgumentException("shadowThreads must be greater than 0");
+        }
+        this.shadowThreads = shadowThreads;
+    }
+
+    public int getShadowQueueSize() {
+        return shadowQueueSize;
+    }
+
+    public void setShadowQueueSize(int shadowQueueSize) {
+        if (shadowQueueSize < 1) {
+            throw new IllegalArgumentException("shadowQueueSize must be greater than 0");
+        }
+        this.shadowQueueSize = shadowQueueSize;
+    }
+
+    public int getShadowSampling() {
+        return shadowSampling;
+    }
+
+    /**
+     * check one of every shadowSampling statements in shadow mode, 1 checks all of them.
+     */
+    public void setShadowSampling(int shadowSampling) {
+        if (shadowSampling < 1) {
+            throw new IllegalArgumentException("shadowSampling must be greater than 0");
+        }
+        this.shadowSampling = shadowSampling;
+    }
+
+    public long getCachedCheckCount() {
+        return provider.getCachedCheckCount();
+    }
+
+    public long getShadowCheckCount() {
+        return shadowCheckCount.get();
+    }
+
+    public long getShadowSkipCount() {
+        return shadowSkipCount.get();
+    }
+
+    public long getShadowDropCount() {
+        return shadowDropCount.get();
+    }
+
+    public WallDenyStat getShadowDenyStat() {
+        return shadowDenyStat;
+    }
+
+    public String getWhiteListFile() {
+        return whiteListFile;
+    }
+
+    public void setWhiteListFile(String whiteListFile) {
+        this.whiteListFile = whiteListFile;
+    }
+
     @Override
     public void statement_addBatch(FilterChain chain, StatementProxy statement, String sql) throws SQLException {
         createWallContext(statement);
         try {
-            sql = check(sql);
+            sql = check(statement, sql);
             chain.statement_addBatch(statement, sql);
         } finally {
             WallContext.clearContext();
@@ -477,7 +702,7 @@ public class WallFilter extends FilterAdapter implements WallFilterMBean {
         WallContext originalContext = WallContext.current();
         try {
             createWallContext(statement);
-            sql = check(sql);
+            sql = check(statement, sql);
             boolean firstResult = chain.statement_execute(statement, sql);
             if (!firstResult) {
                 int updateCount = statement.getUpdateCount();
@@ -501,7 +726,7 @@ public class WallFilter extends FilterAdapter implements WallFilterMBean {
             throws SQLException {
         createWallContext(statement);
         try {
-            sql = check(sql);
+            sql = check(statement, sql);
             boolean firstResult = chain.statement_execute(statement, sql, autoGeneratedKeys);
             if (!firstResult) {
                 int updateCount = statement.getUpdateCount();
@@ -523,7 +748,7 @@ public class WallFilter extends FilterAdapter implements WallFilterMBean {
             throws SQLException {
         createWallContext(statement);
         try {
-            sql = check(sql);
+            sql = check(statement, sql);
             boolean firstResult = chain.statement_execute(statement, sql, columnIndexes);
             if (!firstResult) {
                 int updateCount = statement.getUpdateCount();
@@ -545,7 +770,7 @@ public class WallFilter extends FilterAdapter implements WallFilterMBean {
             throws SQLException {
         createWallContext(statement);
         try {
-            sql = check(sql);
+            sql = check(statement, sql);
             boolean firstResult = chain.statement_execute(statement, sql, columnNames);
             if (!firstResult) {
                 int updateCount = statement.getUpdateCount();
@@ -564,6 +789,9 @@ public class WallFilter extends FilterAdapter implements WallFilterMBean {
 
     @Override
     public int[] statement_executeBatch(FilterChain chain, StatementProxy statement) throws SQLException {
+        if (statement instanceof PreparedStatementProxy) {
+            cachedCheck((PreparedStatementProxy) statement);
+        }
         WallSqlStat sqlStat = (WallSqlStat) statement.getAttribute(ATTR_SQL_STAT);
         try {
             int[] updateCounts = chain.statement_executeBatch(statement);
@@ -590,7 +818,7 @@ public class WallFilter extends FilterAdapter implements WallFilterMBean {
             throws SQLException {
         createWallContext(statement);
         try {
-            sql = check(sql);
+            sql = check(statement, sql);
             ResultSetProxy resultSetProxy = chain.statement_executeQuery(statement, sql);
             preprocessResultSet(resultSetProxy);
             return resultSetProxy;
@@ -606,7 +834,7 @@ public class WallFilter extends FilterAdapter implements WallFilterMBean {
     public int statement_executeUpdate(FilterChain chain, StatementProxy statement, String sql) throws SQLException {
         createWallContext(statement);
         try {
-            sql = check(sql);
+            sql = check(statement, sql);
             int updateCount = chain.statement_executeUpdate(statement, sql);
             statExecuteUpdate(updateCount);
             return updateCount;
@@ -623,7 +851,7 @@ public class WallFilter extends FilterAdapter implements WallFilterMBean {
             throws SQLException {
         createWallContext(statement);
         try {
-            sql = check(sql);
+            sql = check(statement, sql);
             int updateCount = chain.statement_executeUpdate(statement, sql, autoGeneratedKeys);
             statExecuteUpdate(updateCount);
             return updateCount;
@@ -640,7 +868,7 @@ public class WallFilter extends FilterAdapter implements WallFilterMBean {
             throws SQLException {
         createWallContext(statement);
         try {
-            sql = check(sql);
+            sql = check(statement, sql);
             int updateCount = chain.statement_executeUpdate(statement, sql, columnIndexes);
             statExecuteUpdate(updateCount);
             return updateCount;
@@ -666,7 +894,7 @@ public class WallFilter extends FilterAdapter implements WallFilterMBean {
             throws SQLException {
         createWallContext(statement);
         try {
-            sql = check(sql);
+            sql = check(statement, sql);
             int updateCount = chain.statement_executeUpdate(statement, sql, columnNames);
             statExecuteUpdate(updateCount);
             return updateCount;
@@ -680,6 +908,7 @@ public class WallFilter extends FilterAdapter implements WallFilterMBean {
 
     @Override
     public boolean preparedStatement_execute(FilterChain chain, PreparedStatementProxy statement) throws SQLException {
+        cachedCheck(statement);
         try {
             wallUpdateCheck(statement);
 
@@ -703,6 +932,7 @@ public class WallFilter extends FilterAdapter implements WallFilterMBean {
     @Override
     public ResultSetProxy preparedStatement_executeQuery(FilterChain chain, PreparedStatementProxy statement)
             throws SQLException {
+        cachedCheck(statement);
         try {
             ResultSetProxy resultSetProxy = chain.preparedStatement_executeQuery(statement);
             preprocessResultSet(resultSetProxy);
@@ -716,6 +946,7 @@ public class WallFilter extends FilterAdapter implements WallFilterMBean {
     @Override
     public int preparedStatement_executeUpdate(FilterChain chain,
                                                PreparedStatementProxy statement) throws SQLException {
+        cachedCheck(statement);
         try {
             wallUpdateCheck(statement);
 
@@ -731,6 +962,22 @@ public class WallFilter extends FilterAdapter implements WallFilterMBean {
         }
     }
 
+    /**
+     * a statement borrowed again from the PreparedStatementPool keeps the sql and the check result of
+     * its first prepare, only the execution is accounted.
+     */
+    private void cachedCheck(PreparedStatementProxy statement) {
+        if (statement.getAttribute(PreparedStatementPool.ATTR_POOL_HIT) == null) {
+            return;
+        }
+        statement.putAttribute(PreparedStatementPool.ATTR_POOL_HIT, null);
+
+        WallSqlStat sqlStat = (WallSqlStat) statement.getAttribute(ATTR_SQL_STAT);
+        if (sqlStat != null) {
+            provider.addCachedCheck(sqlStat);
+        }
+    }
+
     private void wallUpdateCheck(PreparedStatementProxy statement) throws SQLException {
         Map<Integer, JdbcParameter> parameterMap = statement.getParameters();
         List<WallUpdateCheckItem> wallUpdateCheckItems = (List<WallUpdateCheckItem>) statement.getAttribute(ATTR_UPDATE_CHECK_ITEMS);
@@ -800,6 +1047,9 @@ public class WallFilter extends FilterAdapter implements WallFilterMBean {
         }
 
         stmt.putAttribute(ATTR_SQL_STAT, sqlStat);
+        if (stmt instanceof PreparedStatementProxy && !isRewriting()) {
+            SqlAnalysis.setMergedSql(stmt, ((PreparedStatementProxy) stmt).getSql(), sqlStat.getMergedSql());
+        }
 
         List<WallUpdateCheckItem> wallUpdateCheckItems = context.getWallUpdateCheckItems();
         if (wallUpdateCheckItems != null) {
@@ -849,7 +1099,34 @@ public class WallFilter extends FilterAdapter implements WallFilterMBean {
                 .getSql();
     }
 
+    private String check(StatementProxy statement, String sql) throws SQLException {
+        WallContext context = WallContext.current();
+        if (context != null) {
+            String mergedSql = SqlAnalysis.getMergedSql(statement, sql);
+            if (mergedSql != null) {
+                context.setMergedSql(sql, mergedSql);
+            }
+        }
+
+        WallCheckResult result = checkInternal(sql);
+        if (!isRewriting()) {
+            WallSqlStat sqlStat = result.getSqlStat();
+            if (sqlStat != null) {
+                SqlAnalysis.setMergedSql(statement, sql, sqlStat.getMergedSql());
+            }
+        }
+        return result.getSql();
+    }
+
     private WallCheckResult checkInternal(String sql) throws SQLException {
+        if (shadow && shadowExecutor != null && !isRewriting()) {
+            shadowCheck(sql);
+
+            WallCheckResult checkResult = new WallCheckResult();
+            checkResult.setSql(sql);
+            return checkResult;
+        }
+
         WallCheckResult checkResult = provider.check(sql);
         List<Violation> violations = checkResult.getViolations();
 
@@ -889,6 +1166,56 @@ public class WallFilter extends FilterAdapter implements WallFilterMBean {
         return checkResult;
     }
 
+    /**
+     * multi-tenant rewrite and update check need the result of the check before execution,
+     * these still check synchronously in shadow mode.
+     */
+    private boolean isRewriting() {
+        return (config.getTenantTablePattern() != null && config.getTenantTablePattern().length() > 0)
+                || config.getTenantCallBack() != null
+                || config.getUpdateCheckHandler() != null;
+    }
+
+    private void shadowCheck(final String sql) {
+        int sampling = shadowSampling;
+        if (sampling > 1 && ThreadLocalRandom.current().nextInt(sampling) != 0) {
+            shadowSkipCount.incrementAndGet();
+            return;
+        }
+
+        ThreadPoolExecutor executor = shadowExecutor;
+        if (executor == null) {
+            return;
+        }
+
+        try {
+            executor.execute(new Runnable() {
+                public void run() {
+                    try {
+                        List<Violation> violations = provider.check(sql).getViolations();
+                        if (violations.size() > 0) {
+                            shadowDenyStat.incrementAndGetDenyCount();
+                            if (isLogViolation()) {
+                                LOG.error("shadow sql injection violation, dbType "
+                                        + getDbType()
+                                        + ", druid-version "
+                                        + VERSION.getVersionNumber()
+                                        + ", "
+                                        + violations.get(0).getMessage() + " : " + sql);
+                            }
+                        }
+                    } catch (Throwable error) {
+                        LOG.error("shadow wall check error : " + sql, error);
+                    } finally {
+                        shadowCheckCount.incrementAndGet();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException ignored) {
+            shadowDropCount.incrementAndGet();
+        }
+    }
+
     @Override
     public boolean isWrapperFor(FilterChain chain, Wrapper wrapper, Class<?> iface) throws SQLException {
         if (config.isDoPrivilegedAllow() && WallProvider.ispPrivileged()) {
@@ -44,4 +44,16 @@ public interface WallFilterMBean {
     void clearWhiteList();
 
     boolean checkValid(String sql);
+
+    long getCachedCheckCount();
+
+    boolean isShadow();
+
+    void setShadow(boolean shadow);
+
+    long getShadowCheckCount();
+
+    long getShadowSkipCount();
+
+    long getShadowDropCount();
 }
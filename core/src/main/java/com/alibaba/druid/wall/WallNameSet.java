@@ -0,0 +1,113 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.druid.wall;
+
+import com.alibaba.druid.util.FnvHash;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Name set of the wall config (deny functions, tables, schemas ...). Besides the names it keeps a
+ * sorted array of their fnv1a_64 hash codes, rebuilt on every modification, so the visitor can
+ * test an identifier by hash without building the lower case string first, see
+ * {@link com.alibaba.druid.wall.spi.WallVisitorUtils#formHash(String)}.
+ */
+public class WallNameSet extends AbstractSet<String> {
+    private static final long[] EMPTY = new long[0];
+
+    private final Set<String> names = new ConcurrentSkipListSet<String>();
+    private volatile long[] hashCodes = EMPTY;
+
+    @Override
+    public synchronized boolean add(String name) {
+        if (!names.add(name)) {
+            return false;
+        }
+        rebuild();
+        return true;
+    }
+
+    @Override
+    public synchronized boolean remove(Object o) {
+        if (!names.remove(o)) {
+            return false;
+        }
+        rebuild();
+        return true;
+    }
+
+    @Override
+    public synchronized void clear() {
+        names.clear();
+        hashCodes = EMPTY;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return names.contains(o);
+    }
+
+    public boolean containsHash(long hashCode) {
+        long[] hashCodes = this.hashCodes;
+        return hashCodes.length > 0 && Arrays.binarySearch(hashCodes, hashCode) >= 0;
+    }
+
+    @Override
+    public int size() {
+        return names.size();
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        final Iterator<String> iter = names.iterator();
+        return new Iterator<String>() {
+            public boolean hasNext() {
+                return iter.hasNext();
+            }
+
+            public String next() {
+                return iter.next();
+            }
+
+            public void remove() {
+                synchronized (WallNameSet.this) {
+                    iter.remove();
+                    rebuild();
+                }
+            }
+        };
+    }
+
+    private void rebuild() {
+        long[] hashCodes = new long[names.size()];
+        int i = 0;
+        for (String name : names) {
+            if (i == hashCodes.length) {
+                break;
+            }
+            hashCodes[i++] = FnvHash.fnv1a_64(name);
+        }
+        if (i < hashCodes.length) {
+            hashCodes = Arrays.copyOf(hashCodes, i);
+        }
+        Arrays.sort(hashCodes);
+        this.hashCodes = hashCodes;
+    }
+}
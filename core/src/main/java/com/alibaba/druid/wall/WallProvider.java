@@ -25,13 +25,19 @@ import com.alibaba.druid.sql.dialect.mysql.ast.statement.MySqlHintStatement;
 import com.alibaba.druid.sql.parser.*;
 import com.alibaba.druid.sql.visitor.ExportParameterVisitor;
 import com.alibaba.druid.sql.visitor.ParameterizedOutputVisitorUtils;
+import com.alibaba.druid.support.json.JSONUtils;
 import com.alibaba.druid.util.ConcurrentLruCache;
+import com.alibaba.druid.util.HeavyHitters;
+import com.alibaba.druid.util.SqlTextStore;
 import com.alibaba.druid.util.Utils;
 import com.alibaba.druid.wall.spi.WallVisitorUtils;
 import com.alibaba.druid.wall.violation.ErrorCode;
 import com.alibaba.druid.wall.violation.IllegalSQLObjectViolation;
 import com.alibaba.druid.wall.violation.SyntaxErrorViolation;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
 import java.security.PrivilegedAction;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
@@ -62,10 +68,17 @@ public abstract class WallProvider {
 
     private static final int MERGED_SQL_CACHE_SIZE = 256;
 
+    private static final int WHITE_LIST_SNAPSHOT_VERSION = 1;
+
     private boolean blackListEnable = true;
 
-    private final ConcurrentLruCache<String, WallSqlStat> whiteList = new ConcurrentLruCache<>(WHITE_SQL_MAX_SIZE);
-    private final ConcurrentLruCache<String, WallSqlStat> blackList = new ConcurrentLruCache<>(BLACK_SQL_MAX_SIZE);
+    private volatile ConcurrentLruCache<String, WallSqlStat> whiteList = new ConcurrentLruCache<>(WHITE_SQL_MAX_SIZE);
+    private volatile ConcurrentLruCache<String, WallSqlStat> blackList = new ConcurrentLruCache<>(BLACK_SQL_MAX_SIZE);
+    // white list keyed by SQLFingerprint strict mode, looked up before any parsing
+    private volatile ConcurrentLruCache<Long, WallSqlStat> whiteShapeList = new ConcurrentLruCache<>(WHITE_SQL_MAX_SIZE);
+    // multi-tenant mode: the tenant lookups a sql needs, and the results per sql and tenant values
+    private volatile ConcurrentLruCache<String, WallContext.TenantValue[]> tenantLookups = new ConcurrentLruCache<>(WHITE_SQL_MAX_SIZE);
+    private volatile ConcurrentLruCache<TenantSqlKey, TenantSqlResult> tenantResults = new ConcurrentLruCache<>(WHITE_SQL_MAX_SIZE);
     private final ConcurrentLruCache<String, MergedSqlResult> mergedSqlCache = new ConcurrentLruCache<>(MERGED_SQL_CACHE_SIZE);
 
     protected final WallConfig config;
@@ -81,12 +94,22 @@ public abstract class WallProvider {
             0.75f,
             1);
 
+    // tables and functions which did not fit into tableStats / functionStats, counted approximately
+    private static final int OVERFLOW_SKETCH_WIDTH = 1024;
+    private static final int OVERFLOW_TOP_SIZE = 32;
+    private volatile HeavyHitters tableStatOverflow;
+    private volatile HeavyHitters functionStatOverflow;
+
     public final WallDenyStat commentDeniedStat = new WallDenyStat();
 
     protected DbType dbType;
     protected final AtomicLong checkCount = new AtomicLong();
     protected final AtomicLong hardCheckCount = new AtomicLong();
+    protected final AtomicLong tokenAcceptCount = new AtomicLong();
+    protected final AtomicLong tokenRejectCount = new AtomicLong();
+    protected final AtomicLong cachedCheckCount = new AtomicLong();
     protected final AtomicLong whiteListHitCount = new AtomicLong();
+    protected final AtomicLong whiteListShapeHitCount = new AtomicLong();
     protected final AtomicLong blackListHitCount = new AtomicLong();
     protected final AtomicLong syntaxErrorCount = new AtomicLong();
     protected final AtomicLong violationCount = new AtomicLong();
@@ -94,6 +117,7 @@ public abstract class WallProvider {
 
     public WallProvider(WallConfig config) {
         this.config = config;
+        configListSize();
     }
 
     public WallProvider(WallConfig config, String dbType) {
@@ -103,6 +127,45 @@ public abstract class WallProvider {
     public WallProvider(WallConfig config, DbType dbType) {
         this.config = config;
         this.dbType = dbType;
+        configListSize();
+    }
+
+    private void configListSize() {
+        if (config == null) {
+            return;
+        }
+
+        if (config.getWhiteListMaxSize() != WHITE_SQL_MAX_SIZE) {
+            setWhiteListMaxSize(config.getWhiteListMaxSize());
+        }
+        if (config.getBlackListMaxSize() != BLACK_SQL_MAX_SIZE) {
+            setBlackListMaxSize(config.getBlackListMaxSize());
+        }
+    }
+
+    public int getWhiteListMaxSize() {
+        return whiteList.capacity();
+    }
+
+    /**
+     * resize the white list, the cached entries are dropped
+     */
+    public void setWhiteListMaxSize(int maxSize) {
+        this.whiteList = new ConcurrentLruCache<>(maxSize);
+        this.whiteShapeList = new ConcurrentLruCache<>(maxSize);
+        this.tenantLookups = new ConcurrentLruCache<>(maxSize);
+        this.tenantResults = new ConcurrentLruCache<>(maxSize);
+    }
+
+    public int getBlackListMaxSize() {
+        return blackList.capacity();
+    }
+
+    /**
+     * resize the black list, the cached entries are dropped
+     */
+    public void setBlackListMaxSize(int maxSize) {
+        this.blackList = new ConcurrentLruCache<>(maxSize);
     }
 
     public String getName() {
@@ -120,13 +183,19 @@ public abstract class WallProvider {
     public void reset() {
         this.checkCount.set(0);
         this.hardCheckCount.set(0);
+        this.tokenAcceptCount.set(0);
+        this.tokenRejectCount.set(0);
+        this.cachedCheckCount.set(0);
         this.violationCount.set(0);
         this.whiteListHitCount.set(0);
+        this.whiteListShapeHitCount.set(0);
         this.blackListHitCount.set(0);
         this.clearWhiteList();
         this.clearBlackList();
         this.functionStats.clear();
         this.tableStats.clear();
+        this.tableStatOverflow = null;
+        this.functionStatOverflow = null;
     }
 
     public ConcurrentMap<String, WallTableStat> getTableStats() {
@@ -153,6 +222,10 @@ public abstract class WallProvider {
             lowerCaseName = lowerCaseName.substring(1, lowerCaseName.length() - 1);
         }
 
+        if (config.isMergeShardTableStat()) {
+            lowerCaseName = mergeShardName(lowerCaseName);
+        }
+
         return getTableStatWithLowerName(lowerCaseName);
     }
 
@@ -209,7 +282,17 @@ public abstract class WallProvider {
     public WallTableStat getTableStatWithLowerName(String lowerCaseName) {
         WallTableStat stat = tableStats.get(lowerCaseName);
         if (stat == null) {
-            if (tableStats.size() > 10000) {
+            if (tableStats.size() >= config.getTableStatMaxSize()) {
+                HeavyHitters overflow = tableStatOverflow;
+                if (overflow == null) {
+                    synchronized (this) {
+                        overflow = tableStatOverflow;
+                        if (overflow == null) {
+                            tableStatOverflow = overflow = new HeavyHitters(OVERFLOW_SKETCH_WIDTH, OVERFLOW_TOP_SIZE);
+                        }
+                    }
+                }
+                overflow.add(lowerCaseName);
                 return null;
             }
 
@@ -219,6 +302,34 @@ public abstract class WallProvider {
         return stat;
     }
 
+    /**
+     * replaces the numeric shard suffix of every part of the name, order_0001 -> order_*,
+     * db_03.order_0001 -> db_*.order_*
+     */
+    static String mergeShardName(String name) {
+        StringBuilder buf = null;
+        int end = name.length();
+        for (int i = name.length() - 1; i >= -1; --i) {
+            if (i >= 0 && name.charAt(i) != '.') {
+                continue;
+            }
+
+            int digitStart = end;
+            while (digitStart > i + 1 && Character.isDigit(name.charAt(digitStart - 1))) {
+                digitStart--;
+            }
+            if (digitStart < end && digitStart > i + 2 && name.charAt(digitStart - 1) == '_') {
+                if (buf == null) {
+                    buf = new StringBuilder(name);
+                }
+                buf.replace(digitStart, end, "*");
+            }
+            end = i;
+        }
+
+        return buf == null ? name : buf.toString();
+    }
+
     public WallFunctionStat getFunctionStat(String functionName) {
         String lowerCaseName = functionName.toLowerCase();
         return getFunctionStatWithLowerName(lowerCaseName);
@@ -227,7 +338,17 @@ public abstract class WallProvider {
     public WallFunctionStat getFunctionStatWithLowerName(String lowerCaseName) {
         WallFunctionStat stat = functionStats.get(lowerCaseName);
         if (stat == null) {
-            if (functionStats.size() > 10000) {
+            if (functionStats.size() >= config.getFunctionStatMaxSize()) {
+                HeavyHitters overflow = functionStatOverflow;
+                if (overflow == null) {
+                    synchronized (this) {
+                        overflow = functionStatOverflow;
+                        if (overflow == null) {
+                            functionStatOverflow = overflow = new HeavyHitters(OVERFLOW_SKETCH_WIDTH, OVERFLOW_TOP_SIZE);
+                        }
+                    }
+                }
+                overflow.add(lowerCaseName);
                 return null;
             }
 
@@ -243,12 +364,17 @@ public abstract class WallProvider {
 
     public WallSqlStat addWhiteSql(String sql, Map<String, WallSqlTableStat> tableStats,
                                    Map<String, WallSqlFunctionStat> functionStats, boolean syntaxError) {
+        return addWhiteSql(sql, whiteListEnable ? getShape(sql) : 0L, tableStats, functionStats, syntaxError);
+    }
+
+    private WallSqlStat addWhiteSql(String sql, long shape, Map<String, WallSqlTableStat> tableStats,
+                                    Map<String, WallSqlFunctionStat> functionStats, boolean syntaxError) {
         if (!whiteListEnable) {
             WallSqlStat stat = new WallSqlStat(tableStats, functionStats, syntaxError);
             return stat;
         }
 
-        String mergedSql = getMergedSqlNullableIfParameterizeError(sql);
+        String mergedSql = SqlTextStore.intern(getMergedSqlNullableIfParameterizeError(sql));
         if (mergedSql == null) {
             WallSqlStat stat = new WallSqlStat(tableStats, functionStats, syntaxError);
             stat.incrementAndGetExecuteCount();
@@ -257,9 +383,13 @@ public abstract class WallProvider {
 
         WallSqlStat wallSqlStat = whiteList.computeIfAbsent(mergedSql, key -> {
             WallSqlStat newStat = new WallSqlStat(tableStats, functionStats, syntaxError);
-            newStat.setSample(sql);
+            newStat.setSample(SqlTextStore.intern(sql));
+            newStat.setMergedSql(mergedSql);
             return newStat;
         });
+        if (shape != 0) {
+            whiteShapeList.computeIfAbsent(shape, key -> wallSqlStat);
+        }
 
         wallSqlStat.incrementAndGetExecuteCount();
         return wallSqlStat;
@@ -272,11 +402,13 @@ public abstract class WallProvider {
             return new WallSqlStat(tableStats, functionStats, violations, syntaxError);
         }
 
-        String mergedSql = getMergedSqlNullableIfParameterizeError(sql);
-        WallSqlStat wallSqlStat = blackList.computeIfAbsent(Utils.getIfNull(mergedSql, sql),
+        String sample = SqlTextStore.intern(sql);
+        String mergedSql = SqlTextStore.intern(getMergedSqlNullableIfParameterizeError(sql));
+        WallSqlStat wallSqlStat = blackList.computeIfAbsent(Utils.getIfNull(mergedSql, sample),
                 key -> {
                     WallSqlStat wallStat = new WallSqlStat(tableStats, functionStats, violations, syntaxError);
-                    wallStat.setSample(sql);
+                    wallStat.setSample(sample);
+                    wallStat.setMergedSql(mergedSql);
                     return wallStat;
                 });
 
@@ -289,6 +421,19 @@ public abstract class WallProvider {
         if (mergedSqlResult != null) {
             return mergedSqlResult.mergedSql;
         }
+
+        // parameterized already by another filter, see com.alibaba.druid.proxy.jdbc.SqlAnalysis
+        WallContext context = WallContext.current();
+        if (context != null) {
+            String mergedSql = context.getMergedSql(sql);
+            if (mergedSql != null) {
+                if (sql.length() < MAX_SQL_LENGTH) {
+                    mergedSqlCache.computeIfAbsent(sql, key -> MergedSqlResult.success(mergedSql));
+                }
+                return mergedSql;
+            }
+        }
+
         try {
             String mergedSql = ParameterizedOutputVisitorUtils.parameterize(sql, dbType);
             if (sql.length() < MAX_SQL_LENGTH) {
@@ -302,6 +447,22 @@ public abstract class WallProvider {
         }
     }
 
+    /**
+     * strict {@link SQLFingerprint} of the sql, 0 if it can not be computed
+     */
+    private long getShape(String sql) {
+        if (sql.length() >= MAX_SQL_LENGTH) {
+            return 0L;
+        }
+
+        try {
+            return SQLFingerprint.fingerprint(sql, dbType, true);
+        } catch (Exception ex) {
+            // skip
+            return 0L;
+        }
+    }
+
     public Set<String> getWhiteList() {
         Set<String> hashSet = new HashSet<>();
         Set<String> whiteListKeys = whiteList.keys();
@@ -337,16 +498,192 @@ public abstract class WallProvider {
 
     public void clearCache() {
         whiteList.clear();
+        whiteShapeList.clear();
+        tenantLookups.clear();
+        tenantResults.clear();
         blackList.clear();
         mergedSqlCache.clear();
     }
 
     public void clearWhiteList() {
         whiteList.clear();
+        whiteShapeList.clear();
+        tenantLookups.clear();
+        tenantResults.clear();
     }
 
     public void clearBlackList() {
         blackList.clear();
+        tenantLookups.clear();
+        tenantResults.clear();
+    }
+
+    /**
+     * Writes the white list as json: the parameterized sql, its sample, table and function stats,
+     * together with the dbType and {@link WallConfig#hashCode64()}. A restarted instance loads it with
+     * {@link #importWhiteList(Reader)} instead of parsing every distinct sql again.
+     */
+    public int exportWhiteList(Writer writer) throws IOException {
+        final List<Object> items = new ArrayList<Object>();
+        whiteList.forEach((mergedSql, sqlStat) -> {
+            Map<String, Object> item = new LinkedHashMap<String, Object>();
+            item.put("sql", mergedSql);
+            item.put("sample", sqlStat.getSample());
+            if (sqlStat.isSyntaxError()) {
+                item.put("syntaxError", true);
+            }
+
+            Map<String, WallSqlTableStat> tableStats = sqlStat.getTableStats();
+            if (tableStats != null && !tableStats.isEmpty()) {
+                Map<String, Object> tables = new LinkedHashMap<String, Object>();
+                for (Map.Entry<String, WallSqlTableStat> entry : tableStats.entrySet()) {
+                    tables.put(entry.getKey(), toMap(entry.getValue()));
+                }
+                item.put("tables", tables);
+            }
+
+            Map<String, WallSqlFunctionStat> functionStats = sqlStat.getFunctionStats();
+            if (functionStats != null && !functionStats.isEmpty()) {
+                Map<String, Object> functions = new LinkedHashMap<String, Object>();
+                for (Map.Entry<String, WallSqlFunctionStat> entry : functionStats.entrySet()) {
+                    functions.put(entry.getKey(), entry.getValue().getInvokeCount());
+                }
+                item.put("functions", functions);
+            }
+            items.add(item);
+        });
+
+        Map<String, Object> snapshot = new LinkedHashMap<String, Object>();
+        snapshot.put("version", WHITE_LIST_SNAPSHOT_VERSION);
+        snapshot.put("dbType", dbType == null ? null : dbType.name());
+        snapshot.put("configHash", Long.toHexString(config.hashCode64()));
+        snapshot.put("whiteList", items);
+
+        writer.write(JSONUtils.toJSONString(snapshot));
+        writer.flush();
+        return items.size();
+    }
+
+    /**
+     * Loads a white list written by {@link #exportWhiteList(Writer)}. Nothing is loaded when the
+     * snapshot was written by another dbType or another config, the entries were checked with other
+     * rules then.
+     *
+     * @return the count of sql added to the white list
+     */
+    public int importWhiteList(Reader reader) throws IOException {
+        if (!whiteListEnable) {
+            return 0;
+        }
+
+        StringBuilder buf = new StringBuilder();
+        char[] chars = new char[8192];
+        for (int len; (len = reader.read(chars)) != -1; ) {
+            buf.append(chars, 0, len);
+        }
+
+        Object parsed = JSONUtils.parse(buf.toString());
+        if (!(parsed instanceof Map)) {
+            return 0;
+        }
+
+        Map<?, ?> snapshot = (Map<?, ?>) parsed;
+        Object version = snapshot.get("version");
+        if (!(version instanceof Number) || ((Number) version).intValue() != WHITE_LIST_SNAPSHOT_VERSION
+                || !String.valueOf(dbType == null ? null : dbType.name()).equals(String.valueOf(snapshot.get("dbType")))
+                || !Long.toHexString(config.hashCode64()).equals(snapshot.get("configHash"))) {
+            return 0;
+        }
+
+        Object whiteList = snapshot.get("whiteList");
+        if (!(whiteList instanceof List)) {
+            return 0;
+        }
+
+        int count = 0;
+        for (Object object : (List<?>) whiteList) {
+            Map<?, ?> item = (Map<?, ?>) object;
+            final String mergedSql = (String) item.get("sql");
+            final String sample = (String) item.get("sample");
+            if (mergedSql == null || sample == null || sample.length() >= MAX_SQL_LENGTH) {
+                continue;
+            }
+
+            final Map<String, WallSqlTableStat> tableStats = new HashMap<String, WallSqlTableStat>();
+            Object tables = item.get("tables");
+            if (tables instanceof Map) {
+                for (Map.Entry<?, ?> entry : ((Map<?, ?>) tables).entrySet()) {
+                    tableStats.put((String) entry.getKey(), toSqlTableStat((Map<?, ?>) entry.getValue()));
+                }
+            }
+
+            final Map<String, WallSqlFunctionStat> functionStats = new HashMap<String, WallSqlFunctionStat>();
+            Object functions = item.get("functions");
+            if (functions instanceof Map) {
+                for (Map.Entry<?, ?> entry : ((Map<?, ?>) functions).entrySet()) {
+                    WallSqlFunctionStat functionStat = new WallSqlFunctionStat();
+                    functionStat.addInvokeCount(((Number) entry.getValue()).intValue());
+                    functionStats.put((String) entry.getKey(), functionStat);
+                }
+            }
+
+            final boolean syntaxError = Boolean.TRUE.equals(item.get("syntaxError"));
+            WallSqlStat sqlStat = this.whiteList.computeIfAbsent(mergedSql, key -> {
+                WallSqlStat newStat = new WallSqlStat(tableStats, functionStats, syntaxError);
+                newStat.setSample(sample);
+                newStat.setMergedSql(mergedSql);
+                return newStat;
+            });
+            long shape = getShape(sample);
+            if (shape != 0) {
+                whiteShapeList.computeIfAbsent(shape, key -> sqlStat);
+            }
+            count++;
+        }
+        return count;
+    }
+
+    private static Map<String, Object> toMap(WallSqlTableStat stat) {
+        Map<String, Object> map = new LinkedHashMap<String, Object>();
+        putIfNotZero(map, "select", stat.getSelectCount());
+        putIfNotZero(map, "selectInto", stat.getSelectIntoCount());
+        putIfNotZero(map, "insert", stat.getInsertCount());
+        putIfNotZero(map, "update", stat.getUpdateCount());
+        putIfNotZero(map, "delete", stat.getDeleteCount());
+        putIfNotZero(map, "truncate", stat.getTruncateCount());
+        putIfNotZero(map, "create", stat.getCreateCount());
+        putIfNotZero(map, "alter", stat.getAlterCount());
+        putIfNotZero(map, "drop", stat.getDropCount());
+        putIfNotZero(map, "replace", stat.getReplaceCount());
+        putIfNotZero(map, "show", stat.getShowCount());
+        return map;
+    }
+
+    private static void putIfNotZero(Map<String, Object> map, String key, int value) {
+        if (value != 0) {
+            map.put(key, value);
+        }
+    }
+
+    private static WallSqlTableStat toSqlTableStat(Map<?, ?> map) {
+        WallSqlTableStat stat = new WallSqlTableStat();
+        stat.addSelectCount(getInt(map, "select"));
+        stat.addSelectIntoCount(getInt(map, "selectInto"));
+        stat.addInsertCount(getInt(map, "insert"));
+        stat.addUpdateCount(getInt(map, "update"));
+        stat.addDeleteCount(getInt(map, "delete"));
+        stat.addTruncateCount(getInt(map, "truncate"));
+        stat.addCreateCount(getInt(map, "create"));
+        stat.addAlterCount(getInt(map, "alter"));
+        stat.addDropCount(getInt(map, "drop"));
+        stat.addReplaceCount(getInt(map, "replace"));
+        stat.addShowCount(getInt(map, "show"));
+        return stat;
+    }
+
+    private static int getInt(Map<?, ?> map, String key) {
+        Object value = map.get(key);
+        return value instanceof Number ? ((Number) value).intValue() : 0;
     }
 
     public WallSqlStat getWhiteSql(String sql) {
@@ -394,9 +731,7 @@ public abstract class WallProvider {
             return true;
         }
 
-        functionName = functionName.toLowerCase();
-
-        return !getConfig().getDenyFunctions().contains(functionName);
+        return !config.denyFunctions.containsHash(WallVisitorUtils.formHash(functionName));
 
     }
 
@@ -409,8 +744,7 @@ public abstract class WallProvider {
             return true;
         }
 
-        schemaName = schemaName.toLowerCase();
-        return !getConfig().getDenySchemas().contains(schemaName);
+        return !config.denySchemas.containsHash(WallVisitorUtils.formHash(schemaName));
 
     }
 
@@ -419,8 +753,7 @@ public abstract class WallProvider {
             return true;
         }
 
-        tableName = WallVisitorUtils.form(tableName);
-        return !getConfig().getDenyTables().contains(tableName);
+        return !config.denyTables.containsHash(WallVisitorUtils.formHash(tableName));
 
     }
 
@@ -463,16 +796,42 @@ public abstract class WallProvider {
         }
 
         // first step, check whiteList
-        boolean mulltiTenant = config.getTenantTablePattern() != null && config.getTenantTablePattern().length() > 0;
+        boolean mulltiTenant = (config.getTenantTablePattern() != null && config.getTenantTablePattern().length() > 0)
+                || config.getTenantCallBack() != null;
+        long shape = 0;
         if (!mulltiTenant) {
-            WallCheckResult checkResult = checkWhiteAndBlackList(sql);
+            WallCheckResult checkResult = checkWhiteSqlText(sql);
+            if (checkResult == null) {
+                // lexed once here, the shape is reused when the sql is added to the white list
+                if (whiteListEnable && config.getUpdateCheckHandler() == null) {
+                    shape = getShape(sql);
+                }
+                checkResult = checkWhiteAndBlackList(sql, shape);
+            }
             if (checkResult != null) {
                 checkResult.setSql(sql);
                 return checkResult;
             }
+        } else {
+            WallCheckResult checkResult = checkTenantCache(sql);
+            if (checkResult != null) {
+                return checkResult;
+            }
+            if (context != null) {
+                context.clearTenantValues();
+            }
         }
 
         hardCheckCount.incrementAndGet();
+
+        if (config.isTokenPreCheck() && !mulltiTenant
+                && config.getSelectLimit() <= 0 && config.getUpdateCheckHandler() == null) {
+            WallCheckResult checkResult = tokenPreCheck(sql, shape, context);
+            if (checkResult != null) {
+                return checkResult;
+            }
+        }
+
         final List<Violation> violations = new ArrayList<Violation>();
         List<SQLStatement> statementList = new ArrayList<SQLStatement>();
         boolean syntaxError = false;
@@ -584,7 +943,7 @@ public abstract class WallProvider {
                 }
 
                 if (!selectLimit) {
-                    sqlStat = addWhiteSql(sql, tableStat, context.getFunctionStats(), syntaxError);
+                    sqlStat = addWhiteSql(sql, shape, tableStat, context.getFunctionStats(), syntaxError);
                 }
             }
         }
@@ -619,31 +978,134 @@ public abstract class WallProvider {
 
         result.setUpdateCheckItems(visitor.getUpdateCheckItems());
 
+        if (mulltiTenant && sqlStat != null && !updateCheckHandlerEnable) {
+            putTenantCache(sql, resultSql, sqlStat, context.getTenantValues());
+        }
+
         return result;
     }
 
-    private WallCheckResult checkWhiteAndBlackList(String sql) {
+    /**
+     * In multi-tenant mode the checked sql is rewritten with the tenant values, so the result is cached
+     * by the sql and the tenant values the rewrite used. On a later check the same tenant lookups are
+     * resolved again, through {@link WallConfig.TenantCallBack#getTenantValue} or
+     * {@link #getTenantValue()}, and the cached result is reused when they give the same values. This
+     * assumes {@link WallConfig.TenantCallBack#getTenantColumn} depends on the table only.
+     */
+    private WallCheckResult checkTenantCache(String sql) {
+        if (config.getUpdateCheckHandler() != null || sql.length() >= MAX_SQL_LENGTH) {
+            return null;
+        }
+
+        WallContext.TenantValue[] lookups = tenantLookups.get(sql);
+        if (lookups == null) {
+            return null;
+        }
+
+        Object[] values = new Object[lookups.length];
+        WallConfig.TenantCallBack callBack = config.getTenantCallBack();
+        for (int i = 0; i < lookups.length; ++i) {
+            WallContext.TenantValue lookup = lookups[i];
+            if (callBack != null) {
+                setTenantValue(callBack.getTenantValue(lookup.getStatementType(), lookup.getTableName()));
+            }
+            values[i] = getTenantValue();
+        }
+
+        TenantSqlResult tenantResult = tenantResults.get(new TenantSqlKey(sql, values));
+        if (tenantResult == null) {
+            return null;
+        }
+
+        WallSqlStat sqlStat = tenantResult.sqlStat;
+        boolean violation = !sqlStat.getViolations().isEmpty();
+        if (violation) {
+            blackListHitCount.incrementAndGet();
+            violationCount.incrementAndGet();
+        } else {
+            whiteListHitCount.incrementAndGet();
+        }
+        if (sqlStat.isSyntaxError()) {
+            syntaxErrorCount.incrementAndGet();
+        }
+        sqlStat.incrementAndGetExecuteCount();
+        recordStats(sqlStat.getTableStats(), sqlStat.getFunctionStats());
+
+        WallContext context = WallContext.current();
+        if (context != null && !violation) {
+            context.setSqlStat(sqlStat);
+        }
+
+        WallCheckResult checkResult = new WallCheckResult(sqlStat);
+        checkResult.setSql(tenantResult.sql);
+        return checkResult;
+    }
+
+    private void putTenantCache(String sql, String resultSql, WallSqlStat sqlStat,
+                                List<WallContext.TenantValue> tenantValues) {
+        boolean violation = !sqlStat.getViolations().isEmpty();
+        if (violation ? !blackListEnable : !whiteListEnable) {
+            return;
+        }
+
+        int size = tenantValues == null ? 0 : tenantValues.size();
+        WallContext.TenantValue[] lookups = new WallContext.TenantValue[size];
+        Object[] values = new Object[size];
+        for (int i = 0; i < size; ++i) {
+            WallContext.TenantValue tenantValue = tenantValues.get(i);
+            lookups[i] = new WallContext.TenantValue(tenantValue.getStatementType(), tenantValue.getTableName(), null);
+            values[i] = tenantValue.getValue();
+        }
+
+        tenantLookups.computeIfAbsent(sql, key -> lookups);
+        tenantResults.computeIfAbsent(new TenantSqlKey(sql, values), key -> new TenantSqlResult(resultSql, sqlStat));
+    }
+
+    /**
+     * @return the white list entry of a sql text already seen, null when the text is unknown
+     */
+    private WallCheckResult checkWhiteSqlText(String sql) {
+        if (!whiteListEnable || config.getUpdateCheckHandler() != null) {
+            return null;
+        }
+
+        MergedSqlResult mergedSqlResult = mergedSqlCache.get(sql);
+        if (mergedSqlResult == null) {
+            return null;
+        }
+
+        WallSqlStat sqlStat = whiteList.get(Utils.getIfNull(mergedSqlResult.mergedSql, sql));
+        return sqlStat != null ? whiteListHit(sqlStat) : null;
+    }
+
+    private WallCheckResult checkWhiteAndBlackList(String sql, long shape) {
         if (config.getUpdateCheckHandler() != null) {
             return null;
         }
 
-        // check white list first
+        // check white list: by shape without parsing, then by the parameterized sql
         if (whiteListEnable) {
-            WallSqlStat sqlStat = getWhiteSql(sql);
-            if (sqlStat != null) {
-                whiteListHitCount.incrementAndGet();
-                sqlStat.incrementAndGetExecuteCount();
-
-                if (sqlStat.isSyntaxError()) {
-                    syntaxErrorCount.incrementAndGet();
+            WallSqlStat sqlStat = null;
+            if (shape != 0) {
+                sqlStat = whiteShapeList.get(shape);
+                if (sqlStat != null) {
+                    whiteListShapeHitCount.incrementAndGet();
+                    // the same text is answered by the exact lookup next time
+                    String mergedSql = sqlStat.getMergedSql();
+                    if (mergedSql != null && sql.length() < MAX_SQL_LENGTH) {
+                        mergedSqlCache.computeIfAbsent(sql, key -> MergedSqlResult.success(mergedSql));
+                    }
                 }
-
-                recordStats(sqlStat.getTableStats(), sqlStat.getFunctionStats());
-                WallContext context = WallContext.current();
-                if (context != null) {
-                    context.setSqlStat(sqlStat);
+            }
+            if (sqlStat == null) {
+                WallSqlStat mergedSqlStat = getWhiteSql(sql);
+                if (mergedSqlStat != null && shape != 0) {
+                    whiteShapeList.computeIfAbsent(shape, key -> mergedSqlStat);
                 }
-                return new WallCheckResult(sqlStat);
+                sqlStat = mergedSqlStat;
+            }
+            if (sqlStat != null) {
+                return whiteListHit(sqlStat);
             }
         }
 
@@ -668,6 +1130,82 @@ public abstract class WallProvider {
         return null;
     }
 
+    private WallCheckResult whiteListHit(WallSqlStat sqlStat) {
+        whiteListHitCount.incrementAndGet();
+        sqlStat.incrementAndGetExecuteCount();
+
+        if (sqlStat.isSyntaxError()) {
+            syntaxErrorCount.incrementAndGet();
+        }
+
+        recordStats(sqlStat.getTableStats(), sqlStat.getFunctionStats());
+        WallContext context = WallContext.current();
+        if (context != null) {
+            context.setSqlStat(sqlStat);
+        }
+        return new WallCheckResult(sqlStat);
+    }
+
+    /**
+     * @return null if the sql has to be parsed
+     */
+    private WallCheckResult tokenPreCheck(String sql, long shape, WallContext context) {
+        List<String> tables = new ArrayList<String>(1);
+        int state;
+        try {
+            state = new WallTokenPreCheck(config, dbType, createParser(sql).getLexer(), tables).check(sql);
+        } catch (Exception e) {
+            return null;
+        }
+
+        WallSqlStat sqlStat = null;
+        WallCheckResult result;
+        if (state == WallTokenPreCheck.ACCEPT) {
+            tokenAcceptCount.incrementAndGet();
+
+            for (String table : tables) {
+                WallSqlTableStat tableStat = context.getTableStat(table);
+                if (tableStat != null) {
+                    tableStat.incrementSelectCount();
+                }
+            }
+
+            if (sql.length() < MAX_SQL_LENGTH) {
+                sqlStat = addWhiteSql(sql, shape, context.getTableStats(), context.getFunctionStats(), false);
+            }
+            recordStats(context.getTableStats(), context.getFunctionStats());
+
+            if (sqlStat != null) {
+                context.setSqlStat(sqlStat);
+                result = new WallCheckResult(sqlStat);
+            } else {
+                result = new WallCheckResult(null, Collections.<Violation>emptyList(), context.getTableStats(),
+                        context.getFunctionStats(), Collections.<SQLStatement>emptyList(), false);
+            }
+        } else if (state == WallTokenPreCheck.REJECT) {
+            tokenRejectCount.incrementAndGet();
+            violationCount.incrementAndGet();
+
+            List<Violation> violations = new ArrayList<Violation>(1);
+            violations.add(new IllegalSQLObjectViolation(ErrorCode.MULTI_STATEMENT, "multi-statement not allow", sql));
+            if (sql.length() < MAX_SQL_LENGTH) {
+                sqlStat = addBlackSql(sql, null, null, violations, false);
+            }
+
+            if (sqlStat != null) {
+                context.setSqlStat(sqlStat);
+                result = new WallCheckResult(sqlStat);
+            } else {
+                result = new WallCheckResult(null, violations, null, null, Collections.<SQLStatement>emptyList(), false);
+            }
+        } else {
+            return null;
+        }
+
+        result.setSql(sql);
+        return result;
+    }
+
     void recordStats(Map<String, WallSqlTableStat> tableStats, Map<String, WallSqlFunctionStat> functionStats) {
         if (tableStats != null) {
             for (Map.Entry<String, WallSqlTableStat> entry : tableStats.entrySet()) {
@@ -724,6 +1262,10 @@ public abstract class WallProvider {
         return whiteListHitCount.get();
     }
 
+    public long getWhiteListShapeHitCount() {
+        return whiteListShapeHitCount.get();
+    }
+
     public long getBlackListHitCount() {
         return blackListHitCount.get();
     }
@@ -744,6 +1286,34 @@ public abstract class WallProvider {
         return hardCheckCount.get();
     }
 
+    /**
+     * number of hard checks accepted by {@link WallConfig#isTokenPreCheck()} without parsing
+     */
+    public long getTokenAcceptCount() {
+        return tokenAcceptCount.get();
+    }
+
+    public long getTokenRejectCount() {
+        return tokenRejectCount.get();
+    }
+
+    /**
+     * number of executions of pooled prepared statements which reused the result of their first check
+     */
+    public long getCachedCheckCount() {
+        return cachedCheckCount.get();
+    }
+
+    /**
+     * accounts an execution whose check result was kept on a pooled prepared statement, the sql is
+     * not checked again but its execute count and table stats move as if it was.
+     */
+    public void addCachedCheck(WallSqlStat sqlStat) {
+        cachedCheckCount.incrementAndGet();
+        sqlStat.incrementAndGetExecuteCount();
+        recordStats(sqlStat.getTableStats(), sqlStat.getFunctionStats());
+    }
+
     public long getViolationEffectRowCount() {
         return violationEffectRowCount.get();
     }
@@ -797,8 +1367,13 @@ public abstract class WallProvider {
         statValue.setViolationEffectRowCount(get(violationEffectRowCount, reset));
         statValue.setBlackListHitCount(get(blackListHitCount, reset));
         statValue.setWhiteListHitCount(get(whiteListHitCount, reset));
+        statValue.setWhiteListShapeHitCount(get(whiteListShapeHitCount, reset));
         statValue.setSyntaxErrorCount(get(syntaxErrorCount, reset));
 
+        // on reset, once a map is full, tables and functions idle for the whole period are dropped to make
+        // room. A stat hit after the reset is kept, below the bound nothing is dropped, so a thread still
+        // holding a dropped stat is rare and loses at most the increments of one period
+        boolean evictTables = reset && tableStats.size() >= config.getTableStatMaxSize();
         for (Map.Entry<String, WallTableStat> entry : this.tableStats.entrySet()) {
             String tableName = entry.getKey();
             WallTableStat tableStat = entry.getValue();
@@ -806,6 +1381,9 @@ public abstract class WallProvider {
             WallTableStatValue tableStatValue = tableStat.getStatValue(reset);
 
             if (tableStatValue.getTotalExecuteCount() == 0) {
+                if (evictTables && tableStat.getStatValue(false).getTotalExecuteCount() == 0) {
+                    tableStats.remove(tableName, tableStat);
+                }
                 continue;
             }
 
@@ -814,6 +1392,7 @@ public abstract class WallProvider {
             statValue.getTables().add(tableStatValue);
         }
 
+        boolean evictFunctions = reset && functionStats.size() >= config.getFunctionStatMaxSize();
         for (Map.Entry<String, WallFunctionStat> entry : this.functionStats.entrySet()) {
             String functionName = entry.getKey();
             WallFunctionStat functionStat = entry.getValue();
@@ -821,6 +1400,9 @@ public abstract class WallProvider {
             WallFunctionStatValue functionStatValue = functionStat.getStatValue(reset);
 
             if (functionStatValue.getInvokeCount() == 0) {
+                if (evictFunctions && functionStat.getInvokeCount() == 0) {
+                    functionStats.remove(functionName, functionStat);
+                }
                 continue;
             }
             functionStatValue.setName(functionName);
@@ -828,6 +1410,24 @@ public abstract class WallProvider {
             statValue.getFunctions().add(functionStatValue);
         }
 
+        HeavyHitters tableOverflow = this.tableStatOverflow;
+        if (tableOverflow != null) {
+            statValue.setTableOverflowCount(tableOverflow.getTotal());
+            statValue.getOverflowTables().addAll(tableOverflow.getTop());
+            if (reset) {
+                tableOverflow.reset();
+            }
+        }
+
+        HeavyHitters functionOverflow = this.functionStatOverflow;
+        if (functionOverflow != null) {
+            statValue.setFunctionOverflowCount(functionOverflow.getTotal());
+            statValue.getOverflowFunctions().addAll(functionOverflow.getTop());
+            if (reset) {
+                functionOverflow.reset();
+            }
+        }
+
         whiteList.forEach((sql, sqlStat) -> {
             WallSqlStatValue sqlStatValue = sqlStat.getStatValue(reset);
 
@@ -881,6 +1481,45 @@ public abstract class WallProvider {
         this.blackListEnable = blackListEnable;
     }
 
+    private static final class TenantSqlKey {
+        final String sql;
+        final Object[] values;
+        final int hashCode;
+
+        TenantSqlKey(String sql, Object[] values) {
+            this.sql = sql;
+            this.values = values;
+            this.hashCode = sql.hashCode() * 31 + Arrays.hashCode(values);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof TenantSqlKey)) {
+                return false;
+            }
+            TenantSqlKey other = (TenantSqlKey) o;
+            return hashCode == other.hashCode && sql.equals(other.sql) && Arrays.equals(values, other.values);
+        }
+    }
+
+    private static final class TenantSqlResult {
+        final String sql;
+        final WallSqlStat sqlStat;
+
+        TenantSqlResult(String sql, WallSqlStat sqlStat) {
+            this.sql = sql;
+            this.sqlStat = sqlStat;
+        }
+    }
+
     private static class MergedSqlResult {
         public static final MergedSqlResult FAILED = new MergedSqlResult(null);
 
@@ -38,6 +38,8 @@ public class WallProviderStatValue {
     @MField(aggregate = AggregateType.Sum)
     private long whiteListHitCount;
     @MField(aggregate = AggregateType.Sum)
+    private long whiteListShapeHitCount;
+    @MField(aggregate = AggregateType.Sum)
     private long blackListHitCount;
     @MField(aggregate = AggregateType.Sum)
     private long syntaxErrorCount;
@@ -50,6 +52,11 @@ public class WallProviderStatValue {
     private final List<WallSqlStatValue> whiteList = new ArrayList<WallSqlStatValue>();
     private final List<WallSqlStatValue> blackList = new ArrayList<WallSqlStatValue>();
 
+    private long tableOverflowCount;
+    private long functionOverflowCount;
+    private final List<Map.Entry<String, Long>> overflowTables = new ArrayList<Map.Entry<String, Long>>();
+    private final List<Map.Entry<String, Long>> overflowFunctions = new ArrayList<Map.Entry<String, Long>>();
+
     public WallProviderStatValue() {
     }
 
@@ -93,6 +100,36 @@ public class WallProviderStatValue {
         this.whiteListHitCount = whiteListHitCount;
     }
 
+    /**
+     * white list hits found by the shape of the sql, without parsing
+     */
+    public long getWhiteListShapeHitCount() {
+        return whiteListShapeHitCount;
+    }
+
+    public void setWhiteListShapeHitCount(long whiteListShapeHitCount) {
+        this.whiteListShapeHitCount = whiteListShapeHitCount;
+    }
+
+    public double getWhiteListHitRatio() {
+        return ratio(whiteListHitCount, checkCount);
+    }
+
+    public double getWhiteListShapeHitRatio() {
+        return ratio(whiteListShapeHitCount, checkCount);
+    }
+
+    public double getBlackListHitRatio() {
+        return ratio(blackListHitCount, checkCount);
+    }
+
+    private static double ratio(long count, long total) {
+        if (total == 0) {
+            return 0;
+        }
+        return (double) count / total;
+    }
+
     public long getBlackListHitCount() {
         return blackListHitCount;
     }
@@ -133,6 +170,36 @@ public class WallProviderStatValue {
         return blackList;
     }
 
+    /**
+     * number of table accesses not counted in {@link #getTables()} because the table stat was full
+     */
+    public long getTableOverflowCount() {
+        return tableOverflowCount;
+    }
+
+    public void setTableOverflowCount(long tableOverflowCount) {
+        this.tableOverflowCount = tableOverflowCount;
+    }
+
+    public long getFunctionOverflowCount() {
+        return functionOverflowCount;
+    }
+
+    public void setFunctionOverflowCount(long functionOverflowCount) {
+        this.functionOverflowCount = functionOverflowCount;
+    }
+
+    /**
+     * the most accessed tables among the overflowed ones, with their estimated access count
+     */
+    public List<Map.Entry<String, Long>> getOverflowTables() {
+        return overflowTables;
+    }
+
+    public List<Map.Entry<String, Long>> getOverflowFunctions() {
+        return overflowFunctions;
+    }
+
     public Map<String, Object> toMap() {
         Map<String, Object> info = new LinkedHashMap<String, Object>();
 
@@ -143,6 +210,7 @@ public class WallProviderStatValue {
         info.put("blackListHitCount", this.getBlackListHitCount());
         info.put("blackListSize", this.getBlackList().size());
         info.put("whiteListHitCount", this.getWhiteListHitCount());
+        info.put("whiteListShapeHitCount", this.getWhiteListShapeHitCount());
         info.put("whiteListSize", this.getWhiteList().size());
         info.put("syntaxErrorCount", this.getSyntaxErrorCount());
 
@@ -164,6 +232,16 @@ public class WallProviderStatValue {
             info.put("functions", functions);
         }
 
+        if (tableOverflowCount > 0) {
+            info.put("tableOverflowCount", tableOverflowCount);
+            info.put("overflowTables", toNamedCountList(overflowTables));
+        }
+
+        if (functionOverflowCount > 0) {
+            info.put("functionOverflowCount", functionOverflowCount);
+            info.put("overflowFunctions", toNamedCountList(overflowFunctions));
+        }
+
         {
             List<Map<String, Object>> blackList = new ArrayList<Map<String, Object>>(this.blackList.size());
             for (WallSqlStatValue sqlStatValue : this.blackList) {
@@ -182,4 +260,15 @@ public class WallProviderStatValue {
 
         return info;
     }
+
+    private static List<Map<String, Object>> toNamedCountList(List<Map.Entry<String, Long>> entries) {
+        List<Map<String, Object>> list = new ArrayList<Map<String, Object>>(entries.size());
+        for (Map.Entry<String, Long> entry : entries) {
+            Map<String, Object> item = new LinkedHashMap<String, Object>(2);
+            item.put("name", entry.getKey());
+            item.put("count", entry.getValue());
+            list.add(item);
+        }
+        return list;
+    }
 }
@@ -47,6 +47,8 @@ public class WallSqlStat {
 
     private String sample;
 
+    private String mergedSql;
+
     private long sqlHash;
 
     public WallSqlStat(Map<String, WallSqlTableStat> tableStats, Map<String, WallSqlFunctionStat> functionStats,
@@ -78,6 +80,17 @@ public class WallSqlStat {
         this.sample = sample;
     }
 
+    /**
+     * the parameterized sql this stat is kept for, null if the sql could not be parameterized
+     */
+    public String getMergedSql() {
+        return mergedSql;
+    }
+
+    public void setMergedSql(String mergedSql) {
+        this.mergedSql = mergedSql;
+    }
+
     public long incrementAndGetExecuteCount() {
         return executeCountUpdater.incrementAndGet(this);
     }
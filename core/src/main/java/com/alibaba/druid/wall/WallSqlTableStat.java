@@ -95,7 +95,7 @@ public class WallSqlTableStat {
     }
 
     public void addUpdateCount(int value) {
-        this.deleteCount += value;
+        this.updateCount += value;
     }
 
     public int getDeleteCount() {
@@ -165,4 +165,8 @@ public class WallSqlTableStat {
     public void incrementShowCount() {
         this.showCount++;
     }
+
+    public void addShowCount(int value) {
+        this.showCount += value;
+    }
 }
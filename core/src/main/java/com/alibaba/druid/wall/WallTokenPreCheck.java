@@ -0,0 +1,370 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.druid.wall;
+
+import com.alibaba.druid.DbType;
+import com.alibaba.druid.sql.parser.Lexer;
+import com.alibaba.druid.sql.parser.Token;
+import com.alibaba.druid.wall.spi.WallVisitorUtils;
+
+import java.util.List;
+
+/**
+ * Checks the token stream of a sql before it is parsed, so the common cases can skip the ast.
+ * <p>
+ * {@link #ACCEPT} is only returned for single table selects made of plain names, AND-ed comparisons
+ * of a column with a literal or placeholder, group by, order by and limit: nothing in there can
+ * trigger a violation once the names are not in any deny list. {@link #REJECT} is only returned for
+ * stacked statements (<code>select ...; drop ...</code>) which the parser would reject as a multi
+ * statement or syntax error anyway. Everything else, unions, functions, tautologies, comments and
+ * hints included, is left to the parser ({@link #PARSE}), as whether they are allowed depends on
+ * where they are in the statement.
+ */
+final class WallTokenPreCheck {
+    static final int PARSE = 0;
+    static final int ACCEPT = 1;
+    static final int REJECT = 2;
+
+    private final WallConfig config;
+    private final DbType dbType;
+    private final Lexer lexer;
+    private final List<String> tables;
+
+    /**
+     * @param lexer  the lexer of the dialect, positioned on the first token
+     * @param tables receives the names of the tables read by an accepted select
+     */
+    WallTokenPreCheck(WallConfig config, DbType dbType, Lexer lexer, List<String> tables) {
+        this.config = config;
+        this.dbType = dbType;
+        this.lexer = lexer;
+        this.tables = tables;
+    }
+
+    int check(String sql) {
+        Token first = lexer.token();
+        try {
+            if (first == Token.SELECT && acceptSelect() && lexer.getCommentCount() == 0) {
+                return ACCEPT;
+            }
+        } catch (RuntimeException ex) {
+            return PARSE;
+        }
+
+        tables.clear();
+
+        if (sql.indexOf(';') != -1
+                && !config.isMultiStatementAllow()
+                && config.isStrictSyntaxCheck()
+                && (first == Token.SELECT || first == Token.INSERT || first == Token.UPDATE || first == Token.DELETE)) {
+            try {
+                return stacked() ? REJECT : PARSE;
+            } catch (RuntimeException ex) {
+                return PARSE;
+            }
+        }
+
+        return PARSE;
+    }
+
+    private boolean stacked() {
+        for (; ; ) {
+            Token token = lexer.token();
+            if (token == Token.EOF) {
+                return false;
+            }
+            lexer.nextToken();
+            if (token != Token.SEMI) {
+                continue;
+            }
+
+            while (lexer.token() == Token.SEMI) {
+                lexer.nextToken();
+            }
+            if (lexer.token() != Token.EOF) {
+                return true;
+            }
+        }
+    }
+
+    private boolean acceptSelect() {
+        if (!config.isSelelctAllow()) {
+            return false;
+        }
+
+        lexer.nextToken();
+        if (lexer.token() == Token.DISTINCT) {
+            lexer.nextToken();
+        }
+
+        for (; ; ) {
+            if (lexer.token() == Token.STAR) {
+                if (!config.isSelectAllColumnAllow()) {
+                    return false;
+                }
+                lexer.nextToken();
+            } else {
+                if (!name(true)) {
+                    return false;
+                }
+                if (!alias()) {
+                    return false;
+                }
+            }
+
+            if (lexer.token() != Token.COMMA) {
+                break;
+            }
+            lexer.nextToken();
+        }
+
+        if (lexer.token() != Token.FROM) {
+            return false;
+        }
+        lexer.nextToken();
+
+        if (!identifier()) {
+            return false;
+        }
+        tables.add(lexer.stringVal());
+        lexer.nextToken();
+        if (lexer.token() == Token.DOT || !alias()) {
+            return false;
+        }
+
+        if (lexer.token() == Token.WHERE) {
+            lexer.nextToken();
+            for (; ; ) {
+                if (!condition()) {
+                    return false;
+                }
+                if (lexer.token() != Token.AND) {
+                    break;
+                }
+                lexer.nextToken();
+            }
+        }
+
+        if (lexer.token() == Token.GROUP) {
+            lexer.nextToken();
+            if (!nameList(false)) {
+                return false;
+            }
+        }
+
+        if (lexer.token() == Token.ORDER) {
+            lexer.nextToken();
+            if (!nameList(true)) {
+                return false;
+            }
+        }
+
+        if (lexer.token() == Token.LIMIT) {
+            boolean mysql = dbType == DbType.mysql || dbType == DbType.mariadb;
+            if (!mysql && dbType != DbType.postgresql) {
+                return false;
+            }
+            lexer.nextToken();
+            if (!limitValue()) {
+                return false;
+            }
+            if ((lexer.token() == Token.COMMA && mysql) || lexer.token() == Token.OFFSET) {
+                lexer.nextToken();
+                if (!limitValue()) {
+                    return false;
+                }
+            }
+        }
+
+        return lexer.token() == Token.EOF;
+    }
+
+    private boolean nameList(boolean order) {
+        if (lexer.token() != Token.BY) {
+            return false;
+        }
+        lexer.nextToken();
+
+        for (; ; ) {
+            if (!name(false)) {
+                return false;
+            }
+            if (order && (lexer.token() == Token.ASC || lexer.token() == Token.DESC)) {
+                lexer.nextToken();
+            }
+            if (lexer.token() != Token.COMMA) {
+                return true;
+            }
+            lexer.nextToken();
+        }
+    }
+
+    private boolean condition() {
+        if (!name(false)) {
+            return false;
+        }
+
+        switch (lexer.token()) {
+            case EQ:
+            case LT:
+            case GT:
+            case LTEQ:
+            case GTEQ:
+            case LTGT:
+            case BANGEQ:
+                lexer.nextToken();
+                return value();
+            case IN:
+                lexer.nextToken();
+                if (lexer.token() != Token.LPAREN) {
+                    return false;
+                }
+                lexer.nextToken();
+                for (; ; ) {
+                    if (!value()) {
+                        return false;
+                    }
+                    if (lexer.token() == Token.RPAREN) {
+                        lexer.nextToken();
+                        return true;
+                    }
+                    if (lexer.token() != Token.COMMA) {
+                        return false;
+                    }
+                    lexer.nextToken();
+                }
+            case IS:
+                lexer.nextToken();
+                if (lexer.token() == Token.NOT) {
+                    lexer.nextToken();
+                }
+                if (lexer.token() != Token.NULL) {
+                    return false;
+                }
+                lexer.nextToken();
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private boolean value() {
+        switch (lexer.token()) {
+            case QUES:
+                break;
+            case LITERAL_INT:
+            case LITERAL_FLOAT:
+            case LITERAL_CHARS:
+                if (config.isMustParameterized()) {
+                    return false;
+                }
+                break;
+            default:
+                return false;
+        }
+        lexer.nextToken();
+        return true;
+    }
+
+    private boolean limitValue() {
+        if (lexer.token() == Token.QUES) {
+            lexer.nextToken();
+            return true;
+        }
+        if (lexer.token() != Token.LITERAL_INT || config.isMustParameterized()) {
+            return false;
+        }
+        if (lexer.integerValue().longValue() == 0) {
+            return false;
+        }
+        lexer.nextToken();
+        return true;
+    }
+
+    /**
+     * column name, optionally qualified by the table or its alias
+     */
+    private boolean name(boolean allColumn) {
+        if (!identifier()) {
+            return false;
+        }
+        lexer.nextToken();
+
+        if (lexer.token() == Token.DOT) {
+            lexer.nextToken();
+            if (allColumn && lexer.token() == Token.STAR) {
+                if (!config.isSelectAllColumnAllow()) {
+                    return false;
+                }
+                lexer.nextToken();
+                return true;
+            }
+            if (!identifier()) {
+                return false;
+            }
+            lexer.nextToken();
+            return lexer.token() != Token.DOT;
+        }
+        return true;
+    }
+
+    /**
+     * only 'AS alias', a bare name after a table may be a dialect keyword (mysql index hints ...)
+     */
+    private boolean alias() {
+        if (lexer.token() == Token.AS) {
+            lexer.nextToken();
+            if (!identifier()) {
+                return false;
+            }
+            lexer.nextToken();
+        }
+        return true;
+    }
+
+    /**
+     * plain identifier (letters, digits and '_', optionally back quoted) which is not in any deny list
+     */
+    private boolean identifier() {
+        if (lexer.token() != Token.IDENTIFIER) {
+            return false;
+        }
+
+        String name = lexer.stringVal();
+        int start = 0;
+        int end = name.length();
+        if (end >= 2 && name.charAt(0) == '`' && name.charAt(end - 1) == '`') {
+            start++;
+            end--;
+        }
+        if (start == end) {
+            return false;
+        }
+        for (int i = start; i < end; ++i) {
+            char ch = name.charAt(i);
+            if (!((ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z') || (ch >= '0' && ch <= '9') || ch == '_')) {
+                return false;
+            }
+        }
+
+        long hash = WallVisitorUtils.formHash(name);
+        return !(config.denyTables.containsHash(hash)
+                || config.denySchemas.containsHash(hash)
+                || config.denyObjects.containsHash(hash)
+                || config.denyFunctions.containsHash(hash)
+                || config.denyVariants.containsHash(hash));
+    }
+}
@@ -182,8 +182,8 @@ public interface WallVisitor extends SQLASTVisitor {
     default boolean visit(SQLIdentifierExpr x) {
         WallConfig config = getConfig();
         String name = x.getName();
-        name = WallVisitorUtils.form(name);
-        if (config.isVariantCheck() && config.getDenyVariants().contains(name)) {
+        if (config.isVariantCheck() && config.isDenyVariant(name)) {
+            name = WallVisitorUtils.form(name);
             getViolations().add(new IllegalSQLObjectViolation(ErrorCode.VARIANT_DENY, "variable not allow : " + name,
                     toSQL(x)));
         }
@@ -135,8 +135,7 @@ public class MySqlWallVisitor extends WallVisitorBase implements WallVisitor, My
             varName = varName.substring(2);
         }
 
-        varName = varName.toLowerCase();
-        return config.getDenyVariants().contains(varName);
+        return config.isDenyVariant(varName);
     }
 
     public boolean visit(SQLVariantRefExpr x) {
@@ -799,6 +799,11 @@ public class WallVisitorUtils {
         }
 
         Object tenantValue = WallProvider.getTenantValue();
+        WallContext context = WallContext.current();
+        if (context != null) {
+            context.addTenantValue(statementType, tableName, tenantValue);
+        }
+
         if (tenantValue instanceof Number) {
             value = new SQLNumberExpr((Number) tenantValue);
         } else if (tenantValue instanceof String) {
@@ -2462,6 +2467,39 @@ public class WallVisitorUtils {
         return name;
     }
 
+    /**
+     * Same as <code>FnvHash.fnv1a_64(form(name))</code>, without building the intermediate strings.
+     */
+    public static long formHash(String name) {
+        int start = 0;
+        int end = name.length();
+        if (end - start >= 2 && name.charAt(start) == '"' && name.charAt(end - 1) == '"') {
+            start++;
+            end--;
+        }
+        if (end - start >= 2 && name.charAt(start) == '\'' && name.charAt(end - 1) == '\'') {
+            start++;
+            end--;
+        }
+        if (end - start >= 2 && name.charAt(start) == '`' && name.charAt(end - 1) == '`') {
+            start++;
+            end--;
+        }
+
+        long hash = FnvHash.BASIC;
+        for (int i = start; i < end; ++i) {
+            char ch = name.charAt(i);
+            if (ch >= 'A' && ch <= 'Z') {
+                ch = (char) (ch + 32);
+            } else if (ch >= 0x80) {
+                return FnvHash.fnv1a_64(form(name));
+            }
+            hash ^= ch;
+            hash *= FnvHash.PRIME;
+        }
+        return hash;
+    }
+
     public static void loadResource(Set<String> names, String resource) {
         try {
             boolean hasResource = false;
@@ -12,6 +12,7 @@ CREATE TABLE druid_wall
     hardCheckCount          bigint(20),
     violationCount          bigint(20),
     whiteListHitCount       bigint(20),
+    whiteListShapeHitCount  bigint(20),
     blackListHitCount       bigint(20),
     syntaxErrorCount        bigint(20),
     violationEffectRowCount bigint(20),
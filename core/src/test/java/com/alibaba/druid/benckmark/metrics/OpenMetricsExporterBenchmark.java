@@ -0,0 +1,120 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.druid.benckmark.metrics;
+
+import com.alibaba.druid.pool.DruidDataSource;
+import com.alibaba.druid.stat.DruidStatService;
+import com.alibaba.druid.support.metrics.OpenMetricsExporter;
+import com.alibaba.druid.util.JdbcUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.StringWriter;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one scrape with a data source holding sqlCount sql stats: the OpenMetrics export, with the
+ * default and with an unbounded max sql count, against the sql.json and datasource.json services of
+ * the StatViewServlet.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class OpenMetricsExporterBenchmark {
+    @Param({"100", "1000", "5000"})
+    private int sqlCount;
+
+    private DruidDataSource dataSource;
+    private OpenMetricsExporter exporter;
+    private OpenMetricsExporter unboundedExporter;
+    private DruidStatService statService;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        dataSource = new DruidDataSource();
+        dataSource.setUrl("jdbc:mock:xxx");
+        dataSource.setFilters("stat");
+        dataSource.init();
+        dataSource.getDataSourceStat().setMaxSqlSize(sqlCount);
+
+        Connection conn = dataSource.getConnection();
+        Statement stmt = conn.createStatement();
+        for (int i = 0; i < sqlCount; ++i) {
+            for (int j = 0; j <= i % 7; ++j) {
+                stmt.execute("select f" + i + " from t");
+            }
+        }
+        stmt.close();
+        conn.close();
+
+        exporter = new OpenMetricsExporter();
+        unboundedExporter = new OpenMetricsExporter();
+        unboundedExporter.setMaxSqlCount(Integer.MAX_VALUE);
+        statService = DruidStatService.getInstance();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        JdbcUtils.close(dataSource);
+    }
+
+    @Benchmark
+    public void openMetrics(Blackhole blackhole) throws Exception {
+        StringWriter out = new StringWriter(1024 * 64);
+        exporter.export(out);
+        blackhole.consume(out.getBuffer().length());
+    }
+
+    @Benchmark
+    public void openMetricsUnbounded(Blackhole blackhole) throws Exception {
+        StringWriter out = new StringWriter(1024 * 64);
+        unboundedExporter.export(out);
+        blackhole.consume(out.getBuffer().length());
+    }
+
+    @Benchmark
+    public void statServiceJson(Blackhole blackhole) {
+        blackhole.consume(statService.service("/datasource.json"));
+        blackhole.consume(statService.service("/sql.json"));
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .include(OpenMetricsExporterBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
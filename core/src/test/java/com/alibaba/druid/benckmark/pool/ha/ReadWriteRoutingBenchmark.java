@@ -0,0 +1,47 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.druid.benckmark.pool.ha;
+
+import com.alibaba.druid.pool.ha.ReadWriteSplittingDataSource;
+import junit.framework.TestCase;
+
+/**
+ * Cost of the routing decision of ReadWriteSplittingDataSource, parsed once then cached.
+ */
+public class ReadWriteRoutingBenchmark extends TestCase {
+    private static final int LOOP = 1000 * 1000 * 10;
+
+    public void test_isRead() throws Exception {
+        ReadWriteSplittingDataSource dataSource = new ReadWriteSplittingDataSource();
+        String[] sqls = new String[64];
+        for (int i = 0; i < sqls.length; ++i) {
+            sqls[i] = (i % 4 == 0 ? "update t" + i + " set name = ? where id = ?" : "select * from t" + i + " where id = ?");
+        }
+
+        for (int i = 0; i < 5; ++i) {
+            long start = System.nanoTime();
+            int reads = 0;
+            for (int j = 0; j < LOOP; ++j) {
+                // a new String each time like most applications, so the cached hash code can not help
+                if (dataSource.isRead(new String(sqls[j & 63]))) {
+                    reads++;
+                }
+            }
+            long nanos = System.nanoTime() - start;
+            System.out.println("isRead " + (nanos / LOOP) + " ns/op, reads " + reads);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.druid.benckmark.pool.ha;
+
+import com.alibaba.druid.mock.MockDriver;
+import com.alibaba.druid.mock.MockResultSet;
+import com.alibaba.druid.mock.MockStatementBase;
+import com.alibaba.druid.mock.handler.MockExecuteHandler;
+import com.alibaba.druid.pool.DruidDataSource;
+import com.alibaba.druid.pool.ha.HighAvailableDataSource;
+import junit.framework.TestCase;
+
+import javax.sql.DataSource;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Skewed replicas behind a HighAvailableDataSource: one node answers in 20ms, the others in 2ms.
+ * Prints the latency percentiles seen by the clients with each selector.
+ */
+public class SelectorSimulation extends TestCase {
+    private static final long[] NODE_MILLIS = {20, 2, 2, 2};
+    private static final int THREADS = 16;
+    private static final int LOOP = 1000;
+
+    public void test_random() throws Exception {
+        simulate("random");
+    }
+
+    public void test_latency() throws Exception {
+        simulate("latency");
+    }
+
+    private void simulate(String selector) throws Exception {
+        Map<String, DataSource> dataSourceMap = new HashMap<String, DataSource>();
+        for (int i = 0; i < NODE_MILLIS.length; ++i) {
+            dataSourceMap.put("node" + i, createNode(i, NODE_MILLIS[i]));
+        }
+
+        final HighAvailableDataSource dataSource = new HighAvailableDataSource();
+        dataSource.setDataSourceMap(dataSourceMap);
+        dataSource.setConnectionProperties("druid.ha.latency.refreshIntervalMillis=100");
+        dataSource.setSelector(selector);
+        dataSource.init();
+
+        final long[] nanos = new long[THREADS * LOOP];
+        final CountDownLatch endLatch = new CountDownLatch(THREADS);
+        for (int t = 0; t < THREADS; ++t) {
+            final int base = t * LOOP;
+            new Thread() {
+                public void run() {
+                    try {
+                        for (int i = 0; i < LOOP; ++i) {
+                            long start = System.nanoTime();
+                            Connection conn = dataSource.getConnection();
+                            Statement stmt = conn.createStatement();
+                            stmt.executeQuery("select 1").close();
+                            stmt.close();
+                            conn.close();
+                            nanos[base + i] = System.nanoTime() - start;
+                        }
+                    } catch (SQLException ex) {
+                        ex.printStackTrace();
+                    } finally {
+                        endLatch.countDown();
+                    }
+                }
+            }.start();
+        }
+        endLatch.await();
+
+        Arrays.sort(nanos);
+        System.out.println(selector
+                + " p50 " + nanos[nanos.length / 2] / (1000 * 1000) + "ms"
+                + ", p99 " + nanos[nanos.length * 99 / 100] / (1000 * 1000) + "ms"
+                + ", max " + nanos[nanos.length - 1] / (1000 * 1000) + "ms");
+
+        dataSource.destroy();
+        for (DataSource node : dataSourceMap.values()) {
+            ((DruidDataSource) node).close();
+        }
+    }
+
+    private static DruidDataSource createNode(int index, final long millis) throws Exception {
+        MockDriver driver = new MockDriver();
+        driver.setExecuteHandler(new MockExecuteHandler() {
+            public ResultSet executeQuery(MockStatementBase statement, String sql) throws SQLException {
+                try {
+                    Thread.sleep(millis);
+                } catch (InterruptedException e) {
+                    throw new SQLException(e);
+                }
+                return new MockResultSet(statement);
+            }
+        });
+
+        DruidDataSource dataSource = new DruidDataSource();
+        dataSource.setName("node" + index);
+        dataSource.setUrl("jdbc:mock:node" + index);
+        dataSource.setDriver(driver);
+        dataSource.setFilters("stat");
+        dataSource.setMaxActive(THREADS);
+        dataSource.init();
+        return dataSource;
+    }
+}
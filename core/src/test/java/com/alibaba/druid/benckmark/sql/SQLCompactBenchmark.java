@@ -0,0 +1,80 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.druid.benckmark.sql;
+
+import com.alibaba.druid.DbType;
+import com.alibaba.druid.sql.SQLUtils;
+import com.alibaba.druid.sql.repository.SchemaRepository;
+
+/**
+ * Retained heap of a SchemaRepository holding create table statements and views (select query
+ * blocks), with and without compaction. Run with a fixed heap, e.g. -Xms1g -Xmx1g.
+ */
+public class SQLCompactBenchmark {
+    static final int COUNT = 1000 * 20;
+
+    public static void main(String[] args) throws Exception {
+        for (int i = 0; i < 3; ++i) {
+            measure(false);
+            measure(true);
+        }
+    }
+
+    static void measure(boolean compact) throws Exception {
+        long before = usedMemory();
+
+        SchemaRepository repository = new SchemaRepository(DbType.mysql);
+        repository.setCompact(compact);
+        for (int i = 0; i < COUNT; ++i) {
+            repository.accept(SQLUtils.parseSingleStatement(createTable(i), DbType.mysql));
+            repository.accept(SQLUtils.parseSingleStatement(createView(i), DbType.mysql));
+        }
+
+        long used = usedMemory() - before;
+        System.out.println((compact ? "compact" : "default") + " : " + used / 1024 / 1024 + "MB, "
+                + used / COUNT / 2 + " bytes/stmt, tables " + repository.getDefaultSchema().getTableCount()
+                + ", views " + repository.getDefaultSchema().getViewCount());
+    }
+
+    static String createTable(int i) {
+        return "CREATE TABLE `t_order_" + i + "` (\n"
+                + " `id` bigint(20) NOT NULL AUTO_INCREMENT COMMENT 'id',\n"
+                + " `user_id` bigint(20) NOT NULL,\n"
+                + " `status` varchar(32) DEFAULT NULL,\n"
+                + " `amount` decimal(10,2) DEFAULT '0.00',\n"
+                + " `gmt_create` datetime NOT NULL,\n"
+                + " `gmt_modified` datetime NOT NULL,\n"
+                + " PRIMARY KEY (`id`),\n"
+                + " KEY `idx_user` (`user_id`, `status`)\n"
+                + ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='order'";
+    }
+
+    static String createView(int i) {
+        return "create view v_" + i + " as select o.id, o.user_id, u.name, sum(o.amount) as total, count(*) cnt"
+                + " from t_order_" + i + " o left join t_user u on o.user_id = u.id"
+                + " where o.status in ('PAID', 'DONE') and o.gmt_create > '2020-01-01' and upper(u.name) like 'A%'"
+                + " group by o.id, o.user_id, u.name having count(*) > 1 order by total desc limit 10";
+    }
+
+    static long usedMemory() throws Exception {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; ++i) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
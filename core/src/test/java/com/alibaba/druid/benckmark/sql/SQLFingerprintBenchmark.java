@@ -0,0 +1,62 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.druid.benckmark.sql;
+
+import com.alibaba.druid.DbType;
+import com.alibaba.druid.sql.parser.SQLFingerprint;
+import com.alibaba.druid.sql.visitor.ParameterizedOutputVisitorUtils;
+
+/**
+ * Throughput of the lexer only fingerprint compared with parameterizeHash.
+ */
+public class SQLFingerprintBenchmark {
+    static final String[] SQLS = {
+            "SELECT t1.department_id, t2.* FROM hr_info t1, x2 t2 WHERE t2.department_id = t1.department_id AND t1.id = 3",
+            "select id, name, gmt_create from orders where buyer_id = 1001 and status in (1, 2, 3) order by gmt_create desc limit 20",
+            "insert into orders(id, buyer_id, status, amount) values (1, 1001, 2, 12.5), (2, 1002, 2, 13.5), (3, 1003, 1, 3.5)",
+            "update orders set status = 3, gmt_modified = now() where id = 12345 and version = 7",
+    };
+
+    public static void main(String[] args) throws Exception {
+        long bytes = 0;
+        for (String sql : SQLS) {
+            bytes += sql.length();
+        }
+
+        for (int i = 0; i < 5; ++i) {
+            perf("fingerprint", bytes, true);
+            perf("parameterizeHash", bytes, false);
+        }
+    }
+
+    static void perf(String name, long bytes, boolean fingerprint) {
+        final int loop = 1000 * 200;
+        long result = 0;
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < loop; ++i) {
+            for (String sql : SQLS) {
+                if (fingerprint) {
+                    result += SQLFingerprint.fingerprint(sql, DbType.mysql);
+                } else {
+                    result += ParameterizedOutputVisitorUtils.parameterizeHash(sql, DbType.mysql, null);
+                }
+            }
+        }
+        long nanos = System.nanoTime() - startNanos;
+        double mbPerSecond = (bytes * loop * 1000D) / nanos;
+        System.out.println(name + "\t" + (nanos / 1000 / 1000) + "ms, " + (long) mbPerSecond + "MB/s, " + result);
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.druid.benckmark.sql;
+
+import com.alibaba.druid.DbType;
+import com.alibaba.druid.sql.SQLUtils;
+import com.alibaba.druid.sql.ast.SQLStatement;
+import com.alibaba.druid.sql.visitor.SQLASTOutputVisitor;
+import com.alibaba.druid.sql.visitor.VisitorFeature;
+
+import java.lang.management.ManagementFactory;
+import java.nio.CharBuffer;
+
+/**
+ * Bytes allocated per printed statement, a new StringBuilder and visitor per call compared with
+ * the thread local SQLPrintContext used by SQLUtils.
+ */
+public class SQLPrintBenchmark {
+    public static void main(String[] args) throws Exception {
+        String sql = "SELECT t1.department_id, t2.*, t1.name, t1.gmt_create FROM hr_info t1, x2 t2"
+                + " WHERE t2.department_id = t1.department_id AND t1.id in (1, 2, 3) AND t1.status = 'ok'"
+                + " ORDER BY t1.gmt_create DESC LIMIT 10";
+        SQLStatement stmt = SQLUtils.parseSingleStatement(sql, DbType.mysql);
+        CharBuffer charBuffer = CharBuffer.allocate(1024);
+
+        for (int i = 0; i < 5; ++i) {
+            long bytes = allocatedBytes();
+            long startMillis = System.currentTimeMillis();
+            for (int j = 0; j < 1000 * 100; ++j) {
+                StringBuilder out = new StringBuilder();
+                SQLASTOutputVisitor visitor = SQLUtils.createOutputVisitor(out, DbType.mysql);
+                visitor.config(VisitorFeature.OutputUCase, true);
+                visitor.config(VisitorFeature.OutputPrettyFormat, true);
+                stmt.accept(visitor);
+                out.toString();
+            }
+            print("new visitor", bytes, startMillis);
+
+            bytes = allocatedBytes();
+            startMillis = System.currentTimeMillis();
+            for (int j = 0; j < 1000 * 100; ++j) {
+                SQLUtils.toSQLString(stmt, DbType.mysql);
+            }
+            print("toSQLString", bytes, startMillis);
+
+            bytes = allocatedBytes();
+            startMillis = System.currentTimeMillis();
+            for (int j = 0; j < 1000 * 100; ++j) {
+                charBuffer.clear();
+                SQLUtils.appendTo(charBuffer, stmt, DbType.mysql, null);
+            }
+            print("appendTo", bytes, startMillis);
+        }
+    }
+
+    static void print(String name, long startBytes, long startMillis) {
+        long millis = System.currentTimeMillis() - startMillis;
+        long bytes = (allocatedBytes() - startBytes) / (1000 * 100);
+        System.out.println(name + "\t" + millis + "ms, " + bytes + " bytes/stmt");
+    }
+
+    static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.druid.benckmark.sql;
+
+import com.alibaba.druid.sql.dialect.mysql.parser.MySqlStatementParser;
+import com.alibaba.druid.sql.dialect.odps.parser.OdpsLexer;
+import com.alibaba.druid.sql.dialect.odps.parser.OdpsStatementParser;
+import com.alibaba.druid.sql.parser.SymbolTable;
+import com.alibaba.druid.sql.test.TestUtils;
+import com.alibaba.druid.util.Utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parses the mysql and odps resource corpora and reports symbol table hit rate,
+ * chars not copied and young gc counts.
+ */
+public class SymbolTableBenchmark {
+    public static void main(String[] args) throws Exception {
+        List<String> mysql = load("mysql", 35);
+        List<String> odps = load("odps", 16);
+
+        // high cardinality column names
+        StringBuilder buf = new StringBuilder("select ");
+        for (int i = 0; i < 50000; ++i) {
+            if (i != 0) {
+                buf.append(", ");
+            }
+            buf.append("col_").append(i);
+        }
+        buf.append(" from t");
+        odps.add(buf.toString());
+
+        SymbolTable.global.setStatEnable(true);
+        OdpsLexer.DEFAULT_ODPS_SYMBOLS.setStatEnable(true);
+
+        for (int i = 0; i < 5; ++i) {
+            perf("mysql", mysql, SymbolTable.global, false);
+            perf("odps", odps, OdpsLexer.DEFAULT_ODPS_SYMBOLS, true);
+        }
+    }
+
+    static void perf(String name, List<String> sqls, SymbolTable symbols, boolean odps) {
+        symbols.resetStat();
+        long startYGC = TestUtils.getYoungGC();
+        long startMillis = System.currentTimeMillis();
+        for (int i = 0; i < 100; ++i) {
+            for (String sql : sqls) {
+                try {
+                    if (odps) {
+                        new OdpsStatementParser(sql).parseStatementList();
+                    } else {
+                        new MySqlStatementParser(sql).parseStatementList();
+                    }
+                } catch (Exception ignored) {
+                    // skip unsupported
+                }
+            }
+        }
+        long millis = System.currentTimeMillis() - startMillis;
+        long ygc = TestUtils.getYoungGC() - startYGC;
+
+        System.out.println(name + "\t" + millis + ", ygc " + ygc
+                + ", hitRate " + symbols.getHitRate()
+                + ", hitChars " + symbols.getHitChars()
+                + ", overflow " + symbols.getOverflowCount()
+                + ", size " + symbols.size() + "/" + symbols.getCapacity());
+    }
+
+    static List<String> load(String dbType, int count) throws Exception {
+        List<String> list = new ArrayList<String>();
+        for (int i = 0; i < count; ++i) {
+            String text = Utils.readFromResource("bvt/parser/" + dbType + "-" + i + ".txt");
+            if (text == null) {
+                continue;
+            }
+            list.add(text.split("---------------------------")[0].trim());
+        }
+        return list;
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.druid.benckmark.wall;
+
+import java.util.concurrent.CountDownLatch;
+
+import junit.framework.TestCase;
+
+import com.alibaba.druid.wall.WallConfig;
+import com.alibaba.druid.wall.WallProvider;
+import com.alibaba.druid.wall.spi.MySqlWallProvider;
+
+/**
+ * Multi-tenant checks of prepared statement sql, each thread is a tenant: without tenant, with the tenant
+ * result cache, and with the white list disabled, where every tenant check is parsed and rewritten as
+ * before the cache.
+ */
+public class WallBenchmarkTest_mysql_tenant_concurrent extends TestCase {
+    public static final int COUNT = 1000 * 10;
+
+    static final String[] SQLS = {
+            "SELECT id, name, status FROM orders WHERE user_id = ? AND status = ?",
+            "UPDATE orders SET status = ? WHERE id = ?",
+            "INSERT INTO orders (id, name) VALUES (?, ?)"
+    };
+
+    public void test_0() throws Exception {
+        WallProvider plain = new MySqlWallProvider();
+
+        WallConfig config = new WallConfig(MySqlWallProvider.DEFAULT_CONFIG_DIR);
+        config.setTenantTablePattern("*");
+        config.setTenantColumn("tenant");
+        WallProvider tenant = new MySqlWallProvider(config);
+
+        WallProvider tenantNoCache = new MySqlWallProvider(config);
+        tenantNoCache.setWhiteListEnable(false);
+
+        for (int i = 0; i < 5; ++i) {
+            System.out.println("plain millis : " + perf(plain, 10));
+            System.out.println("tenant cached millis : " + perf(tenant, 10));
+            System.out.println("tenant uncached millis : " + perf(tenantNoCache, 10));
+        }
+    }
+
+    public long perf(final WallProvider provider, int threadCount) {
+        final CountDownLatch startLatch = new CountDownLatch(1);
+        final CountDownLatch latch = new CountDownLatch(threadCount);
+        for (int i = 0; i < threadCount; ++i) {
+            final int tenantValue = i;
+            Thread thread = new Thread() {
+                public void run() {
+                    WallProvider.setTenantValue(tenantValue);
+                    try {
+                        startLatch.await();
+                        for (int i = 0; i < COUNT; ++i) {
+                            provider.check(SQLS[i % SQLS.length]);
+                        }
+                    } catch (InterruptedException e) {
+                        e.printStackTrace();
+                    } finally {
+                        WallProvider.setTenantValue(null);
+                        latch.countDown();
+                    }
+                }
+            };
+            thread.setName("perf-" + i);
+            thread.start();
+        }
+
+        long startMillis = System.currentTimeMillis();
+        startLatch.countDown();
+
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+
+        return System.currentTimeMillis() - startMillis;
+    }
+}
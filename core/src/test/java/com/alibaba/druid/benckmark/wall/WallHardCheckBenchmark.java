@@ -0,0 +1,80 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.druid.benckmark.wall;
+
+import com.alibaba.druid.wall.WallProvider;
+import com.alibaba.druid.wall.spi.MySqlWallProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wall check with white and black list disabled, so every call goes through parsing and the wall
+ * visitor, which looks up deny functions, tables, schemas and variants for each node.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class WallHardCheckBenchmark {
+    static final String[] SQLS = {
+            "SELECT t.id, t.name, t.status FROM t_order t WHERE t.user_id = ? AND t.status IN (?, ?) ORDER BY t.id DESC LIMIT 10",
+            "SELECT count(*), max(o.amount), ifnull(u.name, 'x') FROM t_order o JOIN t_user u ON o.user_id = u.id"
+                    + " WHERE o.gmt_create > now() AND upper(u.name) LIKE concat(?, '%') GROUP BY u.name",
+            "UPDATE t_order SET status = ?, gmt_modified = now() WHERE id = ? AND version = ?",
+            "INSERT INTO t_order (id, user_id, status, amount, gmt_create) VALUES (?, ?, ?, ?, now())",
+            "SELECT a.id FROM db1.t_a a WHERE a.id IN (SELECT b.a_id FROM db1.t_b b WHERE b.flag = 1 AND b.c = a.c)"
+    };
+
+    private WallProvider provider;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        provider = new MySqlWallProvider();
+        provider.setBlackListEnable(false);
+        provider.setWhiteListEnable(false);
+    }
+
+    @Benchmark
+    public void check(Blackhole blackhole) {
+        for (String sql : SQLS) {
+            blackhole.consume(provider.check(sql));
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .include(WallHardCheckBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
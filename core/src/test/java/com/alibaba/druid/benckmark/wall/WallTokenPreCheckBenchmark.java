@@ -0,0 +1,86 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.druid.benckmark.wall;
+
+import com.alibaba.druid.wall.WallConfig;
+import com.alibaba.druid.wall.WallProvider;
+import com.alibaba.druid.wall.spi.MySqlWallProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hard check with and without {@link WallConfig#setTokenPreCheck(boolean)}: plain selects which are
+ * accepted from the tokens, stacked statements which are rejected from the tokens, and a union which
+ * is parsed either way.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class WallTokenPreCheckBenchmark {
+    static final String[] SQLS = {
+            "SELECT id, name, status FROM t_order WHERE user_id = ? AND status IN (?, ?) ORDER BY id DESC LIMIT 10",
+            "SELECT id, amount FROM t_order WHERE id = 1024 AND gmt_create >= '2020-01-01'",
+            "SELECT id FROM t_order WHERE id = 1; DROP TABLE t_order",
+            "SELECT id FROM t_order WHERE id = 1 UNION SELECT id FROM t_user"
+    };
+
+    @Param({"false", "true"})
+    private boolean tokenPreCheck;
+
+    private WallProvider provider;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        WallConfig config = new WallConfig(MySqlWallProvider.DEFAULT_CONFIG_DIR);
+        config.setTokenPreCheck(tokenPreCheck);
+        provider = new MySqlWallProvider(config);
+        provider.setBlackListEnable(false);
+        provider.setWhiteListEnable(false);
+    }
+
+    @Benchmark
+    public void check(Blackhole blackhole) {
+        for (String sql : SQLS) {
+            blackhole.consume(provider.check(sql));
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .include(WallTokenPreCheckBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.druid.benckmark.wall;
+
+import com.alibaba.druid.wall.WallProvider;
+import com.alibaba.druid.wall.spi.MySqlWallProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * White list hits: the same prepared statement sql checked again, answered by its text, and literal
+ * variants of a checked sql, answered by shape.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class WallWhiteListHitBenchmark {
+    static final String SQL = "SELECT id, name, status FROM t_order WHERE user_id = ? AND status IN (?, ?) ORDER BY id DESC LIMIT 10";
+
+    private WallProvider provider;
+    private String[] variants;
+    private int index;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        provider = new MySqlWallProvider();
+        provider.check(SQL);
+
+        // more variants than the merged sql cache holds, each is looked up by shape
+        variants = new String[1024 * 16];
+        for (int i = 0; i < variants.length; ++i) {
+            variants[i] = "SELECT id, amount FROM t_order WHERE id = " + i + " AND gmt_create >= '2020-01-01'";
+        }
+        provider.check(variants[0]);
+    }
+
+    @Benchmark
+    public void exactText(Blackhole blackhole) {
+        blackhole.consume(provider.check(SQL));
+    }
+
+    @Benchmark
+    public void shape(Blackhole blackhole) {
+        int i = index++;
+        if (index == variants.length) {
+            index = 0;
+        }
+        blackhole.consume(provider.check(variants[i]));
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .include(WallWhiteListHitBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
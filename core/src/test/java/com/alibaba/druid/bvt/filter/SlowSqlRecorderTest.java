@@ -0,0 +1,138 @@
+package com.alibaba.druid.bvt.filter;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import junit.framework.TestCase;
+
+import com.alibaba.druid.filter.stat.SlowSqlRecorder;
+import com.alibaba.druid.filter.stat.StatFilter;
+import com.alibaba.druid.pool.DruidDataSource;
+import com.alibaba.druid.stat.JdbcSqlStat;
+import com.alibaba.druid.util.JdbcUtils;
+
+public class SlowSqlRecorderTest extends TestCase {
+    private RecordSlowSqlRecorder recorder = new RecordSlowSqlRecorder();
+
+    protected void tearDown() throws Exception {
+        recorder.close();
+    }
+
+    public void test_topK() throws Exception {
+        recorder.setTopK(3);
+        recorder.setMaxSqlSize(2);
+
+        long[] millisArray = {5, 9, 1, 7, 3, 8};
+        for (long millis : millisArray) {
+            recorder.record("select ?", "select " + millis, "[" + millis + "]", millis, null);
+        }
+        recorder.record("select 1", "select 1", "[]", 1, null);
+        recorder.record("select 2", "select 2", "[]", 1, null);
+
+        List<SlowSqlRecorder.Sample> samples = recorder.getTopSlowSamples("select ?");
+        assertEquals(3, samples.size());
+        assertEquals(9, samples.get(0).getMillis());
+        assertEquals(8, samples.get(1).getMillis());
+        assertEquals(7, samples.get(2).getMillis());
+        assertEquals("[9]", samples.get(0).getParameters());
+
+        assertEquals(2, recorder.getSqlSize());
+        assertEquals(7, recorder.getRecordCount());
+        assertEquals(1, recorder.getDropCount());
+        assertTrue(recorder.messages.isEmpty());
+    }
+
+    public void test_evictIdle() throws Exception {
+        recorder.setMaxSqlSize(2);
+        recorder.setFlushIntervalMillis(0);
+        recorder.setLogIntervalMillis(0);
+
+        for (int i = 0; i < 5; ++i) {
+            recorder.record("select " + i, "select " + i, "[]", 1000, null);
+        }
+
+        assertEquals(5, recorder.getRecordCount());
+        assertEquals(0, recorder.getDropCount());
+        assertTrue(recorder.getEvictCount() > 0);
+        assertTrue(recorder.getSqlSize() <= 2);
+        assertEquals(1, recorder.getTopSlowSamples("select 4").size());
+    }
+
+    public void test_logDropped() throws Exception {
+        recorder.setMaxSqlSize(1);
+        recorder.record("select 1", "select 1", "[]", 1000, "WARN");
+
+        // the pending entry can not be evicted, the others are logged directly, rate limited
+        recorder.record("select 2", "select 2", "[2]", 2000, "WARN");
+        recorder.record("select 3", "select 3", "[3]", 3000, "WARN");
+
+        assertEquals(2, recorder.getDropCount());
+        assertEquals(1, recorder.messages.size());
+        assertEquals("slow sql 2000 millis. select 2 [2]", recorder.messages.get(0));
+    }
+
+    public void test_rateLimit() throws Exception {
+        recorder.setLogIntervalMillis(1000 * 60);
+        for (int i = 0; i < 100; ++i) {
+            recorder.record("select ?", "select ?", "[" + i + "]", 1000 + i, "WARN");
+        }
+
+        recorder.flush(false);
+        assertEquals(1, recorder.messages.size());
+        assertEquals("slow sql 1099 millis. select ? [99] (100 slow executions since last log)",
+                recorder.messages.get(0));
+
+        recorder.record("select ?", "select ?", "[100]", 1100, "WARN");
+        recorder.flush(false);
+        assertEquals(1, recorder.messages.size());
+
+        recorder.close();
+        assertEquals(2, recorder.messages.size());
+        assertEquals("slow sql 1100 millis. select ? [100]", recorder.messages.get(1));
+        assertEquals(2, recorder.getLogCount());
+    }
+
+    public void test_statFilter() throws Exception {
+        DruidDataSource dataSource = new DruidDataSource();
+        dataSource.setUrl("jdbc:mock:xxx");
+        dataSource.setFilters("stat");
+        dataSource.setConnectionProperties("druid.stat.slowSqlMillis=0;druid.stat.logSlowSql=true;"
+                + "druid.stat.slowSqlRecorder=true");
+        try {
+            dataSource.init();
+
+            Connection conn = dataSource.getConnection();
+            PreparedStatement stmt = conn.prepareStatement("select ?");
+            stmt.setInt(1, 3);
+            ResultSet rs = stmt.executeQuery();
+            rs.close();
+            stmt.close();
+            conn.close();
+
+            StatFilter filter = dataSource.unwrap(StatFilter.class);
+            SlowSqlRecorder recorder = filter.getSlowSqlRecorder();
+            assertNotNull(recorder);
+            assertEquals(1, recorder.getRecordCount());
+
+            List<SlowSqlRecorder.Sample> samples = recorder.getTopSlowSamples("select ?");
+            assertEquals(1, samples.size());
+            assertEquals("[3]", samples.get(0).getParameters());
+
+            JdbcSqlStat sqlStat = dataSource.getDataSourceStat().getSqlStat("select ?");
+            assertEquals("[3]", sqlStat.getLastSlowParameters());
+        } finally {
+            JdbcUtils.close(dataSource);
+        }
+    }
+
+    private static class RecordSlowSqlRecorder extends SlowSqlRecorder {
+        final List<String> messages = new CopyOnWriteArrayList<String>();
+
+        protected void log(String logLevel, String msg) {
+            messages.add(msg);
+        }
+    }
+}
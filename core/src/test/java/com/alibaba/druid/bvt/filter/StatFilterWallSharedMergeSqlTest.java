@@ -0,0 +1,103 @@
+package com.alibaba.druid.bvt.filter;
+
+import com.alibaba.druid.DbType;
+import com.alibaba.druid.filter.Filter;
+import com.alibaba.druid.filter.stat.StatFilter;
+import com.alibaba.druid.pool.DruidDataSource;
+import com.alibaba.druid.stat.JdbcSqlStat;
+import com.alibaba.druid.util.JdbcConstants;
+import com.alibaba.druid.util.JdbcUtils;
+import com.alibaba.druid.wall.WallFilter;
+import junit.framework.TestCase;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class StatFilterWallSharedMergeSqlTest extends TestCase {
+    private DruidDataSource dataSource;
+    private final AtomicInteger mergeCount = new AtomicInteger();
+
+    protected void init(boolean wallFirst) throws Exception {
+        StatFilter statFilter = new StatFilter() {
+            public String mergeSql(String sql, DbType dbType) {
+                mergeCount.incrementAndGet();
+                return super.mergeSql(sql, dbType);
+            }
+        };
+        statFilter.setMergeSql(true);
+
+        WallFilter wallFilter = new WallFilter();
+        wallFilter.setDbType(JdbcConstants.MYSQL);
+
+        List<Filter> filters = new ArrayList<Filter>();
+        if (wallFirst) {
+            filters.add(wallFilter);
+            filters.add(statFilter);
+        } else {
+            filters.add(statFilter);
+            filters.add(wallFilter);
+        }
+
+        dataSource = new DruidDataSource();
+        dataSource.setUrl("jdbc:mock:xxx");
+        dataSource.setDbType(JdbcConstants.MYSQL);
+        dataSource.setProxyFilters(filters);
+        dataSource.init();
+    }
+
+    protected void tearDown() throws Exception {
+        JdbcUtils.close(dataSource);
+    }
+
+    public void test_prepare_statFirst() throws Exception {
+        init(false);
+
+        Connection conn = dataSource.getConnection();
+        for (int i = 0; i < 3; ++i) {
+            PreparedStatement stmt = conn.prepareStatement("select * from t where id = " + i);
+            stmt.execute();
+            stmt.close();
+        }
+        conn.close();
+
+        assertEquals(0, mergeCount.get());
+        JdbcSqlStat sqlStat = dataSource.getDataSourceStat().getSqlStat("SELECT *\nFROM t\nWHERE id = ?");
+        assertNotNull(sqlStat);
+        assertEquals(3, sqlStat.getExecuteCount());
+    }
+
+    public void test_statement_wallFirst() throws Exception {
+        init(true);
+
+        Connection conn = dataSource.getConnection();
+        Statement stmt = conn.createStatement();
+        for (int i = 0; i < 3; ++i) {
+            stmt.execute("select * from t where id = " + i);
+        }
+        stmt.close();
+        conn.close();
+
+        assertEquals(0, mergeCount.get());
+        assertEquals(3, dataSource.getDataSourceStat().getSqlStat("SELECT *\nFROM t\nWHERE id = ?").getExecuteCount());
+    }
+
+    public void test_statement_statFirst() throws Exception {
+        init(false);
+
+        Connection conn = dataSource.getConnection();
+        Statement stmt = conn.createStatement();
+        for (int i = 0; i < 3; ++i) {
+            stmt.execute("select * from t where id = " + i);
+        }
+        stmt.close();
+        conn.close();
+
+        assertEquals(3, mergeCount.get());
+        assertEquals(1, ((WallFilter) dataSource.getProxyFilters().get(1)).getProvider().getWhiteList().size());
+        assertEquals(3, dataSource.getDataSourceStat().getSqlStat("SELECT *\nFROM t\nWHERE id = ?").getExecuteCount());
+    }
+}
@@ -0,0 +1,61 @@
+package com.alibaba.druid.bvt.filter.log;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import com.alibaba.druid.DbType;
+import com.alibaba.druid.filter.logging.ExecutableSqlRenderer;
+import com.alibaba.druid.sql.SQLUtils;
+import com.alibaba.druid.sql.SQLUtils.FormatOption;
+
+public class ExecutableSqlRendererTest extends TestCase {
+    private final ExecutableSqlRenderer renderer = new ExecutableSqlRenderer(16);
+    private final FormatOption option = new FormatOption(false, true);
+
+    public void test_sameAsFormat() throws Exception {
+        assertRendered("select * from t where id = ? and name = ?", DbType.mysql, 3, "it's");
+        assertRendered("select * from t where id = ? and name = ?", DbType.mysql, null, "a\\b");
+        assertRendered("update t set a = ?, b = ?, c = ? where id = ?", DbType.mysql,
+                new BigDecimal("1.50"), new Timestamp(0), new byte[]{1, 2}, 7L);
+        assertRendered("insert into t (a, b) values (?, ?)", DbType.oracle, "x", new Timestamp(0));
+        assertRendered("select '?' from t where id = ? /* ? */", DbType.postgresql, 1);
+        assertRendered("select * from t where a = ? and b in (?, ?)", DbType.mysql, true, 1.5d, 'c');
+    }
+
+    public void test_cached() throws Exception {
+        List<Object> parameters = new ArrayList<Object>();
+        parameters.add(1);
+        String first = renderer.render("select * from t where id = ?", DbType.mysql, parameters, option);
+        assertEquals(1, renderer.getCacheSize());
+
+        parameters.set(0, 2);
+        String second = renderer.render("select * from t where id = ?", DbType.mysql, parameters, option);
+        assertEquals(1, renderer.getCacheSize());
+        assertEquals(first.replace("= 1", "= 2"), second);
+    }
+
+    public void test_fallback() throws Exception {
+        // not enough parameters
+        assertRendered("select * from t where id = ? and name = ?", DbType.mysql, 3);
+        assertRendered("select * from t where id = ?", DbType.mysql, Arrays.asList(1, 2));
+    }
+
+    public void test_notParsable() throws Exception {
+        List<Object> parameters = new ArrayList<Object>();
+        parameters.add(3);
+        assertEquals("select * frm t where id = 3",
+                renderer.render("select * frm t where id = ?", DbType.mysql, parameters, option));
+    }
+
+    private void assertRendered(String sql, DbType dbType, Object... values) {
+        List<Object> parameters = Arrays.asList(values);
+        String expected = SQLUtils.format(sql, dbType, parameters, option);
+        assertEquals(expected, renderer.render(sql, dbType, parameters, option));
+        assertEquals(expected, renderer.render(sql, dbType, parameters, option));
+    }
+}
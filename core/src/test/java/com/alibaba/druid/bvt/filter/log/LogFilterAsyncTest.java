@@ -0,0 +1,128 @@
+package com.alibaba.druid.bvt.filter.log;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import junit.framework.TestCase;
+
+import com.alibaba.druid.filter.logging.CommonsLogFilter;
+import com.alibaba.druid.pool.DruidDataSource;
+import com.alibaba.druid.util.JdbcUtils;
+
+public class LogFilterAsyncTest extends TestCase {
+    private DruidDataSource dataSource;
+    private RecordLogFilter filter;
+
+    protected void setUp() throws Exception {
+        filter = new RecordLogFilter();
+        filter.setStatementExecutableSqlLogEnable(true);
+        filter.setAsyncLogEnabled(true);
+
+        dataSource = new DruidDataSource();
+        dataSource.setUrl("jdbc:mock:xxx");
+        dataSource.getProxyFilters().add(filter);
+        dataSource.init();
+    }
+
+    protected void tearDown() throws Exception {
+        JdbcUtils.close(dataSource);
+    }
+
+    public void test_async() throws Exception {
+        Connection conn = dataSource.getConnection();
+        PreparedStatement stmt = conn.prepareStatement("update t set flag = 1 where id = ?");
+        stmt.setInt(1, 3);
+        stmt.executeUpdate();
+        stmt.close();
+        conn.close();
+
+        for (int i = 0; i < 100 && filter.getAsyncLogPendingCount() != 0; i++) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(10);
+
+        assertTrue(filter.contains("} Parameters : [3]"));
+        assertTrue(filter.contains("} Types : [INTEGER]"));
+        assertTrue(filter.contains("\nwhere id = 3"));
+        for (String threadName : filter.threadNames) {
+            assertTrue(threadName, threadName.startsWith("[LogFilter-async-"));
+        }
+        assertEquals(0, filter.getAsyncLogDropCount());
+    }
+
+    public void test_drop() throws Exception {
+        filter.setAsyncLogEnabled(false);
+        filter.setAsyncLogBufferSize(4);
+        filter.setAsyncLogEnabled(true);
+
+        filter.latch = new CountDownLatch(1);
+        Connection conn = dataSource.getConnection();
+        for (int i = 0; i < 20; ++i) {
+            conn.createStatement().close();
+        }
+        assertTrue(filter.getAsyncLogDropCount() > 0);
+        filter.latch.countDown();
+        conn.close();
+
+        filter.setAsyncLogEnabled(false);
+        assertEquals(0, filter.getAsyncLogPendingCount());
+        int size = filter.messages.size();
+        dataSource.getConnection().close();
+        assertTrue(filter.messages.size() > size);
+    }
+
+    private static class RecordLogFilter extends CommonsLogFilter {
+        final List<String> messages = new CopyOnWriteArrayList<String>();
+        final List<String> threadNames = new CopyOnWriteArrayList<String>();
+        volatile CountDownLatch latch;
+
+        boolean contains(String text) {
+            for (String message : messages) {
+                if (message.endsWith(text)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        public boolean isConnectionLogEnabled() {
+            return true;
+        }
+
+        public boolean isStatementLogEnabled() {
+            return true;
+        }
+
+        public boolean isResultSetLogEnabled() {
+            return true;
+        }
+
+        protected void connectionLog(String message) {
+            record(message);
+        }
+
+        protected void statementLog(String message) {
+            record(message);
+        }
+
+        protected void resultSetLog(String message) {
+            record(message);
+        }
+
+        private void record(String message) {
+            CountDownLatch latch = this.latch;
+            if (latch != null) {
+                try {
+                    latch.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            messages.add(message);
+            threadNames.add(Thread.currentThread().getName());
+        }
+    }
+}
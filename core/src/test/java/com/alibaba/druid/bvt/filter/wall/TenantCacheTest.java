@@ -0,0 +1,73 @@
+package com.alibaba.druid.bvt.filter.wall;
+
+import com.alibaba.druid.wall.WallCheckResult;
+import com.alibaba.druid.wall.WallConfig;
+import com.alibaba.druid.wall.WallContext;
+import com.alibaba.druid.wall.WallProvider;
+import com.alibaba.druid.wall.spi.MySqlWallProvider;
+import junit.framework.TestCase;
+
+public class TenantCacheTest extends TestCase {
+    private String sql = "INSERT INTO orders (ID, NAME) VALUES (?, ?)";
+
+    protected void setUp() throws Exception {
+        WallContext.clearContext();
+    }
+
+    protected void tearDown() throws Exception {
+        WallProvider.setTenantValue(null);
+        WallContext.clearContext();
+    }
+
+    public void test_tenantValue() throws Exception {
+        WallConfig config = new WallConfig();
+        config.setTenantTablePattern("*");
+        config.setTenantColumn("tenant");
+        MySqlWallProvider provider = new MySqlWallProvider(config);
+
+        WallProvider.setTenantValue(1);
+        String sql1 = provider.check(sql).getSql();
+        assertEquals("INSERT INTO orders (ID, NAME, tenant)\nVALUES (?, ?, 1)", sql1);
+        assertEquals(sql1, provider.check(sql).getSql());
+        assertEquals(1, provider.getHardCheckCount());
+
+        WallProvider.setTenantValue(2);
+        String sql2 = provider.check(sql).getSql();
+        assertEquals("INSERT INTO orders (ID, NAME, tenant)\nVALUES (?, ?, 2)", sql2);
+        assertEquals(2, provider.getHardCheckCount());
+
+        WallProvider.setTenantValue(1);
+        assertEquals(sql1, provider.check(sql).getSql());
+        WallProvider.setTenantValue(2);
+        assertEquals(sql2, provider.check(sql).getSql());
+        assertEquals(2, provider.getHardCheckCount());
+        assertEquals(3, provider.getWhiteListHitCount());
+    }
+
+    public void test_violation() throws Exception {
+        WallConfig config = new WallConfig();
+        config.setTenantTablePattern("*");
+        config.setTenantColumn("tenant");
+        MySqlWallProvider provider = new MySqlWallProvider(config);
+
+        WallProvider.setTenantValue(1);
+        String sql = "select * from orders where id = 1 or 1 = 1";
+        for (int i = 0; i < 3; ++i) {
+            WallCheckResult result = provider.check(sql);
+            assertEquals(1, result.getViolations().size());
+        }
+        assertEquals(1, provider.getHardCheckCount());
+        assertEquals(2, provider.getBlackListHitCount());
+    }
+
+    public void test_callBack() throws Exception {
+        WallConfig config = new WallConfig();
+        config.setTenantCallBack(new TenantTestCallBack());
+        MySqlWallProvider provider = new MySqlWallProvider(config);
+
+        for (int i = 0; i < 3; ++i) {
+            assertEquals("INSERT INTO orders (ID, NAME, tenant)\nVALUES (?, ?, 123)", provider.check(sql).getSql());
+        }
+        assertEquals(1, provider.getHardCheckCount());
+    }
+}
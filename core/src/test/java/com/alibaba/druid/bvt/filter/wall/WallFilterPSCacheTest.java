@@ -0,0 +1,59 @@
+package com.alibaba.druid.bvt.filter.wall;
+
+import com.alibaba.druid.filter.Filter;
+import com.alibaba.druid.pool.DruidDataSource;
+import com.alibaba.druid.util.JdbcConstants;
+import com.alibaba.druid.wall.WallFilter;
+import com.alibaba.druid.wall.WallSqlStat;
+import junit.framework.TestCase;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.List;
+
+public class WallFilterPSCacheTest extends TestCase {
+    private DruidDataSource dataSource;
+    private WallFilter wallFilter;
+
+    protected void setUp() throws Exception {
+        wallFilter = new WallFilter();
+        wallFilter.setDbType(JdbcConstants.MYSQL);
+
+        List<Filter> filters = new ArrayList<Filter>();
+        filters.add(wallFilter);
+
+        dataSource = new DruidDataSource();
+        dataSource.setUrl("jdbc:mock:xxx");
+        dataSource.setPoolPreparedStatements(true);
+        dataSource.setMaxOpenPreparedStatements(10);
+        dataSource.setProxyFilters(filters);
+        dataSource.init();
+    }
+
+    protected void tearDown() throws Exception {
+        dataSource.close();
+    }
+
+    public void test_cachedCheck() throws Exception {
+        String sql = "update t set name = ? where id = ?";
+
+        Connection conn = dataSource.getConnection();
+        for (int i = 0; i < 3; ++i) {
+            PreparedStatement stmt = conn.prepareStatement(sql);
+            stmt.setString(1, "x");
+            stmt.setInt(2, i);
+            stmt.executeUpdate();
+            stmt.close();
+        }
+        conn.close();
+
+        assertEquals(2, dataSource.getCachedPreparedStatementHitCount());
+        assertEquals(1, wallFilter.getProvider().getCheckCount());
+        assertEquals(2, wallFilter.getCachedCheckCount());
+
+        WallSqlStat sqlStat = wallFilter.getProvider().getSqlStat(sql);
+        assertEquals(3, sqlStat.getExecuteCount());
+        assertEquals(3, wallFilter.getProvider().getTableStat("t").getUpdateCount());
+    }
+}
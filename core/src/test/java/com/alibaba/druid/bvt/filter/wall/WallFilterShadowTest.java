@@ -0,0 +1,82 @@
+package com.alibaba.druid.bvt.filter.wall;
+
+import com.alibaba.druid.filter.Filter;
+import com.alibaba.druid.pool.DruidDataSource;
+import com.alibaba.druid.util.JdbcConstants;
+import com.alibaba.druid.wall.WallConfig;
+import com.alibaba.druid.wall.WallFilter;
+import junit.framework.TestCase;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+public class WallFilterShadowTest extends TestCase {
+    private DruidDataSource dataSource;
+    private WallFilter wallFilter;
+
+    protected void setUp() throws Exception {
+        WallConfig config = new WallConfig();
+        config.setDeleteAllow(false);
+
+        wallFilter = new WallFilter();
+        wallFilter.setConfig(config);
+        wallFilter.setDbType(JdbcConstants.MYSQL);
+        wallFilter.setShadow(true);
+
+        List<Filter> filters = new ArrayList<Filter>();
+        filters.add(wallFilter);
+
+        dataSource = new DruidDataSource();
+        dataSource.setUrl("jdbc:mock:xxx");
+        dataSource.setDbType(JdbcConstants.MYSQL);
+        dataSource.setProxyFilters(filters);
+        dataSource.init();
+    }
+
+    protected void tearDown() throws Exception {
+        dataSource.close();
+    }
+
+    public void test_shadow() throws Exception {
+        Connection conn = dataSource.getConnection();
+        Statement stmt = conn.createStatement();
+        stmt.execute("select * from t where id = 1");
+        stmt.execute("delete from t where id = 1");
+        stmt.close();
+        conn.close();
+
+        waitShadowCheck(2);
+        assertEquals(1, wallFilter.getShadowDenyStat().getDenyCount());
+        assertEquals(1, wallFilter.getViolationCount());
+        assertEquals(0, wallFilter.getShadowDropCount());
+
+        wallFilter.setShadow(false);
+        conn = dataSource.getConnection();
+        stmt = conn.createStatement();
+        try {
+            stmt.execute("delete from t where id = 2");
+            fail();
+        } catch (Exception ignored) {
+            // expected
+        }
+        stmt.close();
+        conn.close();
+    }
+
+    public void test_sampling() throws Exception {
+        wallFilter.setShadowSampling(Integer.MAX_VALUE);
+        for (int i = 0; i < 10; ++i) {
+            wallFilter.check("delete from t where id = " + i);
+        }
+        assertTrue(wallFilter.getShadowSkipCount() >= 9);
+    }
+
+    private void waitShadowCheck(long count) throws Exception {
+        for (int i = 0; i < 500 && wallFilter.getShadowCheckCount() < count; ++i) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, wallFilter.getShadowCheckCount());
+    }
+}
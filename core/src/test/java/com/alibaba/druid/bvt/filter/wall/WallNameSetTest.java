@@ -0,0 +1,50 @@
+package com.alibaba.druid.bvt.filter.wall;
+
+import com.alibaba.druid.util.FnvHash;
+import com.alibaba.druid.wall.WallConfig;
+import com.alibaba.druid.wall.WallNameSet;
+import com.alibaba.druid.wall.spi.MySqlWallProvider;
+import com.alibaba.druid.wall.spi.WallVisitorUtils;
+import junit.framework.TestCase;
+
+import java.util.Iterator;
+
+public class WallNameSetTest extends TestCase {
+    public void test_formHash() throws Exception {
+        String[] names = {"sleep", "SLEEP", "`Sleep`", "\"Load_File\"", "'x'", "\"`a`\"", "", "ab", "Ä_name"};
+        for (String name : names) {
+            assertEquals(name, FnvHash.fnv1a_64(WallVisitorUtils.form(name)), WallVisitorUtils.formHash(name));
+        }
+    }
+
+    public void test_set() throws Exception {
+        WallNameSet set = new WallNameSet();
+        assertFalse(set.containsHash(WallVisitorUtils.formHash("a")));
+
+        set.add("a");
+        set.add("b");
+        assertTrue(set.containsHash(WallVisitorUtils.formHash("A")));
+        assertTrue(set.containsHash(WallVisitorUtils.formHash("`b`")));
+
+        set.remove("a");
+        assertFalse(set.containsHash(WallVisitorUtils.formHash("a")));
+
+        Iterator<String> iter = set.iterator();
+        iter.next();
+        iter.remove();
+        assertFalse(set.containsHash(WallVisitorUtils.formHash("b")));
+        assertTrue(set.isEmpty());
+    }
+
+    public void test_config() throws Exception {
+        WallConfig config = new WallConfig(MySqlWallProvider.DEFAULT_CONFIG_DIR);
+        assertTrue(config.isDenyFunction("SLEEP"));
+        assertFalse(new MySqlWallProvider(config).checkDenyFunction("`sleep`"));
+
+        config.getDenyFunctions().remove("sleep");
+        assertFalse(config.isDenyFunction("SLEEP"));
+
+        config.getDenyTables().add("t_secret");
+        assertFalse(new MySqlWallProvider(config).checkDenyTable("`T_SECRET`"));
+    }
+}
@@ -0,0 +1,90 @@
+package com.alibaba.druid.bvt.filter.wall;
+
+import com.alibaba.druid.wall.WallConfig;
+import com.alibaba.druid.wall.WallContext;
+import com.alibaba.druid.wall.WallProvider;
+import com.alibaba.druid.wall.WallProviderStatValue;
+import com.alibaba.druid.wall.spi.MySqlWallProvider;
+import junit.framework.TestCase;
+
+public class WallStatTest_WhiteList_shape extends TestCase {
+    protected void setUp() throws Exception {
+        WallContext.clearContext();
+    }
+
+    protected void tearDown() throws Exception {
+        WallContext.clearContext();
+    }
+
+    public void test_shape() throws Exception {
+        WallProvider provider = new MySqlWallProvider();
+
+        for (int i = 0; i < 100; ++i) {
+            assertTrue(provider.checkValid("select * from t where id = " + i + " and name = 'n" + i + "'"));
+        }
+
+        assertEquals(1, provider.getHardCheckCount());
+        assertEquals(99, provider.getWhiteListHitCount());
+        assertEquals(99, provider.getWhiteListShapeHitCount());
+        assertEquals(100, provider.getTableStat("t").getSelectCount());
+
+        WallProviderStatValue statValue = provider.getStatValue(false);
+        assertEquals(0.99D, statValue.getWhiteListHitRatio(), 0.0001D);
+        assertEquals(0.99D, statValue.getWhiteListShapeHitRatio(), 0.0001D);
+        assertEquals(0D, statValue.getBlackListHitRatio());
+    }
+
+    public void test_exact_text_first() throws Exception {
+        WallProvider provider = new MySqlWallProvider();
+
+        for (int i = 0; i < 10; ++i) {
+            assertTrue(provider.checkValid("select * from t where id = ?"));
+        }
+        assertEquals(1, provider.getHardCheckCount());
+        assertEquals(9, provider.getWhiteListHitCount());
+        assertEquals(0, provider.getWhiteListShapeHitCount());
+
+        // a literal variant does not share the shape of the prepared sql, it is checked once, then
+        // answered by its text and its own shape
+        for (int i = 0; i < 3; ++i) {
+            assertTrue(provider.checkValid("select * from t where id = 3"));
+        }
+        assertTrue(provider.checkValid("select * from t where id = 4"));
+        assertEquals(2, provider.getHardCheckCount());
+        assertEquals(12, provider.getWhiteListHitCount());
+        assertEquals(1, provider.getWhiteListShapeHitCount());
+    }
+
+    public void test_mustParameterized() throws Exception {
+        WallConfig config = new WallConfig(MySqlWallProvider.DEFAULT_CONFIG_DIR);
+        config.setMustParameterized(true);
+        WallProvider provider = new MySqlWallProvider(config);
+
+        assertTrue(provider.checkValid("select * from t where id = ?"));
+        // the literal variant must not be answered by the entry of the prepared sql
+        assertFalse(provider.checkValid("select * from t where id = 1"));
+        assertEquals(1, provider.check("select * from t where id = 1").getViolations().size());
+    }
+
+    public void test_constant_condition() throws Exception {
+        WallProvider provider = new MySqlWallProvider();
+
+        assertTrue(provider.checkValid("select * from t where id = 1 or 2 = 3"));
+        assertFalse(provider.checkValid("select * from t where id = 1 or 1 = 1"));
+        assertEquals(0, provider.getWhiteListShapeHitCount());
+    }
+
+    public void test_maxSize() throws Exception {
+        WallConfig config = new WallConfig(MySqlWallProvider.DEFAULT_CONFIG_DIR);
+        config.setWhiteListMaxSize(16);
+        config.setBlackListMaxSize(8);
+        WallProvider provider = new MySqlWallProvider(config);
+        assertEquals(16, provider.getWhiteListMaxSize());
+        assertEquals(8, provider.getBlackListMaxSize());
+
+        assertTrue(provider.checkValid("select * from t where id = 1"));
+        provider.setWhiteListMaxSize(32);
+        assertEquals(32, provider.getWhiteListMaxSize());
+        assertEquals(0, provider.getWhiteList().size());
+    }
+}
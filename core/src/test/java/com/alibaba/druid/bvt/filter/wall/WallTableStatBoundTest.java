@@ -0,0 +1,132 @@
+package com.alibaba.druid.bvt.filter.wall;
+
+import com.alibaba.druid.util.HeavyHitters;
+import com.alibaba.druid.wall.WallConfig;
+import com.alibaba.druid.wall.WallProvider;
+import com.alibaba.druid.wall.WallProviderStatValue;
+import com.alibaba.druid.wall.WallTableStat;
+import com.alibaba.druid.wall.spi.MySqlWallProvider;
+import junit.framework.TestCase;
+
+import java.util.List;
+import java.util.Map;
+
+public class WallTableStatBoundTest extends TestCase {
+    public void test_bound() throws Exception {
+        WallConfig config = new WallConfig();
+        config.setTableStatMaxSize(10);
+        WallProvider provider = new MySqlWallProvider(config);
+        provider.setWhiteListEnable(false);
+
+        for (int i = 0; i < 100; ++i) {
+            assertTrue(provider.checkValid("select * from t_order_" + i + " where id = " + i));
+        }
+        for (int i = 0; i < 50; ++i) {
+            assertTrue(provider.checkValid("select * from t_hot where id = " + i));
+        }
+
+        assertEquals(10, provider.getTableStats().size());
+
+        WallProviderStatValue statValue = provider.getStatValue(false);
+        assertEquals(10, statValue.getTables().size());
+        assertEquals(140, statValue.getTableOverflowCount());
+        assertEquals("t_hot", statValue.getOverflowTables().get(0).getKey());
+        assertEquals(50L, statValue.getOverflowTables().get(0).getValue().longValue());
+
+        Map<String, Object> map = statValue.toMap();
+        assertEquals(140L, map.get("tableOverflowCount"));
+        List<Map<String, Object>> overflowTables = (List<Map<String, Object>>) map.get("overflowTables");
+        assertEquals("t_hot", overflowTables.get(0).get("name"));
+    }
+
+    public void test_decay() throws Exception {
+        WallConfig config = new WallConfig();
+        config.setTableStatMaxSize(2);
+        WallProvider provider = new MySqlWallProvider(config);
+        provider.setWhiteListEnable(false);
+
+        provider.checkValid("select * from t_a");
+        provider.checkValid("select * from t_b");
+        assertEquals(2, provider.getTableStats().size());
+
+        provider.getStatValue(true);
+        assertEquals(2, provider.getTableStats().size());
+
+        provider.checkValid("select * from t_a where id = 1");
+        provider.getStatValue(true);
+        assertEquals(1, provider.getTableStats().size());
+        assertNotNull(provider.getTableStats().get("t_a"));
+
+        provider.checkValid("select * from t_c");
+        assertNotNull(provider.getTableStats().get("t_c"));
+        assertEquals(0, provider.getStatValue(false).getTableOverflowCount());
+    }
+
+    public void test_noDecayBelowBound() throws Exception {
+        WallConfig config = new WallConfig();
+        config.setTableStatMaxSize(10);
+        WallProvider provider = new MySqlWallProvider(config);
+        provider.setWhiteListEnable(false);
+
+        provider.checkValid("select * from t_a");
+        provider.checkValid("select * from t_b");
+        WallTableStat stat = provider.getTableStats().get("t_b");
+
+        provider.getStatValue(true);
+        provider.checkValid("select * from t_a where id = 1");
+        provider.getStatValue(true);
+        assertEquals(2, provider.getTableStats().size());
+        assertSame(stat, provider.getTableStats().get("t_b"));
+    }
+
+    public void test_mergeShard() throws Exception {
+        WallConfig config = new WallConfig();
+        config.setMergeShardTableStat(true);
+        WallProvider provider = new MySqlWallProvider(config);
+        provider.setWhiteListEnable(false);
+
+        for (int i = 0; i < 64; ++i) {
+            provider.checkValid("select * from db_" + i + ".t_order_" + String.format("%04d", i));
+        }
+        provider.checkValid("select * from t1");
+
+        assertEquals(2, provider.getTableStats().size());
+        assertEquals(64, provider.getTableStats().get("t_order_*").getSelectCount());
+        assertNotNull(provider.getTableStats().get("t1"));
+    }
+
+    public void test_mergeShardName() throws Exception {
+        WallConfig config = new WallConfig();
+        config.setMergeShardTableStat(true);
+        WallProvider provider = new MySqlWallProvider(config);
+
+        assertSame(provider.getTableStat("db_03.order_0001"), provider.getTableStat("db_7.order_12"));
+        assertNotNull(provider.getTableStats().get("db_*.order_*"));
+        assertNotNull(provider.getTableStat("order_"));
+        assertNotNull(provider.getTableStats().get("order_"));
+        assertNotNull(provider.getTableStat("_01"));
+        assertNotNull(provider.getTableStats().get("_01"));
+    }
+
+    public void test_heavyHitters() throws Exception {
+        HeavyHitters hitters = new HeavyHitters(256, 4);
+        for (int i = 0; i < 10000; ++i) {
+            hitters.add("name_" + i);
+            if (i % 10 == 0) {
+                hitters.add("hot_" + (i % 40));
+            }
+        }
+
+        assertEquals(11000, hitters.getTotal());
+        assertTrue(hitters.estimate("hot_0") >= 250);
+        assertEquals(4, hitters.getTop().size());
+        for (Map.Entry<String, Long> entry : hitters.getTop()) {
+            assertTrue(entry.getKey(), entry.getKey().startsWith("hot_"));
+        }
+
+        hitters.reset();
+        assertEquals(0, hitters.getTotal());
+        assertEquals(0, hitters.estimate("hot_0"));
+        assertTrue(hitters.getTop().isEmpty());
+    }
+}
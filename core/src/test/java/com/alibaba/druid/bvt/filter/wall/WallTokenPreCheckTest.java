@@ -0,0 +1,153 @@
+package com.alibaba.druid.bvt.filter.wall;
+
+import com.alibaba.druid.wall.WallCheckResult;
+import com.alibaba.druid.wall.WallConfig;
+import com.alibaba.druid.wall.WallProvider;
+import com.alibaba.druid.wall.WallSqlTableStat;
+import com.alibaba.druid.wall.spi.MySqlWallProvider;
+import com.alibaba.druid.wall.spi.OracleWallProvider;
+import com.alibaba.druid.wall.spi.PGWallProvider;
+import com.alibaba.druid.wall.spi.SQLServerWallProvider;
+import junit.framework.TestCase;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+public class WallTokenPreCheckTest extends TestCase {
+    static final String[] SQLS = {
+            "select * from t",
+            "select id, name from t where id = 1",
+            "select distinct a.id as x, a.name from t_user as a where a.id = ? and a.status in (1, 2, 3) order by a.id desc limit 10",
+            "select id from t where name is not null and age >= 18 and age <> 20 group by id order by id limit 1, 10",
+            "select id from `t_order` where `id` = 'a''b'",
+            "select id from t where id = 1 limit 0",
+            "select id from t where 1 = 1",
+            "select id from t where id = 1 or 1 = 1",
+            "select id from t where id = 1 -- comment",
+            "select id from t /* comment */ where id = 1",
+            "select /*+ index(t) */ id from t",
+            "select id from t ignore",
+            "select id from t x where x.id = 1",
+            "select id from mysql.user",
+            "select id from information_schema.tables",
+            "select user from t",
+            "select version from t",
+            "select id from t where id = sleep(1)",
+            "select sleep(1)",
+            "select id from t where id = 1 union select password from mysql.user",
+            "select id from t where id = 1 union select 1, 2",
+            "select id from t into outfile '/tmp/x'",
+            "select id from t where id = 1; drop table t",
+            "select id from t where id = 1;",
+            "select id from t where id = 1;;",
+            "select id from t where id = 1; select 1",
+            "insert into t (id) values (1); delete from t",
+            "update t set a = 1 where id = 1; truncate table t",
+            "delete from t where id = 1;",
+            "select id from t where name = 'x;y'",
+            "select id from t where id = 1; /* x */",
+            "select id from t$1",
+            "select count(*) from t",
+            "select id from t where id = -1",
+            "select id, from t",
+            "select id from t where",
+            "select id from t where id = 1 and",
+            "select id from t order by",
+            "select id from t limit ?, ?",
+            "select id from t limit 10 offset 5",
+            "select id from t where id in (1, 2",
+    };
+
+    public void test_mysql() throws Exception {
+        assertEquivalent(new MySqlWallProvider(config(false)), new MySqlWallProvider(config(true)));
+    }
+
+    public void test_mysql_config() throws Exception {
+        WallConfig config = config(false);
+        config.setSelectAllColumnAllow(false);
+        config.setMustParameterized(true);
+        config.setMultiStatementAllow(true);
+        config.setCommentAllow(true);
+
+        WallConfig preCheckConfig = config(true);
+        preCheckConfig.setSelectAllColumnAllow(false);
+        preCheckConfig.setMustParameterized(true);
+        preCheckConfig.setMultiStatementAllow(true);
+        preCheckConfig.setCommentAllow(true);
+
+        assertEquivalent(new MySqlWallProvider(config), new MySqlWallProvider(preCheckConfig));
+    }
+
+    public void test_oracle() throws Exception {
+        WallConfig config = new WallConfig(OracleWallProvider.DEFAULT_CONFIG_DIR);
+        WallConfig preCheckConfig = new WallConfig(OracleWallProvider.DEFAULT_CONFIG_DIR);
+        preCheckConfig.setTokenPreCheck(true);
+        assertEquivalent(new OracleWallProvider(config), new OracleWallProvider(preCheckConfig));
+    }
+
+    public void test_pg() throws Exception {
+        WallConfig config = new WallConfig(PGWallProvider.DEFAULT_CONFIG_DIR);
+        WallConfig preCheckConfig = new WallConfig(PGWallProvider.DEFAULT_CONFIG_DIR);
+        preCheckConfig.setTokenPreCheck(true);
+        assertEquivalent(new PGWallProvider(config), new PGWallProvider(preCheckConfig));
+    }
+
+    public void test_sqlserver() throws Exception {
+        WallConfig config = new WallConfig(SQLServerWallProvider.DEFAULT_CONFIG_DIR);
+        WallConfig preCheckConfig = new WallConfig(SQLServerWallProvider.DEFAULT_CONFIG_DIR);
+        preCheckConfig.setTokenPreCheck(true);
+        assertEquivalent(new SQLServerWallProvider(config), new SQLServerWallProvider(preCheckConfig));
+    }
+
+    public void test_count() throws Exception {
+        WallProvider provider = new MySqlWallProvider(config(true));
+
+        assertTrue(provider.checkValid("select id from t where id = 1"));
+        assertFalse(provider.checkValid("select id from t where id = 1; drop table t"));
+        assertTrue(provider.checkValid("select id from t where id = 1 union select id from t2"));
+
+        assertEquals(1, provider.getTokenAcceptCount());
+        assertEquals(1, provider.getTokenRejectCount());
+        assertEquals(3, provider.getHardCheckCount());
+        assertEquals(1, provider.getBlackList().size());
+    }
+
+    static WallConfig config(boolean tokenPreCheck) {
+        WallConfig config = new WallConfig(MySqlWallProvider.DEFAULT_CONFIG_DIR);
+        config.setTokenPreCheck(tokenPreCheck);
+        return config;
+    }
+
+    static void assertEquivalent(WallProvider expected, WallProvider provider) {
+        for (int i = 0; i < 2; ++i) {
+            for (String sql : SQLS) {
+                WallCheckResult expectedResult = expected.check(sql);
+                WallCheckResult result = provider.check(sql);
+
+                assertEquals(sql, expectedResult.getViolations().isEmpty(), result.getViolations().isEmpty());
+                assertEquals(sql, expectedResult.getSql(), result.getSql());
+                if (result.getViolations().isEmpty()) {
+                    assertEquals(sql, toString(expectedResult.getTableStats()), toString(result.getTableStats()));
+                }
+            }
+        }
+
+        assertEquals(expected.getWhiteList(), provider.getWhiteList());
+        assertEquals(expected.getBlackList(), provider.getBlackList());
+        assertEquals(expected.getTableStats().keySet(), provider.getTableStats().keySet());
+        assertTrue(provider.getTokenAcceptCount() + provider.getTokenRejectCount() > 0);
+    }
+
+    static String toString(Map<String, WallSqlTableStat> tableStats) {
+        if (tableStats == null || tableStats.isEmpty()) {
+            return "{}";
+        }
+
+        Map<String, String> map = new TreeMap<String, String>();
+        for (Map.Entry<String, WallSqlTableStat> entry : tableStats.entrySet()) {
+            WallSqlTableStat stat = entry.getValue();
+            map.put(entry.getKey(), stat.getSelectCount() + "/" + stat.getSelectIntoCount());
+        }
+        return map.toString();
+    }
+}
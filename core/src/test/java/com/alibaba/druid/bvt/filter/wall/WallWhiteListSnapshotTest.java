@@ -0,0 +1,67 @@
+package com.alibaba.druid.bvt.filter.wall;
+
+import com.alibaba.druid.wall.WallConfig;
+import com.alibaba.druid.wall.WallProvider;
+import com.alibaba.druid.wall.WallSqlStat;
+import com.alibaba.druid.wall.spi.MySqlWallProvider;
+import junit.framework.TestCase;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+
+public class WallWhiteListSnapshotTest extends TestCase {
+    private String[] sqls = {
+            "select id, now() from t_user where id = 1",
+            "update t_order set status = 'x'\nwhere id = 2",
+            "insert into t_order (id, name) values (?, ?)"
+    };
+
+    public void test_snapshot() throws Exception {
+        WallProvider provider = new MySqlWallProvider(new WallConfig(MySqlWallProvider.DEFAULT_CONFIG_DIR));
+        for (String sql : sqls) {
+            assertTrue(provider.check(sql).getViolations().isEmpty());
+        }
+        provider.check("select * from t where id = 1 or 1 = 1");
+
+        StringWriter out = new StringWriter();
+        assertEquals(3, provider.exportWhiteList(out));
+
+        WallProvider restarted = new MySqlWallProvider(new WallConfig(MySqlWallProvider.DEFAULT_CONFIG_DIR));
+        assertEquals(3, restarted.importWhiteList(new StringReader(out.toString())));
+
+        for (String sql : sqls) {
+            assertTrue(restarted.check(sql).getViolations().isEmpty());
+        }
+        assertEquals(0, restarted.getHardCheckCount());
+        assertEquals(1, restarted.getTableStat("t_user").getSelectCount());
+        assertEquals(1, restarted.getTableStat("t_order").getUpdateCount());
+        assertEquals(1, restarted.getTableStat("t_order").getInsertCount());
+        assertEquals(1, restarted.getFunctionStats().get("now").getInvokeCount());
+
+        WallSqlStat sqlStat = restarted.getWhiteSql("select id, now() from t_user where id = 3");
+        assertNotNull(sqlStat);
+        assertEquals(sqls[0], sqlStat.getSample());
+
+        // blacklisted sql is not exported
+        restarted.check("select * from t where id = 1 or 1 = 1");
+        assertEquals(1, restarted.getHardCheckCount());
+    }
+
+    public void test_configChanged() throws Exception {
+        WallProvider provider = new MySqlWallProvider(new WallConfig(MySqlWallProvider.DEFAULT_CONFIG_DIR));
+        provider.check(sqls[1]);
+
+        StringWriter out = new StringWriter();
+        provider.exportWhiteList(out);
+
+        WallConfig config = new WallConfig(MySqlWallProvider.DEFAULT_CONFIG_DIR);
+        config.setUpdateAllow(false);
+        WallProvider restarted = new MySqlWallProvider(config);
+        assertEquals(0, restarted.importWhiteList(new StringReader(out.toString())));
+        assertFalse(restarted.check(sqls[1]).getViolations().isEmpty());
+
+        config = new WallConfig(MySqlWallProvider.DEFAULT_CONFIG_DIR);
+        config.getDenyTables().add("t_secret");
+        assertTrue(config.hashCode64() != new WallConfig(MySqlWallProvider.DEFAULT_CONFIG_DIR).hashCode64());
+    }
+}
@@ -0,0 +1,108 @@
+package com.alibaba.druid.bvt.pool;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import com.alibaba.druid.pool.DruidDataSource;
+import com.alibaba.druid.pool.DruidDataSourceStatFileLogger;
+import com.alibaba.druid.support.json.JSONUtils;
+import com.alibaba.druid.util.JdbcUtils;
+
+public class DruidDataSourceStatFileLoggerTest extends TestCase {
+    private DruidDataSource dataSource;
+    private DruidDataSourceStatFileLogger statLogger;
+    private File file;
+
+    protected void setUp() throws Exception {
+        file = File.createTempFile("druid-stat", ".log");
+        file.delete();
+
+        statLogger = new DruidDataSourceStatFileLogger(file.getPath());
+
+        dataSource = new DruidDataSource();
+        dataSource.setUrl("jdbc:mock:xxx");
+        dataSource.setFilters("stat");
+        dataSource.setStatLogger(statLogger);
+        dataSource.init();
+    }
+
+    protected void tearDown() throws Exception {
+        JdbcUtils.close(dataSource);
+        statLogger.close();
+        for (int i = 0; i <= statLogger.getMaxBackupIndex(); ++i) {
+            new File(i == 0 ? file.getPath() : file.getPath() + "." + i).delete();
+        }
+    }
+
+    public void test_log() throws Exception {
+        execute("select ?");
+        dataSource.logStats();
+        execute("select ?");
+        execute("update t set \"a\" = ?");
+        dataSource.logStats();
+
+        List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        assertEquals(7, lines.size());
+        for (String line : lines) {
+            assertNotNull(line, JSONUtils.parse(line));
+        }
+
+        assertTrue(lines.get(0), lines.get(0).startsWith("{\"type\":\"ds\""));
+        assertTrue(lines.get(0), lines.get(0).contains("\"url\":\"jdbc:mock:xxx\""));
+        assertTrue(lines.get(1), lines.get(1).startsWith("{\"type\":\"sqlDef\""));
+        assertTrue(lines.get(1), lines.get(1).contains("\"sql\":\"select ?\""));
+        assertTrue(lines.get(2), lines.get(2).startsWith("{\"type\":\"sql\""));
+        assertTrue(lines.get(2), lines.get(2).contains("\"executeCount\":1"));
+
+        // unchanged values and known sql are not written again
+        assertTrue(lines.get(3), lines.get(3).startsWith("{\"type\":\"ds\""));
+        assertFalse(lines.get(3), lines.get(3).contains("\"url\""));
+        assertTrue(lines.get(4), lines.get(4).startsWith("{\"type\":\"sql\","));
+        assertTrue(lines.get(5), lines.get(5).startsWith("{\"type\":\"sqlDef\""));
+        assertTrue(lines.get(5), lines.get(5).contains("\"sql\":\"update t set \\\"a\\\" = ?\""));
+        assertEquals(1, countSqlDef(lines, "select ?"));
+    }
+
+    public void test_roll() throws Exception {
+        statLogger.setMaxFileSize(1);
+        for (int i = 0; i < 5; ++i) {
+            execute("select ?");
+            dataSource.logStats();
+        }
+
+        assertTrue(file.exists());
+        assertTrue(new File(file.getPath() + ".1").exists());
+        assertTrue(new File(file.getPath() + ".3").exists());
+        assertFalse(new File(file.getPath() + ".4").exists());
+
+        // each file starts from scratch
+        List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        assertTrue(lines.get(0).contains("\"url\""));
+        assertEquals(1, countSqlDef(lines, "select ?"));
+    }
+
+    private void execute(String sql) throws Exception {
+        Connection conn = dataSource.getConnection();
+        PreparedStatement stmt = conn.prepareStatement(sql);
+        stmt.setInt(1, 1);
+        stmt.execute();
+        stmt.close();
+        conn.close();
+    }
+
+    private static int countSqlDef(List<String> lines, String sql) {
+        int count = 0;
+        for (String line : lines) {
+            if (line.startsWith("{\"type\":\"sqlDef\"") && line.contains("\"sql\":\"" + sql + "\"")) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
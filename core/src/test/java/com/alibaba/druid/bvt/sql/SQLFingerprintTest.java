@@ -0,0 +1,221 @@
+package com.alibaba.druid.bvt.sql;
+
+import com.alibaba.druid.DbType;
+import com.alibaba.druid.sql.parser.SQLFingerprint;
+import com.alibaba.druid.sql.visitor.ParameterizedOutputVisitorUtils;
+import com.alibaba.druid.util.FnvHash;
+import com.alibaba.druid.util.Utils;
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class SQLFingerprintTest extends TestCase {
+    private final String[][] groups = {
+            {
+                    "select * from t where id = 1",
+                    "SELECT * FROM T WHERE ID = 2",
+                    "select * from t where id = -3",
+                    "select * from t where id = ?",
+                    "select * from t where id = 'x'",
+            },
+            {
+                    "select * from t where id in (1, 2, 3)",
+                    "select * from t where id in (4)",
+                    "select * from t where id in (?, ?)",
+                    "select * from t where id in ('a', -1, 2.5)",
+            },
+            {
+                    "select * from t where id not in (1, 2)",
+            },
+            {
+                    "select * from t where c in ('a', b)",
+                    "select * from t where c in (1, b)",
+            },
+            {
+                    "select * from t where c in (b, 'a')",
+            },
+            {
+                    "select * from t where (a, b) in ((1, 2), (3, 4))",
+                    "select * from t where (a, b) in ((5, 6))",
+            },
+            {
+                    "select * from t where id in (select id from s where x = 3)",
+                    "select * from t where id in (select id from s where x = 4)",
+            },
+            {
+                    "insert into t(a, b) values (1, 'x'), (2, 'y')",
+                    "insert into t(a, b) values (3, 'z')",
+                    "insert into t(a, b) values (?, ?), (?, ?), (?, ?)",
+            },
+            {
+                    "insert into t(a, b) values (1, now()), (2, now())",
+                    "insert into t(a, b) values (3, now())",
+            },
+            {
+                    "insert into t(a, b) values (1, 'x'), (b, 2)",
+            },
+            {
+                    "select a, 2 from t group by 1, a order by a, 2 desc",
+                    "select a, 3 from t group by 1, a order by a, 2 desc",
+            },
+            {
+                    "select a, 2 from t group by 2, a order by a, 2 desc",
+            },
+            {
+                    "select * from t where a = null and b is null and c = true",
+                    "select * from t where a = 1 and b is null and c = false",
+            },
+            {
+                    "select * from t where a = null and b is not null and c = true",
+            },
+            {
+                    "select * from t order by a limit 10, 20",
+                    "select * from t order by a limit 1, 2",
+            },
+            {
+                    "select a - 1, a-1, a + -1 from t",
+                    "select a - 2, a-3, a + -4 from t",
+            },
+            {
+                    "select * from t where x = +1",
+            },
+            {
+                    "select date '2020-01-01', x'ff', 1.5e3 from t",
+                    "select date '2020-01-01', x'ee', 2.5 from t",
+            },
+            {
+                    "select date '2020-01-02', x'ff', 1.5e3 from t",
+            },
+            {
+                    "update t set a = 1, b = b + 1 where id = 3",
+                    "update t set a = 'x', b = b + 2 where id = 4",
+            },
+            {
+                    "delete from t where id in (1, 2) limit 5",
+                    "delete from t where id in (3) limit 6",
+            },
+            {
+                    "select count(*) from t group by a having count(*) > 5",
+                    "select count(*) from t group by a having count(*) > 6",
+            },
+            {
+                    "select * from t where a like 'x%' escape '!'",
+                    "select * from t where a like 'y%' escape '#'",
+            },
+            {
+                    "SELECT * FROM t WHERE a = 1 AND b IN (SELECT x FROM y WHERE z IN (1,2))",
+                    "SELECT * FROM t WHERE a = 2 AND b IN (SELECT x FROM y WHERE z IN (3))",
+            },
+            {
+                    "select sum(a*2) from t where b > -1.5",
+                    "select sum(a*3) from t where b > 7",
+            },
+    };
+
+    public void test_compatible() throws Exception {
+        List<String> sqls = new ArrayList<String>();
+        for (String[] group : groups) {
+            for (String sql : group) {
+                sqls.add(sql);
+            }
+        }
+        assertCompatible(sqls);
+    }
+
+    public void test_compatible_resource() throws Exception {
+        List<String> sqls = new ArrayList<String>();
+        for (int i = 0; i < 35; ++i) {
+            String text = Utils.readFromResource("bvt/parser/mysql-" + i + ".txt");
+            if (text == null) {
+                continue;
+            }
+            String sql = text.split("---------------------------")[0].trim();
+            try {
+                // empty output, parameterizeHash skips some insert statements
+                if (ParameterizedOutputVisitorUtils.parameterizeHash(sql, DbType.mysql, null) == FnvHash.BASIC) {
+                    continue;
+                }
+            } catch (Exception ignored) {
+                continue;
+            }
+            sqls.add(sql);
+        }
+        assertTrue(sqls.size() > 10);
+        assertCompatible(sqls);
+    }
+
+    public void test_comments() throws Exception {
+        long hash = SQLFingerprint.fingerprint("select * from t where id = 1", DbType.mysql);
+        assertEquals(hash, SQLFingerprint.fingerprint("select /* c */ * from t -- x\n where id = 2;", DbType.mysql));
+        assertEquals(hash, SQLFingerprint.fingerprint("select * from t where id = 3 /* c */", DbType.mysql));
+        assertFalse(hash == SQLFingerprint.fingerprint("select * from t where id = 3; select 1", DbType.mysql));
+        assertFalse(hash == SQLFingerprint.fingerprint("select /*+ index(t i) */ * from t where id = 3", DbType.mysql));
+
+        assertEquals(0, SQLFingerprint.fingerprint("", DbType.mysql));
+        assertEquals(0, SQLFingerprint.fingerprint("/* c */", DbType.mysql));
+    }
+
+    public void test_other_db() throws Exception {
+        for (DbType dbType : new DbType[]{DbType.oracle, DbType.postgresql, DbType.odps, DbType.sqlserver}) {
+            assertEquals(
+                    SQLFingerprint.fingerprint("select * from t where id in (1, 2) and name = 'a'", dbType),
+                    SQLFingerprint.fingerprint("select * from t where id in (3) and name = 'b'", dbType)
+            );
+        }
+    }
+
+    public void test_strict() throws Exception {
+        long hash = SQLFingerprint.fingerprint("select * from t where id = 1 and name like 'a%' and k in (1, 2)", DbType.mysql, true);
+        assertEquals(hash, SQLFingerprint.fingerprint("select * from t where id = -2 and name like 'b%' and k in (3)", DbType.mysql, true));
+
+        // constants not compared with a column keep their values
+        long constant = SQLFingerprint.fingerprint("select * from t where id = 1 or 2 = 3", DbType.mysql, true);
+        assertFalse(constant == SQLFingerprint.fingerprint("select * from t where id = 1 or 1 = 1", DbType.mysql, true));
+        assertFalse(SQLFingerprint.fingerprint("select * from t where 1 in (2)", DbType.mysql, true)
+                == SQLFingerprint.fingerprint("select * from t where 2 in (2)", DbType.mysql, true));
+        assertFalse(SQLFingerprint.fingerprint("select sleep(1)", DbType.mysql, true)
+                == SQLFingerprint.fingerprint("select sleep(5)", DbType.mysql, true));
+        assertEquals(SQLFingerprint.fingerprint("select sleep(1)", DbType.mysql),
+                SQLFingerprint.fingerprint("select sleep(5)", DbType.mysql));
+
+        // comments are part of the shape
+        assertFalse(SQLFingerprint.fingerprint("select * from t where id = 1 /* a */", DbType.mysql, true)
+                == SQLFingerprint.fingerprint("select * from t where id = 1 /* b */", DbType.mysql, true));
+
+        assertEquals(SQLFingerprint.fingerprint("insert into t values (1, 'a'), (2, 'b')", DbType.mysql, true),
+                SQLFingerprint.fingerprint("insert into t values (3, 'c')", DbType.mysql, true));
+
+        // a prepared sql does not share the shape of the same sql carrying values
+        assertFalse(SQLFingerprint.fingerprint("select * from t where id = ?", DbType.mysql, true)
+                == SQLFingerprint.fingerprint("select * from t where id = 1", DbType.mysql, true));
+        assertFalse(SQLFingerprint.fingerprint("select * from t where k in (?, ?)", DbType.mysql, true)
+                == SQLFingerprint.fingerprint("select * from t where k in (1, 2)", DbType.mysql, true));
+        assertFalse(SQLFingerprint.fingerprint("select * from t where k in (?, ?)", DbType.mysql, true)
+                == SQLFingerprint.fingerprint("select * from t where k in (?, 2)", DbType.mysql, true));
+        assertEquals(SQLFingerprint.fingerprint("select * from t where k in (?, ?)", DbType.mysql, true),
+                SQLFingerprint.fingerprint("select * from t where k in (?)", DbType.mysql, true));
+        assertFalse(SQLFingerprint.fingerprint("insert into t values (?, ?)", DbType.mysql, true)
+                == SQLFingerprint.fingerprint("insert into t values (1, 'a')", DbType.mysql, true));
+        assertEquals(SQLFingerprint.fingerprint("select * from t where id = ?", DbType.mysql),
+                SQLFingerprint.fingerprint("select * from t where id = 1", DbType.mysql));
+    }
+
+    private void assertCompatible(List<String> sqls) {
+        int size = sqls.size();
+        long[] fingerprints = new long[size];
+        long[] hashes = new long[size];
+        for (int i = 0; i < size; ++i) {
+            fingerprints[i] = SQLFingerprint.fingerprint(sqls.get(i), DbType.mysql);
+            hashes[i] = ParameterizedOutputVisitorUtils.parameterizeHash(sqls.get(i), DbType.mysql, null);
+        }
+
+        for (int i = 0; i < size; ++i) {
+            for (int j = i + 1; j < size; ++j) {
+                assertEquals(sqls.get(i) + "\n" + sqls.get(j),
+                        hashes[i] == hashes[j],
+                        fingerprints[i] == fingerprints[j]);
+            }
+        }
+    }
+}
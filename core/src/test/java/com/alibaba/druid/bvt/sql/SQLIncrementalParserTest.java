@@ -0,0 +1,144 @@
+package com.alibaba.druid.bvt.sql;
+
+import com.alibaba.druid.DbType;
+import com.alibaba.druid.sql.SQLUtils;
+import com.alibaba.druid.sql.ast.SQLStatement;
+import com.alibaba.druid.sql.ast.expr.SQLIdentifierExpr;
+import com.alibaba.druid.sql.parser.ParserException;
+import com.alibaba.druid.sql.parser.SQLIncrementalParser;
+import com.alibaba.druid.sql.parser.SQLParserFeature;
+import com.alibaba.druid.sql.visitor.SQLASTVisitorAdapter;
+import junit.framework.TestCase;
+
+import java.util.List;
+import java.util.Random;
+
+public class SQLIncrementalParserTest extends TestCase {
+    private final String script = "select * from t1 where id = 1;\n"
+            + "-- second\n"
+            + "update t2 set a = 1 where id = 2;\n"
+            + "insert into t3 (a, b) values (1, 2);\n"
+            + "delete from t4 where id in (1, 2);\n"
+            + "select count(*) from t5\n";
+
+    public void test_edit() throws Exception {
+        SQLIncrementalParser parser = new SQLIncrementalParser(script, DbType.mysql);
+        List<SQLStatement> statementList = parser.getStatementList();
+        assertEquals(5, statementList.size());
+        SQLStatement first = statementList.get(0);
+        SQLStatement last = statementList.get(4);
+
+        int offset = script.indexOf("t3");
+        SQLIncrementalParser.Change change = parser.edit(offset, 2, "t33");
+        assertEquals(2, change.getIndex());
+        assertEquals(1, change.getRemovedCount());
+        assertEquals(1, change.getAddedCount());
+        assertSame(first, statementList.get(0));
+        assertSame(last, statementList.get(4));
+        assertEquals(offset, parser.getText().indexOf("t33"));
+        assertSameAsFullParse(parser);
+
+        // removing a semicolon joins two statements
+        offset = parser.getText().indexOf("(1, 2);") + 6;
+        change = parser.edit(offset, 1, " ,(3, 4)");
+        assertEquals(2, change.getIndex());
+        assertSameAsFullParse(parser);
+
+        offset = parser.getText().indexOf("t5") + 2;
+        change = parser.edit(offset, 0, ";\nselect 1");
+        assertEquals(1, change.getRemovedCount());
+        assertEquals(2, change.getAddedCount());
+        assertSameAsFullParse(parser);
+
+        parser.edit(0, parser.getText().length(), "");
+        assertEquals(0, statementList.size());
+        parser.edit(0, 0, "select 1; select 2");
+        assertSameAsFullParse(parser);
+    }
+
+    public void test_error() throws Exception {
+        SQLIncrementalParser parser = new SQLIncrementalParser(script, DbType.mysql);
+        SQLStatement last = parser.getStatementList().get(4);
+
+        int offset = script.indexOf("where id in");
+        try {
+            parser.edit(offset, 0, "where ");
+            fail();
+        } catch (ParserException ignored) {
+            // skip
+        }
+        assertTrue(parser.hasError());
+        assertEquals(4, parser.getStatementList().size());
+        assertSame(last, parser.getStatementList().get(3));
+        assertTrue(parser.getText().startsWith("\nselect count", parser.getStatementStart(3)));
+        assertEquals(-1, parser.indexOf(offset));
+
+        parser.edit(offset, 6, "");
+        assertFalse(parser.hasError());
+        assertEquals(script, parser.getText());
+        assertSameAsFullParse(parser);
+        assertSame(last, parser.getStatementList().get(4));
+    }
+
+    public void test_random() throws Exception {
+        String[] pieces = {";", " ", "\n", "select 1;", "2", ",", "t", "from", "/* c */", "-- c\n"};
+        Random random = new Random(1);
+        SQLIncrementalParser parser = new SQLIncrementalParser(script, DbType.mysql);
+        int success = 0;
+        for (int i = 0; i < 1000; ++i) {
+            String text = parser.getText();
+            int offset = random.nextInt(text.length() + 1);
+            int length = random.nextInt(Math.min(2, text.length() - offset) + 1);
+            String replacement = pieces[random.nextInt(pieces.length)];
+            try {
+                parser.edit(offset, length, replacement);
+                success++;
+            } catch (ParserException ignored) {
+                // undo
+                parser.edit(offset, replacement.length(), text.substring(offset, offset + length));
+                assertFalse(parser.hasError());
+                assertEquals(text, parser.getText());
+            }
+            assertSameAsFullParse(parser);
+        }
+        assertTrue(success > 100);
+    }
+
+    public void test_sourceLocation() throws Exception {
+        SQLIncrementalParser parser = new SQLIncrementalParser("select a from t1;\nselect b from t2;", DbType.mysql,
+                SQLParserFeature.KeepSourceLocation);
+        assertEquals(2, firstIdentifierLine(parser.getStatementList().get(1)));
+
+        parser.edit(0, 0, "\n\n");
+        assertEquals(3, firstIdentifierLine(parser.getStatementList().get(0)));
+        assertEquals(4, firstIdentifierLine(parser.getStatementList().get(1)));
+
+        parser.edit(0, 1, "");
+        assertEquals(3, firstIdentifierLine(parser.getStatementList().get(1)));
+    }
+
+    private static int firstIdentifierLine(SQLStatement stmt) {
+        final int[] line = new int[1];
+        stmt.accept(new SQLASTVisitorAdapter() {
+            public boolean visit(SQLIdentifierExpr x) {
+                if (line[0] == 0) {
+                    line[0] = x.getSourceLine();
+                }
+                return false;
+            }
+        });
+        return line[0];
+    }
+
+    private static void assertSameAsFullParse(SQLIncrementalParser parser) {
+        String text = parser.getText();
+        List<SQLStatement> expected = SQLUtils.parseStatements(text, DbType.mysql);
+        List<SQLStatement> statementList = parser.getStatementList();
+        assertEquals(text, expected.size(), statementList.size());
+        for (int i = 0; i < expected.size(); ++i) {
+            assertEquals(text, SQLUtils.toMySqlString(expected.get(i)), SQLUtils.toMySqlString(statementList.get(i)));
+            assertEquals(text, i, parser.indexOf(parser.getStatementStart(i)));
+            assertEquals(text, i == expected.size() - 1 ? text.length() : parser.getStatementStart(i + 1), parser.getStatementEnd(i));
+        }
+    }
+}
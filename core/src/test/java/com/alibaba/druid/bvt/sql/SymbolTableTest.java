@@ -1,5 +1,8 @@
 package com.alibaba.druid.bvt.sql;
 
+import com.alibaba.druid.sql.dialect.mysql.parser.MySqlLexer;
+import com.alibaba.druid.sql.dialect.odps.parser.OdpsLexer;
+import com.alibaba.druid.sql.parser.Lexer;
 import com.alibaba.druid.sql.parser.SymbolTable;
 import com.alibaba.druid.util.FnvHash;
 import junit.framework.TestCase;
@@ -33,6 +36,64 @@ public class SymbolTableTest extends TestCase {
         System.out.println("xab#time:3333".indexOf("#time"));
     }
 
+    public void test_collision_probe() throws Exception {
+        SymbolTable symbols = new SymbolTable(16);
+
+        // same bucket, different hash
+        long hash0 = 1L;
+        long hash1 = (16L << 32) | 17L;
+        assertEquals("a", symbols.addSymbol("a", hash0));
+        assertEquals("b", symbols.addSymbol("b", hash1));
+        assertEquals("a", symbols.findSymbol(hash0));
+        assertEquals("b", symbols.findSymbol(hash1));
+        assertEquals(2, symbols.size());
+    }
+
+    public void test_grow_bounded() throws Exception {
+        SymbolTable symbols = new SymbolTable(16, 64);
+        symbols.setStatEnable(true);
+
+        for (int i = 0; i < 1000; ++i) {
+            String str = "col_" + i;
+            symbols.addSymbol(str, 0, str.length(), FnvHash.fnv1a_64(str));
+        }
+
+        assertEquals(64, symbols.getCapacity());
+        assertTrue(symbols.getResizeCount() > 0);
+        assertTrue(symbols.size() <= 64);
+        assertTrue(symbols.getOverflowCount() > 0);
+        assertEquals(1000, symbols.getMissCount());
+
+        String str = "col_0";
+        String symbol = symbols.addSymbol(str, 0, str.length(), FnvHash.fnv1a_64(str));
+        assertEquals(str, symbol);
+        assertEquals(1, symbols.getHitCount());
+        assertEquals(str.length(), symbols.getHitChars());
+
+        symbols.resetStat();
+        assertEquals(0, symbols.getHitCount());
+        assertEquals(0D, symbols.getHitRate());
+    }
+
+    public void test_lexer_symbols() throws Exception {
+        String sql = "select f1, f2 from t1";
+
+        Lexer lexer = new OdpsLexer(sql);
+        assertSame(OdpsLexer.DEFAULT_ODPS_SYMBOLS, lexer.getSymbolTable());
+        lexer.nextToken();
+        lexer.nextToken();
+        String f1 = lexer.stringVal();
+        assertSame(f1, OdpsLexer.DEFAULT_ODPS_SYMBOLS.findSymbol(FnvHash.fnv1a_64("f1")));
+
+        SymbolTable symbols = new SymbolTable(64);
+        lexer = new MySqlLexer(sql);
+        assertSame(SymbolTable.global, lexer.getSymbolTable());
+        lexer.setSymbolTable(symbols);
+        lexer.nextToken();
+        lexer.nextToken();
+        assertSame(lexer.stringVal(), symbols.findSymbol(FnvHash.fnv1a_64("f1")));
+    }
+
     public static int indexOfTime(byte[] bytes, int fromIndex) {
         int end = bytes.length - 5;
         for (int i = fromIndex; i < end; ++i) {
@@ -0,0 +1,52 @@
+package com.alibaba.druid.bvt.sql.repository;
+
+import com.alibaba.druid.DbType;
+import com.alibaba.druid.sql.SQLUtils;
+import com.alibaba.druid.sql.ast.SQLStatement;
+import com.alibaba.druid.sql.ast.statement.SQLAssignItem;
+import com.alibaba.druid.sql.ast.statement.SQLColumnDefinition;
+import com.alibaba.druid.sql.ast.statement.SQLCreateTableStatement;
+import com.alibaba.druid.sql.repository.SchemaRepository;
+import junit.framework.TestCase;
+
+public class SchemaRepositoryCompactTest extends TestCase {
+    public void test_compact() throws Exception {
+        SchemaRepository repository = new SchemaRepository(DbType.mysql);
+        repository.setCompact(true);
+
+        SchemaRepository expected = new SchemaRepository(DbType.mysql);
+
+        for (int i = 0; i < 2; ++i) {
+            String sql = "create table t" + i + " (id bigint primary key, user_name varchar(32) not null) engine=InnoDB;"
+                    + "create view v" + i + " as select t.id, t.user_name as name from t" + i + " t where t.id > 1";
+            repository.console(sql);
+            expected.console(sql);
+        }
+
+        for (String name : new String[]{"t0", "t1"}) {
+            assertEquals(SQLUtils.toMySqlString(expected.findTable(name).getStatement()),
+                    SQLUtils.toMySqlString(repository.findTable(name).getStatement()));
+        }
+        for (String name : new String[]{"v0", "v1"}) {
+            assertEquals(SQLUtils.toMySqlString(expected.findView(name).getStatement()),
+                    SQLUtils.toMySqlString(repository.findView(name).getStatement()));
+        }
+
+        SQLColumnDefinition c0 = repository.findTable("t0").findColumn("user_name");
+        SQLColumnDefinition c1 = repository.findTable("t1").findColumn("user_name");
+        assertNotSame(c0, c1);
+        assertSame(c0.getName().getSimpleName(), c1.getName().getSimpleName());
+        assertSame(c0.getDataType().getName(), c1.getDataType().getName());
+
+        repository.console("alter table t0 add column gmt_create datetime");
+        assertNotNull(repository.findTable("t0").findColumn("gmt_create"));
+    }
+
+    public void test_clone_tableOptions() throws Exception {
+        SQLStatement stmt = SQLUtils.parseSingleStatement("create table t (id bigint) engine=InnoDB", DbType.mysql);
+        SQLCreateTableStatement cloned = (SQLCreateTableStatement) stmt.clone();
+        for (SQLAssignItem option : cloned.getTableOptions()) {
+            assertSame(cloned, option.getParent());
+        }
+    }
+}
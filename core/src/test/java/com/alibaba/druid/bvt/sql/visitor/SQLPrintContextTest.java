@@ -0,0 +1,107 @@
+package com.alibaba.druid.bvt.sql.visitor;
+
+import com.alibaba.druid.DbType;
+import com.alibaba.druid.sql.SQLUtils;
+import com.alibaba.druid.sql.ast.SQLStatement;
+import com.alibaba.druid.sql.dialect.mysql.visitor.MySqlOutputVisitor;
+import com.alibaba.druid.sql.visitor.ParameterizedOutputVisitorUtils;
+import com.alibaba.druid.sql.visitor.SQLPrintContext;
+import com.alibaba.druid.sql.visitor.VisitorFeature;
+import junit.framework.TestCase;
+
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+public class SQLPrintContextTest extends TestCase {
+    public void test_reuse() throws Exception {
+        SQLStatement stmt = SQLUtils.parseSingleStatement("select a, b from t where id = 3 and name in ('x', 'y')", DbType.mysql);
+
+        String upper = SQLUtils.toSQLString(stmt, DbType.mysql);
+        String lower = SQLUtils.toSQLString(stmt, DbType.mysql, SQLUtils.DEFAULT_LCASE_FORMAT_OPTION);
+        String parameterized = SQLUtils.toSQLString(stmt, DbType.mysql, null, VisitorFeature.OutputParameterized);
+
+        StringBuilder out = new StringBuilder();
+        stmt.accept(new MySqlOutputVisitor(out));
+        assertEquals(out.toString(), upper);
+
+        for (int i = 0; i < 3; ++i) {
+            assertEquals(upper, SQLUtils.toSQLString(stmt, DbType.mysql));
+            assertEquals(lower, SQLUtils.toSQLString(stmt, DbType.mysql, SQLUtils.DEFAULT_LCASE_FORMAT_OPTION));
+            assertEquals(parameterized, SQLUtils.toSQLString(stmt, DbType.mysql, null, VisitorFeature.OutputParameterized));
+        }
+        assertTrue(lower.startsWith("select"));
+        assertTrue(parameterized.contains("?"));
+    }
+
+    public void test_parameterize() throws Exception {
+        String sql = "select * from t where id = 3 and name = 'x'";
+        String expected = ParameterizedOutputVisitorUtils.parameterize(sql, DbType.mysql);
+        for (int i = 0; i < 3; ++i) {
+            List<Object> params = new ArrayList<Object>();
+            assertEquals(expected, ParameterizedOutputVisitorUtils.parameterize(sql, DbType.mysql, params));
+            assertEquals(2, params.size());
+            assertEquals(expected, ParameterizedOutputVisitorUtils.parameterize(sql, DbType.mysql));
+        }
+
+        List<Object> params = new ArrayList<Object>();
+        params.add(1);
+        assertEquals("SELECT *\nFROM t\nWHERE id = 1", SQLUtils.format("select * from t where id = ?", DbType.mysql, params));
+        assertEquals("SELECT *\nFROM t\nWHERE id = ?", SQLUtils.format("select * from t where id = ?", DbType.mysql));
+    }
+
+    public void test_nested() throws Exception {
+        SQLPrintContext context = SQLPrintContext.acquire();
+        try {
+            assertTrue(context.isPooled());
+            context.getBuffer().append("xxx");
+
+            SQLPrintContext nested = SQLPrintContext.acquire();
+            assertFalse(nested.isPooled());
+            nested.release();
+
+            assertEquals("SELECT 1", SQLUtils.toSQLString(SQLUtils.parseSingleStatement("select 1", DbType.mysql), DbType.mysql));
+            assertEquals("xxx", context.getBuffer().toString());
+        } finally {
+            context.release();
+        }
+
+        context = SQLPrintContext.acquire();
+        assertTrue(context.isPooled());
+        assertEquals(0, context.getBuffer().length());
+        context.release();
+    }
+
+    public void test_appendTo() throws Exception {
+        List<SQLStatement> stmtList = SQLUtils.parseStatements("select 1; select 2", DbType.mysql);
+        String expected = SQLUtils.toSQLString(stmtList, DbType.mysql);
+
+        CharBuffer buf = CharBuffer.allocate(128);
+        SQLUtils.appendTo(buf, stmtList, DbType.mysql, null, null);
+        buf.flip();
+        assertEquals(expected, buf.toString());
+
+        StringBuilder out = new StringBuilder("-- ");
+        SQLUtils.appendTo(out, stmtList.get(0), DbType.mysql, null);
+        assertEquals("-- " + SQLUtils.toSQLString(stmtList.get(0), DbType.mysql), out.toString());
+    }
+
+    public void test_shrink() throws Exception {
+        StringBuilder sql = new StringBuilder("select * from t where id in (");
+        for (int i = 0; i < 20000; ++i) {
+            if (i != 0) {
+                sql.append(", ");
+            }
+            sql.append(i);
+        }
+        sql.append(")");
+        SQLUtils.format(sql.toString(), DbType.mysql);
+
+        SQLPrintContext context = SQLPrintContext.acquire();
+        try {
+            assertTrue(context.getBuffer().capacity() <= SQLPrintContext.MAX_BUFFER_SIZE);
+        } finally {
+            context.release();
+        }
+    }
+}
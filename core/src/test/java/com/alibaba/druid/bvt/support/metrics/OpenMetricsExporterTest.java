@@ -0,0 +1,144 @@
+package com.alibaba.druid.bvt.support.metrics;
+
+import java.io.StringWriter;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+
+import junit.framework.TestCase;
+
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockServletConfig;
+
+import com.alibaba.druid.pool.DruidDataSource;
+import com.alibaba.druid.support.http.StatViewServlet;
+import com.alibaba.druid.support.http.stat.WebAppStat;
+import com.alibaba.druid.support.metrics.OpenMetricsExporter;
+import com.alibaba.druid.util.JdbcUtils;
+
+public class OpenMetricsExporterTest extends TestCase {
+    private DruidDataSource dataSource;
+
+    protected void setUp() throws Exception {
+        dataSource = new DruidDataSource();
+        dataSource.setName("metrics");
+        dataSource.setUrl("jdbc:mock:xxx");
+        dataSource.setDbType("mysql");
+        dataSource.setFilters("stat,wall");
+        dataSource.init();
+    }
+
+    protected void tearDown() throws Exception {
+        JdbcUtils.close(dataSource);
+    }
+
+    public void test_export() throws Exception {
+        execute("select 1", 2);
+
+        WebAppStat webAppStat = new WebAppStat("/app");
+        webAppStat.getURIStat("/query", true).beforeInvoke();
+        webAppStat.getURIStat("/query", true).afterInvoke(null, 1000 * 1000 * 5);
+
+        String text = export(new LocalExporter(webAppStat));
+
+        assertTrue(text, text.contains("# TYPE druid_pool_connect counter\n"));
+        assertTrue(text, text.contains("druid_pool_connect_total{datasource=\"metrics\"} 2\n"));
+        assertTrue(text, text.contains("druid_pool_idle_connections{datasource=\"metrics\"} 1\n"));
+        assertTrue(text, text.contains(",sql=\"select 1\"} 1\n"));
+        assertTrue(text, text.contains("druid_sql_execute_seconds_bucket{datasource=\"metrics\",sql_id="));
+        assertTrue(text, text.contains(",le=\"+Inf\"} 2\n"));
+        assertTrue(text, text.contains("druid_sql_omitted{datasource=\"metrics\"} 0\n"));
+        assertTrue(text, text.contains("druid_wall_check_total{datasource=\"metrics\"} 2\n"));
+        assertTrue(text, text.contains("druid_web_requests_total{context=\"/app\",uri=\"/query\"} 1\n"));
+        assertTrue(text, text.contains("druid_web_request_seconds_bucket{context=\"/app\",uri=\"/query\",le=\"0.01\"} 1\n"));
+        assertTrue(text, text.endsWith("# EOF\n"));
+    }
+
+    public void test_maxSqlCount() throws Exception {
+        execute("select 1", 3);
+        execute("select 2", 1);
+        execute("select 3", 2);
+
+        OpenMetricsExporter exporter = new LocalExporter();
+        exporter.setMaxSqlCount(2);
+        exporter.setMaxLabelLength(7);
+        String text = export(exporter);
+
+        assertTrue(text, text.contains(",sql=\"select \"} 1\n"));
+        assertEquals(2, count(text, "druid_sql_info{"));
+        assertTrue(text, text.contains("druid_sql_execute_total{datasource=\"metrics\",sql_id=\""
+                + dataSource.getDataSourceStat().getSqlStat("select 3").getId() + "\"} 2\n"));
+        assertFalse(text, text.contains("sql_id=\""
+                + dataSource.getDataSourceStat().getSqlStat("select 2").getId() + "\""));
+        assertTrue(text, text.contains("druid_sql_omitted{datasource=\"metrics\"} 1\n"));
+    }
+
+    public void test_servlet() throws Exception {
+        execute("select 1", 1);
+
+        MockServletConfig servletConfig = new MockServletConfig();
+        servletConfig.addInitParameter(StatViewServlet.PARAM_NAME_ALLOW, "128.242.127.2");
+        StatViewServlet servlet = new StatViewServlet();
+        servlet.init(servletConfig);
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        servlet.service(request("128.242.127.2"), response);
+        assertEquals(OpenMetricsExporter.CONTENT_TYPE, response.getContentType());
+        String text = response.getContentAsString();
+        assertTrue(text, text.contains("druid_pool_connect_total{datasource=\"metrics\"} 1\n"));
+        assertTrue(text, text.endsWith("# EOF\n"));
+
+        response = new MockHttpServletResponse();
+        servlet.service(request("128.242.127.3"), response);
+        assertEquals(403, response.getStatus());
+    }
+
+    private MockHttpServletRequest request(String remoteAddr) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/druid/metrics");
+        request.setServletPath("/druid");
+        request.setRemoteAddr(remoteAddr);
+        return request;
+    }
+
+    private void execute(String sql, int count) throws Exception {
+        for (int i = 0; i < count; ++i) {
+            Connection conn = dataSource.getConnection();
+            Statement stmt = conn.createStatement();
+            stmt.execute(sql);
+            stmt.close();
+            conn.close();
+        }
+    }
+
+    private static String export(OpenMetricsExporter exporter) throws Exception {
+        StringWriter out = new StringWriter();
+        exporter.export(out);
+        return out.toString();
+    }
+
+    private static int count(String text, String part) {
+        int count = 0;
+        for (int i = text.indexOf(part); i != -1; i = text.indexOf(part, i + 1)) {
+            count++;
+        }
+        return count;
+    }
+
+    private class LocalExporter extends OpenMetricsExporter {
+        private final Iterable<WebAppStat> webAppStats;
+
+        LocalExporter(WebAppStat... webAppStats) {
+            this.webAppStats = Arrays.asList(webAppStats);
+        }
+
+        protected Iterable<DruidDataSource> getDataSources() {
+            return Collections.singletonList(dataSource);
+        }
+
+        protected Iterable<WebAppStat> getWebAppStats() {
+            return webAppStats;
+        }
+    }
+}
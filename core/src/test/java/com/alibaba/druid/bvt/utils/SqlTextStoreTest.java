@@ -0,0 +1,44 @@
+package com.alibaba.druid.bvt.utils;
+
+import com.alibaba.druid.pool.DruidPooledPreparedStatement.PreparedStatementKey;
+import com.alibaba.druid.pool.PreparedStatementPool.MethodType;
+import com.alibaba.druid.stat.JdbcSqlStat;
+import com.alibaba.druid.util.SqlTextStore;
+import junit.framework.TestCase;
+
+public class SqlTextStoreTest extends TestCase {
+    public void test_intern() throws Exception {
+        String sql = inList(1000);
+        String copy = inList(1000);
+        assertNotSame(sql, copy);
+
+        assertSame(sql, SqlTextStore.intern(sql));
+        long hitCount = SqlTextStore.getHitCount();
+        assertSame(sql, SqlTextStore.intern(copy));
+        assertEquals(hitCount + 1, SqlTextStore.getHitCount());
+
+        String small = "select * from t where id in (1, 2)";
+        String smallCopy = new String(small);
+        assertSame(smallCopy, SqlTextStore.intern(smallCopy));
+        assertNull(SqlTextStore.intern(null));
+    }
+
+    public void test_shared() throws Exception {
+        String sql = inList(2000);
+
+        JdbcSqlStat sqlStat = new JdbcSqlStat(sql);
+        PreparedStatementKey key = new PreparedStatementKey(inList(2000), null, MethodType.M1);
+        assertSame(sqlStat.getSql(), key.getSql());
+    }
+
+    static String inList(int count) {
+        StringBuilder buf = new StringBuilder("select * from t where id in (");
+        for (int i = 0; i < count; ++i) {
+            if (i != 0) {
+                buf.append(", ");
+            }
+            buf.append(i);
+        }
+        return buf.append(')').toString();
+    }
+}
@@ -0,0 +1,149 @@
+package com.alibaba.druid.pool.ha;
+
+import com.alibaba.druid.pool.DruidDataSource;
+import com.alibaba.druid.pool.DruidPooledConnection;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ReadWriteSplittingDataSourceTest {
+    private DruidDataSource primary;
+    private DruidDataSource replica;
+    private ReadWriteSplittingDataSource dataSource;
+
+    @Before
+    public void setUp() throws Exception {
+        primary = createDataSource("primary");
+        replica = createDataSource("replica");
+        dataSource = new ReadWriteSplittingDataSource(primary, replica);
+    }
+
+    @After
+    public void tearDown() {
+        primary.close();
+        replica.close();
+    }
+
+    @Test
+    public void testIsRead() {
+        assertTrue(dataSource.isRead("select * from t where id = ?"));
+        assertTrue(dataSource.isRead("/* comment */ select 1"));
+        assertFalse(dataSource.isRead("select * from t where id = ? for update"));
+        assertFalse(dataSource.isRead("select * from t where id = ? lock in share mode"));
+        assertFalse(dataSource.isRead("update t set name = ? where id = ?"));
+        assertFalse(dataSource.isRead("insert into t (id) values (?)"));
+        assertFalse(dataSource.isRead("select 1; update t set name = ? where id = ?"));
+        assertFalse(dataSource.isRead("select 1;select 2"));
+        assertFalse(dataSource.isRead(null));
+        assertEquals(8, dataSource.getSqlCacheSize());
+
+        dataSource.isRead("select * from t where id = ?");
+        assertEquals(8, dataSource.getSqlCacheSize());
+    }
+
+    @Test
+    public void testSqlCacheEviction() {
+        dataSource.setMaxSqlCacheSize(4);
+        assertEquals(4, dataSource.getMaxSqlCacheSize());
+        for (int i = 0; i < 100; ++i) {
+            assertTrue(dataSource.isRead("select * from t where id = " + i));
+        }
+        assertTrue(dataSource.getSqlCacheSize() <= 4);
+    }
+
+    @Test
+    public void testReadOnReplica() throws Exception {
+        ReadWriteSplittingConnection conn = (ReadWriteSplittingConnection) dataSource.getConnection();
+        assertEquals(0, replica.getActiveCount());
+
+        PreparedStatement stmt = conn.prepareStatement("select * from t where id = ?");
+        assertSame(replica, ((DruidPooledConnection) conn.getReplicaConnection()).getConnectionHolder().getDataSource());
+        assertNull(conn.getPrimaryConnection());
+        stmt.close();
+
+        conn.close();
+        assertEquals(0, replica.getActiveCount());
+        assertEquals(0, primary.getActiveCount());
+    }
+
+    @Test
+    public void testPinnedAfterWrite() throws Exception {
+        ReadWriteSplittingConnection conn = (ReadWriteSplittingConnection) dataSource.getConnection();
+        conn.prepareStatement("update t set name = ? where id = ?").close();
+        assertTrue(conn.isPinned());
+        assertEquals(1, primary.getActiveCount());
+
+        conn.prepareStatement("select * from t where id = ?").close();
+        assertNull(conn.getReplicaConnection());
+        assertEquals(0, replica.getActiveCount());
+        conn.close();
+        assertEquals(0, primary.getActiveCount());
+    }
+
+    @Test
+    public void testPinnedAfterStatement() throws Exception {
+        ReadWriteSplittingConnection conn = (ReadWriteSplittingConnection) dataSource.getConnection();
+        Statement stmt = conn.createStatement();
+        stmt.executeUpdate("insert into t (id) values (1)");
+        stmt.close();
+        assertTrue(conn.isPinned());
+
+        conn.prepareStatement("select * from t where id = ?").close();
+        assertNull(conn.getReplicaConnection());
+        assertEquals(0, replica.getActiveCount());
+        conn.close();
+    }
+
+    @Test
+    public void testTransaction() throws Exception {
+        ReadWriteSplittingConnection conn = (ReadWriteSplittingConnection) dataSource.getConnection();
+        conn.setAutoCommit(false);
+        conn.prepareStatement("select * from t where id = ?").close();
+        assertNull(conn.getReplicaConnection());
+        assertFalse(conn.getPrimaryConnection().getAutoCommit());
+        conn.commit();
+        conn.setAutoCommit(true);
+
+        // a read only transaction does not pin the connection
+        conn.prepareStatement("select * from t where id = ?").close();
+        assertEquals(1, replica.getActiveCount());
+        conn.close();
+
+        // a write inside a transaction does, the reads after the commit see it
+        conn = (ReadWriteSplittingConnection) dataSource.getConnection();
+        conn.setAutoCommit(false);
+        conn.prepareStatement("update t set name = ? where id = ?").close();
+        conn.commit();
+        conn.setAutoCommit(true);
+        assertTrue(conn.isPinned());
+        conn.prepareStatement("select * from t where id = ?").close();
+        assertNull(conn.getReplicaConnection());
+        conn.close();
+    }
+
+    @Test
+    public void testNoReplica() throws Exception {
+        dataSource.setReplica(null);
+        Connection conn = dataSource.getConnection();
+        conn.prepareStatement("select * from t where id = ?").close();
+        assertEquals(1, primary.getActiveCount());
+        conn.close();
+    }
+
+    private static DruidDataSource createDataSource(String name) throws Exception {
+        DruidDataSource dataSource = new DruidDataSource();
+        dataSource.setUrl("jdbc:mock:" + name);
+        dataSource.init();
+        return dataSource;
+    }
+}
@@ -39,4 +39,21 @@ public class NodeEventTest {
         assertEquals("foo_username", event.getUsername());
         assertEquals("foo_password", event.getPassword());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testGetEventListFromProperties_changed() {
+        Properties p1 = new Properties();
+        p1.setProperty("foo.url", "foo_url");
+        p1.setProperty("bar.url", "bar_url");
+        Properties p2 = new Properties();
+        p2.setProperty("foo.url", "foo_url");
+        p2.setProperty("bar.url", "bar_url_new");
+
+        List<NodeEvent> list = NodeEvent.getEventsByDiffProperties(p1, p2);
+        assertEquals(1, list.size());
+        NodeEvent event = list.get(0);
+        assertEquals(NodeEventTypeEnum.ADD, event.getType());
+        assertEquals("bar", event.getNodeName());
+        assertEquals("bar_url_new", event.getUrl());
+    }
+}
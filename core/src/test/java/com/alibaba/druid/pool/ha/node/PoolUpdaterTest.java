@@ -8,11 +8,13 @@ import org.junit.Before;
 import org.junit.Test;
 
 import javax.sql.DataSource;
+import java.sql.Connection;
 import java.util.HashMap;
 import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 public class PoolUpdaterTest {
@@ -151,6 +153,78 @@ public class PoolUpdaterTest {
         validateDeleteNode();
     }
 
+    @Test
+    public void testAddNode_changed() throws Exception {
+        addNode("jdbc:mock:foo", "foo");
+        DruidDataSource old = (DruidDataSource) haDataSource.getDataSourceMap().get("foo");
+        addNode("jdbc:mock:foo", "foo");
+        assertSame(old, haDataSource.getDataSourceMap().get("foo"));
+
+        Connection conn = old.getConnection();
+        addNode("jdbc:mock:foo2", "foo");
+        DruidDataSource ds = (DruidDataSource) haDataSource.getDataSourceMap().get("foo");
+        assertEquals("jdbc:mock:foo2", ds.getUrl());
+
+        // the replaced pool is closed once drained
+        updater.removeDataSources();
+        assertFalse(old.isClosed());
+        conn.close();
+        updater.removeDataSources();
+        assertTrue(old.isClosed());
+        assertEquals(1, updater.getClosedPoolCount());
+        ds.close();
+    }
+
+    @Test
+    public void testUpdate_createInterval() throws Exception {
+        updater.setCreateIntervalMillis(100);
+        NodeEvent[] events = new NodeEvent[3];
+        for (int i = 0; i < events.length; i++) {
+            events[i] = new NodeEvent();
+            events[i].setNodeName("node" + i);
+            events[i].setUrl("jdbc:mock:node" + i);
+            events[i].setType(NodeEventTypeEnum.ADD);
+        }
+        updater.update(new FileNodeListener(), events);
+
+        // the first pool is created at once as there is no other one
+        assertEquals(1, haDataSource.getDataSourceMap().size());
+        assertEquals(2, updater.getNodesToAdd().size());
+        for (int i = 0; i < 50 && updater.getReconcileCount() == 0; i++) {
+            Thread.sleep(20);
+        }
+        assertEquals(3, haDataSource.getDataSourceMap().size());
+        assertEquals(1, updater.getReconcileCount());
+        assertEquals(3, updater.getCreatedPoolCount());
+        assertTrue(updater.getLastReconcileMillis() >= 100);
+
+        for (DataSource ds : haDataSource.getDataSourceMap().values()) {
+            ((DruidDataSource) ds).close();
+        }
+    }
+
+    @Test
+    public void testRemoveDataSources_drainTimeout() throws Exception {
+        updater.setDrainTimeoutSeconds(1);
+        haDataSource.getDataSourceMap().put("bar", new MockDataSource("bar"));
+        addNode("jdbc:mock:foo", "foo");
+        DruidDataSource ds = (DruidDataSource) haDataSource.getDataSourceMap().get("foo");
+        Connection conn = ds.getConnection();
+
+        NodeEvent event = new NodeEvent();
+        event.setNodeName("foo");
+        event.setType(NodeEventTypeEnum.DELETE);
+        updater.deleteNode(event);
+
+        updater.removeDataSources();
+        assertFalse(ds.isClosed());
+        Thread.sleep(1000);
+        updater.removeDataSources();
+        assertTrue(ds.isClosed());
+        assertFalse(haDataSource.getDataSourceMap().containsKey("foo"));
+        conn.close();
+    }
+
     private void validateDeleteNode() {
         assertEquals(1, updater.getNodesToDel().size());
         assertTrue(updater.getNodesToDel().contains("foo"));
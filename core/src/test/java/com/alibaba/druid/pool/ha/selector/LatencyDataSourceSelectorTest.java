@@ -0,0 +1,141 @@
+package com.alibaba.druid.pool.ha.selector;
+
+import com.alibaba.druid.pool.DruidDataSource;
+import com.alibaba.druid.pool.ha.HighAvailableDataSource;
+import com.alibaba.druid.stat.JdbcStatementStat;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyDataSourceSelectorTest {
+    private HighAvailableDataSource highAvailableDataSource;
+    private DruidDataSource fast;
+    private DruidDataSource slow;
+
+    @Before
+    public void setUp() throws Exception {
+        fast = createDataSource("fast");
+        slow = createDataSource("slow");
+
+        Map<String, DataSource> dataSourceMap = new HashMap<String, DataSource>();
+        dataSourceMap.put("fast", fast);
+        dataSourceMap.put("slow", slow);
+
+        highAvailableDataSource = new HighAvailableDataSource();
+        highAvailableDataSource.setDataSourceMap(dataSourceMap);
+    }
+
+    @After
+    public void tearDown() {
+        highAvailableDataSource.destroy();
+        fast.close();
+        slow.close();
+    }
+
+    @Test
+    public void testFactory() {
+        DataSourceSelector selector = DataSourceSelectorFactory.getSelector("latency", highAvailableDataSource);
+        assertTrue(selector instanceof LatencyDataSourceSelector);
+        assertEquals("latency", selector.getName());
+    }
+
+    @Test
+    public void testLatency() {
+        LatencyDataSourceSelector selector = new LatencyDataSourceSelector(highAvailableDataSource);
+        selector.setRefreshIntervalMillis(0);
+
+        execute(fast, 1);
+        execute(slow, 50);
+        assertEquals(1000 * 1000, selector.getLatencyNanos(fast));
+        assertEquals(50 * 1000 * 1000, selector.getLatencyNanos(slow));
+
+        for (int i = 0; i < 100; i++) {
+            assertSame(fast, selector.get());
+        }
+    }
+
+    @Test
+    public void testUnknownRefreshInterval() throws Exception {
+        LatencyDataSourceSelector selector = new LatencyDataSourceSelector(highAvailableDataSource);
+
+        // an unknown node is sampled every 10 ms, not on every call nor once per refresh interval
+        assertEquals(0, selector.getLatencyNanos(fast));
+        execute(fast, 1);
+
+        Thread.sleep(20);
+        assertEquals(1000 * 1000, selector.getLatencyNanos(fast));
+    }
+
+    @Test
+    public void testStatReset() {
+        LatencyDataSourceSelector selector = new LatencyDataSourceSelector(highAvailableDataSource);
+        selector.setRefreshIntervalMillis(0);
+
+        execute(slow, 50);
+        assertEquals(50 * 1000 * 1000, selector.getLatencyNanos(slow));
+
+        // the totals restart below the last sample, the latency must still follow the new executions
+        slow.getDataSourceStat().getStatementStat().reset();
+        for (int i = 0; i < 20; i++) {
+            execute(slow, 2);
+            selector.getLatencyNanos(slow);
+        }
+        assertTrue(selector.getLatencyNanos(slow) < 3 * 1000 * 1000);
+    }
+
+    @Test
+    public void testActiveCount() throws Exception {
+        LatencyDataSourceSelector selector = new LatencyDataSourceSelector(highAvailableDataSource);
+        selector.setRefreshIntervalMillis(0);
+
+        execute(fast, 1);
+        execute(slow, 2);
+
+        Connection[] connections = new Connection[4];
+        for (int i = 0; i < connections.length; i++) {
+            connections[i] = fast.getConnection();
+        }
+        for (int i = 0; i < 100; i++) {
+            assertSame(slow, selector.get());
+        }
+        for (Connection conn : connections) {
+            conn.close();
+        }
+    }
+
+    @Test
+    public void testBlacklist() {
+        LatencyDataSourceSelector selector = new LatencyDataSourceSelector(highAvailableDataSource);
+        selector.setRefreshIntervalMillis(0);
+
+        execute(fast, 1);
+        execute(slow, 50);
+        selector.addBlacklist(fast);
+        for (int i = 0; i < 100; i++) {
+            assertSame(slow, selector.get());
+        }
+    }
+
+    private static DruidDataSource createDataSource(String name) throws Exception {
+        DruidDataSource dataSource = new DruidDataSource();
+        dataSource.setUrl("jdbc:mock:" + name);
+        dataSource.setMaxActive(8);
+        dataSource.init();
+        return dataSource;
+    }
+
+    private static void execute(DruidDataSource dataSource, long millis) {
+        JdbcStatementStat stat = dataSource.getDataSourceStat().getStatementStat();
+        stat.beforeExecute();
+        stat.afterExecute(millis * 1000 * 1000);
+    }
+}
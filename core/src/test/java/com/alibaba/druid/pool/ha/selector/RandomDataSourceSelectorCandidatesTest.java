@@ -0,0 +1,100 @@
+package com.alibaba.druid.pool.ha.selector;
+
+import com.alibaba.druid.pool.DruidDataSource;
+import com.alibaba.druid.pool.ha.HighAvailableDataSource;
+import com.alibaba.druid.pool.ha.MockDataSource;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class RandomDataSourceSelectorCandidatesTest extends BaseRandomDataSourceSelectorTest {
+    @Test
+    public void testCached() {
+        RandomDataSourceSelector selector = new RandomDataSourceSelector(dataSource);
+        DataSource[] candidates = selector.getCandidates();
+        assertEquals(10, candidates.length);
+        for (int i = 0; i < 100; i++) {
+            selector.get();
+            assertSame(candidates, selector.getCandidates());
+        }
+    }
+
+    @Test
+    public void testBlacklist() {
+        RandomDataSourceSelector selector = new RandomDataSourceSelector(dataSource);
+        DataSource[] candidates = selector.getCandidates();
+
+        DataSource removed = dataSourceMap.get("1");
+        selector.addBlacklist(removed);
+        assertNotSame(candidates, selector.getCandidates());
+        assertEquals(9, selector.getCandidates().length);
+        assertFalse(Arrays.asList(selector.getCandidates()).contains(removed));
+
+        dataSource.addBlackList("2");
+        assertEquals(8, selector.getCandidates().length);
+
+        selector.removeBlacklist(removed);
+        dataSource.removeBlackList("2");
+        assertEquals(10, selector.getCandidates().length);
+    }
+
+    @Test
+    public void testUniformAmongIdle() throws Exception {
+        Map<String, DataSource> map = new HashMap<String, DataSource>();
+        DruidDataSource[] nodes = new DruidDataSource[4];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = new DruidDataSource();
+            nodes[i].setUrl("jdbc:mock:node" + i);
+            if (i != 1) {
+                nodes[i].setInitialSize(1);
+            }
+            nodes[i].init();
+            map.put(Integer.toString(i), nodes[i]);
+        }
+        HighAvailableDataSource highAvailableDataSource = new HighAvailableDataSource();
+        highAvailableDataSource.setDataSourceMap(map);
+
+        try {
+            // node 1 has no idle connection, the others share its picks evenly
+            RandomDataSourceSelector selector = new RandomDataSourceSelector(highAvailableDataSource);
+            Map<DataSource, Integer> counts = new HashMap<DataSource, Integer>();
+            int count = 30000;
+            for (int i = 0; i < count; i++) {
+                DataSource selected = selector.get();
+                Integer c = counts.get(selected);
+                counts.put(selected, c == null ? 1 : c + 1);
+            }
+            assertNull(counts.get(nodes[1]));
+            for (int i : new int[]{0, 2, 3}) {
+                assertEquals(count / 3, counts.get(nodes[i]), count / 30);
+            }
+        } finally {
+            highAvailableDataSource.destroy();
+            for (DruidDataSource node : nodes) {
+                node.close();
+            }
+        }
+    }
+
+    @Test
+    public void testNodeChanged() {
+        RandomDataSourceSelector selector = new RandomDataSourceSelector(dataSource);
+        assertEquals(10, selector.getCandidates().length);
+
+        dataSourceMap.put("10", new MockDataSource("10"));
+        dataSource.dataSourceMapChanged();
+        assertEquals(11, selector.getCandidates().length);
+
+        dataSourceMap.remove("10");
+        assertEquals(10, selector.getCandidates().length);
+    }
+}
@@ -0,0 +1,194 @@
+package com.alibaba.druid.pool.ha.selector;
+
+import com.alibaba.druid.mock.MockDriver;
+import com.alibaba.druid.mock.MockStatementBase;
+import com.alibaba.druid.mock.handler.MockExecuteHandler;
+import com.alibaba.druid.pool.DruidDataSource;
+import com.alibaba.druid.pool.ExceptionSorter;
+import com.alibaba.druid.pool.ha.HighAvailableDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RandomDataSourceSelectorFatalErrorTest {
+    private HighAvailableDataSource highAvailableDataSource;
+    private DruidDataSource foo;
+    private DruidDataSource bar;
+    private volatile boolean fooDown;
+    private volatile boolean fooHung;
+    private final AtomicInteger fooHungConnects = new AtomicInteger();
+
+    @Before
+    public void setUp() throws Exception {
+        foo = createDataSource("foo");
+        bar = createDataSource("bar");
+
+        Map<String, DataSource> dataSourceMap = new HashMap<String, DataSource>();
+        dataSourceMap.put("foo", foo);
+        dataSourceMap.put("bar", bar);
+
+        highAvailableDataSource = new HighAvailableDataSource();
+        highAvailableDataSource.setDataSourceMap(dataSourceMap);
+    }
+
+    @After
+    public void tearDown() {
+        highAvailableDataSource.destroy();
+        foo.close();
+        bar.close();
+    }
+
+    @Test
+    public void testBlacklistOnFatalError() throws Exception {
+        RandomDataSourceSelector selector = initSelector(1);
+
+        executeWithFatalError(foo);
+        assertTrue(selector.containInBlacklist(foo));
+        assertFalse(selector.containInBlacklist(bar));
+    }
+
+    @Test
+    public void testCheckOnFatalError() throws Exception {
+        RandomDataSourceSelector selector = initSelector(3);
+
+        // the connection is broken but the node is fine, the check started by the error passes
+        executeWithFatalError(foo);
+        Thread.sleep(500);
+        executeWithFatalError(foo);
+        Thread.sleep(500);
+        executeWithFatalError(foo);
+        assertFalse(selector.containInBlacklist(foo));
+    }
+
+    @Test
+    public void testErrorCountResetOnRecover() throws Exception {
+        RandomDataSourceSelector selector = initSelector(2);
+
+        // the node is down, the check started by the error fails too
+        Connection conn = foo.getConnection();
+        fooDown = true;
+        try {
+            conn.createStatement().executeQuery("select 1");
+            fail();
+        } catch (SQLException e) {
+            // expected
+        } finally {
+            conn.close();
+        }
+        for (int i = 0; i < 100 && !selector.containInBlacklist(foo); i++) {
+            Thread.sleep(10);
+        }
+        assertTrue(selector.containInBlacklist(foo));
+
+        // recovered, a single error must not put it back at once
+        fooDown = false;
+        selector.removeBlacklist(foo);
+        executeWithFatalError(foo);
+        assertFalse(selector.containInBlacklist(foo));
+    }
+
+    @Test
+    public void testHungCheckNotRepeated() throws Exception {
+        fooHung = true;
+        try {
+            RandomDataSourceSelector selector = initSelector(3, 1);
+            Thread.sleep(5000);
+
+            // the timed out check is still stuck in connect, the next rounds do not start another one
+            assertEquals(1, fooHungConnects.get());
+            assertFalse(selector.containInBlacklist(foo));
+        } finally {
+            fooHung = false;
+        }
+    }
+
+    private RandomDataSourceSelector initSelector(int blacklistThreshold) throws Exception {
+        return initSelector(blacklistThreshold, 60);
+    }
+
+    private RandomDataSourceSelector initSelector(int blacklistThreshold, int checkingIntervalSeconds) throws Exception {
+        RandomDataSourceSelector selector = new RandomDataSourceSelector(highAvailableDataSource);
+        RandomDataSourceValidateThread validateThread = new RandomDataSourceValidateThread(selector);
+        validateThread.setCheckingIntervalSeconds(checkingIntervalSeconds);
+        validateThread.setCheckingTimeoutSeconds(1);
+        validateThread.setBlacklistThreshold(blacklistThreshold);
+        selector.setValidateThread(validateThread);
+        selector.init();
+        highAvailableDataSource.setDataSourceSelector(selector);
+
+        // the listeners are registered by the first round of validation
+        for (int i = 0; i < 100 && foo.getFatalErrorListeners().isEmpty(); i++) {
+            Thread.sleep(10);
+        }
+        assertFalse(foo.getFatalErrorListeners().isEmpty());
+        return selector;
+    }
+
+    private static void executeWithFatalError(DruidDataSource dataSource) throws Exception {
+        Connection conn = dataSource.getConnection();
+        try {
+            conn.createStatement().executeQuery("select 1");
+            fail();
+        } catch (SQLException e) {
+            // expected
+        } finally {
+            conn.close();
+        }
+    }
+
+    private DruidDataSource createDataSource(String name) throws Exception {
+        MockDriver driver = new MockDriver() {
+            public Connection connect(String url, Properties info) throws SQLException {
+                if (fooDown && url.endsWith(":foo")) {
+                    throw new SQLException("connection refused");
+                }
+                if (fooHung && url.endsWith(":foo")) {
+                    // like a driver blocked in a socket read, the interrupt is ignored
+                    fooHungConnects.incrementAndGet();
+                    while (fooHung) {
+                        try {
+                            Thread.sleep(10);
+                        } catch (InterruptedException ignored) {
+                            // ignore
+                        }
+                    }
+                }
+                return super.connect(url, info);
+            }
+        };
+        driver.setExecuteHandler(new MockExecuteHandler() {
+            public ResultSet executeQuery(MockStatementBase statement, String sql) throws SQLException {
+                throw new SQLException("connection reset");
+            }
+        });
+
+        DruidDataSource dataSource = new DruidDataSource();
+        dataSource.setName(name);
+        dataSource.setUrl("jdbc:mock:" + name);
+        dataSource.setDriver(driver);
+        dataSource.setExceptionSorter(new ExceptionSorter() {
+            public boolean isExceptionFatal(SQLException e) {
+                return true;
+            }
+
+            public void configFromProperties(Properties properties) {
+            }
+        });
+        dataSource.init();
+        return dataSource;
+    }
+}